@@ -0,0 +1,425 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ca.uqac.lif.cep.util.SpscRingBuffer;
+
+/**
+ * {@link Pushable} that hands events over to another thread. Events
+ * pushed into it are put in a bounded ring buffer; a dedicated thread
+ * takes them out of the buffer and pushes them into the downstream
+ * processor. The upstream processor thus returns as soon as its events
+ * are in the buffer, and the two sides of the connection run in
+ * parallel.
+ * <p>
+ * Such pushables are created by
+ * {@link Connector#connectAsync(Processor, int, Processor, int, int, Backpressure)}.
+ * The buffer accepts a single producer: only one thread at a time
+ * should push events into a given asynchronous pushable.
+ * <p>
+ * If the downstream processor throws an exception, the thread keeps
+ * going with the next events, and the first such exception is thrown
+ * back to the upstream side by the next call to {@link #push(Object)},
+ * {@link #flush()} or {@link #close()}.
+ *
+ * @author Sylvain Hallé
+ */
+public class AsyncPushable implements Pushable
+{
+	/**
+	 * The number of times a thread checks the buffer before going to
+	 * sleep
+	 */
+	protected static final int s_spinCount = 100;
+
+	/**
+	 * The pushable of the downstream processor
+	 */
+	protected final Pushable m_target;
+
+	/**
+	 * The buffer between the two threads
+	 */
+	protected final SpscRingBuffer<Object> m_buffer;
+
+	/**
+	 * What to do when the buffer is full
+	 */
+	protected final Backpressure m_backpressure;
+
+	/**
+	 * The thread pushing events into the downstream processor
+	 */
+	protected final Thread m_consumer;
+
+	/**
+	 * Lock guarding the conditions the threads sleep on
+	 */
+	protected final ReentrantLock m_lock = new ReentrantLock();
+
+	/**
+	 * Signalled when an event is put in an empty buffer, or when the
+	 * pushable is closed
+	 */
+	protected final Condition m_notEmpty = m_lock.newCondition();
+
+	/**
+	 * Signalled when the consumer thread makes room in the buffer
+	 */
+	protected final Condition m_notFull = m_lock.newCondition();
+
+	/**
+	 * Signalled when the buffer is empty and the consumer thread is idle
+	 */
+	protected final Condition m_drained = m_lock.newCondition();
+
+	/**
+	 * Whether the consumer thread is sleeping
+	 */
+	protected volatile boolean m_consumerParked = false;
+
+	/**
+	 * Whether the producer thread is waiting for room in the buffer
+	 */
+	protected volatile boolean m_producerParked = false;
+
+	/**
+	 * The number of threads waiting in {@link #flush()}
+	 */
+	protected volatile int m_flushers = 0;
+
+	/**
+	 * The first exception thrown downstream and not yet reported to
+	 * the upstream side
+	 */
+	protected final AtomicReference<Throwable> m_failure = new AtomicReference<Throwable>();
+
+	/**
+	 * Whether the consumer thread is pushing an event downstream
+	 */
+	protected volatile boolean m_busy = false;
+
+	/**
+	 * Whether the consumer thread should stop once the buffer is empty
+	 */
+	protected volatile boolean m_closed = false;
+
+	/**
+	 * The number of events discarded because the buffer was full
+	 */
+	protected volatile long m_dropped = 0;
+
+	/**
+	 * Creates a new asynchronous pushable. Its thread is not started
+	 * until {@link #start()} is called.
+	 * @param target The pushable of the downstream processor
+	 * @param capacity The minimum number of events the buffer can hold
+	 * @param backpressure What to do when the buffer is full
+	 */
+	public AsyncPushable(Pushable target, int capacity, Backpressure backpressure)
+	{
+		super();
+		m_target = target;
+		m_buffer = new SpscRingBuffer<Object>(capacity);
+		m_backpressure = backpressure;
+		m_consumer = new Thread(new Consumer(), "BeepBeep async pushable "
+				+ target.getProcessor().getId() + ":" + target.getPosition());
+		m_consumer.setDaemon(true);
+	}
+
+	/**
+	 * Starts the thread pushing events downstream
+	 * @return This pushable
+	 */
+	public AsyncPushable start()
+	{
+		m_consumer.start();
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws RuntimeException The first exception thrown by the
+	 *   downstream processor since the last one was reported
+	 * @throws IllegalStateException If the pushable has been closed
+	 */
+	@Override
+	public Pushable push(Object o)
+	{
+		if (m_closed)
+		{
+			throw new IllegalStateException("Cannot push an event into a closed pushable");
+		}
+		rethrowFailure();
+		if (o == null)
+		{
+			// Pushing null is the same as pushing no event
+			return this;
+		}
+		if (m_buffer.offer(o))
+		{
+			wakeConsumer();
+			return this;
+		}
+		switch (m_backpressure)
+		{
+		case DROP_NEWEST:
+			m_dropped++;
+			break;
+		case FAIL:
+			throw new BoundedQueue.OverflowException(m_buffer.capacity());
+		case DROP_OLDEST:
+			while (!m_buffer.offer(o))
+			{
+				if (m_buffer.pollOldest() != null)
+				{
+					m_dropped++;
+				}
+			}
+			wakeConsumer();
+			break;
+		default:
+			m_lock.lock();
+			try
+			{
+				m_producerParked = true;
+				while (!m_buffer.offer(o))
+				{
+					m_notFull.awaitUninterruptibly();
+				}
+			}
+			finally
+			{
+				m_producerParked = false;
+				m_lock.unlock();
+			}
+			wakeConsumer();
+			break;
+		}
+		return this;
+	}
+
+	@Override
+	public Pushable pushAll(Object[] events)
+	{
+		for (Object o : events)
+		{
+			push(o);
+		}
+		return this;
+	}
+
+	/**
+	 * Waits until every event accepted so far has been pushed downstream
+	 * @throws RuntimeException The first exception thrown by the
+	 *   downstream processor since the last one was reported
+	 */
+	public void flush()
+	{
+		m_lock.lock();
+		try
+		{
+			m_flushers++;
+			while (!m_buffer.isEmpty() || m_busy)
+			{
+				m_drained.awaitUninterruptibly();
+			}
+		}
+		finally
+		{
+			m_flushers--;
+			m_lock.unlock();
+		}
+		rethrowFailure();
+	}
+
+	/**
+	 * Pushes the remaining events downstream, and then stops the thread
+	 * @throws RuntimeException The first exception thrown by the
+	 *   downstream processor since the last one was reported
+	 */
+	public void close()
+	{
+		m_closed = true;
+		signal(m_notEmpty);
+		try
+		{
+			m_consumer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		rethrowFailure();
+	}
+
+	/**
+	 * Gets the number of events discarded so far because the buffer
+	 * was full
+	 * @return The number of events
+	 */
+	public long getDroppedCount()
+	{
+		return m_dropped;
+	}
+
+	/**
+	 * Gets the number of events waiting in the buffer
+	 * @return The number of events
+	 */
+	public int getQueueSize()
+	{
+		return m_buffer.size();
+	}
+
+	@Override
+	public Processor getProcessor()
+	{
+		return m_target.getProcessor();
+	}
+
+	@Override
+	public int getPosition()
+	{
+		return m_target.getPosition();
+	}
+
+	/**
+	 * Wakes up the consumer thread if it is sleeping
+	 */
+	protected final void wakeConsumer()
+	{
+		if (m_consumerParked)
+		{
+			signal(m_notEmpty);
+		}
+	}
+
+	/**
+	 * Wakes up the threads waiting on a condition
+	 * @param c The condition
+	 */
+	protected final void signal(Condition c)
+	{
+		m_lock.lock();
+		try
+		{
+			c.signalAll();
+		}
+		finally
+		{
+			m_lock.unlock();
+		}
+	}
+
+	/**
+	 * Throws the first exception thrown downstream, if any, and forgets
+	 * it
+	 */
+	protected final void rethrowFailure()
+	{
+		Throwable t = m_failure.getAndSet(null);
+		if (t == null)
+		{
+			return;
+		}
+		if (t instanceof RuntimeException)
+		{
+			throw (RuntimeException) t;
+		}
+		if (t instanceof Error)
+		{
+			throw (Error) t;
+		}
+		throw new RuntimeException(t);
+	}
+
+	/**
+	 * Takes events out of the buffer and pushes them downstream
+	 */
+	protected class Consumer implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			int idle = 0;
+			while (true)
+			{
+				m_busy = true;
+				Object o = m_buffer.poll();
+				if (o != null)
+				{
+					idle = 0;
+					try
+					{
+						m_target.push(o);
+					}
+					catch (Throwable t)
+					{
+						// Don't let one faulty event stop the thread; the
+						// upstream side gets the exception on its next call
+						m_failure.compareAndSet(null, t);
+					}
+					finally
+					{
+						m_busy = false;
+					}
+					if (m_producerParked)
+					{
+						signal(m_notFull);
+					}
+					continue;
+				}
+				m_busy = false;
+				if (m_flushers > 0)
+				{
+					signal(m_drained);
+				}
+				if (m_closed && m_buffer.isEmpty())
+				{
+					return;
+				}
+				if (idle < s_spinCount)
+				{
+					idle++;
+					Thread.yield();
+					continue;
+				}
+				m_lock.lock();
+				try
+				{
+					m_consumerParked = true;
+					while (m_buffer.isEmpty() && !m_closed)
+					{
+						m_notEmpty.awaitUninterruptibly();
+					}
+				}
+				finally
+				{
+					m_consumerParked = false;
+					m_lock.unlock();
+				}
+				idle = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+/**
+ * What to do when an event arrives and a bounded buffer is full. The
+ * same policies apply to the buffer of an {@link AsyncPushable} and to
+ * a {@link BoundedQueue}.
+ *
+ * @author Sylvain Hallé
+ */
+public enum Backpressure
+{
+	/**
+	 * Wait until another thread makes room
+	 */
+	BLOCK,
+	/**
+	 * Discard the oldest event in the buffer
+	 */
+	DROP_OLDEST,
+	/**
+	 * Discard the event being added
+	 */
+	DROP_NEWEST,
+	/**
+	 * Throw a {@link BoundedQueue.OverflowException}
+	 */
+	FAIL
+}
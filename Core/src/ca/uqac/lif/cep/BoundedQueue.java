@@ -0,0 +1,244 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+
+/**
+ * Queue holding at most a fixed number of elements. What happens when
+ * an element is added to a full queue depends on the queue's
+ * {@link Backpressure} policy:
+ * <ul>
+ * <li>{@link Backpressure#BLOCK BLOCK}: the thread adding the element
+ * waits until another thread removes one. This only makes sense when
+ * the queue is filled and emptied by different threads; otherwise the
+ * thread waits forever.</li>
+ * <li>{@link Backpressure#DROP_OLDEST DROP_OLDEST}: the element at the
+ * head of the queue is discarded</li>
+ * <li>{@link Backpressure#DROP_NEWEST DROP_NEWEST}: the element being
+ * added is discarded</li>
+ * <li>{@link Backpressure#FAIL FAIL}: {@link #add(Object)} throws an
+ * {@link OverflowException}</li>
+ * </ul>
+ * The queue also remembers the largest number of elements it ever
+ * held, and how many elements it discarded.
+ * <p>
+ * All operations are synchronized on the queue, except iteration.
+ *
+ * @author Sylvain Hallé
+ */
+public class BoundedQueue<E> extends AbstractQueue<E>
+{
+	/**
+	 * The elements of the queue
+	 */
+	protected final ArrayDeque<E> m_elements = new ArrayDeque<E>();
+
+	/**
+	 * The maximum number of elements in the queue
+	 */
+	protected final int m_capacity;
+
+	/**
+	 * What to do when an element is added to a full queue
+	 */
+	protected final Backpressure m_backpressure;
+
+	/**
+	 * The largest number of elements the queue ever held
+	 */
+	protected int m_highWaterMark = 0;
+
+	/**
+	 * The number of elements discarded because the queue was full
+	 */
+	protected long m_dropped = 0;
+
+	/**
+	 * Creates a new empty queue
+	 * @param capacity The maximum number of elements in the queue
+	 * @param backpressure What to do when an element is added to a
+	 *   full queue
+	 */
+	public BoundedQueue(int capacity, Backpressure backpressure)
+	{
+		super();
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		m_capacity = capacity;
+		m_backpressure = backpressure;
+	}
+
+	/**
+	 * Adds an element to the queue
+	 * @param e The element
+	 * @return <code>true</code> if the element is in the queue,
+	 *   <code>false</code> if it was discarded, or if the queue is full
+	 *   and its policy is {@link Backpressure#FAIL FAIL}
+	 */
+	@Override
+	public synchronized boolean offer(E e)
+	{
+		if (m_elements.size() >= m_capacity)
+		{
+			switch (m_backpressure)
+			{
+			case DROP_OLDEST:
+				m_elements.poll();
+				m_dropped++;
+				break;
+			case DROP_NEWEST:
+				m_dropped++;
+				return false;
+			case FAIL:
+				return false;
+			default:
+				while (m_elements.size() >= m_capacity)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException ex)
+					{
+						Thread.currentThread().interrupt();
+						return false;
+					}
+				}
+				break;
+			}
+		}
+		m_elements.add(e);
+		m_highWaterMark = Math.max(m_highWaterMark, m_elements.size());
+		return true;
+	}
+
+	/**
+	 * Adds an element to the queue. Contrarily to {@link #offer(Object)},
+	 * this method only fails when the queue's policy is
+	 * {@link Backpressure#FAIL FAIL}; an element discarded by the other
+	 * policies is only counted.
+	 * @param e The element
+	 * @return <code>true</code>
+	 * @throws OverflowException If the queue is full and its policy is
+	 *   {@link Backpressure#FAIL FAIL}
+	 */
+	@Override
+	public boolean add(E e)
+	{
+		if (!offer(e) && m_backpressure == Backpressure.FAIL)
+		{
+			throw new OverflowException(m_capacity);
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized E poll()
+	{
+		E e = m_elements.poll();
+		if (e != null && m_backpressure == Backpressure.BLOCK)
+		{
+			notifyAll();
+		}
+		return e;
+	}
+
+	@Override
+	public synchronized E peek()
+	{
+		return m_elements.peek();
+	}
+
+	@Override
+	public synchronized int size()
+	{
+		return m_elements.size();
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		m_elements.clear();
+		notifyAll();
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return m_elements.iterator();
+	}
+
+	/**
+	 * Gets the maximum number of elements in the queue
+	 * @return The capacity
+	 */
+	public final int getCapacity()
+	{
+		return m_capacity;
+	}
+
+	/**
+	 * Gets what the queue does when an element is added while it is full
+	 * @return The policy
+	 */
+	public final Backpressure getBackpressure()
+	{
+		return m_backpressure;
+	}
+
+	/**
+	 * Gets the largest number of elements the queue ever held
+	 * @return The number of elements
+	 */
+	public synchronized int getHighWaterMark()
+	{
+		return m_highWaterMark;
+	}
+
+	/**
+	 * Gets the number of elements discarded because the queue was full
+	 * @return The number of elements
+	 */
+	public synchronized long getDroppedCount()
+	{
+		return m_dropped;
+	}
+
+	/**
+	 * Exception thrown when an element is added to a full queue whose
+	 * policy is {@link Backpressure#FAIL FAIL}
+	 */
+	public static class OverflowException extends IllegalStateException
+	{
+		/**
+		 * Dummy UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		public OverflowException(int capacity)
+		{
+			super("Queue is full (capacity " + capacity + ")");
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.functions.CumulativeProcessor;
+import ca.uqac.lif.cep.functions.Function;
+import ca.uqac.lif.cep.functions.FunctionChain;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.tmf.Passthrough;
+
+/**
+ * Shortens a pipe by merging processors that simply follow each other.
+ * Every processor an event goes through costs a queue insertion and
+ * removal, and a call to {@link Pushable#push(Object)} or
+ * {@link Pullable#pull()}; this pass removes as many of these steps as
+ * it can without changing the events the pipe produces:
+ * <ul>
+ * <li>{@link Passthrough} processors are removed, and the processors
+ * on each side are connected directly</li>
+ * <li>a chain of {@link FunctionProcessor}s, where each processor but
+ * the first has input and output arity 1 and only receives events from
+ * the previous one, is replaced by a single function processor
+ * evaluating a {@link FunctionChain}</li>
+ * </ul>
+ * Subclasses of these processors may do more than their parent class
+ * (for example, handle their context differently); they are left
+ * untouched.
+ * Only processors connected on both sides are removed or replaced,
+ * as the user may be pushing events into, or pulling events from, a
+ * processor at either end of the pipe. Processors inside a
+ * {@link GroupProcessor} are left untouched.
+ *
+ * @author Sylvain Hallé
+ */
+public class ChainFuser
+{
+	private ChainFuser()
+	{
+		super();
+	}
+
+	/**
+	 * Fuses the chains of processors in a pipe
+	 * @param start Any processor of the pipe. The others are found by
+	 *   following the connections.
+	 * @return The number of processors no longer in the pipe
+	 * @throws ConnectorException If the processors on each side of a
+	 *   removed processor cannot be connected
+	 */
+	public static int fuse(Processor start) throws ConnectorException
+	{
+		final Set<Processor> found = new HashSet<Processor>();
+		PipeCrawler crawler = new PipeCrawler()
+		{
+			@Override
+			public void visit(Processor p)
+			{
+				found.add(p);
+			}
+		};
+		crawler.crawl(start);
+		Set<Processor> removed = new HashSet<Processor>();
+		for (Processor p : found)
+		{
+			// Descendants of Passthrough, such as Last, do not forward
+			// their events as they are; only the class itself is removed
+			if (p.getClass() == Passthrough.class && removePassthrough(p))
+			{
+				removed.add(p);
+			}
+		}
+		for (Processor p : found)
+		{
+			if (isPlainFunctionProcessor(p) && !removed.contains(p) && isChainHead(p))
+			{
+				fuseChain((FunctionProcessor) p, removed);
+			}
+		}
+		return removed.size();
+	}
+
+	/**
+	 * Connects the processors on each side of a passthrough
+	 * @param pt The passthrough
+	 * @return <code>true</code> if the passthrough was removed from the
+	 *   pipe, <code>false</code> otherwise
+	 */
+	protected static boolean removePassthrough(Processor pt) throws ConnectorException
+	{
+		int arity = pt.getInputArity();
+		Pullable[] ups = new Pullable[arity];
+		Pushable[] downs = new Pushable[arity];
+		for (int i = 0; i < arity; i++)
+		{
+			ups[i] = pt.getPullableInput(i);
+			downs[i] = pt.getPushableOutput(i);
+			if (ups[i] == null || downs[i] == null
+					|| !isLinked(ups[i].getProcessor(), ups[i].getPosition(), pt, i)
+					|| !isLinked(pt, i, downs[i].getProcessor(), downs[i].getPosition())
+					|| !Connector.isCompatible(ups[i].getProcessor(), downs[i].getProcessor(), ups[i].getPosition(), downs[i].getPosition()))
+			{
+				return false;
+			}
+		}
+		for (int i = 0; i < arity; i++)
+		{
+			Connector.connect(ups[i].getProcessor(), ups[i].getPosition(), downs[i].getProcessor(), downs[i].getPosition());
+		}
+		return true;
+	}
+
+	/**
+	 * Determines if a processor is the first of a chain of function
+	 * processors
+	 * @param p The processor
+	 * @return <code>true</code> if it is the first of a chain
+	 */
+	protected static boolean isChainHead(Processor p)
+	{
+		if (p.getInputArity() != 1)
+		{
+			return true;
+		}
+		Pullable up = p.getPullableInput(0);
+		return up == null || !isFusible(up.getProcessor(), p);
+	}
+
+	/**
+	 * Replaces a chain of function processors by a single one
+	 * @param head The first processor of the chain
+	 * @param removed The set of processors no longer in the pipe
+	 */
+	protected static void fuseChain(FunctionProcessor head, Set<Processor> removed) throws ConnectorException
+	{
+		List<FunctionProcessor> chain = new ArrayList<FunctionProcessor>();
+		chain.add(head);
+		FunctionProcessor tail = head;
+		while (tail.getOutputArity() == 1 && tail.getPushableOutput(0) != null
+				&& isFusible(tail, tail.getPushableOutput(0).getProcessor()))
+		{
+			tail = (FunctionProcessor) tail.getPushableOutput(0).getProcessor();
+			chain.add(tail);
+		}
+		if (chain.size() < 2 || !hasNoContext(head))
+		{
+			return;
+		}
+		// Both ends of the chain must be connected
+		for (int i = 0; i < head.getInputArity(); i++)
+		{
+			Pullable up = head.getPullableInput(i);
+			if (up == null || !isLinked(up.getProcessor(), up.getPosition(), head, i))
+			{
+				return;
+			}
+		}
+		Pushable down = tail.getPushableOutput(0);
+		if (down == null || !isLinked(tail, 0, down.getProcessor(), down.getPosition()))
+		{
+			return;
+		}
+		Function[] functions = new Function[chain.size()];
+		for (int i = 0; i < functions.length; i++)
+		{
+			functions[i] = chain.get(i).getFunction();
+		}
+		FunctionProcessor fused = new FunctionProcessor(new FunctionChain(functions));
+		for (int i = 0; i < head.getInputArity(); i++)
+		{
+			Pullable up = head.getPullableInput(i);
+			Connector.connect(up.getProcessor(), up.getPosition(), fused, i);
+		}
+		Connector.connect(fused, 0, down.getProcessor(), down.getPosition());
+		removed.addAll(chain);
+	}
+
+	/**
+	 * Determines if a function processor can be merged with the next one
+	 * @param p The first processor
+	 * @param q The next processor
+	 * @return <code>true</code> if they can be merged
+	 */
+	protected static boolean isFusible(Processor p, Processor q)
+	{
+		return isPlainFunctionProcessor(p) && isPlainFunctionProcessor(q)
+				&& p.getOutputArity() == 1 && q.getInputArity() == 1
+				&& q.getOutputArity() == 1 && isLinked(p, 0, q, 0)
+				&& hasNoContext(p) && hasNoContext(q);
+	}
+
+	/**
+	 * Determines if a processor is a function processor that only
+	 * evaluates its function. Subclasses are excluded, as the fused
+	 * processor would lose whatever they do on top of that.
+	 * @param p The processor
+	 * @return <code>true</code> if the processor can be fused
+	 */
+	protected static boolean isPlainFunctionProcessor(Processor p)
+	{
+		return p.getClass() == FunctionProcessor.class
+				|| p.getClass() == CumulativeProcessor.class;
+	}
+
+	/**
+	 * Determines if a processor has no context. The functions of merged
+	 * processors are evaluated in a single context; they can only be
+	 * merged if none of them has anything in its own.
+	 * @param p The processor
+	 * @return <code>true</code> if the processor's context is empty
+	 */
+	protected static boolean hasNoContext(Processor p)
+	{
+		return p.m_context == null || p.m_context.isEmpty();
+	}
+
+	/**
+	 * Determines if the <i>i</i>-th output of a processor is connected
+	 * to the <i>j</i>-th input of another, both in push and in pull mode
+	 * @param p The first processor
+	 * @param i The output number of the first processor
+	 * @param q The second processor
+	 * @param j The input number of the second processor
+	 * @return <code>true</code> if they are connected
+	 */
+	protected static boolean isLinked(Processor p, int i, Processor q, int j)
+	{
+		if (p == null || q == null || p == q)
+		{
+			return false;
+		}
+		Pushable push = p.getPushableOutput(i);
+		Pullable pull = q.getPullableInput(j);
+		return push != null && pull != null
+				&& push.getProcessor() == q && push.getPosition() == j
+				&& pull.getProcessor() == p && pull.getPosition() == i;
+	}
+}
@@ -67,6 +67,12 @@ public class Connector
 	 */
 	public static final transient boolean s_checkForBounds = false;
 	
+	/**
+	 * Whether the connector registers the processors it connects in the
+	 * {@link MetricsRegistry}, so that they collect runtime statistics
+	 */
+	public static boolean s_collectMetrics = false;
+	
 	/**
 	 * Constant used to replace the value 0 when referring to
 	 * a processor's unique input
@@ -122,6 +128,11 @@ public class Connector
 			// This will throw an exception if the connection is impossible
 			checkForException(p1, p2, i, j);
 		}
+		if (s_collectMetrics)
+		{
+			MetricsRegistry.register(p1);
+			MetricsRegistry.register(p2);
+		}
 		// Pull
 		Pullable p1_out = p1.getPullableOutput(i);
 		p2.setPullableInput(j, p1_out);
@@ -147,6 +158,53 @@ public class Connector
 		return connect(p1, p2, i, j);
 	}
 	
+	/**
+	 * Connects the <i>i</i>-th output of <tt>p1</tt> to the
+	 * <i>j</i>-th input of <tt>p2</tt>, so that in push mode,
+	 * <tt>p2</tt> runs in a thread of its own. Events pushed by
+	 * <tt>p1</tt> are put in a bounded buffer, from which the thread
+	 * pushes them into <tt>p2</tt>. In pull mode, the connection
+	 * behaves like the one made by
+	 * {@link #connect(Processor, int, Processor, int)}.
+	 * @param p1 The first processor
+	 * @param i The output number of the first processor
+	 * @param p2 The second processor
+	 * @param j The input number of the second processor
+	 * @param capacity The minimum number of events the buffer can hold
+	 * @param backpressure What to do when <tt>p1</tt> pushes an event
+	 *   and the buffer is full
+	 * @return The pushable standing between the two processors. Use it
+	 *   to wait until the buffer is empty, or to stop the thread.
+	 * @throws ConnectorException If the input/output types of the processors
+	 *   to connect are incompatible
+	 */
+	public static AsyncPushable connectAsync(Processor p1, int i, Processor p2, int j, int capacity, Backpressure backpressure) throws ConnectorException
+	{
+		connect(p1, p2, i, j);
+		AsyncPushable async = new AsyncPushable(p2.getPushableInput(j), capacity, backpressure);
+		p1.setPushableOutput(i, async);
+		return async.start();
+	}
+
+	/**
+	 * Connects the <i>i</i>-th output of <tt>p1</tt> to the
+	 * <i>j</i>-th input of <tt>p2</tt>, so that in push mode,
+	 * <tt>p2</tt> runs in a thread of its own. When the buffer between
+	 * them is full, <tt>p1</tt> waits for the thread to make room.
+	 * @param p1 The first processor
+	 * @param i The output number of the first processor
+	 * @param p2 The second processor
+	 * @param j The input number of the second processor
+	 * @param capacity The minimum number of events the buffer can hold
+	 * @return The pushable standing between the two processors
+	 * @throws ConnectorException If the input/output types of the processors
+	 *   to connect are incompatible
+	 */
+	public static AsyncPushable connectAsync(Processor p1, int i, Processor p2, int j, int capacity) throws ConnectorException
+	{
+		return connectAsync(p1, i, p2, j, capacity, Backpressure.BLOCK);
+	}
+
 	/**
 	 * Connects three processors, by associating the (first) output of <tt>p1</tt>
 	 * and <tt>p2</tt> respectively to the first and second input of <tt>p3</tt>
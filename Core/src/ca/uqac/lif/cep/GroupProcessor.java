@@ -17,6 +17,7 @@
  */
 package ca.uqac.lif.cep;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -94,6 +95,15 @@ public class GroupProcessor extends Processor
 		m_outputPushableAssociations = new HashMap<Integer,ProcessorAssociation>();
 	}
 
+	/**
+	 * Gets the processors included in the group
+	 * @return The set of processors
+	 */
+	public Set<Processor> getProcessors()
+	{
+		return Collections.unmodifiableSet(m_processors);
+	}
+
 	/**
 	 * Sets the name of the rule associated to this processor
 	 * @param rule_name The rule name
@@ -307,6 +317,7 @@ public class GroupProcessor extends Processor
 			}
 			Processor clone_p = p.clone();
 			clone_p.setContext(p.m_context);
+			p.copyQueueSettings(clone_p);
 			new_procs.put(p.getId(), clone_p);
 			group.addProcessor(clone_p);
 		}
@@ -492,6 +503,12 @@ public class GroupProcessor extends Processor
 			return m_pushable.push(o);
 		}
 
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			return m_pushable.pushAll(events);
+		}
+
 		@Override
 		public Processor getProcessor() 
 		{
@@ -0,0 +1,191 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the {@link ProcessorMetrics} of processors, indexed by their
+ * unique ID (as given by {@link Processor#getId()}). A processor only
+ * collects statistics once it is registered here; this can be done
+ * explicitly with {@link #register(Processor)}, for a whole pipe
+ * with {@link #registerAll(Processor)}, or automatically for every
+ * processor passed to {@link Connector} when
+ * {@link Connector#s_collectMetrics} is set.
+ * <p>
+ * The registry only keeps weak references to the metrics, which are
+ * themselves referenced by their processor. An entry thus lives as long
+ * as its processor is reachable from elsewhere, and is dropped after
+ * the processor is garbage collected, even if it was never
+ * unregistered. This matters for processors created on the fly, such
+ * as the slices of a {@link ca.uqac.lif.cep.tmf.Slicer}.
+ *
+ * @author Sylvain Hallé
+ */
+public class MetricsRegistry
+{
+	/**
+	 * The metrics of every registered processor
+	 */
+	protected static final ConcurrentMap<Integer,MetricsReference> s_metrics = new ConcurrentHashMap<Integer,MetricsReference>();
+
+	/**
+	 * The references whose metrics have been garbage collected
+	 */
+	protected static final ReferenceQueue<ProcessorMetrics> s_collected = new ReferenceQueue<ProcessorMetrics>();
+
+	private MetricsRegistry()
+	{
+		super();
+	}
+
+	/**
+	 * Starts collecting statistics on a processor. Registering a
+	 * processor a second time has no effect.
+	 * @param p The processor
+	 * @return The processor's metrics
+	 */
+	public static synchronized ProcessorMetrics register(Processor p)
+	{
+		purge();
+		ProcessorMetrics metrics = get(p.getId());
+		if (metrics == null)
+		{
+			metrics = new ProcessorMetrics(p);
+			s_metrics.put(p.getId(), new MetricsReference(p.getId(), metrics));
+		}
+		p.m_metrics = metrics;
+		return metrics;
+	}
+
+	/**
+	 * Starts collecting statistics on every processor of a pipe
+	 * @param start Any processor of the pipe. The others are found by
+	 *   following the connections.
+	 */
+	public static void registerAll(Processor start)
+	{
+		PipeCrawler crawler = new PipeCrawler()
+		{
+			@Override
+			public void visit(Processor p)
+			{
+				register(p);
+			}
+		};
+		crawler.crawl(start);
+	}
+
+	/**
+	 * Stops collecting statistics on a processor, and forgets those
+	 * collected so far
+	 * @param p The processor
+	 */
+	public static synchronized void unregister(Processor p)
+	{
+		s_metrics.remove(p.getId());
+		p.m_metrics = null;
+	}
+
+	/**
+	 * Gets the metrics of a processor
+	 * @param id The processor's unique ID
+	 * @return The metrics, or <code>null</code> if no processor with
+	 *   this ID is registered
+	 */
+	public static ProcessorMetrics get(int id)
+	{
+		MetricsReference ref = s_metrics.get(id);
+		if (ref == null)
+		{
+			return null;
+		}
+		return ref.get();
+	}
+
+	/**
+	 * Gets the metrics of all registered processors
+	 * @return A collection of metrics
+	 */
+	public static Collection<ProcessorMetrics> getAll()
+	{
+		ArrayList<ProcessorMetrics> out = new ArrayList<ProcessorMetrics>(s_metrics.size());
+		for (MetricsReference ref : s_metrics.values())
+		{
+			ProcessorMetrics metrics = ref.get();
+			if (metrics != null)
+			{
+				out.add(metrics);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Stops collecting statistics on all processors
+	 */
+	public static synchronized void clear()
+	{
+		for (ProcessorMetrics metrics : getAll())
+		{
+			metrics.getProcessor().m_metrics = null;
+		}
+		s_metrics.clear();
+		purge();
+	}
+
+	/**
+	 * Removes the entries whose metrics have been garbage collected
+	 */
+	protected static void purge()
+	{
+		MetricsReference ref;
+		while ((ref = (MetricsReference) s_collected.poll()) != null)
+		{
+			s_metrics.remove(ref.m_id, ref);
+		}
+	}
+
+	/**
+	 * Weak reference to the metrics of a processor, which remembers the
+	 * ID it is registered under
+	 */
+	protected static class MetricsReference extends WeakReference<ProcessorMetrics>
+	{
+		/**
+		 * The ID of the processor
+		 */
+		protected final int m_id;
+
+		/**
+		 * Creates a new reference
+		 * @param id The ID of the processor
+		 * @param metrics The metrics of the processor
+		 */
+		public MetricsReference(int id, ProcessorMetrics metrics)
+		{
+			super(metrics, s_collected);
+			m_id = id;
+		}
+	}
+}
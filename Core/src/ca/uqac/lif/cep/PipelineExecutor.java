@@ -0,0 +1,541 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import ca.uqac.lif.cep.jmx.JmxExporter;
+
+/**
+ * Runs a pipe of processors in push mode on multiple threads. The
+ * executor splits the pipe into <em>stages</em>, each made of
+ * processors that follow each other, and connects consecutive stages
+ * through an {@link AsyncPushable}. The first stage runs in the thread
+ * that pushes events into the pipe; every other stage runs in the
+ * thread of the asynchronous pushable feeding it.
+ * <p>
+ * The pipe is cut so that every stage costs about the same. The cost
+ * of each processor can be given explicitly with
+ * {@link #setCost(Processor, long)}, or measured: call
+ * {@link #startProfiling()}, push a sample of events into the pipe
+ * as usual, and then call {@link #partition()}. The executor then
+ * uses the time spent in each processor on these events.
+ * <p>
+ * Processors are not thread-safe, so a stage must receive all its
+ * events from a single thread. The executor therefore only cuts the
+ * pipe at places crossed by a single connection: a branch that splits
+ * (for example after a {@link ca.uqac.lif.cep.tmf.Fork}) and merges
+ * again stays in one stage. Likewise, the processors receiving events
+ * from outside the pipe are all kept in the first stage, since these
+ * events come from the caller's thread. A {@link GroupProcessor} is seen
+ * as a single processor.
+ * <p>
+ * Once partitioned, the processors of the pipe are registered as
+ * management beans (see {@link JmxExporter}) until {@link #shutdown()}.
+ *
+ * @author Sylvain Hallé
+ */
+public class PipelineExecutor
+{
+	/**
+	 * The maximum number of threads the pipe can use, including
+	 * the thread pushing events into it
+	 */
+	protected final int m_threads;
+
+	/**
+	 * The capacity of the buffer between two stages
+	 */
+	protected int m_capacity = 1024;
+
+	/**
+	 * The processors of the pipe, sorted so that each processor comes
+	 * after those that push events to it
+	 */
+	protected final List<Processor> m_processors;
+
+	/**
+	 * The connections between the processors of the pipe
+	 */
+	protected final List<Edge> m_edges;
+
+	/**
+	 * The cost of each processor
+	 */
+	protected final Map<Processor,Long> m_costs;
+
+	/**
+	 * The stages the pipe is cut into, once {@link #partition()}
+	 * has been called
+	 */
+	protected final List<List<Processor>> m_stages;
+
+	/**
+	 * The asynchronous pushables between stages, in stage order
+	 */
+	protected final List<AsyncPushable> m_boundaries;
+
+	/**
+	 * Whether the pushables between processors currently measure time
+	 */
+	protected boolean m_profiling = false;
+
+	/**
+	 * Creates a new executor for the pipe containing some processor
+	 * @param start Any processor of the pipe. The executor finds the
+	 *   others by following the connections.
+	 * @param threads The maximum number of threads the pipe can use
+	 */
+	public PipelineExecutor(Processor start, int threads)
+	{
+		super();
+		m_threads = Math.max(1, threads);
+		m_costs = new HashMap<Processor,Long>();
+		m_stages = new ArrayList<List<Processor>>();
+		m_boundaries = new ArrayList<AsyncPushable>();
+		m_edges = new ArrayList<Edge>();
+		ListCrawler crawler = new ListCrawler();
+		crawler.crawl(start);
+		m_processors = sort(crawler.m_found, m_edges);
+	}
+
+	/**
+	 * Sets the capacity of the buffer between two stages
+	 * @param capacity The minimum number of events the buffer can hold
+	 * @return This executor
+	 */
+	public PipelineExecutor setCapacity(int capacity)
+	{
+		m_capacity = capacity;
+		return this;
+	}
+
+	/**
+	 * Sets the cost of a processor. This value replaces any cost measured
+	 * by profiling.
+	 * @param p The processor
+	 * @param cost The cost, in any unit, as long as it is the same for
+	 *   all processors of the pipe
+	 * @return This executor
+	 */
+	public PipelineExecutor setCost(Processor p, long cost)
+	{
+		m_costs.put(p, cost);
+		return this;
+	}
+
+	/**
+	 * Gets the cost of a processor, as given or measured so far
+	 * @param p The processor
+	 * @return The cost, or 0 if unknown
+	 */
+	public long getCost(Processor p)
+	{
+		Long cost = m_costs.get(p);
+		if (cost != null)
+		{
+			return cost;
+		}
+		if (m_profiling)
+		{
+			return measuredCost(p);
+		}
+		return 0;
+	}
+
+	/**
+	 * Starts measuring the time spent in each processor. The pipe
+	 * still runs on a single thread until {@link #partition()} is called.
+	 */
+	public void startProfiling()
+	{
+		if (m_profiling || !m_stages.isEmpty())
+		{
+			return;
+		}
+		for (Edge e : m_edges)
+		{
+			e.m_probe = new TimedPushable(e.m_target);
+			e.m_source.setPushableOutput(e.m_index, e.m_probe);
+		}
+		m_profiling = true;
+	}
+
+	/**
+	 * Cuts the pipe into stages, and starts a thread for each stage
+	 * but the first
+	 * @return The number of stages
+	 */
+	public int partition()
+	{
+		if (!m_stages.isEmpty())
+		{
+			return m_stages.size();
+		}
+		int n = m_processors.size();
+		long[] costs = new long[n];
+		long total = 0;
+		for (int k = 0; k < n; k++)
+		{
+			costs[k] = getCost(m_processors.get(k));
+			total += costs[k];
+		}
+		if (total == 0)
+		{
+			// Nothing is known about the processors: treat them as equal
+			for (int k = 0; k < n; k++)
+			{
+				costs[k] = 1;
+			}
+			total = n;
+		}
+		stopProfiling();
+		Edge[] crossing = getSingleCrossings();
+		List<Processor> stage = new ArrayList<Processor>();
+		m_stages.add(stage);
+		long accumulated = 0;
+		for (int k = 0; k < n; k++)
+		{
+			stage.add(m_processors.get(k));
+			accumulated += costs[k];
+			int cuts = m_stages.size();
+			if (cuts < m_threads && k < n - 1 && crossing[k] != null
+					&& accumulated * m_threads >= total * cuts)
+			{
+				Edge e = crossing[k];
+				AsyncPushable async = new AsyncPushable(e.m_target, m_capacity, Backpressure.BLOCK);
+				e.m_source.setPushableOutput(e.m_index, async);
+				m_boundaries.add(async.start());
+				stage = new ArrayList<Processor>();
+				m_stages.add(stage);
+			}
+		}
+		if (!m_processors.isEmpty())
+		{
+			JmxExporter.register(m_processors.get(0));
+		}
+		return m_stages.size();
+	}
+
+	/**
+	 * Gets the stages the pipe has been cut into
+	 * @return The list of stages; each stage is the list of its
+	 *   processors. The list is empty if {@link #partition()} has not
+	 *   been called.
+	 */
+	public List<List<Processor>> getStages()
+	{
+		return m_stages;
+	}
+
+	/**
+	 * Waits until every event pushed into the pipe so far has gone
+	 * through all the stages
+	 */
+	public void flush()
+	{
+		// Stages are flushed in order: once a stage is empty, it no
+		// longer feeds the next one
+		for (AsyncPushable async : m_boundaries)
+		{
+			async.flush();
+		}
+	}
+
+	/**
+	 * Lets the events pushed so far go through all the stages, and then
+	 * stops the threads of the executor
+	 */
+	public void shutdown()
+	{
+		for (AsyncPushable async : m_boundaries)
+		{
+			async.close();
+		}
+		if (!m_processors.isEmpty())
+		{
+			JmxExporter.unregister(m_processors.get(0));
+		}
+	}
+
+	/**
+	 * Puts back the original pushables between processors
+	 */
+	protected void stopProfiling()
+	{
+		if (!m_profiling)
+		{
+			return;
+		}
+		for (Edge e : m_edges)
+		{
+			e.m_source.setPushableOutput(e.m_index, e.m_target);
+		}
+		m_profiling = false;
+	}
+
+	/**
+	 * Computes the time spent in a processor itself, excluding the time
+	 * spent in the processors it pushes events to
+	 * @param p The processor
+	 * @return The time, in nanoseconds
+	 */
+	protected long measuredCost(Processor p)
+	{
+		long cost = 0;
+		for (Edge e : m_edges)
+		{
+			if (e.m_probe == null)
+			{
+				continue;
+			}
+			if (e.m_target.getProcessor() == p)
+			{
+				cost += e.m_probe.m_nanos;
+			}
+			if (e.m_source == p)
+			{
+				cost -= e.m_probe.m_nanos;
+			}
+		}
+		return Math.max(0, cost);
+	}
+
+	/**
+	 * For each position <i>k</i> in the sorted list of processors,
+	 * finds whether a single connection goes from the processors up to
+	 * <i>k</i> to those after <i>k</i>. No connection is given for the
+	 * positions before the last processor that receives events from
+	 * outside the pipe, as cutting there would have a stage receive
+	 * events from two threads.
+	 * @return An array giving, for each position, this connection, or
+	 *   <code>null</code> if there is none or more than one
+	 */
+	protected Edge[] getSingleCrossings()
+	{
+		int n = m_processors.size();
+		Map<Processor,Integer> positions = new HashMap<Processor,Integer>();
+		for (int k = 0; k < n; k++)
+		{
+			positions.put(m_processors.get(k), k);
+		}
+		int[] counts = new int[n];
+		int[] in_degrees = new int[n];
+		Edge[] crossing = new Edge[n];
+		for (Edge e : m_edges)
+		{
+			int from = positions.get(e.m_source);
+			int to = positions.get(e.m_target.getProcessor());
+			in_degrees[to]++;
+			for (int k = from; k < to; k++)
+			{
+				counts[k]++;
+				crossing[k] = e;
+			}
+		}
+		// Find the last processor with an input not connected to another
+		// processor of the pipe; this includes processors with no input
+		int last_entry = 0;
+		for (int k = 0; k < n; k++)
+		{
+			Processor p = m_processors.get(k);
+			if (in_degrees[k] == 0 || in_degrees[k] < p.getInputArity())
+			{
+				last_entry = k;
+			}
+		}
+		for (int k = 0; k < n; k++)
+		{
+			if (counts[k] != 1 || k < last_entry)
+			{
+				crossing[k] = null;
+			}
+		}
+		return crossing;
+	}
+
+	/**
+	 * Sorts processors so that each comes after those that push events
+	 * to it
+	 * @param found The processors to sort
+	 * @param edges An empty list, to be filled with the connections
+	 *   between the processors
+	 * @return The sorted list
+	 */
+	protected static List<Processor> sort(Set<Processor> found, List<Edge> edges)
+	{
+		Map<Processor,Integer> in_degrees = new HashMap<Processor,Integer>();
+		for (Processor p : found)
+		{
+			in_degrees.put(p, 0);
+		}
+		for (Processor p : found)
+		{
+			for (int i = 0; i < p.getOutputArity(); i++)
+			{
+				Pushable target = p.getPushableOutput(i);
+				if (target != null && found.contains(target.getProcessor()))
+				{
+					edges.add(new Edge(p, i, target));
+					Processor q = target.getProcessor();
+					in_degrees.put(q, in_degrees.get(q) + 1);
+				}
+			}
+		}
+		List<Processor> sorted = new ArrayList<Processor>(found.size());
+		Queue<Processor> ready = new LinkedList<Processor>();
+		for (Processor p : found)
+		{
+			if (in_degrees.get(p) == 0)
+			{
+				ready.add(p);
+			}
+		}
+		while (!ready.isEmpty())
+		{
+			Processor p = ready.remove();
+			sorted.add(p);
+			for (Edge e : edges)
+			{
+				if (e.m_source == p)
+				{
+					Processor q = e.m_target.getProcessor();
+					int degree = in_degrees.get(q) - 1;
+					in_degrees.put(q, degree);
+					if (degree == 0)
+					{
+						ready.add(q);
+					}
+				}
+			}
+		}
+		if (sorted.size() < found.size())
+		{
+			throw new IllegalArgumentException("The pipe contains a loop");
+		}
+		return sorted;
+	}
+
+	/**
+	 * A connection from the output of a processor to the input of another
+	 */
+	protected static class Edge
+	{
+		/**
+		 * The processor at the start of the connection
+		 */
+		protected final Processor m_source;
+
+		/**
+		 * The output number on that processor
+		 */
+		protected final int m_index;
+
+		/**
+		 * The pushable at the end of the connection
+		 */
+		protected final Pushable m_target;
+
+		/**
+		 * The pushable measuring time on this connection, if any
+		 */
+		protected TimedPushable m_probe = null;
+
+		public Edge(Processor source, int index, Pushable target)
+		{
+			super();
+			m_source = source;
+			m_index = index;
+			m_target = target;
+		}
+	}
+
+	/**
+	 * Pushable that measures the time spent pushing events into
+	 * another one
+	 */
+	protected static class TimedPushable implements Pushable
+	{
+		/**
+		 * The pushable to measure
+		 */
+		protected final Pushable m_pushable;
+
+		/**
+		 * The total time spent in that pushable
+		 */
+		protected long m_nanos = 0;
+
+		public TimedPushable(Pushable p)
+		{
+			super();
+			m_pushable = p;
+		}
+
+		@Override
+		public Pushable push(Object o)
+		{
+			long start = System.nanoTime();
+			m_pushable.push(o);
+			m_nanos += System.nanoTime() - start;
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			long start = System.nanoTime();
+			m_pushable.pushAll(events);
+			m_nanos += System.nanoTime() - start;
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return m_pushable.getProcessor();
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return m_pushable.getPosition();
+		}
+	}
+
+	/**
+	 * Crawler collecting all the processors of a pipe
+	 */
+	protected static class ListCrawler extends PipeCrawler
+	{
+		protected final Set<Processor> m_found = new HashSet<Processor>();
+
+		@Override
+		public void visit(Processor p)
+		{
+			m_found.add(p);
+		}
+	}
+}
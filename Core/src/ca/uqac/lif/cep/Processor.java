@@ -21,6 +21,7 @@ import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ca.uqac.lif.cep.Connector.Variant;
 
@@ -87,9 +88,10 @@ public abstract class Processor implements Cloneable, Contextualizable
 	/**
 	 * A static counter, to be incremented every time a new {@link Processor}
 	 * is instantiated. This is used to give a unique integer number to
-	 * every processor.
+	 * every processor. It is atomic, as processors may be created (or
+	 * cloned) by several threads at the same time.
 	 */
-	private static int s_uniqueIdCounter = 0;
+	private static final AtomicInteger s_uniqueIdCounter = new AtomicInteger();
 
 	/**
 	 * The unique ID given to this processor instance 
@@ -101,6 +103,17 @@ public abstract class Processor implements Cloneable, Contextualizable
 	 */
 	protected Context m_context;
 
+	/**
+	 * What the processor's pullables do while they wait for new data
+	 */
+	protected transient WaitStrategy m_waitStrategy = WaitStrategy.SPIN;
+
+	/**
+	 * The runtime statistics of this processor, if it is registered
+	 * in the {@link MetricsRegistry}
+	 */
+	protected transient volatile ProcessorMetrics m_metrics = null;
+
 	/**
 	 * Initializes a processor. This has for effect of executing the basic
 	 * operations common to every processor:
@@ -124,7 +137,7 @@ public abstract class Processor implements Cloneable, Contextualizable
 		super();
 		m_inputArity = in_arity;
 		m_outputArity = out_arity;
-		m_uniqueId = s_uniqueIdCounter++;
+		m_uniqueId = s_uniqueIdCounter.getAndIncrement();
 		m_inputQueues = new Queue[m_inputArity];
 		for (int i = 0; i < m_inputArity; i++)
 		{
@@ -230,6 +243,223 @@ public abstract class Processor implements Cloneable, Contextualizable
 		return m_uniqueId;
 	}
 
+	/**
+	 * Sets the strategy the processor uses when it waits for new data
+	 * in pull mode
+	 * @param strategy The strategy
+	 */
+	public void setWaitStrategy(WaitStrategy strategy)
+	{
+		m_waitStrategy = strategy;
+	}
+
+	/**
+	 * Gets the strategy the processor uses when it waits for new data
+	 * in pull mode
+	 * @return The strategy
+	 */
+	public final WaitStrategy getWaitStrategy()
+	{
+		return m_waitStrategy;
+	}
+
+	/**
+	 * Gets the runtime statistics of this processor
+	 * @return The statistics, or <code>null</code> if the processor is
+	 *   not registered in the {@link MetricsRegistry}
+	 */
+	public final ProcessorMetrics getMetrics()
+	{
+		return m_metrics;
+	}
+
+	/**
+	 * Limits the number of events waiting in one of the processor's
+	 * input queues. By default, input queues are unbounded; this
+	 * prevents an input that receives events faster than the others
+	 * from filling the memory. Events already in the queue are kept,
+	 * as long as they fit in the new capacity.
+	 * <p>
+	 * An input queue is emptied by the thread that pushes or pulls
+	 * events through the processor, so a full input queue cannot wait
+	 * for room: {@link Backpressure#BLOCK BLOCK} is not accepted. To
+	 * slow down a thread feeding the processor, connect it through
+	 * {@link Connector#connectAsync(Processor, int, Processor, int, int, Backpressure)}
+	 * instead.
+	 * @param index The input number
+	 * @param capacity The maximum number of events in the queue
+	 * @param backpressure What to do when an event arrives and the
+	 *   queue is full
+	 * @throws IllegalArgumentException If the policy is
+	 *   {@link Backpressure#BLOCK BLOCK}
+	 * @throws BoundedQueue.OverflowException If the queue holds more
+	 *   events than the new capacity and the policy is
+	 *   {@link Backpressure#FAIL FAIL}
+	 */
+	public void setInputCapacity(int index, int capacity, Backpressure backpressure)
+	{
+		if (backpressure == Backpressure.BLOCK)
+		{
+			throw new IllegalArgumentException("An input queue cannot block: the thread filling it is the one that empties it");
+		}
+		m_inputQueues[index] = bound(m_inputQueues[index], capacity, backpressure);
+	}
+
+	/**
+	 * Limits the number of events waiting in one of the processor's
+	 * output queues. Events already in the queue are kept, as long as
+	 * they fit in the new capacity.
+	 * @param index The output number
+	 * @param capacity The maximum number of events in the queue
+	 * @param backpressure What to do when an event is produced and the
+	 *   queue is full
+	 * @throws BoundedQueue.OverflowException If the queue holds more
+	 *   events than the new capacity and the policy is
+	 *   {@link Backpressure#FAIL FAIL} or {@link Backpressure#BLOCK BLOCK}
+	 */
+	public void setOutputCapacity(int index, int capacity, Backpressure backpressure)
+	{
+		m_outputQueues[index] = bound(m_outputQueues[index], capacity, backpressure);
+	}
+
+	/**
+	 * Lets one of the processor's input queues move events to disk when
+	 * it grows too large, instead of keeping them all in memory (see
+	 * {@link SpillQueue}). Events already in the queue are kept; events
+	 * received on this input must be serializable.
+	 * @param index The input number
+	 * @param threshold The number of events kept in memory
+	 */
+	public void setInputSpill(int index, int threshold)
+	{
+		m_inputQueues[index] = spill(m_inputQueues[index], threshold);
+	}
+
+	/**
+	 * Lets one of the processor's output queues move events to disk when
+	 * it grows too large (see {@link SpillQueue}). Events already in the
+	 * queue are kept; events produced on this output must be
+	 * serializable.
+	 * @param index The output number
+	 * @param threshold The number of events kept in memory
+	 */
+	public void setOutputSpill(int index, int threshold)
+	{
+		m_outputQueues[index] = spill(m_outputQueues[index], threshold);
+	}
+
+	/**
+	 * Gets the largest number of events that were ever waiting in one of
+	 * the processor's input queues
+	 * @param index The input number
+	 * @return The number of events, or -1 if the queue is not bounded
+	 *   (see {@link #setInputCapacity(int, int, Backpressure)})
+	 */
+	public final int getInputHighWaterMark(int index)
+	{
+		Queue<Object> q = m_inputQueues[index];
+		if (q instanceof BoundedQueue)
+		{
+			return ((BoundedQueue<Object>) q).getHighWaterMark();
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the largest number of events that were ever waiting in one of
+	 * the processor's output queues
+	 * @param index The output number
+	 * @return The number of events, or -1 if the queue is not bounded
+	 *   (see {@link #setOutputCapacity(int, int, Backpressure)})
+	 */
+	public final int getOutputHighWaterMark(int index)
+	{
+		Queue<Object> q = m_outputQueues[index];
+		if (q instanceof BoundedQueue)
+		{
+			return ((BoundedQueue<Object>) q).getHighWaterMark();
+		}
+		return -1;
+	}
+
+	/**
+	 * Gives another processor the same queue settings as this one: the
+	 * capacity of its bounded queues, and the threshold of its queues
+	 * that spill to disk. Events in the queues are not copied. This is
+	 * meant to be called on a processor and its clone.
+	 * @param p The other processor
+	 */
+	public final void copyQueueSettings(Processor p)
+	{
+		for (int i = 0; i < m_inputArity && i < p.m_inputArity; i++)
+		{
+			Queue<Object> q = m_inputQueues[i];
+			if (q instanceof BoundedQueue)
+			{
+				BoundedQueue<Object> bq = (BoundedQueue<Object>) q;
+				p.setInputCapacity(i, bq.getCapacity(), bq.getBackpressure());
+			}
+			else if (q instanceof SpillQueue)
+			{
+				p.setInputSpill(i, ((SpillQueue<Object>) q).getThreshold());
+			}
+		}
+		for (int i = 0; i < m_outputArity && i < p.m_outputArity; i++)
+		{
+			Queue<Object> q = m_outputQueues[i];
+			if (q instanceof BoundedQueue)
+			{
+				BoundedQueue<Object> bq = (BoundedQueue<Object>) q;
+				p.setOutputCapacity(i, bq.getCapacity(), bq.getBackpressure());
+			}
+			else if (q instanceof SpillQueue)
+			{
+				p.setOutputSpill(i, ((SpillQueue<Object>) q).getThreshold());
+			}
+		}
+	}
+
+	/**
+	 * Creates a bounded queue holding the events of another queue. If
+	 * there are more events than the capacity, the policy of the new
+	 * queue decides which ones are kept.
+	 * @param q The queue
+	 * @param capacity The capacity of the new queue
+	 * @param backpressure The policy of the new queue
+	 * @return The new queue
+	 * @throws BoundedQueue.OverflowException If the events do not fit in
+	 *   the new queue, and its policy can neither wait nor discard them
+	 */
+	protected static Queue<Object> bound(Queue<Object> q, int capacity, Backpressure backpressure)
+	{
+		BoundedQueue<Object> bounded = new BoundedQueue<Object>(capacity, backpressure);
+		if (q.size() > capacity
+				&& (backpressure == Backpressure.FAIL || backpressure == Backpressure.BLOCK))
+		{
+			// Nobody can make room while the queue is being replaced
+			throw new BoundedQueue.OverflowException(capacity);
+		}
+		for (Object o : q)
+		{
+			bounded.offer(o);
+		}
+		return bounded;
+	}
+
+	/**
+	 * Creates a queue that spills to disk, holding the events of another
+	 * queue
+	 * @param q The queue
+	 * @param threshold The number of events the new queue keeps in memory
+	 * @return The new queue
+	 */
+	protected static Queue<Object> spill(Queue<Object> q, int threshold)
+	{
+		SpillQueue<Object> spilling = new SpillQueue<Object>(threshold);
+		spilling.addAll(q);
+		return spilling;
+	}
+
 	/**
 	 * Resets the processor. This has for effect of flushing the contents
 	 * of all input and output event queues. If the processor has an internal
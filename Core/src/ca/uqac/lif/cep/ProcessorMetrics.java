@@ -0,0 +1,338 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.util.Arrays;
+
+import ca.uqac.lif.cep.util.StripedCounter;
+
+/**
+ * Runtime statistics of a processor: the number of events received and
+ * produced on each of its ports, the time spent computing, the number
+ * of events waiting in its queues, and the number of times a pull had
+ * to try again to obtain an event.
+ * <p>
+ * Counters are updated by the processor itself, on every event, and
+ * are designed to be cheap enough to be left on: they are striped, so
+ * that threads updating them at the same time do not contend, and the
+ * time spent computing is measured only on one call every
+ * {@link #getSampleInterval()}, and extrapolated from these samples.
+ * <p>
+ * Events are counted when the processor computes: an event "in" is
+ * an input event consumed by a computation, and an event "out" is an
+ * output event it produced. Events pushed to a processor but not yet
+ * consumed show up in its input queue depth instead.
+ * <p>
+ * Metrics are attached to a processor by registering it in the
+ * {@link MetricsRegistry}. The {@link SingleProcessor} class updates
+ * all the counters; other processors only report their queue depths.
+ *
+ * @author Sylvain Hallé
+ */
+public class ProcessorMetrics
+{
+	/**
+	 * Value returned by {@link #startCompute()} when a call is not
+	 * timed
+	 */
+	protected static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+	/**
+	 * The processor these metrics are about
+	 */
+	protected final Processor m_processor;
+
+	/**
+	 * Number of events consumed on each input
+	 */
+	protected final StripedCounter[] m_eventsIn;
+
+	/**
+	 * Number of events produced on each output
+	 */
+	protected final StripedCounter[] m_eventsOut;
+
+	/**
+	 * Number of input fronts given to the computation
+	 */
+	protected final StripedCounter m_computeCount = new StripedCounter();
+
+	/**
+	 * Number of input fronts whose computation was timed
+	 */
+	protected final StripedCounter m_sampledCount = new StripedCounter();
+
+	/**
+	 * Total time of the computations that were timed
+	 */
+	protected final StripedCounter m_sampledNanos = new StripedCounter();
+
+	/**
+	 * Number of times a pull computed without getting an event, and
+	 * tried again
+	 */
+	protected final StripedCounter m_pullRetries = new StripedCounter();
+
+	/**
+	 * One computation out of <i>n</i> is timed; this is <i>n</i> - 1,
+	 * <i>n</i> being a power of two
+	 */
+	protected volatile int m_sampleMask = 63;
+
+	/**
+	 * Counts calls to decide which ones to time. It is deliberately not
+	 * synchronized: a lost update only shifts the sample.
+	 */
+	private int m_tick = 0;
+
+	/**
+	 * Creates new metrics for a processor
+	 * @param p The processor
+	 */
+	public ProcessorMetrics(Processor p)
+	{
+		super();
+		m_processor = p;
+		m_eventsIn = newCounters(p.getInputArity());
+		m_eventsOut = newCounters(p.getOutputArity());
+	}
+
+	/**
+	 * Gets the processor these metrics are about
+	 * @return The processor
+	 */
+	public final Processor getProcessor()
+	{
+		return m_processor;
+	}
+
+	/**
+	 * Sets how often the time spent computing is measured
+	 * @param interval One computation out of this number is timed. The
+	 *   value is rounded up to a power of two.
+	 */
+	public void setSampleInterval(int interval)
+	{
+		int n = 1;
+		while (n < interval)
+		{
+			n <<= 1;
+		}
+		m_sampleMask = n - 1;
+	}
+
+	/**
+	 * Gets how often the time spent computing is measured
+	 * @return One computation out of this number is timed
+	 */
+	public final int getSampleInterval()
+	{
+		return m_sampleMask + 1;
+	}
+
+	/**
+	 * Gets the number of events consumed on an input
+	 * @param index The input number
+	 * @return The number of events
+	 */
+	public final long getEventsIn(int index)
+	{
+		return m_eventsIn[index].sum();
+	}
+
+	/**
+	 * Gets the number of events produced on an output
+	 * @param index The output number
+	 * @return The number of events
+	 */
+	public final long getEventsOut(int index)
+	{
+		return m_eventsOut[index].sum();
+	}
+
+	/**
+	 * Gets the number of input fronts given to the computation
+	 * @return The number of fronts
+	 */
+	public final long getComputeCount()
+	{
+		return m_computeCount.sum();
+	}
+
+	/**
+	 * Gets an estimate of the total time spent computing, extrapolated
+	 * from the calls that were timed
+	 * @return The time, in nanoseconds
+	 */
+	public final long getComputeNanos()
+	{
+		long sampled = m_sampledCount.sum();
+		if (sampled == 0)
+		{
+			return 0;
+		}
+		return (long) (m_sampledNanos.sum() * ((double) m_computeCount.sum() / sampled));
+	}
+
+	/**
+	 * Gets the number of times a pull computed without getting an event,
+	 * and tried again
+	 * @return The number of retries
+	 */
+	public final long getPullRetries()
+	{
+		return m_pullRetries.sum();
+	}
+
+	/**
+	 * Gets the number of events currently waiting in an input queue.
+	 * When the processor runs in another thread, this is only an
+	 * approximation.
+	 * @param index The input number
+	 * @return The number of events
+	 */
+	public final int getInputQueueDepth(int index)
+	{
+		return m_processor.m_inputQueues[index].size();
+	}
+
+	/**
+	 * Gets the number of events currently waiting in an output queue.
+	 * When the processor runs in another thread, this is only an
+	 * approximation.
+	 * @param index The output number
+	 * @return The number of events
+	 */
+	public final int getOutputQueueDepth(int index)
+	{
+		return m_processor.m_outputQueues[index].size();
+	}
+
+	/**
+	 * Gets the largest number of events that were ever waiting in an
+	 * input queue
+	 * @param index The input number
+	 * @return The number of events, or -1 if the queue is not bounded
+	 * @see Processor#setInputCapacity(int, int, Backpressure)
+	 */
+	public final int getInputHighWaterMark(int index)
+	{
+		return m_processor.getInputHighWaterMark(index);
+	}
+
+	/**
+	 * Sets all the counters back to 0
+	 */
+	public void reset()
+	{
+		for (StripedCounter c : m_eventsIn)
+		{
+			c.reset();
+		}
+		for (StripedCounter c : m_eventsOut)
+		{
+			c.reset();
+		}
+		m_computeCount.reset();
+		m_sampledCount.reset();
+		m_sampledNanos.reset();
+		m_pullRetries.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		out.append(m_processor.getClass().getSimpleName()).append(" #").append(m_processor.getId());
+		out.append(" in=").append(Arrays.toString(m_eventsIn));
+		out.append(" out=").append(Arrays.toString(m_eventsOut));
+		out.append(" compute=").append(getComputeCount()).append("/").append(getComputeNanos()).append("ns");
+		out.append(" retries=").append(getPullRetries());
+		return out.toString();
+	}
+
+	/**
+	 * Records input fronts consumed by a computation
+	 * @param n The number of fronts
+	 */
+	final void frontsIn(int n)
+	{
+		for (StripedCounter c : m_eventsIn)
+		{
+			c.add(n);
+		}
+	}
+
+	/**
+	 * Records output fronts produced by a computation
+	 * @param n The number of fronts
+	 */
+	final void frontsOut(int n)
+	{
+		for (StripedCounter c : m_eventsOut)
+		{
+			c.add(n);
+		}
+	}
+
+	/**
+	 * Records a pull that had to try again
+	 */
+	final void pullRetry()
+	{
+		m_pullRetries.increment();
+	}
+
+	/**
+	 * Called before a computation
+	 * @return The value to pass to {@link #endCompute(long, int)}
+	 */
+	final long startCompute()
+	{
+		if ((m_tick++ & m_sampleMask) != 0)
+		{
+			return NOT_SAMPLED;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Called after a computation
+	 * @param start The value returned by {@link #startCompute()}
+	 * @param fronts The number of input fronts computed
+	 */
+	final void endCompute(long start, int fronts)
+	{
+		m_computeCount.add(fronts);
+		if (start != NOT_SAMPLED)
+		{
+			m_sampledNanos.add(System.nanoTime() - start);
+			m_sampledCount.add(fronts);
+		}
+	}
+
+	private static StripedCounter[] newCounters(int n)
+	{
+		StripedCounter[] counters = new StripedCounter[n];
+		for (int i = 0; i < n; i++)
+		{
+			counters[i] = new StripedCounter();
+		}
+		return counters;
+	}
+}
@@ -108,6 +108,16 @@ public interface Pullable extends Iterator<Object>, Iterable<Object>
 	 * number of attempts as a safeguard to avoid infinite loops.
 	 */
 	public static final int s_maxRetries = 10000000;
+
+	/**
+	 * Number of rounds of soft pulls a processor with many inputs makes
+	 * before waiting on its {@link WaitStrategy}. An input can answer
+	 * <code>MAYBE</code> while data is already queued upstream (for
+	 * example, a processor that has just discarded an event); retrying
+	 * right away lets such inputs catch up, so that the processor only
+	 * waits when its inputs really have nothing to give.
+	 */
+	public static final int s_softRetries = 1000;
 	
 	/**
 	 * Attempts to pull an event from the source. An event is returned if
@@ -166,6 +176,9 @@ public interface Pullable extends Iterator<Object>, Iterable<Object>
 	 * <li>To avoid infinite looping, the method eventually gives up (and
 	 * answers "no") after some maximum number of repetitions is reached. This
 	 * is configured by the static field {@link #s_maxRetries}.
+	 * <li>When the event must come from a source that has nothing to
+	 * give for the moment, the method waits according to the processor's
+	 * {@link WaitStrategy}, and answers "no" if its timeout elapses.</li>
 	 * </ul>
 	 * @return Whether a next event exists
 	 */
@@ -42,7 +42,19 @@ public interface Pushable
 	 *   <code>p.push(o1).push(o2)</code>.
 	 */
 	public Pushable push(Object o);
-	
+
+	/**
+	 * Pushes a batch of events into one of the processor's input trace.
+	 * The outcome must be the same as calling {@link #push(Object)} on
+	 * each event of the array, in order. However, processors that can
+	 * handle events in bulk (such as {@link SingleProcessor}) use this
+	 * method to avoid the per-event dispatch overhead, and forward their
+	 * own output downstream as a batch as well.
+	 * @param events The events to push
+	 * @return The same instance of pushable, to allow chain calls
+	 */
+	public Pushable pushAll(Object[] events);
+
 	/**
 	 * Gets the processor instance this Pushable is linked to 
 	 * @return The processor
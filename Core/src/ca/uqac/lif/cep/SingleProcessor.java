@@ -35,14 +35,36 @@ import java.util.Queue;
  * <p>
  * The only thing that is left undefined is what to do
  * when new input events have been received from all input traces. This
- * is the task of abstract method {@link #compute(Object[])}, which descendants
+ * is the task of method {@link #compute(Object[])}, which descendants
  * of this class must implement.
+ * <p>
+ * Alternatively, descendants may implement
+ * {@link #compute(Object[], Queue)} instead. Rather than returning a newly
+ * allocated queue for every input front, the processor then writes its
+ * output fronts into a queue owned (and reused) by the
+ * <code>SingleProcessor</code>. This is the preferred way for processors
+ * that are called very often, as it spares one queue allocation per
+ * event. A descendant must override exactly one of the two methods.
  *   
  * @author Sylvain Hallé
  *
  */
 public abstract class SingleProcessor extends Processor
 {
+	/**
+	 * A queue into which {@link #compute(Object[], Queue)} writes its
+	 * output fronts. It is emptied by the processor every time its
+	 * contents have been dispatched, and reused on the next call.
+	 */
+	protected final transient Queue<Object[]> m_outputCollector;
+
+	/**
+	 * Whether the default {@link #compute(Object[])} is running. If the
+	 * default {@link #compute(Object[], Queue)} is called meanwhile, the
+	 * descendant overrides neither of the two.
+	 */
+	private transient boolean m_inDefaultCompute = false;
+
 	/**
 	 * Initializes a processor
 	 * @param in_arity The input arity
@@ -51,10 +73,11 @@ public abstract class SingleProcessor extends Processor
 	public SingleProcessor(int in_arity, int out_arity)
 	{
 		super(in_arity, out_arity);
+		m_outputCollector = newQueue();
 	}
 
 	@Override
-	public final Pushable getPushableInput(int index)
+	public Pushable getPushableInput(int index)
 	{
 		return new InputPushable(index);
 	}
@@ -70,13 +93,210 @@ public abstract class SingleProcessor extends Processor
 	}
 
 	/**
-	 * Computes one or more output events from its input events
+	 * Computes one or more output events from its input events. By
+	 * default, this method delegates to {@link #compute(Object[], Queue)};
+	 * descendants must override one of the two.
 	 * @param inputs An array of input events; its length corresponds to the
 	 *   processor's input arity
 	 * @return A queue of vectors of output events, or null
 	 *   if no event could be produced
+	 * @throws IllegalStateException If the descendant overrides neither
+	 *   of the two methods
+	 */
+	protected Queue<Object[]> compute(Object[] inputs)
+	{
+		Queue<Object[]> out = newQueue();
+		boolean done;
+		m_inDefaultCompute = true;
+		try
+		{
+			done = !compute(inputs, out);
+		}
+		finally
+		{
+			m_inDefaultCompute = false;
+		}
+		if (done && out.isEmpty())
+		{
+			return null;
+		}
+		return out;
+	}
+
+	/**
+	 * Computes one or more output events from its input events, and adds
+	 * them to a queue provided by the caller. By default, this method
+	 * delegates to {@link #compute(Object[])}; descendants must override
+	 * one of the two.
+	 * @param inputs An array of input events; its length corresponds to the
+	 *   processor's input arity
+	 * @param outputs The queue into which output fronts are to be added.
+	 *   Each front must contain at least as many elements as the
+	 *   processor's output arity; elements beyond that are ignored.
+	 *   The processor must not keep a reference to this queue.
+	 * @return <code>false</code> if no event will ever be produced
+	 *   in the future, <code>true</code> otherwise
+	 * @throws IllegalStateException If the descendant overrides neither
+	 *   of the two methods
+	 */
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+	{
+		if (m_inDefaultCompute)
+		{
+			throw new IllegalStateException(getClass().getName() + " must override one of the compute methods");
+		}
+		Queue<Object[]> computed = compute(inputs);
+		if (computed == null)
+		{
+			return false;
+		}
+		for (Object[] evt : computed)
+		{
+			if (evt == null)
+			{
+				// This processor will never output anything again
+				return false;
+			}
+			outputs.add(evt);
+		}
+		return true;
+	}
+
+	/**
+	 * Computes output events from a batch of input fronts. This method is
+	 * called when events are given to the processor through
+	 * {@link Pushable#pushAll(Object[])}. By default, it simply calls
+	 * {@link #compute(Object[], Queue)} on each front and concatenates the
+	 * results; descendants of this class that can process multiple
+	 * events more efficiently at once may override it.
+	 * @param inputs An array of input fronts, in the order in which
+	 *   they were received. Each front is an array whose length
+	 *   corresponds to the processor's input arity.
+	 * @param outputs The queue into which output fronts are to be added
+	 */
+	protected void computeBatch(Object[][] inputs, Queue<Object[]> outputs)
+	{
+		for (Object[] front : inputs)
+		{
+			compute(front, outputs);
+		}
+	}
+
+	/**
+	 * Calls {@link #compute(Object[], Queue)}, and updates the
+	 * processor's metrics if it has any
+	 * @param inputs An array of input events
+	 * @param outputs The queue into which output fronts are to be added
+	 * @return The value returned by <code>compute</code>
+	 */
+	protected final boolean computeMeasured(Object[] inputs, Queue<Object[]> outputs)
+	{
+		ProcessorMetrics metrics = m_metrics;
+		if (metrics == null)
+		{
+			return compute(inputs, outputs);
+		}
+		int before = outputs.size();
+		long start = metrics.startCompute();
+		boolean more = compute(inputs, outputs);
+		metrics.endCompute(start, 1);
+		metrics.frontsIn(1);
+		metrics.frontsOut(outputs.size() - before);
+		return more;
+	}
+
+	/**
+	 * Calls {@link #computeBatch(Object[][], Queue)}, and updates the
+	 * processor's metrics if it has any
+	 * @param inputs An array of input fronts
+	 * @param outputs The queue into which output fronts are to be added
 	 */
-	protected abstract Queue<Object[]> compute(Object[] inputs);
+	protected final void computeBatchMeasured(Object[][] inputs, Queue<Object[]> outputs)
+	{
+		ProcessorMetrics metrics = m_metrics;
+		if (metrics == null)
+		{
+			computeBatch(inputs, outputs);
+			return;
+		}
+		int before = outputs.size();
+		long start = metrics.startCompute();
+		computeBatch(inputs, outputs);
+		metrics.endCompute(start, inputs.length);
+		metrics.frontsIn(inputs.length);
+		metrics.frontsOut(outputs.size() - before);
+	}
+
+	/**
+	 * Pushes a queue of output fronts to the processor's output pushables.
+	 * When the processor has a single output, its pushable receives all
+	 * the events at once through {@link Pushable#pushAll(Object[])},
+	 * rather than one at a time. Otherwise, the fronts are pushed one
+	 * after the other, so that downstream processors see the events of
+	 * each output interleaved in the same order as with
+	 * {@link Pushable#push(Object)}.
+	 * The queue is emptied once its contents have been pushed.
+	 * @param outs The output fronts. Null fronts are ignored.
+	 */
+	protected final void pushOutputBatch(Queue<Object[]> outs)
+	{
+		if (m_outputPushables.length != 1)
+		{
+			Object[] evt;
+			while ((evt = outs.poll()) != null)
+			{
+				for (int i = 0; i < m_outputPushables.length; i++)
+				{
+					Pushable p = m_outputPushables[i];
+					assert p != null;
+					p.push(evt[i]);
+				}
+			}
+			outs.clear();
+			return;
+		}
+		int num_events = 0;
+		for (Object[] evt : outs)
+		{
+			if (evt != null)
+			{
+				num_events++;
+			}
+		}
+		if (num_events == 0)
+		{
+			outs.clear();
+			return;
+		}
+		for (int i = 0; i < m_outputPushables.length; i++)
+		{
+			Pushable p = m_outputPushables[i];
+			assert p != null;
+			if (num_events == 1)
+			{
+				// No need to create an array for a single event
+				for (Object[] evt : outs)
+				{
+					if (evt != null)
+					{
+						p.push(evt[i]);
+					}
+				}
+				continue;
+			}
+			Object[] column = new Object[num_events];
+			int j = 0;
+			for (Object[] evt : outs)
+			{
+				if (evt != null)
+				{
+					column[j++] = evt[i];
+				}
+			}
+			p.pushAll(column);
+		}
+		outs.clear();
+	}
 
 	/**
 	 * Implementation of a {@link Pushable} for a single processor.
@@ -136,26 +356,62 @@ public abstract class SingleProcessor extends Processor
 				inputs[i] = ob;
 			}
 			// Compute output event
-			Queue<Object[]> outs = compute(inputs);
-			if (outs != null && !outs.isEmpty())
+			computeMeasured(inputs, m_outputCollector);
+			Object[] evt;
+			while ((evt = m_outputCollector.poll()) != null)
 			{
-				for (Object[] evt : outs)
+				//assert evt.length >= m_outputPushables.size();
+				for (int i = 0; i < m_outputPushables.length; i++)
 				{
-					if (evt != null)
-					{
-						//assert evt.length >= m_outputPushables.size();
-						for (int i = 0; i < m_outputPushables.length; i++)
-						{
-							Pushable p = m_outputPushables[i];
-							assert p != null;
-							p.push(evt[i]);
-						}
-					}
+					Pushable p = m_outputPushables[i];
+					assert p != null;
+					p.push(evt[i]);
 				}
 			}
 			return this;
 		}
 
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			if (m_index < m_inputQueues.length)
+			{
+				Queue<Object> q = m_inputQueues[m_index];
+				for (Object o : events)
+				{
+					q.add(o);
+				}
+			}
+			if (m_inputArity == 0)
+			{
+				return this;
+			}
+			// The number of fronts we can process is bounded by the
+			// shortest input queue
+			int num_fronts = Integer.MAX_VALUE;
+			for (int i = 0; i < m_inputArity; i++)
+			{
+				num_fronts = Math.min(num_fronts, m_inputQueues[i].size());
+			}
+			if (num_fronts == 0)
+			{
+				return this;
+			}
+			Object[][] inputs = new Object[num_fronts][];
+			for (int k = 0; k < num_fronts; k++)
+			{
+				Object[] front = new Object[m_inputArity];
+				for (int i = 0; i < m_inputArity; i++)
+				{
+					front[i] = m_inputQueues[i].remove();
+				}
+				inputs[k] = front;
+			}
+			computeBatchMeasured(inputs, m_outputCollector);
+			pushOutputBatch(m_outputCollector);
+			return this;
+		}
+
 		@Override
 		public Processor getProcessor() 
 		{
@@ -247,9 +503,11 @@ public abstract class SingleProcessor extends Processor
 			{
 				return true;
 			}
+			long deadline = 0;
 			// Check if each pullable has an event ready
 			for (int tries = 0; tries < Pullable.s_maxRetries; tries++)
 			{
+				long signals = m_waitStrategy.getSignalCount();
 				for (int i = 0; i < m_inputArity; i++)
 				{
 					Pullable p = m_inputPullables[i];
@@ -270,40 +528,36 @@ public abstract class SingleProcessor extends Processor
 					inputs[i] = o;
 				}
 				// Compute output event(s)
-				Queue<Object[]> computed = compute(inputs);
-				NextStatus status_to_return = NextStatus.NO;
-				if (computed == null)
+				boolean more = computeMeasured(inputs, m_outputCollector);
+				if (dispatchToOutputQueues())
+				{
+					// We computed an output event; answer YES
+					return true;
+				}
+				if (!more)
 				{
 					// No output will ever be returned: stop there
 					return false;
 				}
-				if (!computed.isEmpty())
+				if (m_inputArity == 0)
 				{
-					// We computed an output event; add it to the output queue
-					// and answer YES
-					for (Object[] evt : computed)
+					// A source with nothing to give for now: wait for it to
+					// have new data before asking again. Processors with
+					// inputs don't wait here; their inputs already did.
+					if (deadline == 0)
 					{
-						if (evt != null)
-						{
-							for (int i = 0; i < m_outputArity; i++)
-							{
-								Queue<Object> queue = m_outputQueues[i];
-								queue.add(evt[i]);
-							}
-							status_to_return = NextStatus.YES;
-						}
-						else
-						{
-							// This source will NEVER output anything again
-							return false;
-						}
+						deadline = m_waitStrategy.getDeadline();
 					}
-					if (status_to_return == NextStatus.YES)
+					if (!m_waitStrategy.await(signals, deadline))
 					{
-						return true;
+						return false;
 					}
 				}
 				// Otherwise, try the whole thing again
+				if (m_metrics != null)
+				{
+					m_metrics.pullRetry();
+				}
 			}
 			return false;
 		}
@@ -344,31 +598,17 @@ public abstract class SingleProcessor extends Processor
 				}
 			}
 			// Compute output event(s)
-			NextStatus status_to_return = NextStatus.MAYBE;
-			Queue<Object[]> computed = compute(inputs);
-			if (computed == null)
+			boolean more = computeMeasured(inputs, m_outputCollector);
+			if (dispatchToOutputQueues())
 			{
-				status_to_return = NextStatus.NO;
+				// We computed an output event; answer YES
+				return NextStatus.YES;
 			}
-			else if (!computed.isEmpty())
+			if (!more)
 			{
-				for (Object[] evt : computed)
-				{
-					if (evt != null)
-					{
-						// We computed an output event; add it to the output queue
-						// and answer YES
-						int i = 0;
-						for (Queue<Object> queue : m_outputQueues)
-						{
-							queue.add(evt[i]);
-							i++;
-						}
-						status_to_return = NextStatus.YES;
-					}
-				}
+				return NextStatus.NO;
 			}
-			return status_to_return;
+			return NextStatus.MAYBE;
 		}
 		
 		@Override
@@ -390,6 +630,27 @@ public abstract class SingleProcessor extends Processor
 		}
 	}
 	
+	/**
+	 * Moves the output fronts found in the output collector into the
+	 * processor's output queues
+	 * @return <code>true</code> if at least one front was moved,
+	 *   <code>false</code> otherwise
+	 */
+	protected final boolean dispatchToOutputQueues()
+	{
+		boolean added = false;
+		Object[] evt;
+		while ((evt = m_outputCollector.poll()) != null)
+		{
+			for (int i = 0; i < m_outputArity; i++)
+			{
+				m_outputQueues[i].add(evt[i]);
+			}
+			added = true;
+		}
+		return added;
+	}
+
 	/**
 	 * Puts an array of objects (given as an argument) into an
 	 * empty queue of arrays of objects. This is a convenience method
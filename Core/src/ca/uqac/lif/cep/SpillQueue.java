@@ -0,0 +1,413 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Queue that moves part of its contents to disk when it grows too
+ * large. The oldest elements, which are the next to be removed, and the
+ * newest ones, which have just been added, are kept in memory; the
+ * elements in between are serialized into <em>segment</em> files, and
+ * read back into memory when the elements before them have been
+ * removed. Contrarily to a {@link BoundedQueue}, no element is ever
+ * lost or refused, while the memory used by the queue stays bounded.
+ * <p>
+ * Up to <i>n</i> elements are kept in memory at the head of the queue,
+ * where <i>n</i> is the queue's threshold, plus up to <i>n</i>/2 at
+ * its tail; each segment file holds <i>n</i>/2 elements. Elements that
+ * go to disk must implement {@link java.io.Serializable}. Segment
+ * files are created in the system's temporary folder, or in a folder
+ * given to the constructor, and are deleted as soon as they are read
+ * back or the queue is cleared. They are not deleted when the virtual
+ * machine exits: a queue that is no longer needed should be cleared,
+ * as resetting its processor does.
+ * <p>
+ * All operations are synchronized on the queue. Iterating over the
+ * queue reads the segment files, but does not remove them.
+ *
+ * @author Sylvain Hallé
+ */
+public class SpillQueue<E> extends AbstractQueue<E>
+{
+	/**
+	 * The elements at the head of the queue
+	 */
+	protected final ArrayDeque<E> m_head = new ArrayDeque<E>();
+
+	/**
+	 * The elements at the tail of the queue, added after those in the
+	 * segment files
+	 */
+	protected final ArrayDeque<E> m_tail = new ArrayDeque<E>();
+
+	/**
+	 * The segment files, from the oldest to the newest
+	 */
+	protected final ArrayDeque<File> m_segments = new ArrayDeque<File>();
+
+	/**
+	 * The maximum number of elements at the head of the queue
+	 */
+	protected final int m_threshold;
+
+	/**
+	 * The number of elements in a segment file
+	 */
+	protected final int m_segmentSize;
+
+	/**
+	 * The folder where segment files are created, or <code>null</code>
+	 * for the system's temporary folder
+	 */
+	protected final File m_folder;
+
+	/**
+	 * The number of elements in the queue
+	 */
+	protected int m_size = 0;
+
+	/**
+	 * The number of segment files written since the queue was created
+	 */
+	protected long m_spillCount = 0;
+
+	/**
+	 * Creates a new empty queue writing its segments in the system's
+	 * temporary folder
+	 * @param threshold The number of elements the queue keeps in memory
+	 *   before writing to disk
+	 */
+	public SpillQueue(int threshold)
+	{
+		this(threshold, null);
+	}
+
+	/**
+	 * Creates a new empty queue
+	 * @param threshold The number of elements the queue keeps in memory
+	 *   before writing to disk
+	 * @param folder The folder where segment files are created, or
+	 *   <code>null</code> for the system's temporary folder
+	 */
+	public SpillQueue(int threshold, File folder)
+	{
+		super();
+		if (threshold < 2)
+		{
+			throw new IllegalArgumentException("Threshold must be at least 2");
+		}
+		m_threshold = threshold;
+		m_segmentSize = threshold / 2;
+		m_folder = folder;
+	}
+
+	@Override
+	public synchronized boolean offer(E e)
+	{
+		if (e == null)
+		{
+			throw new NullPointerException();
+		}
+		m_size++;
+		if (m_segments.isEmpty() && m_tail.isEmpty() && m_head.size() < m_threshold)
+		{
+			m_head.add(e);
+		}
+		else
+		{
+			m_tail.add(e);
+			if (m_tail.size() >= m_segmentSize)
+			{
+				writeSegment();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized E poll()
+	{
+		if (m_head.isEmpty())
+		{
+			refill();
+		}
+		E e = m_head.poll();
+		if (e != null)
+		{
+			m_size--;
+		}
+		return e;
+	}
+
+	@Override
+	public synchronized E peek()
+	{
+		if (m_head.isEmpty())
+		{
+			refill();
+		}
+		return m_head.peek();
+	}
+
+	@Override
+	public synchronized int size()
+	{
+		return m_size;
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		m_head.clear();
+		m_tail.clear();
+		for (File f : m_segments)
+		{
+			f.delete();
+		}
+		m_segments.clear();
+		m_size = 0;
+	}
+
+	@Override
+	public synchronized Iterator<E> iterator()
+	{
+		return new SpillIterator();
+	}
+
+	/**
+	 * Gets the number of elements the queue keeps in memory before
+	 * writing to disk
+	 * @return The threshold
+	 */
+	public final int getThreshold()
+	{
+		return m_threshold;
+	}
+
+	/**
+	 * Gets the number of segment files currently on disk
+	 * @return The number of files
+	 */
+	public synchronized int getSegmentCount()
+	{
+		return m_segments.size();
+	}
+
+	/**
+	 * Gets the number of segment files written since the queue was
+	 * created
+	 * @return The number of files
+	 */
+	public synchronized long getSpillCount()
+	{
+		return m_spillCount;
+	}
+
+	/**
+	 * Moves the next elements of the queue to its head, reading the
+	 * oldest segment file if there is one
+	 */
+	protected void refill()
+	{
+		if (!m_segments.isEmpty())
+		{
+			File f = m_segments.poll();
+			m_head.addAll(readSegment(f));
+			f.delete();
+		}
+		else
+		{
+			m_head.addAll(m_tail);
+			m_tail.clear();
+		}
+	}
+
+	/**
+	 * Writes the elements at the tail of the queue to a new segment file
+	 */
+	protected void writeSegment()
+	{
+		ObjectOutputStream out = null;
+		File f = null;
+		try
+		{
+			f = File.createTempFile("beepbeep-spill", ".seg", m_folder);
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+			out.writeInt(m_tail.size());
+			for (E e : m_tail)
+			{
+				out.writeObject(e);
+			}
+			out.close();
+			m_segments.add(f);
+			m_spillCount++;
+			m_tail.clear();
+		}
+		catch (IOException e)
+		{
+			// The elements stay at the tail of the queue
+			close(out);
+			if (f != null)
+			{
+				f.delete();
+			}
+			throw new SpillException(e);
+		}
+	}
+
+	/**
+	 * Reads the elements of a segment file
+	 * @param f The file
+	 * @return The elements, in order
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<E> readSegment(File f)
+	{
+		ObjectInputStream in = null;
+		try
+		{
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)));
+			int n = in.readInt();
+			List<E> elements = new ArrayList<E>(n);
+			for (int i = 0; i < n; i++)
+			{
+				elements.add((E) in.readObject());
+			}
+			return elements;
+		}
+		catch (IOException e)
+		{
+			throw new SpillException(e);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new SpillException(e);
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	private static void close(Closeable c)
+	{
+		if (c != null)
+		{
+			try
+			{
+				c.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing else to do
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the elements of the queue, reading one segment file
+	 * at a time
+	 */
+	protected class SpillIterator implements Iterator<E>
+	{
+		/**
+		 * The parts of the queue not visited yet
+		 */
+		private final ArrayDeque<Object> m_parts = new ArrayDeque<Object>();
+
+		/**
+		 * The iterator over the current part
+		 */
+		private Iterator<E> m_current;
+
+		SpillIterator()
+		{
+			super();
+			m_current = m_head.iterator();
+			m_parts.addAll(m_segments);
+			m_parts.add(m_tail);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean hasNext()
+		{
+			while (!m_current.hasNext() && !m_parts.isEmpty())
+			{
+				Object part = m_parts.poll();
+				if (part instanceof File)
+				{
+					m_current = readSegment((File) part).iterator();
+				}
+				else
+				{
+					m_current = ((ArrayDeque<E>) part).iterator();
+				}
+			}
+			return m_current.hasNext();
+		}
+
+		@Override
+		public E next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			return m_current.next();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Exception thrown when the queue cannot write or read a segment
+	 * file, for example because an element is not serializable
+	 */
+	public static class SpillException extends RuntimeException
+	{
+		/**
+		 * Dummy UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		public SpillException(Throwable cause)
+		{
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+/**
+ * An object whose state can be saved, and later given back to a fresh
+ * copy of the object. This lets a {@link ca.uqac.lif.cep.tmf.Slicer}
+ * move the processors of its idle slices out of memory, and bring
+ * them back when they receive an event.
+ * <p>
+ * The state only includes what the object computes from the events it
+ * received, not the events still waiting in the queues of a processor
+ * or its connections.
+ *
+ * @author Sylvain Hallé
+ */
+public interface Stateful
+{
+	/**
+	 * Gets the current state of the object
+	 * @return The state. It must implement {@link java.io.Serializable},
+	 *   and must not change when the object does.
+	 */
+	public Object getState();
+
+	/**
+	 * Restores a state of the object
+	 * @param state The state, as returned by {@link #getState()} on an
+	 *   object of the same kind
+	 */
+	public void setState(Object state);
+}
@@ -0,0 +1,251 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides what a {@link Pullable} does while it waits for a source
+ * to have new data. When a call to {@link Pullable#hasNext()} reaches a
+ * source that has nothing to give for the moment, the pullable asks its
+ * wait strategy to wait before trying again. Depending on the
+ * strategy's {@link Mode}, the thread can:
+ * <ul>
+ * <li>retry immediately (<code>SPIN</code>; this is the default, and
+ *   the lowest latency)</li>
+ * <li>give away its time slice before retrying (<code>YIELD</code>)</li>
+ * <li>sleep until the source calls {@link #signal()}, or until the poll
+ *   interval elapses (<code>PARK</code>). An idle pipeline in this mode
+ *   uses next to no CPU.</li>
+ * </ul>
+ * In all modes, the pullable gives up (and answers "no") once the
+ * strategy's timeout has elapsed.
+ * <p>
+ * A source that receives data from some other thread (for example, a
+ * {@link ca.uqac.lif.cep.tmf.QueueSource} being fed events) signals it
+ * through {@link #signal()}. A single strategy can be shared by
+ * multiple processors; in particular, giving a
+ * {@link ca.uqac.lif.cep.tmf.Multiplexer} the same instance as its
+ * sources lets it wake up whenever any of them has something new.
+ *
+ * @author Sylvain Hallé
+ */
+public class WaitStrategy
+{
+	/**
+	 * The ways a thread can wait for new data
+	 */
+	public static enum Mode {SPIN, YIELD, PARK};
+
+	/**
+	 * A strategy that spins without timeout. Processors use it unless
+	 * told otherwise; it reproduces the behaviour of plain retry loops.
+	 */
+	public static final WaitStrategy SPIN = new WaitStrategy(Mode.SPIN);
+
+	/**
+	 * The waiting mode
+	 */
+	protected final Mode m_mode;
+
+	/**
+	 * The time after which a wait gives up, in nanoseconds. A value of 0
+	 * means no timeout.
+	 */
+	protected final long m_timeout;
+
+	/**
+	 * In <code>PARK</code> mode, the maximum time a thread sleeps before
+	 * polling the source again, in nanoseconds, even if nobody called
+	 * {@link #signal()}. A value of 0 means the thread only wakes up
+	 * on a signal. Use this for sources that cannot signal (such as
+	 * an input stream).
+	 */
+	protected final long m_pollInterval;
+
+	/**
+	 * The number of times {@link #signal()} has been called
+	 */
+	private final AtomicLong m_signalCount = new AtomicLong(0);
+
+	/**
+	 * The lock and condition parked threads sleep on
+	 */
+	private final ReentrantLock m_lock = new ReentrantLock();
+	private final Condition m_available = m_lock.newCondition();
+
+	/**
+	 * Creates a new wait strategy with no timeout
+	 * @param mode The waiting mode
+	 */
+	public WaitStrategy(Mode mode)
+	{
+		this(mode, 0, 0);
+	}
+
+	/**
+	 * Creates a new wait strategy
+	 * @param mode The waiting mode
+	 * @param timeout_ms The time after which a wait gives up, in
+	 *   milliseconds. Set to 0 to wait indefinitely.
+	 */
+	public WaitStrategy(Mode mode, long timeout_ms)
+	{
+		this(mode, timeout_ms, 0);
+	}
+
+	/**
+	 * Creates a new wait strategy
+	 * @param mode The waiting mode
+	 * @param timeout_ms The time after which a wait gives up, in
+	 *   milliseconds. Set to 0 to wait indefinitely.
+	 * @param poll_interval_ns In <code>PARK</code> mode, the maximum time
+	 *   a thread sleeps before polling again, in nanoseconds. Set to 0 to
+	 *   only wake up on {@link #signal()}.
+	 */
+	public WaitStrategy(Mode mode, long timeout_ms, long poll_interval_ns)
+	{
+		super();
+		m_mode = mode;
+		m_timeout = TimeUnit.MILLISECONDS.toNanos(timeout_ms);
+		m_pollInterval = poll_interval_ns;
+	}
+
+	/**
+	 * Gets the waiting mode of this strategy
+	 * @return The mode
+	 */
+	public final Mode getMode()
+	{
+		return m_mode;
+	}
+
+	/**
+	 * Tells threads waiting on this strategy that new data is available
+	 */
+	public final void signal()
+	{
+		m_signalCount.incrementAndGet();
+		if (m_mode == Mode.PARK)
+		{
+			m_lock.lock();
+			try
+			{
+				m_available.signalAll();
+			}
+			finally
+			{
+				m_lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of signals received so far. A pullable reads
+	 * this value <em>before</em> querying its source, and passes it to
+	 * {@link #await(long, long)}; this way, a signal sent between the
+	 * query and the wait is not missed.
+	 * @return The number of signals
+	 */
+	public final long getSignalCount()
+	{
+		return m_signalCount.get();
+	}
+
+	/**
+	 * Computes the moment at which a wait starting now should give up
+	 * @return The deadline, as a value of {@link System#nanoTime()}, or
+	 *   {@link Long#MAX_VALUE} if this strategy has no timeout
+	 */
+	public final long getDeadline()
+	{
+		if (m_timeout <= 0)
+		{
+			return Long.MAX_VALUE;
+		}
+		return System.nanoTime() + m_timeout;
+	}
+
+	/**
+	 * Waits until the source may have new data
+	 * @param last_count The value of {@link #getSignalCount()} when the
+	 *   source was last queried
+	 * @param deadline The deadline obtained from {@link #getDeadline()}
+	 *   when the caller started waiting
+	 * @return <code>true</code> if the caller should query the source
+	 *   again, <code>false</code> if the deadline is passed or the
+	 *   thread was interrupted
+	 */
+	public final boolean await(long last_count, long deadline)
+	{
+		switch (m_mode)
+		{
+		case YIELD:
+			Thread.yield();
+			return deadline == Long.MAX_VALUE || System.nanoTime() < deadline;
+		case PARK:
+			return park(last_count, deadline);
+		default:
+			return deadline == Long.MAX_VALUE || System.nanoTime() < deadline;
+		}
+	}
+
+	/**
+	 * Sleeps until a signal, the poll interval or the deadline
+	 * @param last_count The signal count when the source was last queried
+	 * @param deadline The deadline
+	 * @return <code>true</code> if the caller should query the source
+	 *   again, <code>false</code> otherwise
+	 */
+	private boolean park(long last_count, long deadline)
+	{
+		long now = System.nanoTime();
+		long wake_up = deadline;
+		if (m_pollInterval > 0 && now + m_pollInterval < deadline)
+		{
+			wake_up = now + m_pollInterval;
+		}
+		m_lock.lock();
+		try
+		{
+			while (m_signalCount.get() == last_count)
+			{
+				now = System.nanoTime();
+				if (now >= wake_up)
+				{
+					// Time to poll again, unless we are past the deadline
+					return now < deadline;
+				}
+				m_available.awaitNanos(wake_up - now);
+			}
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		finally
+		{
+			m_lock.unlock();
+		}
+	}
+}
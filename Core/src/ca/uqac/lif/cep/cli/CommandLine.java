@@ -27,6 +27,7 @@ import ca.uqac.lif.cep.interpreter.Interpreter;
 import ca.uqac.lif.cep.interpreter.Interpreter.ParseException;
 import ca.uqac.lif.cep.interpreter.UserDefinition;
 import ca.uqac.lif.cep.io.StreamGrammar;
+import ca.uqac.lif.cep.jmx.JmxExporter;
 import ca.uqac.lif.cep.tmf.EplGrammar;
 import ca.uqac.lif.cep.tmf.Sink;
 import ca.uqac.lif.cep.util.AnsiPrinter;
@@ -96,7 +97,14 @@ public class CommandLine
 					Object o = interpreter.parseQuery(command);
 					if (o instanceof Processor)
 					{
+						// Only the current pipe is kept in the MBean server; the
+						// previous one would otherwise never be collected
+						if (last_processor != null)
+						{
+							JmxExporter.unregister(last_processor);
+						}
 						last_processor = (Processor) o;
+						JmxExporter.register(last_processor);
 						if (last_processor instanceof Sink)
 						{
 							Sink sink = (Sink) last_processor;
@@ -120,8 +128,19 @@ public class CommandLine
 					stdout.print("Syntax error");
 					//e.printStackTrace();
 				}
+				catch (JmxExporter.ExportException e)
+				{
+					stdout.setForegroundColor(Color.RED);
+					stdout.print("! ");
+					stdout.setForegroundColor(Color.LIGHT_RED);
+					stdout.print(e.getMessage());
+				}
 			}
 		}
+		if (last_processor != null)
+		{
+			JmxExporter.unregister(last_processor);
+		}
 		stdout.println(s_endGreeting);
 		scanner.close();
 		stdout.close();
@@ -37,6 +37,12 @@ public class And extends BinaryFunction<Boolean,Boolean,Boolean>
 		return x.booleanValue() && y.booleanValue();
 	}
 	
+	@Override
+	public boolean isAssociative()
+	{
+		return true;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -81,6 +81,61 @@ public abstract class BinaryFunction<T,V,U> extends SimpleFunction
 		return null;
 	}
 	
+	/**
+	 * Gets the inverse of this function, if it has one. The inverse
+	 * <i>g</i> of a function <i>f</i> undoes it on its second argument:
+	 * <i>g</i>(<i>f</i>(<i>x</i>,<i>y</i>),<i>y</i>) = <i>x</i>. When the
+	 * function is accumulated over a sliding window (see
+	 * {@link ca.uqac.lif.cep.tmf.Window}), the inverse is used to remove
+	 * the oldest event from the accumulated value, instead of computing
+	 * the value again over the whole window. For this to be correct, the
+	 * function must also be associative and commutative (see
+	 * {@link #isAssociative()}).
+	 * <p>
+	 * The inverse may return <code>null</code> when it cannot undo an
+	 * argument, as is the case for a product and an argument of zero.
+	 * @return The inverse, or <code>null</code> if the function has none
+	 *   (the default)
+	 */
+	public BinaryFunction<U,V,U> getInverse()
+	{
+		return null;
+	}
+
+	/**
+	 * Determines if the inverse of this function (see
+	 * {@link #getInverse()}) undoes it exactly, whatever the values.
+	 * This holds for an addition on integers, but not on floating-point
+	 * numbers: adding and then subtracting a large value loses the
+	 * smaller ones, and a value that overflows to infinity can no longer
+	 * be brought back. A window only removes events with an inverse that
+	 * is exact, or that it can check against a full computation.
+	 * @return <code>true</code> if the inverse is exact,
+	 *   <code>false</code> if it is not, if this is not known, or if the
+	 *   function has no inverse (the default)
+	 */
+	public boolean isInverseExact()
+	{
+		return false;
+	}
+
+	/**
+	 * Determines if this function is associative, that is, if
+	 * <i>f</i>(<i>f</i>(<i>x</i>,<i>y</i>),<i>z</i>) =
+	 * <i>f</i>(<i>x</i>,<i>f</i>(<i>y</i>,<i>z</i>)). When such a function
+	 * is accumulated over a sliding window, the window can combine
+	 * partial results computed on parts of the window, instead of
+	 * computing the value again over the whole window (see
+	 * {@link ca.uqac.lif.cep.tmf.SlidingAggregator}).
+	 * @return <code>true</code> if the function is associative,
+	 *   <code>false</code> if it is not or if this is not known (the
+	 *   default)
+	 */
+	public boolean isAssociative()
+	{
+		return false;
+	}
+
 	@Override
 	public void reset()
 	{
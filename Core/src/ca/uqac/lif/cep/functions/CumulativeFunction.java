@@ -17,10 +17,12 @@
  */
 package ca.uqac.lif.cep.functions;
 
+import ca.uqac.lif.cep.Stateful;
+
 /**
  * A function with memory.
  */
-public class CumulativeFunction<T> extends UnaryFunction<T,T>
+public class CumulativeFunction<T> extends UnaryFunction<T,T> implements Stateful
 {
 	/**
 	 * The last value returned by the function
@@ -57,6 +59,28 @@ public class CumulativeFunction<T> extends UnaryFunction<T,T>
 		return value;
 	}
 	
+	/**
+	 * Gets the binary function applied on each call
+	 * @return The function
+	 */
+	public BinaryFunction<T,T,T> getFunction()
+	{
+		return m_function;
+	}
+
+	@Override
+	public Object getState()
+	{
+		return m_lastValue;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void setState(Object state)
+	{
+		m_lastValue = (T) state;
+	}
+
 	@Override
 	public void reset()
 	{
@@ -0,0 +1,200 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.functions;
+
+import java.util.Set;
+
+import ca.uqac.lif.cep.Context;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Stateful;
+
+/**
+ * Functions applied one after the other, each to the output of the
+ * previous one. A {@link FunctionProcessor} on this function behaves
+ * exactly like a chain of function processors, one for each function:
+ * in particular, as soon as a function returns no value
+ * (<code>null</code> or only <code>null</code>s), the evaluation
+ * stops and returns that value, just like such a processor would not
+ * output anything to the next one.
+ * <p>
+ * Contrarily to a {@link FunctionTree}, this composition therefore never
+ * calls a function with a <code>null</code> argument coming from the
+ * previous one.
+ * <p>
+ * The state of a chain is made of the states of the functions that are
+ * {@link Stateful}, so that a processor using it can be moved to a
+ * {@link ca.uqac.lif.cep.tmf.SliceStore} and back.
+ *
+ * @author Sylvain Hallé
+ */
+public class FunctionChain extends Function implements Stateful
+{
+	/**
+	 * The functions to apply, in order
+	 */
+	protected final Function[] m_functions;
+
+	/**
+	 * Creates a new chain of functions
+	 * @param functions The functions to apply, in order. The output arity
+	 *   of each function must be equal to the input arity of the next.
+	 */
+	public FunctionChain(Function ... functions)
+	{
+		super();
+		m_functions = functions;
+	}
+
+	@Override
+	public Object[] evaluate(Object[] inputs, Context context)
+	{
+		Object[] values = inputs;
+		for (Function f : m_functions)
+		{
+			values = f.evaluate(values, context);
+			if (values == null || Processor.allNull(values))
+			{
+				break;
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public Object[] evaluate(Object[] inputs)
+	{
+		return evaluate(inputs, null);
+	}
+
+	@Override
+	public int getInputArity()
+	{
+		return m_functions[0].getInputArity();
+	}
+
+	@Override
+	public int getOutputArity()
+	{
+		return m_functions[m_functions.length - 1].getOutputArity();
+	}
+
+	@Override
+	public void reset()
+	{
+		for (Function f : m_functions)
+		{
+			f.reset();
+		}
+	}
+
+	@Override
+	public Object getState()
+	{
+		Object[] states = new Object[m_functions.length];
+		for (int i = 0; i < m_functions.length; i++)
+		{
+			if (m_functions[i] instanceof Stateful)
+			{
+				states[i] = ((Stateful) m_functions[i]).getState();
+			}
+		}
+		return states;
+	}
+
+	@Override
+	public void setState(Object state)
+	{
+		Object[] states = (Object[]) state;
+		for (int i = 0; i < m_functions.length; i++)
+		{
+			if (m_functions[i] instanceof Stateful)
+			{
+				((Stateful) m_functions[i]).setState(states[i]);
+			}
+		}
+	}
+
+	@Override
+	public FunctionChain clone()
+	{
+		Function[] functions = new Function[m_functions.length];
+		for (int i = 0; i < functions.length; i++)
+		{
+			functions[i] = m_functions[i].clone();
+		}
+		return new FunctionChain(functions);
+	}
+
+	@Override
+	public FunctionChain clone(Context context)
+	{
+		Function[] functions = new Function[m_functions.length];
+		for (int i = 0; i < functions.length; i++)
+		{
+			functions[i] = m_functions[i].clone(context);
+		}
+		return new FunctionChain(functions);
+	}
+
+	@Override
+	public void getInputTypesFor(Set<Class<?>> classes, int index)
+	{
+		m_functions[0].getInputTypesFor(classes, index);
+	}
+
+	@Override
+	public Class<?> getOutputTypeFor(int index)
+	{
+		return m_functions[m_functions.length - 1].getOutputTypeFor(index);
+	}
+
+	@Override
+	public void setContext(Context context)
+	{
+		super.setContext(context);
+		for (Function f : m_functions)
+		{
+			f.setContext(context);
+		}
+	}
+
+	@Override
+	public void setContext(String key, Object value)
+	{
+		super.setContext(key, value);
+		for (Function f : m_functions)
+		{
+			f.setContext(key, value);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < m_functions.length; i++)
+		{
+			if (i > 0)
+			{
+				out.append(" > ");
+			}
+			out.append(m_functions[i]);
+		}
+		return out.toString();
+	}
+}
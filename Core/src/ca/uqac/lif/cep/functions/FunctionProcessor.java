@@ -27,6 +27,7 @@ import ca.uqac.lif.cep.Connector;
 import ca.uqac.lif.cep.Context;
 import ca.uqac.lif.cep.Processor;
 import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.Stateful;
 import ca.uqac.lif.cep.Connector.ConnectorException;
 
 /**
@@ -34,11 +35,14 @@ import ca.uqac.lif.cep.Connector.ConnectorException;
  * class provides a way to "lift" any <i>m</i>-to-<i>n</i> function
  * into an <i>m</i>-to-<i>n</i> processor, by simply calling the
  * function on the inputs to produce the outputs.
+ * <p>
+ * The state of the processor is that of its function, if the function
+ * is {@link Stateful}; other functions are considered to have none.
  * 
  * @author Sylvain Hallé
  *
  */
-public class FunctionProcessor extends SingleProcessor
+public class FunctionProcessor extends SingleProcessor implements Stateful
 {
 	/**
 	 * The object responsible for the computation
@@ -62,11 +66,36 @@ public class FunctionProcessor extends SingleProcessor
 	}
 
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
-		return wrapVector(m_function.evaluate(inputs, m_context));
+		Object[] out = m_function.evaluate(inputs, m_context);
+		if (out == null || allNull(out))
+		{
+			return false;
+		}
+		outputs.add(out);
+		return true;
 	}
 	
+	@Override
+	public Object getState()
+	{
+		if (m_function instanceof Stateful)
+		{
+			return ((Stateful) m_function).getState();
+		}
+		return null;
+	}
+
+	@Override
+	public void setState(Object state)
+	{
+		if (m_function instanceof Stateful)
+		{
+			((Stateful) m_function).setState(state);
+		}
+	}
+
 	@Override
 	public FunctionProcessor clone()
 	{
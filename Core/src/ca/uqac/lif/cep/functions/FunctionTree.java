@@ -20,12 +20,15 @@ package ca.uqac.lif.cep.functions;
 import java.util.Set;
 
 import ca.uqac.lif.cep.Context;
+import ca.uqac.lif.cep.Stateful;
 
 /**
- * A tree of n-ary functions composed together
+ * A tree of n-ary functions composed together. The state of a tree is
+ * made of the states of its root and of its children that are
+ * {@link Stateful}.
  * @author Sylvain Hallé
  */
-public class FunctionTree extends Function 
+public class FunctionTree extends Function implements Stateful
 {
 	/**
 	 * The function to evaluate
@@ -135,6 +138,58 @@ public class FunctionTree extends Function
 
 	}
 
+	@Override
+	public Object getState()
+	{
+		Object[] states = new Object[m_children.length + 1];
+		states[0] = getState(m_function);
+		for (int i = 0; i < m_children.length; i++)
+		{
+			states[i + 1] = getState(m_children[i]);
+		}
+		return states;
+	}
+
+	@Override
+	public void setState(Object state)
+	{
+		Object[] states = (Object[]) state;
+		setState(m_function, states[0]);
+		for (int i = 0; i < m_children.length; i++)
+		{
+			setState(m_children[i], states[i + 1]);
+		}
+	}
+
+	/**
+	 * Gets the state of a function of the tree
+	 * @param f The function
+	 * @return The state, or <code>null</code> if the function is not
+	 *   {@link Stateful}
+	 */
+	protected static Object getState(Function f)
+	{
+		if (f instanceof Stateful)
+		{
+			return ((Stateful) f).getState();
+		}
+		return null;
+	}
+
+	/**
+	 * Restores the state of a function of the tree, if it is
+	 * {@link Stateful}
+	 * @param f The function
+	 * @param state The state
+	 */
+	protected static void setState(Function f, Object state)
+	{
+		if (f instanceof Stateful)
+		{
+			((Stateful) f).setState(state);
+		}
+	}
+
 	@Override
 	public FunctionTree clone() 
 	{
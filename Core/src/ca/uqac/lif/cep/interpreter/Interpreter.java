@@ -43,9 +43,12 @@ import ca.uqac.lif.cep.GroupProcessor;
 import ca.uqac.lif.cep.Palette;
 import ca.uqac.lif.cep.Processor;
 import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.functions.BinaryFunction;
 import ca.uqac.lif.cep.tmf.EplGrammar;
 import ca.uqac.lif.cep.tmf.Passthrough;
+import ca.uqac.lif.cep.tmf.SharedWindow;
 import ca.uqac.lif.cep.tmf.SmartFork;
+import ca.uqac.lif.cep.tmf.Window;
 import ca.uqac.lif.cep.util.PackageFileReader;
 
 public class Interpreter implements ParseNodeVisitor
@@ -93,6 +96,12 @@ public class Interpreter implements ParseNodeVisitor
 	 */
 	protected Map<String, SmartFork> m_processorForks;
 
+	/**
+	 * Windows shared by the queries on a fork, indexed by the fork and
+	 * by the function they aggregate events with
+	 */
+	protected Map<SmartFork, Map<BinaryFunction<?,?,?>, SharedWindow>> m_sharedWindows;
+
 	/**
 	 * User-defined objects
 	 */
@@ -128,6 +137,7 @@ public class Interpreter implements ParseNodeVisitor
 		m_processorDefinitions = new HashMap<String, GroupProcessor>();
 		m_symbolDefinitions = new HashMap<String, Object>();
 		m_processorForks = new HashMap<String, SmartFork>();
+		m_sharedWindows = new HashMap<SmartFork, Map<BinaryFunction<?,?,?>, SharedWindow>>();
 		m_lastExceptions = new HashSet<Exception>();
 		extendGrammar(BootstrapGrammar.class);
 		m_parser.setStartRule("<S>");
@@ -183,6 +193,12 @@ public class Interpreter implements ParseNodeVisitor
 		m_symbolDefinitions.putAll(i.m_symbolDefinitions);
 		m_processorForks = new HashMap<String, SmartFork>();
 		m_processorForks.putAll(i.m_processorForks);
+		m_sharedWindows = new HashMap<SmartFork, Map<BinaryFunction<?,?,?>, SharedWindow>>();
+		for (Map.Entry<SmartFork, Map<BinaryFunction<?,?,?>, SharedWindow>> e : i.m_sharedWindows.entrySet())
+		{
+			// Each interpreter adds its own windows to a fork
+			m_sharedWindows.put(e.getKey(), new HashMap<BinaryFunction<?,?,?>, SharedWindow>(e.getValue()));
+		}
 	}
 
 	/**
@@ -388,6 +404,10 @@ public class Interpreter implements ParseNodeVisitor
 				try 
 				{
 					visitAssociation(node);
+					if (!m_nodes.isEmpty() && m_nodes.peek() instanceof Window)
+					{
+						m_nodes.push(shareWindow((Window) m_nodes.pop()));
+					}
 				} 
 				catch (IllegalAccessException e) 
 				{
@@ -456,6 +476,74 @@ public class Interpreter implements ParseNodeVisitor
 		}
 	}
 
+	/**
+	 * Replaces a window on a forked processor by an output of a
+	 * {@link SharedWindow}, if the window aggregates its events with
+	 * a function this shared window can compute: one whose inverse is
+	 * exact, or that is associative. All the windows
+	 * with the same function on the same fork are served by the same
+	 * shared window, which keeps a single copy of the events.
+	 * @param w The window
+	 * @return The processor to use in place of the window: either the
+	 *   window itself, or a {@link Passthrough} connected to the output
+	 *   of the shared window
+	 */
+	protected Processor shareWindow(Window w)
+	{
+		BinaryFunction<?,?,?> function = w.getFunction();
+		Pullable in = w.getPullableInput(0);
+		if (function == null || (!function.isInverseExact() && !function.isAssociative()))
+		{
+			return w;
+		}
+		if (in == null || in.getProcessor().getClass() != Passthrough.class)
+		{
+			return w;
+		}
+		Processor pt = in.getProcessor();
+		Pullable up = pt.getPullableInput(0);
+		if (up == null || !(up.getProcessor() instanceof SmartFork) || !m_processorForks.containsValue(up.getProcessor()))
+		{
+			return w;
+		}
+		SmartFork fork = (SmartFork) up.getProcessor();
+		Map<BinaryFunction<?,?,?>, SharedWindow> windows = m_sharedWindows.get(fork);
+		if (windows == null)
+		{
+			windows = new HashMap<BinaryFunction<?,?,?>, SharedWindow>();
+			m_sharedWindows.put(fork, windows);
+		}
+		SharedWindow sw = windows.get(function);
+		try
+		{
+			if (sw == null)
+			{
+				sw = new SharedWindow(function);
+				Connector.connect(pt, sw);
+				windows.put(function, sw);
+				m_nodes.getHistory().add(sw);
+			}
+			else
+			{
+				// The shared window already receives the fork's events:
+				// remove the output just created for this window
+				if (up.getPosition() != fork.getOutputArity() - 1)
+				{
+					return w;
+				}
+				fork.extendOutputArity(fork.getOutputArity() - 1);
+			}
+			Passthrough out = new Passthrough(1);
+			Connector.connect(sw, sw.addWidth(w.getWidth()), out, 0);
+			return out;
+		}
+		catch (ConnectorException e)
+		{
+			m_lastExceptions.add(e);
+		}
+		return w;
+	}
+
 	protected void visitUserDefinedAssociation(ParseNode node)
 	{
 		// The node's name appears to refer to a Buildable object
@@ -54,6 +54,9 @@ public class HttpReader extends StreamReader
 	{
 		super();
 		m_url = url;
+		// The response is read in one go: once the stream is no longer
+		// ready, there is nothing left to wait for
+		m_isFile = true;
 	}
 
 	@Override
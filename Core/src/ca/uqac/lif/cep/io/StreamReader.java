@@ -29,6 +29,7 @@ import java.util.Queue;
 import java.util.Stack;
 
 import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.WaitStrategy;
 import ca.uqac.lif.cep.tmf.Source;
 
 /**
@@ -107,6 +108,10 @@ public class StreamReader extends Source
 		m_returnCode = ERR_OK;
 		m_isFile = true;
 		setInputStream(is);
+		// An input stream cannot tell us when it has new data: when a pipe
+		// is idle, sleep for the polling interval before checking again
+		setWaitStrategy(new WaitStrategy(WaitStrategy.Mode.PARK, 0,
+				m_sleepIntervalMs * 1000000L + m_sleepIntervalNs));
 	}
 
 	/**
@@ -187,12 +192,19 @@ public class StreamReader extends Source
 			// This will occur if the input stream is closed
 			// Not an error in itself, but will cause the thread in which PipeReader
 			// runs to end (gracefully)
+			m_returnCode = m_isFile ? ERR_EOF : ERR_EOT;
+			return null;
 		}
 		if (m_returnCode == ERR_EOF || m_returnCode == ERR_EOT)
 		{
 			// End of stream
 			return null;
 		}
+		if (out[0] == null)
+		{
+			// The pipe has no data for the moment, but may have some later
+			return newQueue();
+		}
 		return wrapVector(out);
 	}
 	
@@ -0,0 +1,225 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import ca.uqac.lif.cep.GroupProcessor;
+import ca.uqac.lif.cep.PipeCrawler;
+import ca.uqac.lif.cep.Processor;
+
+/**
+ * Registers the processors of a pipe in the platform MBean server, so
+ * that tools such as <tt>jconsole</tt> or VisualVM can monitor them.
+ * Every processor gets a bean named
+ * <code>ca.uqac.lif.cep:type=<i>Class</i>,id=<i>n</i></code>, where
+ * <i>n</i> is its unique ID. The processors inside a
+ * {@link GroupProcessor} are registered as well, with an additional
+ * <code>group</code> key giving the ID of the group.
+ * <p>
+ * Registering a processor also turns on the collection of its runtime
+ * statistics (see {@link ca.uqac.lif.cep.MetricsRegistry}). The MBean
+ * server keeps a reference to every registered processor; a pipe must
+ * therefore be unregistered once it is no longer used, or it will never
+ * be garbage collected.
+ *
+ * @author Sylvain Hallé
+ */
+public class JmxExporter
+{
+	/**
+	 * The domain of the beans' object names
+	 */
+	public static final String DOMAIN = "ca.uqac.lif.cep";
+
+	private JmxExporter()
+	{
+		super();
+	}
+
+	/**
+	 * Registers all the processors of a pipe
+	 * @param start Any processor of the pipe. The others are found by
+	 *   following the connections.
+	 * @return The number of beans registered
+	 * @throws ExportException If a processor cannot be registered
+	 */
+	public static int register(Processor start)
+	{
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		int count = 0;
+		for (Processor p : crawl(start))
+		{
+			count += register(server, p, null);
+		}
+		return count;
+	}
+
+	/**
+	 * Unregisters all the processors of a pipe
+	 * @param start Any processor of the pipe
+	 * @throws ExportException If a processor cannot be unregistered. The
+	 *   other processors of the pipe are unregistered anyway.
+	 */
+	public static void unregister(Processor start)
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ExportException failure = null;
+		for (Processor p : crawl(start))
+		{
+			try
+			{
+				unregister(server, p, null);
+			}
+			catch (ExportException e)
+			{
+				if (failure == null)
+				{
+					failure = e;
+				}
+			}
+		}
+		if (failure != null)
+		{
+			throw failure;
+		}
+	}
+
+	/**
+	 * Gets the name under which a processor is registered
+	 * @param p The processor
+	 * @param group The group containing the processor, or
+	 *   <code>null</code> if it is not in a group
+	 * @return The name
+	 */
+	public static ObjectName getObjectName(Processor p, GroupProcessor group)
+	{
+		StringBuilder name = new StringBuilder();
+		name.append(DOMAIN).append(":type=").append(p.getClass().getSimpleName());
+		if (group != null)
+		{
+			name.append(",group=").append(group.getId());
+		}
+		name.append(",id=").append(p.getId());
+		try
+		{
+			return new ObjectName(name.toString());
+		}
+		catch (JMException e)
+		{
+			// Cannot happen: the name only contains safe characters
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	protected static int register(MBeanServer server, Processor p, GroupProcessor group)
+	{
+		int count = 0;
+		try
+		{
+			server.registerMBean(ProcessorView.create(p), getObjectName(p, group));
+			count++;
+		}
+		catch (InstanceAlreadyExistsException e)
+		{
+			// Already registered; nothing to do
+		}
+		catch (JMException e)
+		{
+			throw new ExportException(p, e);
+		}
+		if (p instanceof GroupProcessor)
+		{
+			GroupProcessor g = (GroupProcessor) p;
+			for (Processor inner : g.getProcessors())
+			{
+				count += register(server, inner, g);
+			}
+		}
+		return count;
+	}
+
+	protected static void unregister(MBeanServer server, Processor p, GroupProcessor group)
+	{
+		try
+		{
+			server.unregisterMBean(getObjectName(p, group));
+		}
+		catch (InstanceNotFoundException e)
+		{
+			// Not registered; nothing to do
+		}
+		catch (JMException e)
+		{
+			throw new ExportException(p, e);
+		}
+		if (p instanceof GroupProcessor)
+		{
+			GroupProcessor g = (GroupProcessor) p;
+			for (Processor inner : g.getProcessors())
+			{
+				unregister(server, inner, g);
+			}
+		}
+	}
+
+	/**
+	 * Finds all the processors of a pipe
+	 * @param start Any processor of the pipe
+	 * @return The list of processors
+	 */
+	protected static List<Processor> crawl(Processor start)
+	{
+		final List<Processor> found = new ArrayList<Processor>();
+		PipeCrawler crawler = new PipeCrawler()
+		{
+			@Override
+			public void visit(Processor p)
+			{
+				found.add(p);
+			}
+		};
+		crawler.crawl(start);
+		return found;
+	}
+
+	/**
+	 * Exception thrown when the MBean server refuses to register or
+	 * unregister a processor
+	 */
+	public static class ExportException extends IllegalStateException
+	{
+		/**
+		 * Dummy UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		public ExportException(Processor p, JMException cause)
+		{
+			super("Cannot export processor " + p.getId() + ": " + cause.getMessage(), cause);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.jmx;
+
+/**
+ * Management interface of a processor
+ * @author Sylvain Hallé
+ */
+public interface ProcessorMXBean
+{
+	/**
+	 * Gets the processor's unique ID
+	 * @return The ID
+	 */
+	public int getId();
+
+	/**
+	 * Gets the name of the processor's class
+	 * @return The name
+	 */
+	public String getType();
+
+	/**
+	 * Gets the processor's input arity
+	 * @return The arity
+	 */
+	public int getInputArity();
+
+	/**
+	 * Gets the processor's output arity
+	 * @return The arity
+	 */
+	public int getOutputArity();
+
+	/**
+	 * Gets the number of events consumed on each input
+	 * @return An array with one value per input
+	 */
+	public long[] getEventsIn();
+
+	/**
+	 * Gets the number of events produced on each output
+	 * @return An array with one value per output
+	 */
+	public long[] getEventsOut();
+
+	/**
+	 * Gets the average number of events produced on the first output
+	 * per second, since the processor was registered
+	 * @return The throughput, in events per second
+	 */
+	public double getThroughput();
+
+	/**
+	 * Gets the number of input fronts the processor computed
+	 * @return The number of fronts
+	 */
+	public long getComputeCount();
+
+	/**
+	 * Gets an estimate of the total time the processor spent computing
+	 * @return The time, in nanoseconds
+	 */
+	public long getComputeNanos();
+
+	/**
+	 * Gets the number of times a pull had to try again
+	 * @return The number of retries
+	 */
+	public long getPullRetries();
+
+	/**
+	 * Gets the number of events waiting in each input queue
+	 * @return An array with one value per input
+	 */
+	public int[] getInputQueueDepths();
+
+	/**
+	 * Gets the number of events waiting in each output queue
+	 * @return An array with one value per output
+	 */
+	public int[] getOutputQueueDepths();
+
+	/**
+	 * Gets the largest number of events that were ever waiting in each
+	 * input queue
+	 * @return An array with one value per input; the value is -1 for
+	 *   an input whose queue is not bounded
+	 */
+	public int[] getInputHighWaterMarks();
+
+	/**
+	 * Sets all the processor's counters back to 0
+	 */
+	public void resetMetrics();
+}
@@ -0,0 +1,297 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.jmx;
+
+import ca.uqac.lif.cep.GroupProcessor;
+import ca.uqac.lif.cep.MetricsRegistry;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.ProcessorMetrics;
+import ca.uqac.lif.cep.tmf.Slicer;
+import ca.uqac.lif.cep.tmf.StateSlicer;
+import ca.uqac.lif.cep.tmf.Window;
+
+/**
+ * Exposes a processor and its {@link ProcessorMetrics} as a management
+ * bean. Processors of some classes have a view exposing more
+ * attributes; use {@link #create(Processor)} to get the right one.
+ *
+ * @author Sylvain Hallé
+ */
+public class ProcessorView implements ProcessorMXBean
+{
+	/**
+	 * The processor
+	 */
+	protected final Processor m_processor;
+
+	/**
+	 * The processor's metrics
+	 */
+	protected final ProcessorMetrics m_metrics;
+
+	/**
+	 * The moment the view was created, used to compute the throughput
+	 */
+	protected final long m_startTime;
+
+	/**
+	 * Creates a view of a processor. This registers the processor in
+	 * the {@link MetricsRegistry}, if it is not already.
+	 * @param p The processor
+	 */
+	public ProcessorView(Processor p)
+	{
+		super();
+		m_processor = p;
+		m_metrics = MetricsRegistry.register(p);
+		m_startTime = System.nanoTime();
+	}
+
+	/**
+	 * Creates the view best suited to a processor
+	 * @param p The processor
+	 * @return The view
+	 */
+	public static ProcessorView create(Processor p)
+	{
+		if (p instanceof GroupProcessor)
+		{
+			return new GroupView((GroupProcessor) p);
+		}
+		if (p instanceof Window)
+		{
+			return new WindowView((Window) p);
+		}
+		if (p instanceof Slicer)
+		{
+			return new SlicerView((Slicer) p);
+		}
+		if (p instanceof StateSlicer)
+		{
+			return new StateSlicerView((StateSlicer) p);
+		}
+		return new ProcessorView(p);
+	}
+
+	/**
+	 * Gets the processor this view is about
+	 * @return The processor
+	 */
+	public Processor getProcessor()
+	{
+		return m_processor;
+	}
+
+	@Override
+	public int getId()
+	{
+		return m_processor.getId();
+	}
+
+	@Override
+	public String getType()
+	{
+		return m_processor.getClass().getName();
+	}
+
+	@Override
+	public int getInputArity()
+	{
+		return m_processor.getInputArity();
+	}
+
+	@Override
+	public int getOutputArity()
+	{
+		return m_processor.getOutputArity();
+	}
+
+	@Override
+	public long[] getEventsIn()
+	{
+		long[] out = new long[m_processor.getInputArity()];
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] = m_metrics.getEventsIn(i);
+		}
+		return out;
+	}
+
+	@Override
+	public long[] getEventsOut()
+	{
+		long[] out = new long[m_processor.getOutputArity()];
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] = m_metrics.getEventsOut(i);
+		}
+		return out;
+	}
+
+	@Override
+	public double getThroughput()
+	{
+		if (m_processor.getOutputArity() == 0)
+		{
+			return 0;
+		}
+		double seconds = (System.nanoTime() - m_startTime) / 1e9;
+		if (seconds <= 0)
+		{
+			return 0;
+		}
+		return m_metrics.getEventsOut(0) / seconds;
+	}
+
+	@Override
+	public long getComputeCount()
+	{
+		return m_metrics.getComputeCount();
+	}
+
+	@Override
+	public long getComputeNanos()
+	{
+		return m_metrics.getComputeNanos();
+	}
+
+	@Override
+	public long getPullRetries()
+	{
+		return m_metrics.getPullRetries();
+	}
+
+	@Override
+	public int[] getInputQueueDepths()
+	{
+		int[] out = new int[m_processor.getInputArity()];
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] = m_metrics.getInputQueueDepth(i);
+		}
+		return out;
+	}
+
+	@Override
+	public int[] getOutputQueueDepths()
+	{
+		int[] out = new int[m_processor.getOutputArity()];
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] = m_metrics.getOutputQueueDepth(i);
+		}
+		return out;
+	}
+
+	@Override
+	public int[] getInputHighWaterMarks()
+	{
+		int[] out = new int[m_processor.getInputArity()];
+		for (int i = 0; i < out.length; i++)
+		{
+			out[i] = m_metrics.getInputHighWaterMark(i);
+		}
+		return out;
+	}
+
+	@Override
+	public void resetMetrics()
+	{
+		m_metrics.reset();
+	}
+
+	/**
+	 * View of a group processor
+	 */
+	public static class GroupView extends ProcessorView implements GroupProcessorMXBean
+	{
+		public GroupView(GroupProcessor p)
+		{
+			super(p);
+		}
+
+		@Override
+		public int getProcessorCount()
+		{
+			return ((GroupProcessor) m_processor).getProcessors().size();
+		}
+	}
+
+	/**
+	 * View of a window processor
+	 */
+	public static class WindowView extends ProcessorView implements WindowMXBean
+	{
+		public WindowView(Window p)
+		{
+			super(p);
+		}
+
+		@Override
+		public int getWidth()
+		{
+			return ((Window) m_processor).getWidth();
+		}
+
+		@Override
+		public int getFillLevel()
+		{
+			return ((Window) m_processor).getFillLevel();
+		}
+	}
+
+	/**
+	 * View of a slicer
+	 */
+	public static class SlicerView extends ProcessorView implements SlicerMXBean
+	{
+		public SlicerView(Slicer p)
+		{
+			super(p);
+		}
+
+		@Override
+		public int getSliceCount()
+		{
+			return ((Slicer) m_processor).getSliceCount();
+		}
+	}
+
+	/**
+	 * View of a state slicer
+	 */
+	public static class StateSlicerView extends ProcessorView implements StateSlicerMXBean
+	{
+		public StateSlicerView(StateSlicer p)
+		{
+			super(p);
+		}
+
+		@Override
+		public int getActiveSliceCount()
+		{
+			return ((StateSlicer) m_processor).getActiveSliceCount();
+		}
+
+		@Override
+		public int getClosedSliceCount()
+		{
+			return ((StateSlicer) m_processor).getClosedSliceCount();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.jmx;
+
+/**
+ * Management interface of a state slicer
+ * @author Sylvain Hallé
+ */
+public interface StateSlicerMXBean extends ProcessorMXBean
+{
+	/**
+	 * Gets the number of slices the slicer currently handles
+	 * @return The number of slices
+	 */
+	public int getActiveSliceCount();
+
+	/**
+	 * Gets the number of slices that have been cleaned up
+	 * @return The number of slices
+	 */
+	public int getClosedSliceCount();
+}
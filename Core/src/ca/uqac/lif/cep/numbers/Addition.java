@@ -56,6 +56,18 @@ public class Addition extends BinaryFunction<Number,Number,Number>
 		return 0;
 	}
 	
+	@Override
+	public BinaryFunction<Number,Number,Number> getInverse()
+	{
+		return Subtraction.instance;
+	}
+
+	@Override
+	public boolean isAssociative()
+	{
+		return true;
+	}
+
 	@Override
 	public String toString()
 	{
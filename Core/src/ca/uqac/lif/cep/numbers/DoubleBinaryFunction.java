@@ -0,0 +1,224 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import ca.uqac.lif.cep.functions.BinaryFunction;
+
+/**
+ * Binary function on <code>double</code>s. Such a function can be used
+ * by the processors of this package that handle primitive values,
+ * such as {@link DoubleFunctionProcessor} and
+ * {@link DoubleCumulativeProcessor}, which never box their values. It
+ * can also be used as any other {@link BinaryFunction} on numbers; in
+ * this case, contrarily to functions such as {@link Addition}, the
+ * computation is done with double precision and returns a
+ * {@link Double}.
+ *
+ * @author Sylvain Hallé
+ */
+public abstract class DoubleBinaryFunction extends BinaryFunction<Number,Number,Number>
+{
+	/**
+	 * Addition
+	 */
+	public static final DoubleBinaryFunction ADDITION = new DoubleBinaryFunction("+", 0, true)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return x + y;
+		}
+
+		@Override
+		public BinaryFunction<Number,Number,Number> getInverse()
+		{
+			return SUBTRACTION;
+		}
+	};
+
+	/**
+	 * Subtraction
+	 */
+	public static final DoubleBinaryFunction SUBTRACTION = new DoubleBinaryFunction("-", Double.NaN, false)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return x - y;
+		}
+	};
+
+	/**
+	 * Multiplication
+	 */
+	public static final DoubleBinaryFunction MULTIPLICATION = new DoubleBinaryFunction("*", 1, true)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return x * y;
+		}
+
+		@Override
+		public BinaryFunction<Number,Number,Number> getInverse()
+		{
+			return s_productInverse;
+		}
+	};
+
+	/**
+	 * Division
+	 */
+	public static final DoubleBinaryFunction DIVISION = new DoubleBinaryFunction("/", Double.NaN, false)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return x / y;
+		}
+	};
+
+	/**
+	 * Power
+	 */
+	public static final DoubleBinaryFunction POWER = new DoubleBinaryFunction("^", Double.NaN, false)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return Math.pow(x, y);
+		}
+	};
+
+	/**
+	 * Maximum of two values
+	 */
+	public static final DoubleBinaryFunction MAXIMUM = new DoubleBinaryFunction("max", Double.NEGATIVE_INFINITY, true)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return Math.max(x, y);
+		}
+	};
+
+	/**
+	 * Minimum of two values
+	 */
+	public static final DoubleBinaryFunction MINIMUM = new DoubleBinaryFunction("min", Double.POSITIVE_INFINITY, true)
+	{
+		@Override
+		public double apply(double x, double y)
+		{
+			return Math.min(x, y);
+		}
+	};
+
+	/**
+	 * Inverse of multiplication, which cannot undo a product by zero
+	 */
+	private static final BinaryFunction<Number,Number,Number> s_productInverse = new BinaryFunction<Number,Number,Number>(Number.class, Number.class, Number.class)
+	{
+		@Override
+		public Number getValue(Number x, Number y)
+		{
+			if (y.doubleValue() == 0)
+			{
+				return null;
+			}
+			return x.doubleValue() / y.doubleValue();
+		}
+	};
+
+	/**
+	 * The symbol of the function
+	 */
+	private final String m_symbol;
+
+	/**
+	 * The start value of the function, or NaN if it has none
+	 */
+	private final double m_startValue;
+
+	/**
+	 * Whether the function is associative
+	 */
+	private final boolean m_associative;
+
+	/**
+	 * Creates a new function
+	 * @param symbol The symbol of the function
+	 * @param start_value The value to start from when the function is
+	 *   used to accumulate values, or NaN if the first value must be
+	 *   used instead
+	 * @param associative Whether the function is associative
+	 */
+	public DoubleBinaryFunction(String symbol, double start_value, boolean associative)
+	{
+		super(Number.class, Number.class, Number.class);
+		m_symbol = symbol;
+		m_startValue = start_value;
+		m_associative = associative;
+	}
+
+	/**
+	 * Evaluates the function
+	 * @param x The first argument
+	 * @param y The second argument
+	 * @return The return value of the function
+	 */
+	public abstract double apply(double x, double y);
+
+	/**
+	 * Gets the value to start from when the function is used to
+	 * accumulate values
+	 * @return The value, or NaN if the first value must be used instead
+	 */
+	public final double getStartDouble()
+	{
+		return m_startValue;
+	}
+
+	@Override
+	public Number getValue(Number x, Number y)
+	{
+		return apply(x.doubleValue(), y.doubleValue());
+	}
+
+	@Override
+	public Number getStartValue()
+	{
+		if (Double.isNaN(m_startValue))
+		{
+			return null;
+		}
+		return m_startValue;
+	}
+
+	@Override
+	public boolean isAssociative()
+	{
+		return m_associative;
+	}
+
+	@Override
+	public String toString()
+	{
+		return m_symbol;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import ca.uqac.lif.cep.Stateful;
+
+/**
+ * Accumulates the values it receives with a {@link DoubleBinaryFunction},
+ * and outputs the accumulated value after each of them. The value is
+ * kept as a primitive <code>double</code>. This is the primitive
+ * counterpart of a {@link ca.uqac.lif.cep.functions.CumulativeProcessor}.
+ *
+ * @author Sylvain Hallé
+ */
+public class DoubleCumulativeProcessor extends DoubleProcessor implements Stateful
+{
+	/**
+	 * The function accumulating the values
+	 */
+	protected final DoubleBinaryFunction m_function;
+
+	/**
+	 * The accumulated value
+	 */
+	protected double m_value;
+
+	/**
+	 * Whether a value has been received since the last reset
+	 */
+	protected boolean m_started;
+
+	/**
+	 * Creates a new processor
+	 * @param function The function accumulating the values. If its start
+	 *   value is NaN, the first value received is used as the start
+	 *   value.
+	 */
+	public DoubleCumulativeProcessor(DoubleBinaryFunction function)
+	{
+		super(1);
+		m_function = function;
+		m_value = function.getStartDouble();
+		m_started = !Double.isNaN(m_value);
+	}
+
+	@Override
+	protected double computeDouble(double[] inputs)
+	{
+		if (!m_started)
+		{
+			m_value = inputs[0];
+			m_started = true;
+		}
+		else
+		{
+			m_value = m_function.apply(m_value, inputs[0]);
+		}
+		return m_value;
+	}
+
+	/**
+	 * Gets the function accumulating the values
+	 * @return The function
+	 */
+	public final DoubleBinaryFunction getFunction()
+	{
+		return m_function;
+	}
+
+	/**
+	 * Gets the value accumulated so far
+	 * @return The value
+	 */
+	public final double getValue()
+	{
+		return m_value;
+	}
+
+	@Override
+	public Object getState()
+	{
+		if (!m_started)
+		{
+			return null;
+		}
+		return m_value;
+	}
+
+	@Override
+	public void setState(Object state)
+	{
+		if (state == null)
+		{
+			m_value = m_function.getStartDouble();
+			m_started = !Double.isNaN(m_value);
+		}
+		else
+		{
+			m_value = (Double) state;
+			m_started = true;
+		}
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		m_value = m_function.getStartDouble();
+		m_started = !Double.isNaN(m_value);
+	}
+
+	@Override
+	public DoubleCumulativeProcessor clone()
+	{
+		return new DoubleCumulativeProcessor(m_function);
+	}
+}
@@ -0,0 +1,194 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import java.util.Queue;
+
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.util.DoubleQueue;
+
+/**
+ * Processor computing a <code>double</code> from one <code>double</code>
+ * on each of its inputs. In push mode, the processor handles primitive
+ * values from end to end: its input pushables implement
+ * {@link DoublePushable}, events waiting on an input are kept in a
+ * {@link DoubleQueue}, and the value computed is given to the next
+ * processor through {@link DoublePushable#pushDouble(double)} if that
+ * processor accepts it. A chain of such processors therefore never
+ * boxes a value. Events received as objects, through
+ * {@link Pushable#push(Object)}, must be {@link Number}s; they are
+ * unboxed on arrival.
+ * <p>
+ * In pull mode, and on the first processor that does not accept
+ * primitive values, events are boxed as with any other processor.
+ * The primitive push path does not update the processor's
+ * {@link ca.uqac.lif.cep.ProcessorMetrics}.
+ *
+ * @author Sylvain Hallé
+ */
+public abstract class DoubleProcessor extends SingleProcessor
+{
+	/**
+	 * The values waiting on each input
+	 */
+	protected final DoubleQueue[] m_doubleQueues;
+
+	/**
+	 * The front of input values given to {@link #computeDouble(double[])},
+	 * reused on every call
+	 */
+	private final double[] m_front;
+
+	/**
+	 * Creates a new processor
+	 * @param in_arity The input arity
+	 */
+	public DoubleProcessor(int in_arity)
+	{
+		super(in_arity, 1);
+		m_doubleQueues = new DoubleQueue[in_arity];
+		for (int i = 0; i < in_arity; i++)
+		{
+			m_doubleQueues[i] = new DoubleQueue();
+		}
+		m_front = new double[in_arity];
+	}
+
+	/**
+	 * Computes an output value from one value on each input
+	 * @param inputs The values; the array must not be kept by the
+	 *   method, as it is reused on the next call
+	 * @return The output value
+	 */
+	protected abstract double computeDouble(double[] inputs);
+
+	@Override
+	public Pushable getPushableInput(int index)
+	{
+		return new DoubleInputPushable(index);
+	}
+
+	@Override
+	protected Queue<Object[]> compute(Object[] inputs)
+	{
+		double[] front = new double[inputs.length];
+		for (int i = 0; i < inputs.length; i++)
+		{
+			front[i] = ((Number) inputs[i]).doubleValue();
+		}
+		return wrapObject(computeDouble(front));
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		for (DoubleQueue q : m_doubleQueues)
+		{
+			q.clear();
+		}
+	}
+
+	/**
+	 * Gives a value to the processor connected to the output
+	 * @param x The value
+	 */
+	protected final void emit(double x)
+	{
+		Pushable p = m_outputPushables[0];
+		if (p instanceof DoublePushable)
+		{
+			((DoublePushable) p).pushDouble(x);
+		}
+		else if (p != null)
+		{
+			p.push(x);
+		}
+	}
+
+	/**
+	 * Pushable accepting primitive values on one of the processor's
+	 * inputs
+	 */
+	protected class DoubleInputPushable implements DoublePushable
+	{
+		/**
+		 * The index of the processor's input this pushable refers to
+		 */
+		private final int m_index;
+
+		DoubleInputPushable(int index)
+		{
+			super();
+			m_index = index;
+		}
+
+		@Override
+		public DoublePushable pushDouble(double x)
+		{
+			m_doubleQueues[m_index].add(x);
+			for (DoubleQueue q : m_doubleQueues)
+			{
+				if (q.isEmpty())
+				{
+					return this;
+				}
+			}
+			for (int i = 0; i < m_front.length; i++)
+			{
+				m_front[i] = m_doubleQueues[i].remove();
+			}
+			emit(computeDouble(m_front));
+			return this;
+		}
+
+		@Override
+		public Pushable push(Object o)
+		{
+			if (o != null)
+			{
+				pushDouble(((Number) o).doubleValue());
+			}
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			for (Object o : events)
+			{
+				push(o);
+			}
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return DoubleProcessor.this;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return m_index;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import ca.uqac.lif.cep.Pushable;
+
+/**
+ * {@link Pushable} that also accepts <code>double</code> values without
+ * boxing them. Processors that produce doubles check whether the
+ * pushable they feed implements this interface, and call
+ * {@link #pushDouble(double)} instead of {@link #push(Object)} if so.
+ *
+ * @author Sylvain Hallé
+ */
+public interface DoublePushable extends Pushable
+{
+	/**
+	 * Pushes a value into one of the processor's input trace. This has
+	 * the same effect as pushing a boxed value with
+	 * {@link #push(Object)}.
+	 * @param x The value
+	 * @return The same instance of pushable, to allow chain calls
+	 */
+	public DoublePushable pushDouble(double x);
+}
@@ -0,0 +1,201 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import ca.uqac.lif.cep.functions.BinaryFunction;
+
+/**
+ * Binary function on <code>long</code>s. Such a function can be used
+ * by the processors of this package that handle primitive values,
+ * such as {@link LongFunctionProcessor} and
+ * {@link LongCumulativeProcessor}, which never box their values. It can
+ * also be used as any other {@link BinaryFunction} on numbers; in this
+ * case, the computation is done on integers and returns a {@link Long}.
+ *
+ * @author Sylvain Hallé
+ */
+public abstract class LongBinaryFunction extends BinaryFunction<Number,Number,Number>
+{
+	/**
+	 * Addition
+	 */
+	public static final LongBinaryFunction ADDITION = new LongBinaryFunction("+", true, 0, true)
+	{
+		@Override
+		public long apply(long x, long y)
+		{
+			return x + y;
+		}
+
+		@Override
+		public BinaryFunction<Number,Number,Number> getInverse()
+		{
+			return SUBTRACTION;
+		}
+
+		@Override
+		public boolean isInverseExact()
+		{
+			// Overflows wrap around, and subtracting wraps them back
+			return true;
+		}
+	};
+
+	/**
+	 * Subtraction
+	 */
+	public static final LongBinaryFunction SUBTRACTION = new LongBinaryFunction("-", false, 0, false)
+	{
+		@Override
+		public long apply(long x, long y)
+		{
+			return x - y;
+		}
+	};
+
+	/**
+	 * Multiplication
+	 */
+	public static final LongBinaryFunction MULTIPLICATION = new LongBinaryFunction("*", true, 1, true)
+	{
+		@Override
+		public long apply(long x, long y)
+		{
+			return x * y;
+		}
+	};
+
+	/**
+	 * Maximum of two values
+	 */
+	public static final LongBinaryFunction MAXIMUM = new LongBinaryFunction("max", true, Long.MIN_VALUE, true)
+	{
+		@Override
+		public long apply(long x, long y)
+		{
+			return Math.max(x, y);
+		}
+	};
+
+	/**
+	 * Minimum of two values
+	 */
+	public static final LongBinaryFunction MINIMUM = new LongBinaryFunction("min", true, Long.MAX_VALUE, true)
+	{
+		@Override
+		public long apply(long x, long y)
+		{
+			return Math.min(x, y);
+		}
+	};
+
+	/**
+	 * The symbol of the function
+	 */
+	private final String m_symbol;
+
+	/**
+	 * Whether the function has a start value
+	 */
+	private final boolean m_hasStartValue;
+
+	/**
+	 * The start value of the function
+	 */
+	private final long m_startValue;
+
+	/**
+	 * Whether the function is associative
+	 */
+	private final boolean m_associative;
+
+	/**
+	 * Creates a new function
+	 * @param symbol The symbol of the function
+	 * @param has_start_value Whether the function has a value to start
+	 *   from when it is used to accumulate values. If not, the first
+	 *   value is used instead.
+	 * @param start_value The start value
+	 * @param associative Whether the function is associative
+	 */
+	public LongBinaryFunction(String symbol, boolean has_start_value, long start_value, boolean associative)
+	{
+		super(Number.class, Number.class, Number.class);
+		m_symbol = symbol;
+		m_hasStartValue = has_start_value;
+		m_startValue = start_value;
+		m_associative = associative;
+	}
+
+	/**
+	 * Evaluates the function
+	 * @param x The first argument
+	 * @param y The second argument
+	 * @return The return value of the function
+	 */
+	public abstract long apply(long x, long y);
+
+	/**
+	 * Determines if the function has a value to start from when it is
+	 * used to accumulate values
+	 * @return <code>true</code> if it has one, <code>false</code> if the
+	 *   first value must be used instead
+	 */
+	public final boolean hasStartValue()
+	{
+		return m_hasStartValue;
+	}
+
+	/**
+	 * Gets the value to start from when the function is used to
+	 * accumulate values
+	 * @return The value
+	 */
+	public final long getStartLong()
+	{
+		return m_startValue;
+	}
+
+	@Override
+	public Number getValue(Number x, Number y)
+	{
+		return apply(x.longValue(), y.longValue());
+	}
+
+	@Override
+	public Number getStartValue()
+	{
+		if (!m_hasStartValue)
+		{
+			return null;
+		}
+		return m_startValue;
+	}
+
+	@Override
+	public boolean isAssociative()
+	{
+		return m_associative;
+	}
+
+	@Override
+	public String toString()
+	{
+		return m_symbol;
+	}
+}
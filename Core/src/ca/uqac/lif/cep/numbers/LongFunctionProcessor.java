@@ -0,0 +1,57 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+/**
+ * Applies a {@link LongBinaryFunction} to each pair of values it
+ * receives on its two inputs, without boxing them. This is the
+ * primitive counterpart of a
+ * {@link ca.uqac.lif.cep.functions.FunctionProcessor} on a binary
+ * function on numbers.
+ *
+ * @author Sylvain Hallé
+ */
+public class LongFunctionProcessor extends LongProcessor
+{
+	/**
+	 * The function to apply
+	 */
+	protected final LongBinaryFunction m_function;
+
+	/**
+	 * Creates a new processor
+	 * @param function The function to apply
+	 */
+	public LongFunctionProcessor(LongBinaryFunction function)
+	{
+		super(2);
+		m_function = function;
+	}
+
+	@Override
+	protected long computeLong(long[] inputs)
+	{
+		return m_function.apply(inputs[0], inputs[1]);
+	}
+
+	@Override
+	public LongFunctionProcessor clone()
+	{
+		return new LongFunctionProcessor(m_function);
+	}
+}
@@ -0,0 +1,199 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import java.util.Queue;
+
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.util.LongQueue;
+
+/**
+ * Processor computing a <code>long</code> from one <code>long</code>
+ * on each of its inputs. In push mode, the processor handles primitive
+ * values from end to end: its input pushables implement
+ * {@link LongPushable}, events waiting on an input are kept in a
+ * {@link LongQueue}, and the value computed is given to the next
+ * processor through {@link LongPushable#pushLong(long)} if that
+ * processor accepts it. A chain of such processors therefore never
+ * boxes a value. Events received as objects, through
+ * {@link Pushable#push(Object)}, must be {@link Number}s; they are
+ * unboxed on arrival.
+ * <p>
+ * In pull mode, and on the first processor that does not accept
+ * primitive values, events are boxed as with any other processor.
+ * The primitive push path does not update the processor's
+ * {@link ca.uqac.lif.cep.ProcessorMetrics}.
+ *
+ * @author Sylvain Hallé
+ */
+public abstract class LongProcessor extends SingleProcessor
+{
+	/**
+	 * The values waiting on each input
+	 */
+	protected final LongQueue[] m_longQueues;
+
+	/**
+	 * The front of input values given to {@link #computeLong(long[])},
+	 * reused on every call
+	 */
+	private final long[] m_front;
+
+	/**
+	 * Creates a new processor
+	 * @param in_arity The input arity
+	 */
+	public LongProcessor(int in_arity)
+	{
+		super(in_arity, 1);
+		m_longQueues = new LongQueue[in_arity];
+		for (int i = 0; i < in_arity; i++)
+		{
+			m_longQueues[i] = new LongQueue();
+		}
+		m_front = new long[in_arity];
+	}
+
+	/**
+	 * Computes an output value from one value on each input
+	 * @param inputs The values; the array must not be kept by the
+	 *   method, as it is reused on the next call
+	 * @return The output value
+	 */
+	protected abstract long computeLong(long[] inputs);
+
+	@Override
+	public Pushable getPushableInput(int index)
+	{
+		return new LongInputPushable(index);
+	}
+
+	@Override
+	protected Queue<Object[]> compute(Object[] inputs)
+	{
+		long[] front = new long[inputs.length];
+		for (int i = 0; i < inputs.length; i++)
+		{
+			front[i] = ((Number) inputs[i]).longValue();
+		}
+		return wrapObject(computeLong(front));
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		for (LongQueue q : m_longQueues)
+		{
+			q.clear();
+		}
+	}
+
+	/**
+	 * Gives a value to the processor connected to the output
+	 * @param x The value
+	 */
+	protected final void emit(long x)
+	{
+		Pushable p = m_outputPushables[0];
+		if (p instanceof LongPushable)
+		{
+			((LongPushable) p).pushLong(x);
+		}
+		else if (p instanceof DoublePushable)
+		{
+			// Widening a long to a double does not box it either
+			((DoublePushable) p).pushDouble(x);
+		}
+		else if (p != null)
+		{
+			p.push(x);
+		}
+	}
+
+	/**
+	 * Pushable accepting primitive values on one of the processor's
+	 * inputs
+	 */
+	protected class LongInputPushable implements LongPushable
+	{
+		/**
+		 * The index of the processor's input this pushable refers to
+		 */
+		private final int m_index;
+
+		LongInputPushable(int index)
+		{
+			super();
+			m_index = index;
+		}
+
+		@Override
+		public LongPushable pushLong(long x)
+		{
+			m_longQueues[m_index].add(x);
+			for (LongQueue q : m_longQueues)
+			{
+				if (q.isEmpty())
+				{
+					return this;
+				}
+			}
+			for (int i = 0; i < m_front.length; i++)
+			{
+				m_front[i] = m_longQueues[i].remove();
+			}
+			emit(computeLong(m_front));
+			return this;
+		}
+
+		@Override
+		public Pushable push(Object o)
+		{
+			if (o != null)
+			{
+				pushLong(((Number) o).longValue());
+			}
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			for (Object o : events)
+			{
+				push(o);
+			}
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return LongProcessor.this;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return m_index;
+		}
+	}
+}
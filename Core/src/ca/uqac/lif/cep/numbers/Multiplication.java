@@ -52,10 +52,50 @@ public class Multiplication extends BinaryFunction<Number,Number,Number>
 		return 1;
 	}
 
+	@Override
+	public BinaryFunction<Number,Number,Number> getInverse()
+	{
+		return Inverse.instance;
+	}
+
+	@Override
+	public boolean isAssociative()
+	{
+		return true;
+	}
+
 	@Override
 	public String toString()
 	{
 		return "*";
 	}
 
+	/**
+	 * Inverse of multiplication. This is a division, except that it
+	 * returns <code>null</code> when dividing by zero: a product
+	 * that was multiplied by zero cannot be recovered.
+	 */
+	protected static class Inverse extends BinaryFunction<Number,Number,Number>
+	{
+		/**
+		 * Static reference to a single instance of the function
+		 */
+		public static final transient Inverse instance = new Inverse();
+
+		private Inverse()
+		{
+			super(Number.class, Number.class, Number.class);
+		}
+
+		@Override
+		public Number getValue(Number x, Number y)
+		{
+			if (y.floatValue() == 0)
+			{
+				return null;
+			}
+			return x.floatValue() / y.floatValue();
+		}
+	}
+
 }
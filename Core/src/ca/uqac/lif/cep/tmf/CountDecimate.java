@@ -17,7 +17,6 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.Stack;
 
@@ -66,19 +65,19 @@ public class CountDecimate extends SingleProcessor
 	}
 
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
-		Object[] out = null;
-		if (m_current == 0)
-		{
-			out = inputs;
-		}
+		boolean send = m_current == 0;
 		m_current = (m_current + 1) % m_interval;
-		if (out == null)
+		if (send)
 		{
-			return new ArrayDeque<Object[]>();
+			if (allNull(inputs))
+			{
+				return false;
+			}
+			outputs.add(inputs);
 		}
-		return wrapVector(out);
+		return true;
 	}
 	
 	public static void build(Stack<Object> stack) throws ConnectorException
@@ -17,17 +17,21 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Queue;
 import java.util.Vector;
 
 import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.util.CircularBuffer;
 
 /**
  * Converts a sequence of <i>n</i> consecutive events into an event
  * that is a vector of size <i>n</i>. This effectively
  * works as a time demultiplexer.
+ * <p>
+ * By default, each output event is a new {@link Vector}. When the
+ * events are consumed as soon as they are produced, the demultiplexer
+ * can instead output a read-only view of its window, which is not
+ * copied; see {@link #setCopy(boolean)}.
  * 
  * @author Sylvain Hallé
  */
@@ -36,7 +40,12 @@ public class Demultiplexer extends SingleProcessor
 	/**
 	 * The window of objects to be stored
 	 */
-	protected List<Object> m_window;
+	protected CircularBuffer<Object> m_window;
+
+	/**
+	 * Whether each output event is a copy of the window
+	 */
+	protected boolean m_copy = true;
 	
 	/**
 	 * The width of the demuxing, i.e. the value of <i>n</i> in the
@@ -46,7 +55,7 @@ public class Demultiplexer extends SingleProcessor
 	
 	Demultiplexer()
 	{
-		super(1, 1);
+		this(1);
 	}
 	
 	/**
@@ -57,28 +66,38 @@ public class Demultiplexer extends SingleProcessor
 	{
 		super(1, 1);
 		m_width = width;
-		m_window = new LinkedList<Object>();
+		m_window = new CircularBuffer<Object>(width);
 	}
 
 	@Override
 	protected final Queue<Object[]> compute(Object[] inputs)
 	{
-		if (m_window.size() == m_width)
-		{
-			m_window.remove(0);
-		}
 		m_window.add(inputs[0]);
-		if (m_window.size() == m_width)
+		if (m_window.isFull())
 		{
-			Vector<Object> objects = new Vector<Object>();
-			objects.addAll(m_window);
-			Object[] out = new Object[1];
-			out[0] = objects;
-			return wrapVector(out);
+			if (!m_copy)
+			{
+				return wrapObject(m_window.view());
+			}
+			return wrapObject(new Vector<Object>(m_window.view()));
 		}
 		return null;
 	}
 	
+	/**
+	 * Sets whether each output event is a copy of the window
+	 * @param b Set to <code>true</code> (the default) to output a new
+	 *   {@link Vector} on every event. Set to <code>false</code> to output
+	 *   a read-only list that reflects the window as it slides; such a
+	 *   list is only valid until the next event is pushed.
+	 * @return This demultiplexer
+	 */
+	public Demultiplexer setCopy(boolean b)
+	{
+		m_copy = b;
+		return this;
+	}
+
 	@Override
 	public void reset()
 	{
@@ -89,6 +108,6 @@ public class Demultiplexer extends SingleProcessor
 	@Override
 	public Demultiplexer clone() 
 	{
-		return new Demultiplexer(m_width);
+		return new Demultiplexer(m_width).setCopy(m_copy);
 	}
 }
@@ -0,0 +1,344 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the state of slices in a local file. The file is a log:
+ * every state put in the store is serialized and appended at its end,
+ * and only the position of each slice's latest record is kept in
+ * memory. Records of slices that were removed or stored again are left
+ * in place; when they take more than half of the file, the live records
+ * are copied to a new file, and the old one is deleted.
+ * <p>
+ * The file is created in the system's temporary folder, or in a folder
+ * given to the constructor, and is deleted by {@link #close()}; a store
+ * that is no longer needed must be closed, as its file is not deleted
+ * when the virtual machine exits. It is not meant to be read again by
+ * another store.
+ *
+ * @author Sylvain Hallé
+ */
+public class FileSliceStore implements SliceStore, Closeable
+{
+	/**
+	 * The size under which the file is never compacted, in bytes
+	 */
+	protected static final long s_minCompactSize = 1 << 20;
+
+	/**
+	 * The folder where the file is created, or <code>null</code> for
+	 * the system's temporary folder
+	 */
+	protected final File m_folder;
+
+	/**
+	 * The file
+	 */
+	protected File m_file;
+
+	/**
+	 * The file, opened for reading and writing
+	 */
+	protected RandomAccessFile m_data;
+
+	/**
+	 * The position of the latest record of each slice in the file
+	 */
+	protected final Map<Object,Long> m_index = new HashMap<Object,Long>();
+
+	/**
+	 * The length of the file, in bytes
+	 */
+	protected long m_end = 0;
+
+	/**
+	 * The number of bytes taken by records no longer in the index
+	 */
+	protected long m_garbage = 0;
+
+	/**
+	 * Creates a new empty store in the system's temporary folder
+	 */
+	public FileSliceStore()
+	{
+		this(null);
+	}
+
+	/**
+	 * Creates a new empty store
+	 * @param folder The folder where the file is created, or
+	 *   <code>null</code> for the system's temporary folder
+	 */
+	public FileSliceStore(File folder)
+	{
+		super();
+		m_folder = folder;
+		try
+		{
+			m_file = newFile();
+			m_data = new RandomAccessFile(m_file, "rw");
+		}
+		catch (IOException e)
+		{
+			throw new StoreException(e);
+		}
+	}
+
+	@Override
+	public synchronized void put(Object slice_id, Object state)
+	{
+		byte[] record = serialize(new Object[]{slice_id, state});
+		try
+		{
+			Long previous = m_index.put(slice_id, m_end);
+			if (previous != null)
+			{
+				m_garbage += recordLength(previous);
+			}
+			m_data.seek(m_end);
+			m_data.writeInt(record.length);
+			m_data.write(record);
+			m_end += 4 + record.length;
+		}
+		catch (IOException e)
+		{
+			throw new StoreException(e);
+		}
+		compact();
+	}
+
+	@Override
+	public synchronized Object remove(Object slice_id)
+	{
+		Long position = m_index.remove(slice_id);
+		if (position == null)
+		{
+			return null;
+		}
+		Object[] record = read(position);
+		m_garbage += recordLength(position);
+		compact();
+		return record[1];
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object slice_id)
+	{
+		return m_index.containsKey(slice_id);
+	}
+
+	@Override
+	public synchronized Set<Object> keySet()
+	{
+		return Collections.unmodifiableSet(m_index.keySet());
+	}
+
+	@Override
+	public synchronized int size()
+	{
+		return m_index.size();
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		m_index.clear();
+		m_end = 0;
+		m_garbage = 0;
+		try
+		{
+			m_data.setLength(0);
+		}
+		catch (IOException e)
+		{
+			throw new StoreException(e);
+		}
+	}
+
+	/**
+	 * Gets the length of the file
+	 * @return The length, in bytes
+	 */
+	public synchronized long getFileLength()
+	{
+		return m_end;
+	}
+
+	/**
+	 * Closes the store and deletes its file
+	 */
+	@Override
+	public synchronized void close()
+	{
+		m_index.clear();
+		close(m_data);
+		m_file.delete();
+	}
+
+	/**
+	 * Copies the live records to a new file, if the records no longer
+	 * in the index take more than half of the current one
+	 */
+	protected void compact()
+	{
+		if (m_end < s_minCompactSize || m_garbage * 2 <= m_end)
+		{
+			return;
+		}
+		File file = null;
+		RandomAccessFile data = null;
+		try
+		{
+			file = newFile();
+			data = new RandomAccessFile(file, "rw");
+			long end = 0;
+			byte[] buffer = new byte[0];
+			Map<Object,Long> positions = new HashMap<Object,Long>();
+			for (Map.Entry<Object,Long> entry : m_index.entrySet())
+			{
+				m_data.seek(entry.getValue());
+				int length = m_data.readInt();
+				if (buffer.length < length)
+				{
+					buffer = new byte[length];
+				}
+				m_data.readFully(buffer, 0, length);
+				data.writeInt(length);
+				data.write(buffer, 0, length);
+				positions.put(entry.getKey(), end);
+				end += 4 + length;
+			}
+			close(m_data);
+			m_file.delete();
+			m_index.putAll(positions);
+			m_file = file;
+			m_data = data;
+			m_end = end;
+			m_garbage = 0;
+		}
+		catch (IOException e)
+		{
+			// The store keeps using the current file
+			if (data != null)
+			{
+				close(data);
+				file.delete();
+			}
+			throw new StoreException(e);
+		}
+	}
+
+	/**
+	 * Creates a new temporary file
+	 * @return The file
+	 */
+	protected File newFile() throws IOException
+	{
+		File f = File.createTempFile("beepbeep-slices", ".log", m_folder);
+		return f;
+	}
+
+	/**
+	 * Reads a record of the file
+	 * @param position The position of the record
+	 * @return The slice ID and its state
+	 */
+	protected Object[] read(long position)
+	{
+		try
+		{
+			m_data.seek(position);
+			byte[] record = new byte[m_data.readInt()];
+			m_data.readFully(record);
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record));
+			return (Object[]) in.readObject();
+		}
+		catch (IOException e)
+		{
+			throw new StoreException(e);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new StoreException(e);
+		}
+	}
+
+	/**
+	 * Gets the number of bytes taken by a record of the file
+	 * @param position The position of the record
+	 * @return The number of bytes
+	 */
+	protected long recordLength(long position)
+	{
+		try
+		{
+			m_data.seek(position);
+			return 4 + m_data.readInt();
+		}
+		catch (IOException e)
+		{
+			throw new StoreException(e);
+		}
+	}
+
+	/**
+	 * Serializes an object
+	 * @param o The object
+	 * @return The bytes
+	 */
+	protected static byte[] serialize(Object o)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(o);
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new StoreException(e);
+		}
+	}
+
+	private static void close(Closeable c)
+	{
+		try
+		{
+			c.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing else to do
+		}
+	}
+}
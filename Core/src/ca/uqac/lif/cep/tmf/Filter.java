@@ -17,7 +17,6 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.Stack;
 
@@ -39,21 +38,20 @@ public class Filter extends SingleProcessor
 	}
 
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
-		Object o = inputs[0];
-		Object[] out = new Object[1];
 		boolean b = (Boolean) inputs[inputs.length - 1];
 		if (b)
 		{
-			out[0] = o;
+			if (inputs[0] == null)
+			{
+				return false;
+			}
+			// The first element of the input front is the event to output;
+			// the front can be reused as is, as extra elements are ignored
+			outputs.add(inputs);
 		}
-		else
-		{
-			// Don't output null, but rather an empty queue
-			return new ArrayDeque<Object[]>();
-		}
-		return wrapVector(out);
+		return true;
 	}
 
 	public static void build(Stack<Object> stack) throws ConnectorException
@@ -20,6 +20,8 @@ package ca.uqac.lif.cep.tmf;
 import java.util.ArrayDeque;
 import java.util.Queue;
 
+import ca.uqac.lif.cep.AsyncPushable;
+import ca.uqac.lif.cep.Backpressure;
 import ca.uqac.lif.cep.Pushable;
 import ca.uqac.lif.cep.SingleProcessor;
 import ca.uqac.lif.cep.objectfactory.IntegerSetting;
@@ -27,37 +29,219 @@ import ca.uqac.lif.cep.objectfactory.SettingsSet;
 
 /**
  * Duplicates an input trace into two or more output traces.
+ * <p>
+ * In push mode, the fork normally pushes an event into each of its
+ * branches one after the other. In {@linkplain #setParallel(boolean)
+ * parallel mode}, each branch instead runs in its own thread, and the
+ * fork returns as soon as the event is handed over to all of them; the
+ * time taken by an event is then that of the slowest branch, rather
+ * than the sum of all branches. Each branch still receives the events
+ * in order. Branches that meet again in a processor with many inputs
+ * must go through a {@link JoinBarrier} first, as they push their
+ * events from different threads.
+ * <p>
+ * The threads are started with the first event, and stopped by
+ * {@link #shutdown()} or {@link #reset()}. An exception thrown in a
+ * branch is thrown back by the next event pushed into the fork, or by
+ * {@link #flush()} or {@link #shutdown()}.
  * 
  * @author Sylvain Hallé
  *
  */
 public class Fork extends SingleProcessor
 {
+	/**
+	 * The number of events each branch can have waiting in parallel mode
+	 */
+	protected static final int s_branchCapacity = 1024;
+
+	/**
+	 * Whether the branches run in their own thread
+	 */
+	protected boolean m_parallel = false;
+
+	/**
+	 * The pushables handing events over to the thread of each branch,
+	 * or <code>null</code> if the threads are not started
+	 */
+	protected AsyncPushable[] m_branches = null;
+
 	public Fork(int out_arity)
 	{
 		super(1, out_arity);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * The copy does not run its branches in parallel, so that cloning a
+	 * fork, as a slicer does for each slice, does not start threads.
+	 */
 	@Override
 	public Fork clone()
 	{
 		return new Fork(getOutputArity());
 	}
 
+	/**
+	 * Sets whether the branches of the fork run in their own thread in
+	 * push mode. The branches must be connected before the fork receives
+	 * its first event.
+	 * @param b Set to <code>true</code> to run the branches in parallel
+	 * @return This fork
+	 */
+	public Fork setParallel(boolean b)
+	{
+		if (!b)
+		{
+			shutdown();
+		}
+		m_parallel = b;
+		return this;
+	}
+
+	/**
+	 * Determines if the branches of the fork run in their own thread
+	 * @return <code>true</code> if they do
+	 */
+	public boolean isParallel()
+	{
+		return m_parallel;
+	}
+
+	/**
+	 * Waits until every branch has processed the events received so far
+	 * @throws RuntimeException The first exception thrown in a branch
+	 *   since the last one was reported
+	 */
+	public void flush()
+	{
+		AsyncPushable[] branches = m_branches;
+		if (branches == null)
+		{
+			return;
+		}
+		for (AsyncPushable branch : branches)
+		{
+			branch.flush();
+		}
+	}
+
+	/**
+	 * Lets the branches process the remaining events, and stops their
+	 * threads. The fork starts new threads if it receives events
+	 * afterwards in parallel mode.
+	 * @throws RuntimeException The first exception thrown in a branch
+	 *   since the last one was reported
+	 */
+	public synchronized void shutdown()
+	{
+		if (m_branches == null)
+		{
+			return;
+		}
+		AsyncPushable[] branches = m_branches;
+		m_branches = null;
+		RuntimeException failure = null;
+		for (AsyncPushable branch : branches)
+		{
+			try
+			{
+				branch.close();
+			}
+			catch (RuntimeException e)
+			{
+				// Stop the other threads before reporting it
+				if (failure == null)
+				{
+					failure = e;
+				}
+			}
+		}
+		if (failure != null)
+		{
+			throw failure;
+		}
+	}
+
+	@Override
+	public void reset()
+	{
+		try
+		{
+			shutdown();
+		}
+		finally
+		{
+			super.reset();
+		}
+	}
+
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
+		if (inputs.length == 0 || inputs[0] == null)
+		{
+			return false;
+		}
+		if (m_parallel && isPushed())
+		{
+			if (m_branches == null)
+			{
+				start();
+			}
+			for (AsyncPushable branch : m_branches)
+			{
+				branch.push(inputs[0]);
+			}
+			return true;
+		}
 		int arity = getOutputArity();
+		if (arity == 1)
+		{
+			outputs.add(inputs);
+			return true;
+		}
+		Object o = inputs[0];
 		Object[] out = new Object[arity];
-		if (inputs.length > 0)
+		for (int i = 0; i < arity; i++)
+		{
+			out[i] = o;
+		}
+		outputs.add(out);
+		return true;
+	}
+
+	/**
+	 * Determines if every output of the fork is connected in push mode
+	 * @return <code>true</code> if they all are
+	 */
+	protected boolean isPushed()
+	{
+		for (Pushable p : m_outputPushables)
 		{
-			Object o = inputs[0];
-			for (int i = 0; i < arity; i++)
+			if (p == null)
 			{
-				out[i] = o;
+				return false;
 			}
 		}
-		return wrapVector(out);
+		return true;
+	}
+
+	/**
+	 * Starts the threads of the branches
+	 */
+	protected synchronized void start()
+	{
+		if (m_branches != null)
+		{
+			return;
+		}
+		AsyncPushable[] branches = new AsyncPushable[m_outputPushables.length];
+		for (int i = 0; i < branches.length; i++)
+		{
+			branches[i] = new AsyncPushable(m_outputPushables[i], s_branchCapacity, Backpressure.BLOCK).start();
+		}
+		m_branches = branches;
 	}
 
 	/**
@@ -67,6 +251,7 @@ public class Fork extends SingleProcessor
 	@SuppressWarnings("unchecked")
 	public void extendOutputArity(int out_arity)
 	{
+		shutdown();
 		m_outputQueues = new Queue[out_arity];
 		m_outputArity = out_arity;
 		for (int i = 0; i < m_outputArity; i++)
@@ -0,0 +1,322 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.Queue;
+import java.util.Stack;
+
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.functions.BinaryFunction;
+import ca.uqac.lif.cep.util.CircularBuffer;
+
+/**
+ * Applies a processor &phi; on windows of <i>w</i> events that move
+ * forward by <i>s</i> events at a time. The processor outputs the
+ * result of &phi; on events 0 to <i>w</i>-1, then on events <i>s</i>
+ * to <i>s</i>+<i>w</i>-1, and so on. When <i>s</i> = 1, this is the
+ * same as a {@link Window}; when <i>s</i> = <i>w</i>, windows do not
+ * overlap (see {@link TumblingWindow}). The output is the same as
+ * that of a {@link Window} followed by a {@link CountDecimate} of
+ * interval <i>s</i>, but windows that would be discarded are never
+ * computed.
+ * <p>
+ * When &phi; accumulates its input with an associative function (see
+ * {@link BinaryFunction#isAssociative()}), such as a
+ * {@link ca.uqac.lif.cep.functions.CumulativeProcessor} on an addition
+ * or a maximum, the stream is cut into <em>panes</em> of
+ * gcd(<i>w</i>, <i>s</i>) events. The function is applied once to the
+ * events of each pane, and the result of a window is obtained by
+ * combining the results of its panes, which a {@link SlidingAggregator}
+ * does in amortized constant time. Otherwise, &phi; is run on the
+ * <i>w</i> events of each window that is output.
+ *
+ * @author Sylvain Hallé
+ */
+public class HoppingWindow extends SingleProcessor
+{
+	/**
+	 * The window's width
+	 */
+	protected final int m_width;
+
+	/**
+	 * The number of events between the start of two windows
+	 */
+	protected final int m_step;
+
+	/**
+	 * The internal processor
+	 */
+	protected final Processor m_processor;
+
+	/**
+	 * The number of events received since the last reset
+	 */
+	protected long m_count;
+
+	/**
+	 * The function the internal processor accumulates its input with,
+	 * or <code>null</code> if it cannot be computed by panes
+	 */
+	protected BinaryFunction<Object,Object,Object> m_function;
+
+	/**
+	 * The number of events in a pane
+	 */
+	protected final int m_paneSize;
+
+	/**
+	 * The result of the function on the events of the current pane
+	 */
+	protected Object m_pane;
+
+	/**
+	 * The results of the panes of the current window
+	 */
+	protected SlidingAggregator m_panes;
+
+	/**
+	 * The number of panes in {@link #m_panes}
+	 */
+	protected int m_paneCount;
+
+	/**
+	 * The events of the current window, when the function cannot be
+	 * computed by panes
+	 */
+	protected CircularBuffer<Object>[] m_window;
+
+	/**
+	 * The internal processor's input pushables
+	 */
+	protected Pushable[] m_innerInputs;
+
+	/**
+	 * The sink receiving the events produced by the internal processor
+	 */
+	protected SinkLast m_sink;
+
+	/**
+	 * Creates a new hopping window
+	 * @param in_processor The processor to apply on each window
+	 * @param width The width of a window
+	 * @param step The number of events between the start of two windows
+	 */
+	public HoppingWindow(Processor in_processor, int width, int step)
+	{
+		super(in_processor.getInputArity(), in_processor.getOutputArity());
+		if (width < 1 || step < 1)
+		{
+			throw new IllegalArgumentException("Width and step must be positive");
+		}
+		m_width = width;
+		m_step = step;
+		m_processor = in_processor;
+		m_paneSize = gcd(width, step);
+		m_function = Window.getAggregateFunction(in_processor);
+		if (m_function != null && !m_function.isAssociative())
+		{
+			m_function = null;
+		}
+		if (m_function != null)
+		{
+			m_panes = new SlidingAggregator(m_function);
+		}
+		else
+		{
+			m_sink = new SinkLast(in_processor.getOutputArity());
+			try
+			{
+				Connector.connect(m_processor, m_sink);
+			}
+			catch (ConnectorException e)
+			{
+				// Cannot happen: the sink has the processor's output arity
+				throw new IllegalArgumentException(e);
+			}
+		}
+		reset();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void reset()
+	{
+		super.reset();
+		m_count = 0;
+		if (m_function != null)
+		{
+			m_pane = null;
+			m_panes.clear();
+			m_paneCount = 0;
+			return;
+		}
+		int arity = getInputArity();
+		m_window = new CircularBuffer[arity];
+		m_innerInputs = new Pushable[arity];
+		for (int i = 0; i < arity; i++)
+		{
+			m_window[i] = new CircularBuffer<Object>(m_width);
+			m_innerInputs[i] = m_processor.getPushableInput(i);
+		}
+	}
+
+	@Override
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+	{
+		m_count++;
+		boolean emit = m_count >= m_width && (m_count - m_width) % m_step == 0;
+		if (m_function != null)
+		{
+			Object o = inputs[0];
+			m_pane = m_pane == null ? o : m_function.getValue(m_pane, o);
+			if (m_count % m_paneSize == 0)
+			{
+				// The pane is complete
+				m_panes.add(m_pane);
+				m_pane = null;
+				if (m_paneCount == m_width / m_paneSize)
+				{
+					m_panes.remove();
+				}
+				else
+				{
+					m_paneCount++;
+				}
+			}
+			if (emit)
+			{
+				Object value = m_panes.getAggregate();
+				Object start = m_function.getStartValue();
+				if (start != null)
+				{
+					value = m_function.getValue(start, value);
+				}
+				outputs.add(new Object[]{value});
+			}
+			return true;
+		}
+		for (int i = 0; i < inputs.length; i++)
+		{
+			m_window[i].add(inputs[i]);
+		}
+		if (emit)
+		{
+			m_processor.reset();
+			m_sink.reset();
+			for (int i = 0; i < m_width; i++)
+			{
+				for (int j = 0; j < m_innerInputs.length; j++)
+				{
+					m_innerInputs[j].push(m_window[j].get(i));
+				}
+			}
+			Object[] out = m_sink.getLast();
+			if (out != null)
+			{
+				outputs.add(out);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the width of the window
+	 * @return The width
+	 */
+	public int getWidth()
+	{
+		return m_width;
+	}
+
+	/**
+	 * Gets the number of events between the start of two windows
+	 * @return The number of events
+	 */
+	public int getStep()
+	{
+		return m_step;
+	}
+
+	/**
+	 * Determines if the windows are computed from partial results on
+	 * panes
+	 * @return <code>true</code> if they are
+	 */
+	public boolean usesPanes()
+	{
+		return m_function != null;
+	}
+
+	public static void build(Stack<Object> stack) throws ConnectorException
+	{
+		Number step = (Number) stack.pop();
+		stack.pop(); // EVERY
+		Number width = (Number) stack.pop();
+		stack.pop(); // OF
+		stack.pop(); // WINDOW
+		stack.pop(); // A
+		stack.pop(); // ON
+		stack.pop(); // (
+		Processor input_trace = (Processor) stack.pop();
+		stack.pop(); // )
+		stack.pop(); // ON
+		stack.pop(); // (
+		Processor p = (Processor) stack.pop();
+		stack.pop(); // )
+		stack.pop(); // APPLY
+		HoppingWindow out;
+		if (step.intValue() == width.intValue())
+		{
+			out = new TumblingWindow(p, width.intValue());
+		}
+		else
+		{
+			out = new HoppingWindow(p, width.intValue(), step.intValue());
+		}
+		Connector.connect(input_trace, out);
+		stack.push(out);
+	}
+
+	@Override
+	public HoppingWindow clone()
+	{
+		return new HoppingWindow(m_processor.clone(), m_width, m_step);
+	}
+
+	/**
+	 * Computes the greatest common divisor of two positive numbers
+	 * @param a The first number
+	 * @param b The second number
+	 * @return The divisor
+	 */
+	protected static int gcd(int a, int b)
+	{
+		while (b != 0)
+		{
+			int t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.Queue;
+
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.SingleProcessor;
+
+/**
+ * Brings back together branches that run in different threads, such
+ * as those of a {@link Fork} in parallel mode. The barrier has as many
+ * outputs as inputs; it waits until it has an event on every input,
+ * and then outputs the first event of each input together, in the
+ * order they were received. The processor after the barrier thus gets
+ * the events of all branches aligned, as if the branches had run one
+ * after the other.
+ * <p>
+ * Events can be pushed into the barrier from any thread. The barrier
+ * pushes its output fronts one at a time, from the thread that
+ * completed the front; the processors after it therefore never receive
+ * events from two threads at once.
+ *
+ * @author Sylvain Hallé
+ */
+public class JoinBarrier extends SingleProcessor
+{
+	/**
+	 * Instantiates a barrier
+	 * @param arity The number of branches to join
+	 */
+	public JoinBarrier(int arity)
+	{
+		super(arity, arity);
+	}
+
+	@Override
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+	{
+		outputs.add(inputs);
+		return true;
+	}
+
+	@Override
+	public Pushable getPushableInput(int index)
+	{
+		return new BarrierPushable(super.getPushableInput(index));
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		super.reset();
+	}
+
+	@Override
+	public JoinBarrier clone()
+	{
+		return new JoinBarrier(getInputArity());
+	}
+
+	/**
+	 * Pushable taking the barrier's lock before giving an event to the
+	 * processor
+	 */
+	protected class BarrierPushable implements Pushable
+	{
+		/**
+		 * The pushable of the processor
+		 */
+		private final Pushable m_pushable;
+
+		public BarrierPushable(Pushable p)
+		{
+			super();
+			m_pushable = p;
+		}
+
+		@Override
+		public Pushable push(Object o)
+		{
+			synchronized (JoinBarrier.this)
+			{
+				m_pushable.push(o);
+			}
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			synchronized (JoinBarrier.this)
+			{
+				m_pushable.pushAll(events);
+			}
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return JoinBarrier.this;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return m_pushable.getPosition();
+		}
+	}
+}
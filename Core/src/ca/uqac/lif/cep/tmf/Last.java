@@ -57,11 +57,11 @@ public class Last extends Passthrough
 	}
 	
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
 		// Don't do anything, as the computation is taken care of by
 		// the SentinelPullable
-		return null;
+		return false;
 	}
 
 	@Override
@@ -108,20 +108,15 @@ public class Last extends Passthrough
 			{
 				return null;
 			}
-			for (int tries = 0; tries < Pullable.s_maxRetries; tries++)
+			// Each call to pull() consumes an input event or blocks until
+			// the input has one; the loop ends when the input trace does
+			Object o;
+			while ((o = m_inputPullables[0].pull()) != null)
 			{
-				Object o = m_inputPullables[0].pull();
-				if (o != null)
-				{
-					m_lastReceived = o;
-				}
-				else
-				{
-					m_done = true;
-					return m_lastReceived;
-				}
+				m_lastReceived = o;
 			}
-			return null;
+			m_done = true;
+			return m_lastReceived;
 		}
 		
 		@Override
@@ -44,6 +44,12 @@ import ca.uqac.lif.cep.objectfactory.SettingsSet;
  * In other words, the muxer provides a way to merge <i>n</i> input traces
  * into a single one, preserving the relative ordering of events coming
  * from the same input trace.
+ * <p>
+ * In pull mode, the muxer never blocks on one of its inputs while
+ * another one has an event to give. When none of them has anything
+ * for the moment, it waits according to its
+ * {@link ca.uqac.lif.cep.WaitStrategy}; give it the same strategy
+ * as its sources to have it woken up when one of them gets new data.
  * @author Sylvain Hallé
  *
  */
@@ -119,19 +125,7 @@ public class Multiplexer extends Processor
 		@Override
 		public Object pull()
 		{
-			if (!m_outputQueues[0].isEmpty())
-			{
-				return m_outputQueues[0].remove();
-			}
-			for (Pullable p : m_inputPullables)
-			{
-				Object o = p.pull();
-				if (o != null)
-				{
-					m_outputQueues[0].add(o);
-				}
-			}
-			if (!m_outputQueues[0].isEmpty())
+			if (hasNext())
 			{
 				return m_outputQueues[0].remove();
 			}
@@ -183,33 +177,54 @@ public class Multiplexer extends Processor
 			{
 				return true;
 			}
-			boolean all_no = true;
-			NextStatus out = NextStatus.MAYBE;
-			for (int i = 0; i < Pullable.s_maxRetries; i++)
+			// Poll the inputs without blocking on any of them, so that an
+			// idle input does not hold back the others
+			long deadline = 0;
+			for (int tries = 0; tries < Pullable.s_maxRetries; tries++)
 			{
+				long signals = m_waitStrategy.getSignalCount();
+				boolean all_no = true;
 				for (Pullable p : m_inputPullables)
 				{
-					boolean ns = p.hasNext();
-					if (ns != false)
+					NextStatus ns = p.hasNextSoft();
+					if (ns != NextStatus.NO)
 					{
 						all_no = false;
 					}
-					if (ns == true)
+					if (ns == NextStatus.YES)
 					{
-						// We don't do a "break" here.
-						// We must go through ALL pullables, even if we encounter one
-						// that says yes. Otherwise, we might end up pulling events from
-						// the same pullable all the time.
-						out = NextStatus.YES;
+						// Again, go through all pullables so that every input
+						// gets its turn
+						Object o = p.pullSoft();
+						if (o != null)
+						{
+							m_outputQueues[0].add(o);
+						}
 					}
 				}
+				if (!m_outputQueues[0].isEmpty())
+				{
+					return true;
+				}
 				if (all_no)
 				{
 					return false;
 				}
-				if (out == NextStatus.YES)
+				if (tries < Pullable.s_softRetries)
 				{
-					return true;
+					// An input answering MAYBE may still have data queued
+					// upstream: ask again before waiting
+					continue;
+				}
+				// Some input may produce something later: wait for one of
+				// them to signal new data
+				if (deadline == 0)
+				{
+					deadline = m_waitStrategy.getDeadline();
+				}
+				if (!m_waitStrategy.await(signals, deadline))
+				{
+					return false;
 				}
 			}
 			// We went through the maximum number of retries without getting
@@ -256,6 +271,13 @@ public class Multiplexer extends Processor
 			return this;
 		}
 
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			m_outputPushables[0].pushAll(events);
+			return this;
+		}
+
 		@Override
 		public Processor getProcessor() 
 		{
@@ -0,0 +1,455 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.Function;
+
+/**
+ * Merges multiple traces sorted by timestamp into a single trace sorted
+ * by timestamp. Contrarily to the {@link Multiplexer}, which outputs
+ * events in the order it gets them, this processor outputs at each step
+ * the event with the smallest timestamp among the next event of every
+ * input. The timestamp of an event is computed by a {@link Function};
+ * timestamps are numbers, or otherwise {@link Comparable} objects.
+ * Events with the same timestamp are output in the order of their
+ * input.
+ * <p>
+ * The next event of each input is kept in a binary heap ordered by
+ * timestamp, so that outputting an event takes a time proportional to
+ * the logarithm of the number of inputs.
+ * <p>
+ * An event can only be output once every input has given its next
+ * event, or said it has none (see {@link Pullable.NextStatus}):
+ * <ul>
+ * <li>In pull mode, the processor never blocks on one of its inputs;
+ * while an input has nothing for the moment, it waits according to its
+ * {@link ca.uqac.lif.cep.WaitStrategy}. If the input still has nothing
+ * when the strategy gives up, the event with the smallest timestamp
+ * among the other inputs is output anyway. An event arriving on the
+ * late input afterwards may then be out of order.</li>
+ * <li>In push mode, events are kept until every input has received one.
+ * Call {@link #flush()} to output those left when the traces end.</li>
+ * </ul>
+ * The inputs are expected to be sorted; this processor does not sort
+ * the events of the same input.
+ *
+ * @author Sylvain Hallé
+ */
+public class OrderedMultiplexer extends Processor
+{
+	/**
+	 * The function computing the timestamp of an event
+	 */
+	protected final Function m_timestampFunction;
+
+	/**
+	 * The inputs whose next event is known, as a binary heap ordered by
+	 * the timestamp of this event
+	 */
+	protected final int[] m_heap;
+
+	/**
+	 * The number of inputs in the heap
+	 */
+	protected int m_heapSize = 0;
+
+	/**
+	 * The next event of each input, or <code>null</code> if it is not
+	 * known yet
+	 */
+	protected final Object[] m_heads;
+
+	/**
+	 * The timestamp of the next event of each input
+	 */
+	protected final Object[] m_timestamps;
+
+	/**
+	 * Instantiates a merger
+	 * @param timestamp The function computing the timestamp of an event
+	 * @param in_arity The number of traces to merge
+	 */
+	public OrderedMultiplexer(Function timestamp, int in_arity)
+	{
+		super(in_arity, 1);
+		m_timestampFunction = timestamp;
+		m_heap = new int[in_arity];
+		m_heads = new Object[in_arity];
+		m_timestamps = new Object[in_arity];
+	}
+
+	@Override
+	public Pushable getPushableInput(int index)
+	{
+		return new MergePushable(index);
+	}
+
+	@Override
+	public Pullable getPullableOutput(int index)
+	{
+		// We ignore index, as the merger is of output arity 1
+		return new MergePullable();
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		m_heapSize = 0;
+		Arrays.fill(m_heads, null);
+		Arrays.fill(m_timestamps, null);
+		m_timestampFunction.reset();
+	}
+
+	@Override
+	public OrderedMultiplexer clone()
+	{
+		return new OrderedMultiplexer(m_timestampFunction.clone(), getInputArity());
+	}
+
+	/**
+	 * Outputs, in push mode, the events kept because some input has not
+	 * received anything yet
+	 */
+	public void flush()
+	{
+		while (m_heapSize > 0)
+		{
+			m_outputPushables[0].push(poll());
+		}
+	}
+
+	/**
+	 * Makes an event the next event of an input
+	 * @param index The input number
+	 * @param o The event
+	 */
+	protected void offer(int index, Object o)
+	{
+		m_heads[index] = o;
+		m_timestamps[index] = m_timestampFunction.evaluate(new Object[]{o})[0];
+		int pos = m_heapSize++;
+		// Sift up
+		while (pos > 0)
+		{
+			int parent = (pos - 1) >> 1;
+			if (!before(index, m_heap[parent]))
+			{
+				break;
+			}
+			m_heap[pos] = m_heap[parent];
+			pos = parent;
+		}
+		m_heap[pos] = index;
+	}
+
+	/**
+	 * Removes the event with the smallest timestamp. In push mode, the
+	 * next event received on the same input takes its place.
+	 * @return The event
+	 */
+	protected Object poll()
+	{
+		int index = m_heap[0];
+		Object o = m_heads[index];
+		m_heads[index] = null;
+		m_timestamps[index] = null;
+		int last = m_heap[--m_heapSize];
+		// Sift down
+		int pos = 0;
+		while (true)
+		{
+			int child = 2 * pos + 1;
+			if (child >= m_heapSize)
+			{
+				break;
+			}
+			if (child + 1 < m_heapSize && before(m_heap[child + 1], m_heap[child]))
+			{
+				child++;
+			}
+			if (!before(m_heap[child], last))
+			{
+				break;
+			}
+			m_heap[pos] = m_heap[child];
+			pos = child;
+		}
+		if (m_heapSize > 0)
+		{
+			m_heap[pos] = last;
+		}
+		Queue<Object> waiting = m_inputQueues[index];
+		if (!waiting.isEmpty())
+		{
+			offer(index, waiting.remove());
+		}
+		return o;
+	}
+
+	/**
+	 * Determines if the next event of an input must be output before that
+	 * of another input
+	 * @param i The first input number
+	 * @param j The second input number
+	 * @return <code>true</code> if the event of input <code>i</code> goes
+	 *   first
+	 */
+	protected boolean before(int i, int j)
+	{
+		int c = compare(m_timestamps[i], m_timestamps[j]);
+		return c < 0 || (c == 0 && i < j);
+	}
+
+	/**
+	 * Compares two timestamps
+	 * @param x The first timestamp
+	 * @param y The second timestamp
+	 * @return A negative number, zero or a positive number if
+	 *   <code>x</code> is smaller than, equal to, or greater than
+	 *   <code>y</code>
+	 */
+	@SuppressWarnings("unchecked")
+	protected static int compare(Object x, Object y)
+	{
+		if (x instanceof Number && y instanceof Number)
+		{
+			Number n_x = (Number) x;
+			Number n_y = (Number) y;
+			if (isIntegral(n_x) && isIntegral(n_y))
+			{
+				long l_x = n_x.longValue();
+				long l_y = n_y.longValue();
+				return l_x < l_y ? -1 : (l_x == l_y ? 0 : 1);
+			}
+			return Double.compare(n_x.doubleValue(), n_y.doubleValue());
+		}
+		return ((Comparable<Object>) x).compareTo(y);
+	}
+
+	private static boolean isIntegral(Number n)
+	{
+		return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+	}
+
+	protected final class MergePullable implements Pullable
+	{
+		public MergePullable()
+		{
+			super();
+		}
+
+		@Override
+		public void remove()
+		{
+			// Cannot remove an event on a pullable
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object pullSoft()
+		{
+			if (fill() == NextStatus.YES)
+			{
+				return poll();
+			}
+			return null;
+		}
+
+		@Override
+		public Object pull()
+		{
+			if (hasNext())
+			{
+				return poll();
+			}
+			return null;
+		}
+
+		@Override
+		public final Object next()
+		{
+			return pull();
+		}
+
+		@Override
+		public NextStatus hasNextSoft()
+		{
+			return fill();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			long deadline = 0;
+			for (int tries = 0; tries < Pullable.s_maxRetries; tries++)
+			{
+				long signals = m_waitStrategy.getSignalCount();
+				NextStatus ns = fill();
+				if (ns == NextStatus.YES)
+				{
+					return true;
+				}
+				if (ns == NextStatus.NO)
+				{
+					return false;
+				}
+				if (tries < Pullable.s_softRetries)
+				{
+					// An input answering MAYBE may still have data queued
+					// upstream: ask again before waiting
+					continue;
+				}
+				// Some input may produce something later: wait for one of
+				// them to signal new data
+				if (deadline == 0)
+				{
+					deadline = m_waitStrategy.getDeadline();
+				}
+				if (!m_waitStrategy.await(signals, deadline))
+				{
+					break;
+				}
+			}
+			// Stop waiting for the inputs that have nothing, and output the
+			// smallest of the events we have
+			return m_heapSize > 0;
+		}
+
+		/**
+		 * Gets the next event of every input that has one, without
+		 * blocking
+		 * @return {@link NextStatus#YES} if the event with the smallest
+		 *   timestamp can be output, {@link NextStatus#NO} if no input has
+		 *   anything to give, {@link NextStatus#MAYBE} if some input may
+		 *   give an event later
+		 */
+		protected NextStatus fill()
+		{
+			boolean waiting = false;
+			for (int i = 0; i < m_inputPullables.length; i++)
+			{
+				if (m_heads[i] != null)
+				{
+					continue;
+				}
+				Pullable p = m_inputPullables[i];
+				NextStatus ns = p.hasNextSoft();
+				if (ns == NextStatus.YES)
+				{
+					Object o = p.pullSoft();
+					if (o != null)
+					{
+						offer(i, o);
+						continue;
+					}
+					waiting = true;
+				}
+				else if (ns == NextStatus.MAYBE)
+				{
+					waiting = true;
+				}
+			}
+			if (waiting)
+			{
+				return NextStatus.MAYBE;
+			}
+			return m_heapSize > 0 ? NextStatus.YES : NextStatus.NO;
+		}
+
+		@Override
+		public Processor getProcessor() 
+		{
+			return OrderedMultiplexer.this;
+		}
+
+		@Override
+		public int getPosition() 
+		{
+			return 0;
+		}
+
+		@Override
+		public Iterator<Object> iterator() 
+		{
+			return this;
+		}
+	}
+
+	protected final class MergePushable implements Pushable
+	{
+		/**
+		 * The index this pushable is linked to
+		 */
+		private final int m_index;
+
+		public MergePushable(int index)
+		{
+			super();
+			m_index = index;
+		}
+
+		@Override
+		public Pushable push(Object o)
+		{
+			if (m_heads[m_index] == null)
+			{
+				offer(m_index, o);
+			}
+			else
+			{
+				m_inputQueues[m_index].add(o);
+			}
+			// Output events as long as every input has one
+			while (m_heapSize == m_heads.length)
+			{
+				m_outputPushables[0].push(poll());
+			}
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			for (Object o : events)
+			{
+				push(o);
+			}
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor() 
+		{
+			return OrderedMultiplexer.this;
+		}
+
+		@Override
+		public int getPosition() 
+		{
+			return m_index;
+		}
+	}
+}
@@ -0,0 +1,609 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ca.uqac.lif.cep.AsyncPushable;
+import ca.uqac.lif.cep.Backpressure;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.functions.Function;
+import ca.uqac.lif.cep.tmf.Slicer.AllSlices;
+
+/**
+ * {@link Slicer} whose slices are processed by several threads. Slice
+ * IDs are spread over a number of <em>partitions</em> according to
+ * their hash code; each partition has its own thread and its own
+ * slices, and the events of a slice are always given to the same
+ * partition, in the order in which they arrived. An event the slicing
+ * function sends to all slices (by returning <code>null</code> or
+ * {@link AllSlices}) is given to every partition.
+ * <p>
+ * The events produced by the slices are output either in the order of
+ * the input events that caused them ({@link Ordering#ARRIVAL}), or as
+ * soon as they are produced ({@link Ordering#UNORDERED}), which is
+ * faster but only keeps the order of the events of each slice.
+ * <p>
+ * When its outputs are connected, the slicer pushes its output events
+ * from the partitions' threads, and its input pushables return as soon
+ * as the event is handed to a partition; {@link #flush()} waits until
+ * all the events received so far have been processed. When it is
+ * pulled, it waits for the slices to process each event before
+ * returning the result.
+ * <p>
+ * The threads are started with the first event, and stopped by
+ * {@link #shutdown()}. They are not stopped when the slicer is reset,
+ * nor when it is no longer used: a slicer that received events must be
+ * shut down to release its threads. This also holds for its clones,
+ * which have their own partitions and start their own threads.
+ * <p>
+ * An exception thrown by a slice does not stop its partition, and does
+ * not hold back the events of the input fronts that come after it. The
+ * exception is thrown back by the next call to the slicer's pushable,
+ * or by {@link #flush()} or {@link #shutdown()}.
+ *
+ * @author Sylvain Hallé
+ */
+public class ParallelSlicer extends SingleProcessor
+{
+	/**
+	 * In what order the events produced by the slices are output
+	 */
+	public static enum Ordering
+	{
+		/**
+		 * In the order of the input events that caused them
+		 */
+		ARRIVAL,
+		/**
+		 * As soon as they are produced
+		 */
+		UNORDERED
+	};
+
+	/**
+	 * The default number of events waiting to be processed by a
+	 * partition
+	 */
+	protected static final int s_defaultCapacity = 1024;
+
+	/**
+	 * The slicing function
+	 */
+	protected final Function m_slicingFunction;
+
+	/**
+	 * The processor cloned for each slice
+	 */
+	protected final Processor m_processor;
+
+	/**
+	 * The order in which output events are produced
+	 */
+	protected final Ordering m_ordering;
+
+	/**
+	 * The partitions
+	 */
+	protected final Partition[] m_partitions;
+
+	/**
+	 * The pushables handing events over to the threads of the partitions,
+	 * or <code>null</code> if the threads are not started
+	 */
+	protected AsyncPushable[] m_workers = null;
+
+	/**
+	 * The number of the next input front
+	 */
+	protected long m_sequence = 0;
+
+	/**
+	 * The number of the next input front whose results are to be output,
+	 * when they are output in order
+	 */
+	protected long m_nextOutput = 0;
+
+	/**
+	 * The results of the input fronts that cannot be output yet, indexed
+	 * by the number of the front
+	 */
+	protected final Map<Long,Pending> m_pending = new HashMap<Long,Pending>();
+
+	/**
+	 * The output fronts waiting to be returned, when the slicer is pulled
+	 */
+	protected final Queue<Object[]> m_ready = new ConcurrentLinkedQueue<Object[]>();
+
+	/**
+	 * Creates a parallel slicer, with one partition per available
+	 * processor, outputting events in arrival order
+	 * @param func The slicing function
+	 * @param proc The processor to clone for each slice
+	 */
+	public ParallelSlicer(Function func, Processor proc)
+	{
+		this(func, proc, Runtime.getRuntime().availableProcessors(), Ordering.ARRIVAL);
+	}
+
+	/**
+	 * Creates a parallel slicer
+	 * @param func The slicing function
+	 * @param proc The processor to clone for each slice
+	 * @param partitions The number of partitions, and thus of threads
+	 * @param ordering In what order the events produced by the slices
+	 *   are output
+	 */
+	public ParallelSlicer(Function func, Processor proc, int partitions, Ordering ordering)
+	{
+		super(proc.getInputArity(), proc.getOutputArity());
+		if (partitions < 1)
+		{
+			throw new IllegalArgumentException("There must be at least one partition");
+		}
+		m_slicingFunction = func;
+		m_processor = proc;
+		m_ordering = ordering;
+		m_partitions = new Partition[partitions];
+		for (int i = 0; i < partitions; i++)
+		{
+			m_partitions[i] = new Partition(i);
+		}
+	}
+
+	@Override
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+	{
+		Object slice_id = m_slicingFunction.evaluate(inputs, m_context)[0];
+		if (m_workers == null)
+		{
+			start();
+		}
+		long seq = m_sequence++;
+		if (slice_id instanceof AllSlices || slice_id == null)
+		{
+			expect(seq, m_partitions.length);
+			for (AsyncPushable worker : m_workers)
+			{
+				worker.push(new Task(seq, null, inputs));
+			}
+		}
+		else
+		{
+			expect(seq, 1);
+			m_workers[getPartition(slice_id)].push(new Task(seq, slice_id, inputs));
+		}
+		if (!isPushed())
+		{
+			// Nobody will take the events from the threads: wait for them
+			flush();
+			Object[] front;
+			while ((front = m_ready.poll()) != null)
+			{
+				outputs.add(front);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the partition of a slice
+	 * @param slice_id The slice ID
+	 * @return The partition number
+	 */
+	protected int getPartition(Object slice_id)
+	{
+		int h = slice_id.hashCode();
+		// Spread the bits, as some hash codes vary little in the low bits
+		h ^= (h >>> 16);
+		return (h & 0x7fffffff) % m_partitions.length;
+	}
+
+	/**
+	 * Determines if the slicer's outputs are connected to other
+	 * processors
+	 * @return <code>true</code> if they are
+	 */
+	protected boolean isPushed()
+	{
+		for (Pushable p : m_outputPushables)
+		{
+			if (p == null)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the number of partitions that will process an input front
+	 * @param seq The number of the front
+	 * @param count The number of partitions
+	 */
+	protected void expect(long seq, int count)
+	{
+		if (m_ordering == Ordering.ARRIVAL)
+		{
+			synchronized (m_pending)
+			{
+				m_pending.put(seq, new Pending(count));
+			}
+		}
+	}
+
+	/**
+	 * Called by a partition when it has processed an input front
+	 * @param seq The number of the front
+	 * @param results The fronts produced by the slices of the partition
+	 */
+	protected void done(long seq, List<Object[]> results)
+	{
+		if (m_ordering == Ordering.UNORDERED)
+		{
+			synchronized (m_pending)
+			{
+				for (Object[] front : results)
+				{
+					deliver(front);
+				}
+			}
+			return;
+		}
+		synchronized (m_pending)
+		{
+			Pending p = m_pending.get(seq);
+			p.m_results.addAll(results);
+			p.m_remaining--;
+			while ((p = m_pending.get(m_nextOutput)) != null && p.m_remaining == 0)
+			{
+				m_pending.remove(m_nextOutput);
+				m_nextOutput++;
+				for (Object[] front : p.m_results)
+				{
+					deliver(front);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Outputs a front produced by a slice
+	 * @param front The front
+	 */
+	protected void deliver(Object[] front)
+	{
+		if (!isPushed())
+		{
+			m_ready.add(front);
+			return;
+		}
+		for (int i = 0; i < m_outputPushables.length; i++)
+		{
+			m_outputPushables[i].push(front[i]);
+		}
+	}
+
+	/**
+	 * Starts the threads of the partitions
+	 */
+	protected synchronized void start()
+	{
+		if (m_workers != null)
+		{
+			return;
+		}
+		AsyncPushable[] workers = new AsyncPushable[m_partitions.length];
+		for (int i = 0; i < workers.length; i++)
+		{
+			workers[i] = new AsyncPushable(m_partitions[i], s_defaultCapacity, Backpressure.BLOCK).start();
+		}
+		m_workers = workers;
+	}
+
+	/**
+	 * Waits until all the events received so far have been processed by
+	 * the slices, and their results output
+	 * @throws RuntimeException The first exception thrown by a slice
+	 *   since the last one was reported
+	 */
+	public void flush()
+	{
+		AsyncPushable[] workers = m_workers;
+		if (workers == null)
+		{
+			return;
+		}
+		for (AsyncPushable worker : workers)
+		{
+			worker.flush();
+		}
+	}
+
+	/**
+	 * Processes the remaining events, and stops the threads of the
+	 * partitions. The slicer starts new threads if it receives events
+	 * afterwards.
+	 * @throws RuntimeException The first exception thrown by a slice
+	 *   since the last one was reported
+	 */
+	public synchronized void shutdown()
+	{
+		if (m_workers == null)
+		{
+			return;
+		}
+		for (AsyncPushable worker : m_workers)
+		{
+			worker.close();
+		}
+		m_workers = null;
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			for (Partition p : m_partitions)
+			{
+				p.clear();
+			}
+			synchronized (m_pending)
+			{
+				m_pending.clear();
+				m_sequence = 0;
+				m_nextOutput = 0;
+			}
+			m_ready.clear();
+			m_slicingFunction.reset();
+		}
+	}
+
+	/**
+	 * Gets the number of slices the slicer currently handles. Slices
+	 * created by events that are still being processed may not be
+	 * counted; call {@link #flush()} first to get an exact number.
+	 * @return The number of slices
+	 */
+	public int getSliceCount()
+	{
+		int count = 0;
+		for (Partition p : m_partitions)
+		{
+			count += p.getSliceCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of partitions
+	 * @return The number of partitions
+	 */
+	public int getPartitionCount()
+	{
+		return m_partitions.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The clone has its own partitions; it starts its own threads with
+	 * the first event it receives, and must be shut down separately.
+	 */
+	@Override
+	public ParallelSlicer clone()
+	{
+		return new ParallelSlicer(m_slicingFunction.clone(m_context), m_processor.clone(), m_partitions.length, m_ordering);
+	}
+
+	/**
+	 * An input front given to a partition
+	 */
+	protected static class Task
+	{
+		/**
+		 * The number of the front
+		 */
+		final long m_seq;
+
+		/**
+		 * The slice the front is for, or <code>null</code> for all slices
+		 */
+		final Object m_sliceId;
+
+		/**
+		 * The front
+		 */
+		final Object[] m_inputs;
+
+		Task(long seq, Object slice_id, Object[] inputs)
+		{
+			super();
+			m_seq = seq;
+			m_sliceId = slice_id;
+			m_inputs = inputs;
+		}
+	}
+
+	/**
+	 * The results of an input front that are not output yet
+	 */
+	protected static class Pending
+	{
+		/**
+		 * The number of partitions that have not yet processed the front
+		 */
+		int m_remaining;
+
+		/**
+		 * The fronts produced so far by the slices on this front
+		 */
+		final List<Object[]> m_results = new ArrayList<Object[]>(1);
+
+		Pending(int remaining)
+		{
+			super();
+			m_remaining = remaining;
+		}
+	}
+
+	/**
+	 * A group of slices processed by the same thread. The thread pushes
+	 * {@link Task}s into it.
+	 */
+	protected class Partition implements Pushable
+	{
+		/**
+		 * The partition number
+		 */
+		private final int m_index;
+
+		/**
+		 * The slices of the partition
+		 */
+		private final SliceTable m_slices = new SliceTable();
+
+		/**
+		 * The number of slices, readable from other threads
+		 */
+		private volatile int m_sliceCount = 0;
+
+		Partition(int index)
+		{
+			super();
+			m_index = index;
+		}
+
+		@Override
+		public Pushable push(Object o)
+		{
+			Task t = (Task) o;
+			List<Object[]> results = new ArrayList<Object[]>(1);
+			try
+			{
+				if (t.m_sliceId == null)
+				{
+					for (int i = 0; i < m_slices.size(); i++)
+					{
+						process(m_slices.get(i), t.m_inputs, results);
+					}
+				}
+				else
+				{
+					SliceTable.Slice slice = m_slices.get(t.m_sliceId);
+					if (slice == null)
+					{
+						// First time we see this value: create new slice
+						Processor p = m_processor.clone();
+						m_processor.copyQueueSettings(p);
+						QueueSink sink = new QueueSink(getOutputArity());
+						try
+						{
+							Connector.connect(p, sink);
+						}
+						catch (ConnectorException e)
+						{
+							// Cannot happen: the sink has the processor's output arity
+							throw new IllegalStateException(e);
+						}
+						slice = new SliceTable.Slice(t.m_sliceId, p, sink);
+						m_slices.put(slice);
+						m_sliceCount = m_slices.size();
+					}
+					process(slice, t.m_inputs, results);
+				}
+			}
+			finally
+			{
+				// Even if a slice failed, the front must be marked as done,
+				// or the fronts after it would never be output; the
+				// exception then goes back to the slicer's caller through
+				// the partition's thread
+				done(t.m_seq, results);
+			}
+			return this;
+		}
+
+		/**
+		 * Gives an input front to a slice
+		 * @param slice The slice
+		 * @param inputs The front
+		 * @param results The list where the front produced by the slice
+		 *   is added, if any
+		 */
+		private void process(SliceTable.Slice slice, Object[] inputs, List<Object[]> results)
+		{
+			Object[] out = slice.push(inputs);
+			if (!allNull(out))
+			{
+				results.add(out);
+			}
+		}
+
+		/**
+		 * Removes all the slices. Must not be called while the thread is
+		 * processing events.
+		 */
+		void clear()
+		{
+			m_slices.clear();
+			m_sliceCount = 0;
+		}
+
+		int getSliceCount()
+		{
+			return m_sliceCount;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			for (Object o : events)
+			{
+				push(o);
+			}
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return ParallelSlicer.this;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return m_index;
+		}
+	}
+}
@@ -37,9 +37,14 @@ public class Passthrough extends SingleProcessor
 	}
 
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
-		return wrapVector(inputs);
+		if (allNull(inputs))
+		{
+			return false;
+		}
+		outputs.add(inputs);
+		return true;
 	}
 	
 	@Override
@@ -37,14 +37,15 @@ public class Prefix extends Trim
 	}
 	
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
 		m_eventsReceived++;
-		if (m_eventsReceived <= m_delay)
+		if (m_eventsReceived <= m_delay && !allNull(inputs))
 		{
-			return wrapVector(inputs);
+			outputs.add(inputs);
+			return true;
 		}
-		return null;
+		return false;
 	}
 	
 	@Override
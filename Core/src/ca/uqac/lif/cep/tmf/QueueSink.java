@@ -20,8 +20,15 @@ package ca.uqac.lif.cep.tmf;
 import java.util.ArrayDeque;
 import java.util.Queue;
 
+import ca.uqac.lif.cep.Backpressure;
+import ca.uqac.lif.cep.BoundedQueue;
+import ca.uqac.lif.cep.SpillQueue;
+
 /**
- * Sink that accumulates events into queues.
+ * Sink that accumulates events into queues. By default the queues are
+ * unbounded; they can be given a capacity with
+ * {@link #setCapacity(int, Backpressure)}, or be allowed to move
+ * events to disk when they grow too large with {@link #setSpill(int)}.
  * 
  * @author Sylvain Hallé
  *
@@ -29,6 +36,23 @@ import java.util.Queue;
 public class QueueSink extends Sink
 {
 	protected Queue<Object>[] m_queues;
+
+	/**
+	 * The maximum number of events in each queue, or 0 if the queues
+	 * are unbounded
+	 */
+	protected int m_capacity = 0;
+
+	/**
+	 * What to do when an event arrives and its queue is full
+	 */
+	protected Backpressure m_backpressure = Backpressure.BLOCK;
+
+	/**
+	 * The number of events each queue keeps in memory before writing to
+	 * disk, or 0 if the queues stay in memory
+	 */
+	protected int m_spillThreshold = 0;
 	
 	public QueueSink(int in_arity)
 	{
@@ -46,13 +70,86 @@ public class QueueSink extends Sink
 	public void reset()
 	{
 		super.reset();
+		if (m_queues != null)
+		{
+			// Deletes the files of queues that spill to disk
+			for (Queue<Object> q : m_queues)
+			{
+				q.clear();
+			}
+		}
 		int arity = getInputArity();
 		m_queues = new Queue[arity];
 		for (int i = 0; i < arity; i++)
 		{
-			m_queues[i] = new ArrayDeque<Object>();
+			if (m_spillThreshold > 0)
+			{
+				m_queues[i] = new SpillQueue<Object>(m_spillThreshold);
+			}
+			else if (m_capacity > 0)
+			{
+				m_queues[i] = new BoundedQueue<Object>(m_capacity, m_backpressure);
+			}
+			else
+			{
+				m_queues[i] = new ArrayDeque<Object>();
+			}
+		}
+	}
+
+	/**
+	 * Limits the number of events in each of the sink's queues. Events
+	 * already in the queues are kept.
+	 * @param capacity The maximum number of events in a queue
+	 * @param backpressure What to do when an event arrives and its
+	 *   queue is full
+	 * @return This sink
+	 */
+	public QueueSink setCapacity(int capacity, Backpressure backpressure)
+	{
+		m_capacity = capacity;
+		m_backpressure = backpressure;
+		m_spillThreshold = 0;
+		for (int i = 0; i < m_queues.length; i++)
+		{
+			m_queues[i] = bound(m_queues[i], capacity, backpressure);
+		}
+		return this;
+	}
+
+	/**
+	 * Lets the sink's queues move events to disk when they grow too
+	 * large, instead of keeping them all in memory. This is useful when
+	 * the queues are emptied more slowly than they are filled. Events
+	 * already in the queues are kept; events received by the sink must
+	 * be serializable.
+	 * @param threshold The number of events each queue keeps in memory
+	 * @return This sink
+	 */
+	public QueueSink setSpill(int threshold)
+	{
+		m_spillThreshold = threshold;
+		m_capacity = 0;
+		for (int i = 0; i < m_queues.length; i++)
+		{
+			m_queues[i] = spill(m_queues[i], threshold);
 		}
+		return this;
+	}
 
+	/**
+	 * Gets the largest number of events that were ever in one of the
+	 * sink's queues
+	 * @param i The position of the queue
+	 * @return The number of events, or -1 if the queues are not bounded
+	 */
+	public int getHighWaterMark(int i)
+	{
+		if (m_queues[i] instanceof BoundedQueue)
+		{
+			return ((BoundedQueue<Object>) m_queues[i]).getHighWaterMark();
+		}
+		return -1;
 	}
 
 	@Override
@@ -117,6 +214,15 @@ public class QueueSink extends Sink
 	@Override
 	public QueueSink clone()
 	{
-		return new QueueSink(getInputArity());
+		QueueSink out = new QueueSink(getInputArity());
+		if (m_spillThreshold > 0)
+		{
+			out.setSpill(m_spillThreshold);
+		}
+		else if (m_capacity > 0)
+		{
+			out.setCapacity(m_capacity, m_backpressure);
+		}
+		return out;
 	}
 }
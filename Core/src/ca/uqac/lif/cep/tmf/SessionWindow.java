@@ -0,0 +1,253 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.Queue;
+
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.functions.Function;
+
+/**
+ * Applies a processor &phi; on <em>sessions</em>: groups of consecutive
+ * events separated by a gap of inactivity. When a session closes, the
+ * processor outputs the last event &phi; produced on that session; the
+ * next session is then processed by &phi; from a fresh state.
+ * <p>
+ * The gap can be measured in two ways:
+ * <ul>
+ * <li>in time: a function extracts a timestamp from each input front,
+ * and a session closes when the time elapsed since its last event
+ * exceeds the gap</li>
+ * <li>in events: a function tells whether each input front is an
+ * activity, and a session closes after a number of consecutive fronts
+ * that are not. These fronts are not part of any session.</li>
+ * </ul>
+ * Contrarily to a {@link Window}, events are given to &phi; as they
+ * arrive, rather than when the session closes, and are not kept by this
+ * processor. The state of a session is freed by resetting &phi; as soon
+ * as the session closes.
+ * <p>
+ * A session only closes when an event shows that the gap has elapsed:
+ * in time, the session ending before an event is output upon receiving
+ * that event. The session that is open when the stream ends is never
+ * output.
+ *
+ * @author Sylvain Hallé
+ */
+public class SessionWindow extends SingleProcessor
+{
+	/**
+	 * The processor to apply on each session
+	 */
+	protected final Processor m_processor;
+
+	/**
+	 * The function extracting a timestamp or telling the activity of
+	 * each input front
+	 */
+	protected final Function m_function;
+
+	/**
+	 * Whether the gap is measured in time, or in number of events
+	 */
+	protected final boolean m_timed;
+
+	/**
+	 * The gap closing a session
+	 */
+	protected final double m_gap;
+
+	/**
+	 * The internal processor's input pushables
+	 */
+	protected Pushable[] m_innerInputs;
+
+	/**
+	 * The sink receiving the events produced by the internal processor
+	 */
+	protected final SinkLast m_sink;
+
+	/**
+	 * Whether a session is open
+	 */
+	protected boolean m_open;
+
+	/**
+	 * The timestamp of the last event of the current session
+	 */
+	protected double m_lastTime;
+
+	/**
+	 * The number of consecutive fronts that were not an activity
+	 */
+	protected int m_inactive;
+
+	/**
+	 * Creates a session window whose gap is measured in time
+	 * @param in_processor The processor to apply on each session
+	 * @param timestamp A function producing a number from each input
+	 *   front of the processor. Timestamps must not decrease.
+	 * @param gap The time after which a session closes
+	 */
+	public SessionWindow(Processor in_processor, Function timestamp, double gap)
+	{
+		this(in_processor, timestamp, gap, true);
+	}
+
+	/**
+	 * Creates a session window whose gap is measured in events
+	 * @param in_processor The processor to apply on each session
+	 * @param gap The number of consecutive fronts that are not an
+	 *   activity after which a session closes
+	 * @param activity A function producing a Boolean from each input
+	 *   front of the processor, telling whether it is an activity
+	 */
+	public SessionWindow(Processor in_processor, int gap, Function activity)
+	{
+		this(in_processor, activity, gap, false);
+	}
+
+	/**
+	 * Creates a session window
+	 * @param in_processor The processor to apply on each session
+	 * @param function The function producing a timestamp or an
+	 *   activity from each input front
+	 * @param gap The gap closing a session
+	 * @param timed Whether the gap is measured in time
+	 */
+	protected SessionWindow(Processor in_processor, Function function, double gap, boolean timed)
+	{
+		super(in_processor.getInputArity(), in_processor.getOutputArity());
+		if (gap <= 0)
+		{
+			throw new IllegalArgumentException("The gap must be positive");
+		}
+		m_processor = in_processor;
+		m_function = function;
+		m_gap = gap;
+		m_timed = timed;
+		m_sink = new SinkLast(in_processor.getOutputArity());
+		try
+		{
+			Connector.connect(m_processor, m_sink);
+		}
+		catch (ConnectorException e)
+		{
+			// Cannot happen: the sink has the processor's output arity
+			throw new IllegalArgumentException(e);
+		}
+		m_innerInputs = new Pushable[getInputArity()];
+		for (int i = 0; i < m_innerInputs.length; i++)
+		{
+			m_innerInputs[i] = m_processor.getPushableInput(i);
+		}
+		reset();
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		closeSession();
+		m_function.reset();
+	}
+
+	@Override
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+	{
+		Object value = m_function.evaluate(inputs, m_context)[0];
+		if (m_timed)
+		{
+			double time = ((Number) value).doubleValue();
+			if (m_open && time - m_lastTime > m_gap)
+			{
+				emit(outputs);
+			}
+			m_lastTime = time;
+		}
+		else if (!Boolean.TRUE.equals(value))
+		{
+			if (m_open && ++m_inactive >= m_gap)
+			{
+				emit(outputs);
+			}
+			return true;
+		}
+		m_inactive = 0;
+		m_open = true;
+		for (int i = 0; i < inputs.length; i++)
+		{
+			m_innerInputs[i].push(inputs[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * Outputs the result of the internal processor on the current
+	 * session, and closes it
+	 * @param outputs The queue into which the output front is added
+	 */
+	protected void emit(Queue<Object[]> outputs)
+	{
+		Object[] out = m_sink.getLast();
+		if (out != null)
+		{
+			outputs.add(out);
+		}
+		closeSession();
+	}
+
+	/**
+	 * Closes the current session and frees its state
+	 */
+	protected void closeSession()
+	{
+		m_processor.reset();
+		m_sink.reset();
+		m_open = false;
+		m_inactive = 0;
+	}
+
+	/**
+	 * Determines if a session is currently open
+	 * @return <code>true</code> if a session is open
+	 */
+	public boolean isOpen()
+	{
+		return m_open;
+	}
+
+	/**
+	 * Gets the gap closing a session
+	 * @return The gap, in time or in number of events
+	 */
+	public double getGap()
+	{
+		return m_gap;
+	}
+
+	@Override
+	public SessionWindow clone()
+	{
+		return new SessionWindow(m_processor.clone(), m_function.clone(), m_gap, m_timed);
+	}
+}
@@ -0,0 +1,607 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.BinaryFunction;
+
+/**
+ * Aggregates a single stream over windows of several widths at once.
+ * Each output of this processor corresponds to one width, added with
+ * {@link #addWidth(int)}, and produces the same events as a
+ * {@link Window} of that width on a processor accumulating its input
+ * with the processor's function.
+ * <p>
+ * The processor keeps a single buffer, as large as the widest window,
+ * and a single set of partial results that serves all the widths:
+ * <ul>
+ * <li>if the inverse of the function is exact (see
+ * {@link BinaryFunction#isInverseExact()}), the result of each width
+ * is updated in constant time, by applying the function to the new
+ * event and its inverse to the event leaving the window</li>
+ * <li>otherwise, the function must be associative; the events are the
+ * leaves of a binary tree whose nodes hold the result of the function
+ * on the leaves below them, and the result of any window is obtained by
+ * combining a logarithmic number of nodes</li>
+ * </ul>
+ * The {@link ca.uqac.lif.cep.interpreter.Interpreter} uses this
+ * processor for queries that apply the same aggregation on windows of
+ * the same source.
+ * <p>
+ * Like a {@link SmartFork}, to which it is usually connected, a
+ * width added while events are flowing only sees the events received
+ * after it was added.
+ *
+ * @author Sylvain Hallé
+ */
+public class SharedWindow extends Processor
+{
+	/**
+	 * The function to aggregate the events with
+	 */
+	protected final BinaryFunction<Object,Object,Object> m_function;
+
+	/**
+	 * The width of the window of each output
+	 */
+	protected int[] m_widths;
+
+	/**
+	 * The number of events each output has received since it was added
+	 * or since the last reset
+	 */
+	protected long[] m_seen;
+
+	/**
+	 * The result of the function on the current window of each output,
+	 * when the inverse of the function is exact
+	 */
+	protected Object[] m_values;
+
+	/**
+	 * The last events received; event number <i>n</i> is at position
+	 * <i>n</i> modulo the length of the array, which is a power of two
+	 */
+	protected Object[] m_events;
+
+	/**
+	 * The partial results, when the function has no exact inverse. Node
+	 * <i>k</i> has children 2<i>k</i> and 2<i>k</i>+1, and the leaves
+	 * are the positions of {@link #m_events}, offset by the length of
+	 * that array.
+	 */
+	protected Object[] m_tree;
+
+	/**
+	 * The number of events received since the last reset
+	 */
+	protected long m_count;
+
+	/**
+	 * The event produced on each output by the last event received, or
+	 * <code>null</code>
+	 */
+	protected Object[] m_results;
+
+	/**
+	 * Creates a new shared window with no output
+	 * @param function The function to aggregate the events with. Its
+	 *   inverse must be exact, or it must be associative.
+	 */
+	@SuppressWarnings("unchecked")
+	public SharedWindow(BinaryFunction<?,?,?> function)
+	{
+		super(1, 0);
+		if (!function.isInverseExact() && !function.isAssociative())
+		{
+			throw new IllegalArgumentException("The function must have an exact inverse or be associative");
+		}
+		m_function = (BinaryFunction<Object,Object,Object>) function;
+		m_widths = new int[0];
+		m_seen = new long[0];
+		m_values = new Object[0];
+		m_results = new Object[0];
+		m_events = new Object[1];
+		if (!function.isInverseExact())
+		{
+			m_tree = new Object[2];
+		}
+	}
+
+	/**
+	 * Gets the function the events are aggregated with
+	 * @return The function
+	 */
+	public BinaryFunction<Object,Object,Object> getFunction()
+	{
+		return m_function;
+	}
+
+	/**
+	 * Gets the width of the window of an output
+	 * @param index The output number
+	 * @return The width
+	 */
+	public int getWidth(int index)
+	{
+		return m_widths[index];
+	}
+
+	/**
+	 * Adds an output producing the result of the function on windows
+	 * of a given width
+	 * @param width The width
+	 * @return The number of the new output
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized int addWidth(int width)
+	{
+		if (width < 1)
+		{
+			throw new IllegalArgumentException("The width must be positive");
+		}
+		int index = m_outputArity;
+		int arity = index + 1;
+		m_outputArity = arity;
+		Pushable[] pushables = new Pushable[arity];
+		System.arraycopy(m_outputPushables, 0, pushables, 0, index);
+		m_outputPushables = pushables;
+		Queue<Object>[] queues = new Queue[arity];
+		System.arraycopy(m_outputQueues, 0, queues, 0, index);
+		queues[index] = new ArrayDeque<Object>();
+		m_outputQueues = queues;
+		m_widths = copyOf(m_widths, arity);
+		m_widths[index] = width;
+		m_seen = copyOf(m_seen, arity);
+		Object[] values = new Object[arity];
+		System.arraycopy(m_values, 0, values, 0, index);
+		values[index] = m_function.getStartValue();
+		m_values = values;
+		m_results = new Object[arity];
+		if (width > m_events.length)
+		{
+			grow(width);
+		}
+		return index;
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		super.reset();
+		m_count = 0;
+		for (int i = 0; i < m_widths.length; i++)
+		{
+			m_seen[i] = 0;
+			m_values[i] = m_function.getStartValue();
+			m_outputQueues[i].clear();
+		}
+		for (int i = 0; i < m_events.length; i++)
+		{
+			m_events[i] = null;
+		}
+		if (m_tree != null)
+		{
+			for (int i = 0; i < m_tree.length; i++)
+			{
+				m_tree[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Updates the result of every output with a new event, and puts in
+	 * {@link #m_results} the events the outputs produce
+	 * @param o The event
+	 */
+	protected void compute(Object o)
+	{
+		int capacity = m_events.length;
+		int position = (int) (m_count & (capacity - 1));
+		if (m_tree == null)
+		{
+			BinaryFunction<Object,Object,Object> inverse = m_function.getInverse();
+			for (int i = 0; i < m_widths.length; i++)
+			{
+				int width = m_widths[i];
+				Object value = m_values[i];
+				value = value == null ? o : m_function.getValue(value, o);
+				if (m_seen[i] >= width)
+				{
+					// Read the event leaving the window before writing the new
+					// one, as they share a slot when the width is the capacity
+					Object removed = m_events[(int) ((m_count - width) & (capacity - 1))];
+					value = inverse.getValue(value, removed);
+					if (value == null)
+					{
+						// The inverse cannot undo this event: compute the
+						// result from the events in the window
+						value = m_function.getStartValue();
+						for (long n = m_count - width + 1; n < m_count; n++)
+						{
+							Object e = m_events[(int) (n & (capacity - 1))];
+							value = value == null ? e : m_function.getValue(value, e);
+						}
+						value = value == null ? o : m_function.getValue(value, o);
+					}
+				}
+				m_values[i] = value;
+			}
+			m_events[position] = o;
+		}
+		else
+		{
+			m_events[position] = o;
+			int node = capacity + position;
+			m_tree[node] = o;
+			for (node >>= 1; node > 0; node >>= 1)
+			{
+				m_tree[node] = combine(m_tree[2 * node], m_tree[2 * node + 1]);
+			}
+		}
+		m_count++;
+		Object start = m_function.getStartValue();
+		for (int i = 0; i < m_widths.length; i++)
+		{
+			m_seen[i]++;
+			int width = m_widths[i];
+			if (m_seen[i] < width)
+			{
+				m_results[i] = null;
+				continue;
+			}
+			if (m_tree == null)
+			{
+				m_results[i] = m_values[i];
+				continue;
+			}
+			Object value = query(m_count - width, width);
+			if (start != null)
+			{
+				value = m_function.getValue(start, value);
+			}
+			m_results[i] = value;
+		}
+	}
+
+	/**
+	 * Combines the partial results of two consecutive sequences of events
+	 * @param x The result of the first sequence, or <code>null</code> if
+	 *   it is empty
+	 * @param y The result of the second sequence, or <code>null</code> if
+	 *   it is empty
+	 * @return The result of both sequences
+	 */
+	protected Object combine(Object x, Object y)
+	{
+		if (x == null)
+		{
+			return y;
+		}
+		if (y == null)
+		{
+			return x;
+		}
+		return m_function.getValue(x, y);
+	}
+
+	/**
+	 * Gets the result of the function on consecutive events in the buffer
+	 * @param from The number of the first event
+	 * @param length The number of events
+	 * @return The result
+	 */
+	protected Object query(long from, int length)
+	{
+		int capacity = m_events.length;
+		int start = (int) (from & (capacity - 1));
+		if (start + length <= capacity)
+		{
+			return query(start, start + length);
+		}
+		// The events wrap around the end of the buffer
+		return combine(query(start, capacity), query(0, start + length - capacity));
+	}
+
+	/**
+	 * Gets the result of the function on a range of positions of the
+	 * buffer, by combining the nodes of the tree that cover it, in order
+	 * @param from The first position, inclusive
+	 * @param to The last position, exclusive
+	 * @return The result
+	 */
+	protected Object query(int from, int to)
+	{
+		Object left = null;
+		Object right = null;
+		int l = from + m_events.length;
+		int r = to + m_events.length;
+		while (l < r)
+		{
+			if ((l & 1) == 1)
+			{
+				left = combine(left, m_tree[l++]);
+			}
+			if ((r & 1) == 1)
+			{
+				right = combine(m_tree[--r], right);
+			}
+			l >>= 1;
+			r >>= 1;
+		}
+		return combine(left, right);
+	}
+
+	/**
+	 * Enlarges the buffer so that it holds at least a given number of
+	 * events, keeping the events it currently holds
+	 * @param width The number of events
+	 */
+	protected void grow(int width)
+	{
+		int capacity = m_events.length;
+		int new_capacity = capacity;
+		while (new_capacity < width)
+		{
+			new_capacity <<= 1;
+		}
+		Object[] events = new Object[new_capacity];
+		long first = Math.max(0, m_count - capacity);
+		for (long n = first; n < m_count; n++)
+		{
+			events[(int) (n & (new_capacity - 1))] = m_events[(int) (n & (capacity - 1))];
+		}
+		m_events = events;
+		if (m_tree != null)
+		{
+			m_tree = new Object[2 * new_capacity];
+			System.arraycopy(events, 0, m_tree, new_capacity, new_capacity);
+			for (int k = new_capacity - 1; k > 0; k--)
+			{
+				m_tree[k] = combine(m_tree[2 * k], m_tree[2 * k + 1]);
+			}
+		}
+	}
+
+	@Override
+	public Pushable getPushableInput(int index)
+	{
+		return new SharedPushable();
+	}
+
+	@Override
+	public Pullable getPullableOutput(int index)
+	{
+		if (index >= 0 && index < m_outputArity)
+		{
+			return new SharedPullable(index);
+		}
+		return null;
+	}
+
+	@Override
+	public SharedWindow clone()
+	{
+		SharedWindow out = new SharedWindow(m_function);
+		for (int width : m_widths)
+		{
+			out.addWidth(width);
+		}
+		return out;
+	}
+
+	private static int[] copyOf(int[] array, int length)
+	{
+		int[] out = new int[length];
+		System.arraycopy(array, 0, out, 0, Math.min(array.length, length));
+		return out;
+	}
+
+	private static long[] copyOf(long[] array, int length)
+	{
+		long[] out = new long[length];
+		System.arraycopy(array, 0, out, 0, Math.min(array.length, length));
+		return out;
+	}
+
+	/**
+	 * Pushable receiving the events of the window's input, and pushing
+	 * the results to each output
+	 */
+	protected class SharedPushable implements Pushable
+	{
+		@Override
+		public Pushable push(Object o)
+		{
+			synchronized (SharedWindow.this)
+			{
+				compute(o);
+				for (int i = 0; i < m_results.length; i++)
+				{
+					if (m_results[i] != null && m_outputPushables[i] != null)
+					{
+						m_outputPushables[i].push(m_results[i]);
+					}
+				}
+			}
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			for (Object o : events)
+			{
+				push(o);
+			}
+			return this;
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return SharedWindow.this;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Pullable on one output of the window. Pulling an event from an
+	 * output also computes the events of the others, which wait in
+	 * their output queues until they are pulled.
+	 */
+	protected class SharedPullable implements Pullable
+	{
+		/**
+		 * The output number
+		 */
+		private final int m_index;
+
+		/**
+		 * Creates a pullable on an output
+		 * @param index The output number
+		 */
+		public SharedPullable(int index)
+		{
+			super();
+			m_index = index;
+		}
+
+		/**
+		 * Pulls events from the input until this output has an event
+		 * @param soft Whether to try only once
+		 * @return <code>true</code> if this output has an event
+		 */
+		private boolean fill(boolean soft)
+		{
+			synchronized (SharedWindow.this)
+			{
+				Queue<Object> queue = m_outputQueues[m_index];
+				while (queue.isEmpty())
+				{
+					Pullable input = m_inputPullables[0];
+					Object o = null;
+					if (soft)
+					{
+						if (input.hasNextSoft() == NextStatus.YES)
+						{
+							o = input.pullSoft();
+						}
+					}
+					else if (input.hasNext())
+					{
+						o = input.pull();
+					}
+					if (o == null)
+					{
+						return false;
+					}
+					compute(o);
+					for (int i = 0; i < m_results.length; i++)
+					{
+						if (m_results[i] != null)
+						{
+							m_outputQueues[i].add(m_results[i]);
+						}
+					}
+				}
+				return true;
+			}
+		}
+
+		@Override
+		public Object pullSoft()
+		{
+			synchronized (SharedWindow.this)
+			{
+				if (fill(true))
+				{
+					return m_outputQueues[m_index].remove();
+				}
+				return null;
+			}
+		}
+
+		@Override
+		public Object pull()
+		{
+			synchronized (SharedWindow.this)
+			{
+				if (fill(false))
+				{
+					return m_outputQueues[m_index].remove();
+				}
+				return null;
+			}
+		}
+
+		@Override
+		public final Object next()
+		{
+			return pull();
+		}
+
+		@Override
+		public NextStatus hasNextSoft()
+		{
+			return fill(true) ? NextStatus.YES : NextStatus.MAYBE;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return fill(false);
+		}
+
+		@Override
+		public void remove()
+		{
+			// Cannot remove an event on a pullable
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Processor getProcessor()
+		{
+			return SharedWindow.this;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return m_index;
+		}
+
+		@Override
+		public Iterator<Object> iterator()
+		{
+			return this;
+		}
+	}
+}
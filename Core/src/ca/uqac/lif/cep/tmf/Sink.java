@@ -55,7 +55,8 @@ public abstract class Sink extends SingleProcessor
 			Pullable p = m_inputPullables[i];
 			inputs[i] = p.pullSoft();
 		}
-		compute(inputs);
+		computeMeasured(inputs, m_outputCollector);
+		m_outputCollector.clear();
 	}
 	
 	/**
@@ -69,7 +70,8 @@ public abstract class Sink extends SingleProcessor
 			Pullable p = m_inputPullables[i];
 			inputs[i] = p.pull();
 		}
-		compute(inputs);
+		computeMeasured(inputs, m_outputCollector);
+		m_outputCollector.clear();
 	}
 
 }
@@ -0,0 +1,176 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Decides which slices of a {@link Slicer} or a {@link StateSlicer}
+ * stay in memory, the others being kept in a {@link SliceStore}. At
+ * most a given number of slices are <em>hot</em>; when a slice that
+ * receives an event exceeds it, the slice that received an event the
+ * least recently becomes <em>cold</em>: the slicer saves the state of
+ * its processor in the store, and discards the processor. When a cold
+ * slice receives an event, the slicer creates a new processor and
+ * gives it the saved state.
+ * <p>
+ * This requires the slice processor to be
+ * {@link ca.uqac.lif.cep.Stateful}. Contrarily to
+ * {@link SliceEviction}, no slice is ever closed: the number of slices
+ * is bounded by the store instead of the memory.
+ *
+ * @author Sylvain Hallé
+ */
+public class SliceCache
+{
+	/**
+	 * The hot slices, ordered from the least to the most recently used
+	 */
+	protected final LinkedHashMap<Object,Boolean> m_hot = new LinkedHashMap<Object,Boolean>(16, 0.75f, true);
+
+	/**
+	 * The store of the cold slices
+	 */
+	protected final SliceStore m_store;
+
+	/**
+	 * The maximum number of hot slices
+	 */
+	protected final int m_capacity;
+
+	/**
+	 * The number of times a slice became cold since the last reset
+	 */
+	protected long m_spillCount = 0;
+
+	/**
+	 * Creates a new cache
+	 * @param store The store of the cold slices
+	 * @param capacity The maximum number of hot slices
+	 */
+	public SliceCache(SliceStore store, int capacity)
+	{
+		super();
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		}
+		m_store = store;
+		m_capacity = capacity;
+	}
+
+	/**
+	 * Records that a slice received an event. The slice must be hot.
+	 * @param slice_id The slice ID
+	 */
+	public void touch(Object slice_id)
+	{
+		m_hot.put(slice_id, Boolean.TRUE);
+	}
+
+	/**
+	 * Gets the next slice to make cold, if there are too many hot slices.
+	 * The slice is no longer considered hot: the slicer must save its
+	 * state in the store.
+	 * @return The slice ID, or <code>null</code> if no slice must become
+	 *   cold
+	 */
+	public Object poll()
+	{
+		if (m_hot.size() <= m_capacity)
+		{
+			return null;
+		}
+		Iterator<Object> it = m_hot.keySet().iterator();
+		Object slice_id = it.next();
+		it.remove();
+		m_spillCount++;
+		return slice_id;
+	}
+
+	/**
+	 * Removes the state of a slice from the store, if it is cold, to
+	 * make it hot again
+	 * @param slice_id The slice ID
+	 * @return The state, or <code>null</code> if the slice is not cold
+	 */
+	public Object warm(Object slice_id)
+	{
+		return m_store.remove(slice_id);
+	}
+
+	/**
+	 * Forgets a slice that is closed, whether it is hot or cold
+	 * @param slice_id The slice ID
+	 * @return The state of the slice, if it was cold, or
+	 *   <code>null</code>
+	 */
+	public Object forget(Object slice_id)
+	{
+		m_hot.remove(slice_id);
+		return m_store.remove(slice_id);
+	}
+
+	/**
+	 * Determines if a slice is cold
+	 * @param slice_id The slice ID
+	 * @return <code>true</code> if it is
+	 */
+	public boolean isCold(Object slice_id)
+	{
+		return m_store.containsKey(slice_id);
+	}
+
+	/**
+	 * Gets the store of the cold slices
+	 * @return The store
+	 */
+	public SliceStore getStore()
+	{
+		return m_store;
+	}
+
+	/**
+	 * Gets the maximum number of hot slices
+	 * @return The number of slices
+	 */
+	public int getCapacity()
+	{
+		return m_capacity;
+	}
+
+	/**
+	 * Gets the number of times a slice became cold since the last reset
+	 * @return The number of times
+	 */
+	public long getSpillCount()
+	{
+		return m_spillCount;
+	}
+
+	/**
+	 * Forgets all the slices, and empties the store
+	 */
+	public void reset()
+	{
+		m_hot.clear();
+		m_store.clear();
+		m_spillCount = 0;
+	}
+}
@@ -0,0 +1,264 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides when the slices of a {@link Slicer} or a {@link StateSlicer}
+ * are closed, so that the memory they use is released. A slice can be
+ * closed:
+ * <ul>
+ * <li>when it has received no event for some time (its <em>idle
+ * timeout</em>)</li>
+ * <li>when the slicer has more slices than allowed; the slice that
+ * received an event the least recently is then closed</li>
+ * <li>explicitly, by calling the slicer's <code>closeSlice</code>
+ * method</li>
+ * <li>for a {@link StateSlicer}, when its cleaning function says
+ * so</li>
+ * </ul>
+ * Slices are kept in a map ordered by their last use; the first one is
+ * therefore both the least recently used and the one that has been idle
+ * the longest, and finding the slices to close takes constant time
+ * per slice. Idle slices are only looked for when the slicer receives
+ * an event.
+ * <p>
+ * Slices are only tracked while an idle timeout or a maximum number of
+ * slices is set (see {@link #isEnabled()}), so that a slicer that
+ * never closes its slices does not pay for it. Such a limit should
+ * therefore be set before the slicer receives its first event; slices
+ * that receive no event after it is set are not closed by it.
+ *
+ * @author Sylvain Hallé
+ */
+public class SliceEviction
+{
+	/**
+	 * Why a slice is closed
+	 */
+	public static enum Cause
+	{
+		/**
+		 * The slice received no event during the idle timeout
+		 */
+		IDLE,
+		/**
+		 * The slicer had too many slices
+		 */
+		CAPACITY,
+		/**
+		 * The slice was closed explicitly
+		 */
+		EXPLICIT,
+		/**
+		 * The cleaning function of a {@link StateSlicer} returned
+		 * <code>true</code>
+		 */
+		CLEANED
+	};
+
+	/**
+	 * Receives the slices that are closed
+	 */
+	public static interface Listener
+	{
+		/**
+		 * Called when a slice is closed, before its processor is discarded
+		 * @param slice_id The slice ID
+		 * @param last The last front output by the slice's processor,
+		 *   or <code>null</code> if it never output anything
+		 * @param cause Why the slice is closed
+		 * @return A front for the slicer to output, or <code>null</code>
+		 *   to output nothing
+		 */
+		public Object[] sliceClosed(Object slice_id, Object[] last, Cause cause);
+	}
+
+	/**
+	 * The time each slice was last used, ordered from the least to
+	 * the most recent
+	 */
+	protected final LinkedHashMap<Object,Long> m_lastUse = new LinkedHashMap<Object,Long>(16, 0.75f, true);
+
+	/**
+	 * The time after which an idle slice is closed, in milliseconds, or
+	 * a negative value for no limit
+	 */
+	protected long m_idleTimeout = -1;
+
+	/**
+	 * The maximum number of slices, or a negative value for no limit
+	 */
+	protected int m_maxSlices = -1;
+
+	/**
+	 * The listener notified of the slices that are closed, if any
+	 */
+	protected Listener m_listener = null;
+
+	/**
+	 * Why the slice last returned by {@link #poll(long)} must be closed
+	 */
+	protected Cause m_cause = null;
+
+	/**
+	 * The number of slices closed since the last reset
+	 */
+	protected long m_closedCount = 0;
+
+	/**
+	 * Creates a policy that never closes slices
+	 */
+	public SliceEviction()
+	{
+		super();
+	}
+
+	/**
+	 * Sets the time after which a slice that receives no event is closed
+	 * @param millis The time, in milliseconds, or a negative value for
+	 *   no limit
+	 */
+	public void setIdleTimeout(long millis)
+	{
+		m_idleTimeout = millis;
+	}
+
+	/**
+	 * Sets the maximum number of slices
+	 * @param max The number of slices, or a negative value for no limit
+	 */
+	public void setMaxSlices(int max)
+	{
+		m_maxSlices = max;
+	}
+
+	/**
+	 * Sets the listener notified of the slices that are closed
+	 * @param listener The listener, or <code>null</code> for none
+	 */
+	public void setListener(Listener listener)
+	{
+		m_listener = listener;
+	}
+
+	/**
+	 * Determines if slices can be closed other than explicitly
+	 * @return <code>true</code> if they can
+	 */
+	public boolean isEnabled()
+	{
+		return m_idleTimeout >= 0 || m_maxSlices >= 0;
+	}
+
+	/**
+	 * Records that a slice has received an event
+	 * @param slice_id The slice ID
+	 * @param now The current time, in milliseconds
+	 */
+	public void touch(Object slice_id, long now)
+	{
+		m_lastUse.put(slice_id, now);
+	}
+
+	/**
+	 * Finds a slice to close
+	 * @param now The current time, in milliseconds
+	 * @return The ID of the slice, or <code>null</code> if no slice
+	 *   needs to be closed. Why it must be closed is then given by
+	 *   {@link #getCause()}.
+	 */
+	public Object poll(long now)
+	{
+		if (m_lastUse.isEmpty())
+		{
+			return null;
+		}
+		Map.Entry<Object,Long> eldest = m_lastUse.entrySet().iterator().next();
+		if (m_maxSlices >= 0 && m_lastUse.size() > m_maxSlices)
+		{
+			m_cause = Cause.CAPACITY;
+			return eldest.getKey();
+		}
+		if (m_idleTimeout >= 0 && now - eldest.getValue() > m_idleTimeout)
+		{
+			m_cause = Cause.IDLE;
+			return eldest.getKey();
+		}
+		return null;
+	}
+
+	/**
+	 * Gives the reason why the slice last returned by {@link #poll(long)}
+	 * must be closed
+	 * @return The cause
+	 */
+	public Cause getCause()
+	{
+		return m_cause;
+	}
+
+	/**
+	 * Notifies the listener that a slice is closed, and forgets the slice
+	 * @param slice_id The slice ID
+	 * @param last The last front output by the slice
+	 * @param cause Why the slice is closed
+	 * @return The front returned by the listener, or <code>null</code>
+	 */
+	public Object[] closed(Object slice_id, Object[] last, Cause cause)
+	{
+		m_lastUse.remove(slice_id);
+		m_closedCount++;
+		if (m_listener == null)
+		{
+			return null;
+		}
+		return m_listener.sliceClosed(slice_id, last, cause);
+	}
+
+	/**
+	 * Gets the number of slices closed since the last reset
+	 * @return The number of slices
+	 */
+	public long getClosedCount()
+	{
+		return m_closedCount;
+	}
+
+	/**
+	 * Forgets all the slices
+	 */
+	public void reset()
+	{
+		m_lastUse.clear();
+		m_closedCount = 0;
+	}
+
+	/**
+	 * Copies the settings of this policy into another one
+	 * @param e The other policy
+	 */
+	public void copyTo(SliceEviction e)
+	{
+		e.m_idleTimeout = m_idleTimeout;
+		e.m_maxSlices = m_maxSlices;
+		e.m_listener = m_listener;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.Set;
+
+/**
+ * Keeps the state of the slices a slicer moved out of memory, indexed
+ * by slice ID. A slicer puts the state of a slice in the store when
+ * the slice has not received an event for a while, and removes it
+ * when the slice receives an event again; see {@link SliceCache}.
+ * The states are those returned by {@link ca.uqac.lif.cep.Stateful},
+ * and implement {@link java.io.Serializable}.
+ *
+ * @author Sylvain Hallé
+ * @see FileSliceStore
+ */
+public interface SliceStore
+{
+	/**
+	 * Stores the state of a slice, replacing any state already stored
+	 * for the same slice
+	 * @param slice_id The slice ID
+	 * @param state The state
+	 */
+	public void put(Object slice_id, Object state);
+
+	/**
+	 * Removes the state of a slice from the store
+	 * @param slice_id The slice ID
+	 * @return The state, or <code>null</code> if the store has none for
+	 *   this slice
+	 */
+	public Object remove(Object slice_id);
+
+	/**
+	 * Determines if the store has the state of a slice
+	 * @param slice_id The slice ID
+	 * @return <code>true</code> if it has
+	 */
+	public boolean containsKey(Object slice_id);
+
+	/**
+	 * Gets the IDs of the slices in the store
+	 * @return A read-only set of IDs
+	 */
+	public Set<Object> keySet();
+
+	/**
+	 * Gets the number of slices in the store
+	 * @return The number of slices
+	 */
+	public int size();
+
+	/**
+	 * Removes all the slices from the store
+	 */
+	public void clear();
+
+	/**
+	 * Exception thrown when a store cannot write or read the state of a
+	 * slice, for example because it is not serializable
+	 */
+	public static class StoreException extends RuntimeException
+	{
+		/**
+		 * Dummy UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		public StoreException(Throwable cause)
+		{
+			super(cause);
+		}
+	}
+}
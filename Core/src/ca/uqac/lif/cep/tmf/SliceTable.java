@@ -0,0 +1,399 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pushable;
+
+/**
+ * The slices of a slicer, indexed by their ID. Slice IDs are most
+ * often integers; those of type <code>Integer</code> or
+ * <code>Long</code> are stored in an open-addressing table keyed by
+ * their primitive value, which needs no entry object and no call to
+ * <code>hashCode()</code> or <code>equals()</code>. Other IDs are
+ * stored in an ordinary hash map.
+ * <p>
+ * All the slices are also kept in an array, so that an event sent to
+ * every slice can go through them without allocating an iterator or a
+ * copy of the keys; see {@link #size()} and {@link #get(int)}. Removing
+ * a slice moves the last slice of the array into its place.
+ *
+ * @author Sylvain Hallé
+ */
+public class SliceTable
+{
+	/**
+	 * The table never holds more primitive keys than this fraction of
+	 * its capacity
+	 */
+	protected static final float s_loadFactor = 0.75f;
+
+	/**
+	 * The primitive value of the key in each bucket
+	 */
+	protected long[] m_keys;
+
+	/**
+	 * The slice in each bucket, or <code>null</code> if the bucket is
+	 * empty
+	 */
+	protected Slice[] m_buckets;
+
+	/**
+	 * The number of slices in {@link #m_buckets}
+	 */
+	protected int m_primitiveCount = 0;
+
+	/**
+	 * The slices whose ID is not an integer
+	 */
+	protected final Map<Object,Slice> m_others = new HashMap<Object,Slice>();
+
+	/**
+	 * All the slices; the first {@link #m_size} elements are used
+	 */
+	protected Slice[] m_slices;
+
+	/**
+	 * The number of slices
+	 */
+	protected int m_size = 0;
+
+	/**
+	 * Creates an empty table
+	 */
+	public SliceTable()
+	{
+		super();
+		m_keys = new long[16];
+		m_buckets = new Slice[16];
+		m_slices = new Slice[16];
+	}
+
+	/**
+	 * Gets the number of slices
+	 * @return The number of slices
+	 */
+	public int size()
+	{
+		return m_size;
+	}
+
+	/**
+	 * Gets a slice by its position. Positions go from 0 to
+	 * {@link #size()} - 1, and change when slices are removed.
+	 * @param index The position
+	 * @return The slice
+	 */
+	public Slice get(int index)
+	{
+		return m_slices[index];
+	}
+
+	/**
+	 * Finds a slice by its ID
+	 * @param id The slice ID
+	 * @return The slice, or <code>null</code> if there is no slice with
+	 *   this ID
+	 */
+	public Slice get(Object id)
+	{
+		if (!isPrimitive(id))
+		{
+			return m_others.get(id);
+		}
+		long key = ((Number) id).longValue();
+		Class<?> type = id.getClass();
+		int mask = m_buckets.length - 1;
+		for (int i = hash(key) & mask; m_buckets[i] != null; i = (i + 1) & mask)
+		{
+			if (m_keys[i] == key && m_buckets[i].m_id.getClass() == type)
+			{
+				return m_buckets[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a slice. There must not already be a slice with the same ID.
+	 * @param slice The slice
+	 */
+	public void put(Slice slice)
+	{
+		Object id = slice.m_id;
+		if (isPrimitive(id))
+		{
+			if (m_primitiveCount + 1 > m_buckets.length * s_loadFactor)
+			{
+				rehash(m_buckets.length * 2);
+			}
+			insert(((Number) id).longValue(), slice);
+			m_primitiveCount++;
+		}
+		else
+		{
+			m_others.put(id, slice);
+		}
+		if (m_size == m_slices.length)
+		{
+			Slice[] slices = new Slice[m_size * 2];
+			System.arraycopy(m_slices, 0, slices, 0, m_size);
+			m_slices = slices;
+		}
+		slice.m_index = m_size;
+		m_slices[m_size++] = slice;
+	}
+
+	/**
+	 * Removes a slice
+	 * @param id The slice ID
+	 * @return The slice, or <code>null</code> if there is no slice with
+	 *   this ID
+	 */
+	public Slice remove(Object id)
+	{
+		Slice slice;
+		if (isPrimitive(id))
+		{
+			slice = removePrimitive(((Number) id).longValue(), id.getClass());
+		}
+		else
+		{
+			slice = m_others.remove(id);
+		}
+		if (slice == null)
+		{
+			return null;
+		}
+		// Move the last slice into the hole
+		Slice moved = m_slices[--m_size];
+		m_slices[slice.m_index] = moved;
+		moved.m_index = slice.m_index;
+		m_slices[m_size] = null;
+		return slice;
+	}
+
+	/**
+	 * Removes all the slices
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < m_buckets.length; i++)
+		{
+			m_buckets[i] = null;
+		}
+		for (int i = 0; i < m_size; i++)
+		{
+			m_slices[i] = null;
+		}
+		m_others.clear();
+		m_primitiveCount = 0;
+		m_size = 0;
+	}
+
+	/**
+	 * Removes a slice with a primitive key. The slices that follow it in
+	 * the same run of buckets are shifted back, so that no bucket needs
+	 * to be marked as deleted.
+	 * @param key The primitive value of the key
+	 * @param type The class of the slice ID
+	 * @return The slice, or <code>null</code> if it is not in the table
+	 */
+	protected Slice removePrimitive(long key, Class<?> type)
+	{
+		int mask = m_buckets.length - 1;
+		int i = hash(key) & mask;
+		while (m_buckets[i] != null && (m_keys[i] != key || m_buckets[i].m_id.getClass() != type))
+		{
+			i = (i + 1) & mask;
+		}
+		Slice slice = m_buckets[i];
+		if (slice == null)
+		{
+			return null;
+		}
+		m_buckets[i] = null;
+		m_primitiveCount--;
+		for (int j = (i + 1) & mask; m_buckets[j] != null; j = (j + 1) & mask)
+		{
+			int home = hash(m_keys[j]) & mask;
+			// The slice at j can fill the hole at i if its home bucket is
+			// not between the hole and j
+			boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!stays)
+			{
+				m_keys[i] = m_keys[j];
+				m_buckets[i] = m_buckets[j];
+				m_buckets[j] = null;
+				i = j;
+			}
+		}
+		return slice;
+	}
+
+	/**
+	 * Puts a slice in the first free bucket from its home bucket
+	 * @param key The primitive value of the key
+	 * @param slice The slice
+	 */
+	protected void insert(long key, Slice slice)
+	{
+		int mask = m_buckets.length - 1;
+		int i = hash(key) & mask;
+		while (m_buckets[i] != null)
+		{
+			i = (i + 1) & mask;
+		}
+		m_keys[i] = key;
+		m_buckets[i] = slice;
+	}
+
+	/**
+	 * Changes the number of buckets
+	 * @param capacity The new number of buckets, a power of two
+	 */
+	protected void rehash(int capacity)
+	{
+		long[] keys = m_keys;
+		Slice[] buckets = m_buckets;
+		m_keys = new long[capacity];
+		m_buckets = new Slice[capacity];
+		for (int i = 0; i < buckets.length; i++)
+		{
+			if (buckets[i] != null)
+			{
+				insert(keys[i], buckets[i]);
+			}
+		}
+	}
+
+	/**
+	 * Determines if a slice ID is stored by its primitive value
+	 * @param id The slice ID
+	 * @return <code>true</code> if it is
+	 */
+	protected static boolean isPrimitive(Object id)
+	{
+		return id instanceof Integer || id instanceof Long;
+	}
+
+	/**
+	 * Spreads the bits of a key, as consecutive IDs would otherwise
+	 * fill consecutive buckets
+	 * @param key The key
+	 * @return The hash
+	 */
+	protected static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * A slice: the processor handling the events of one slice ID, the
+	 * sink collecting its output, and its input pushables
+	 */
+	public static class Slice
+	{
+		/**
+		 * The slice ID
+		 */
+		protected final Object m_id;
+
+		/**
+		 * The processor of the slice
+		 */
+		protected final Processor m_processor;
+
+		/**
+		 * The sink connected to the processor
+		 */
+		protected final QueueSink m_sink;
+
+		/**
+		 * The input pushables of the processor
+		 */
+		protected final Pushable[] m_inputs;
+
+		/**
+		 * The last front output by the slice, if it is kept
+		 */
+		protected Object[] m_last = null;
+
+		/**
+		 * The position of the slice in the table
+		 */
+		int m_index;
+
+		/**
+		 * Creates a slice
+		 * @param id The slice ID
+		 * @param processor The processor of the slice
+		 * @param sink The sink connected to the processor
+		 */
+		public Slice(Object id, Processor processor, QueueSink sink)
+		{
+			super();
+			m_id = id;
+			m_processor = processor;
+			m_sink = sink;
+			m_inputs = new Pushable[processor.getInputArity()];
+			for (int i = 0; i < m_inputs.length; i++)
+			{
+				m_inputs[i] = processor.getPushableInput(i);
+			}
+		}
+
+		/**
+		 * Gives an input front to the slice's processor
+		 * @param inputs The front
+		 * @return The front output by the processor; its elements are
+		 *   <code>null</code> where the processor output nothing
+		 */
+		public Object[] push(Object[] inputs)
+		{
+			for (int i = 0; i < inputs.length; i++)
+			{
+				m_inputs[i].push(inputs[i]);
+			}
+			return m_sink.remove();
+		}
+
+		/**
+		 * Gets the slice ID
+		 * @return The ID
+		 */
+		public Object getId()
+		{
+			return m_id;
+		}
+
+		/**
+		 * Gets the processor of the slice
+		 * @return The processor
+		 */
+		public Processor getProcessor()
+		{
+			return m_processor;
+		}
+	}
+}
@@ -17,20 +17,15 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Queue;
-import java.util.Set;
 import java.util.Stack;
 
 import ca.uqac.lif.cep.Connector;
 import ca.uqac.lif.cep.Connector.ConnectorException;
 import ca.uqac.lif.cep.functions.Function;
 import ca.uqac.lif.cep.Processor;
-import ca.uqac.lif.cep.Pushable;
 import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.Stateful;
 
 /**
  * Separates an input trace into different "slices". The slicer
@@ -48,6 +43,16 @@ import ca.uqac.lif.cep.SingleProcessor;
  * be created, but that the incoming event must be dispatched to
  * <em>all</em> slices one by one. In such a case, the output of
  * every slice on that event is sent out, in no particular order.
+ * <p>
+ * Slices can be closed, and the memory they use released, when they
+ * are idle for too long, when there are too many of them, or
+ * explicitly with {@link #closeSlice(Object)}; see
+ * {@link SliceEviction}. An event for a closed slice starts a new one.
+ * <p>
+ * With {@link #setSliceStore(SliceStore, int)}, slices that have not
+ * received an event for a while are instead moved out of memory, and
+ * brought back when they receive one; see {@link SliceCache}. Events
+ * for all slices are then not supported.
  *  
  * @author Sylvain Hallé
  */
@@ -63,9 +68,21 @@ public class Slicer extends SingleProcessor
 	 */
 	protected Processor m_processor = null;
 
-	protected Map<Object,Processor> m_slices;
+	/**
+	 * The slices, indexed by their ID
+	 */
+	protected SliceTable m_slices;
+
+	/**
+	 * Decides when slices are closed
+	 */
+	protected final SliceEviction m_eviction = new SliceEviction();
 
-	protected Map<Object,QueueSink> m_sinks; 
+	/**
+	 * Decides which slices are kept in memory, or <code>null</code> to
+	 * keep all of them
+	 */
+	protected SliceCache m_cache = null;
 
 	Slicer()
 	{
@@ -77,62 +94,291 @@ public class Slicer extends SingleProcessor
 		super(proc.getInputArity(), proc.getOutputArity());
 		m_processor = proc;
 		m_slicingFunction = func;
-		m_slices = new HashMap<Object,Processor>();
-		m_sinks = new HashMap<Object,QueueSink>();
+		m_slices = new SliceTable();
 	}
 
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs) 
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
-		int output_arity = getOutputArity();
 		Object[] f_value = m_slicingFunction.evaluate(inputs);
 		Object slice_id = f_value[0];
-		Set<Object> slices_to_process = new HashSet<Object>();
+		long now = currentTime();
 		if (slice_id instanceof AllSlices || slice_id == null)
 		{
-			slices_to_process.addAll(m_slices.keySet());
+			if (m_cache != null)
+			{
+				// Every slice in the store would have to be read and
+				// written back
+				throw new UnsupportedOperationException("A slicer with a slice store cannot send an event to all slices");
+			}
+			for (int i = 0; i < m_slices.size(); i++)
+			{
+				process(m_slices.get(i), inputs, outputs, now);
+			}
 		}
 		else
 		{
-			if (!m_slices.containsKey(slice_id))
+			SliceTable.Slice slice = m_slices.get(slice_id);
+			if (slice == null)
 			{
 				// First time we see this value: create new slice
-				Processor p = m_processor.clone();
-				m_slices.put(slice_id, p);
-				addContextFromSlice(p, slice_id);
-				QueueSink sink = new QueueSink(output_arity);
-				try 
+				slice = createSlice(slice_id);
+				if (m_cache != null)
 				{
-					Connector.connect(p, sink);
-				} 
-				catch (ConnectorException e) 
+					warmSlice(slice);
+				}
+				m_slices.put(slice);
+			}
+			process(slice, inputs, outputs, now);
+		}
+		if (m_eviction.isEnabled())
+		{
+			Object evicted;
+			while ((evicted = m_eviction.poll(now)) != null)
+			{
+				Object[] last = removeSlice(evicted, m_eviction.getCause());
+				if (last != null)
 				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					outputs.add(last);
 				}
-				m_sinks.put(slice_id, sink);
 			}
-			slices_to_process.add(slice_id);
 		}
-		Queue<Object[]> out_queue = new ArrayDeque<Object[]>();
-		for (Object s_id : slices_to_process)
+		spillSlices();
+		return true;
+	}
+
+	/**
+	 * Moves out of memory the slices the {@link SliceCache} says are
+	 * no longer hot
+	 */
+	protected void spillSlices()
+	{
+		if (m_cache == null)
+		{
+			return;
+		}
+		Object cold_id;
+		while ((cold_id = m_cache.poll()) != null)
+		{
+			SliceTable.Slice slice = m_slices.remove(cold_id);
+			if (slice != null)
+			{
+				Object state = ((Stateful) slice.getProcessor()).getState();
+				m_cache.getStore().put(cold_id, new Object[]{state, slice.m_last});
+			}
+		}
+	}
+
+	/**
+	 * Gives a new slice the state saved when it was moved out of memory,
+	 * if any
+	 * @param slice The slice
+	 */
+	protected void warmSlice(SliceTable.Slice slice)
+	{
+		Object[] saved = (Object[]) m_cache.warm(slice.getId());
+		if (saved != null)
+		{
+			((Stateful) slice.getProcessor()).setState(saved[0]);
+			slice.m_last = (Object[]) saved[1];
+		}
+	}
+
+	/**
+	 * Creates the processor of a new slice
+	 * @param slice_id The slice ID
+	 * @return The slice
+	 */
+	protected SliceTable.Slice createSlice(Object slice_id)
+	{
+		Processor p = m_processor.clone();
+		m_processor.copyQueueSettings(p);
+		addContextFromSlice(p, slice_id);
+		QueueSink sink = new QueueSink(getOutputArity());
+		try 
+		{
+			Connector.connect(p, sink);
+		} 
+		catch (ConnectorException e) 
+		{
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		return new SliceTable.Slice(slice_id, p, sink);
+	}
+
+	/**
+	 * Gives an input front to a slice, and collects its output
+	 * @param slice The slice
+	 * @param inputs The front
+	 * @param outputs The queue where the output front is added
+	 * @param now The current time
+	 */
+	protected void process(SliceTable.Slice slice, Object[] inputs, Queue<Object[]> outputs, long now)
+	{
+		Object[] out = slice.push(inputs);
+		outputs.add(out);
+		if (m_eviction.isEnabled())
+		{
+			m_eviction.touch(slice.m_id, now);
+		}
+		if (m_cache != null)
+		{
+			m_cache.touch(slice.m_id);
+		}
+		if (m_eviction.m_listener != null)
+		{
+			slice.m_last = out;
+		}
+	}
+
+	/**
+	 * Closes a slice. The front returned by the
+	 * {@link SliceEviction.Listener}, if any, is output right away.
+	 * @param slice_id The slice ID
+	 * @return <code>true</code> if the slice existed
+	 */
+	public boolean closeSlice(Object slice_id)
+	{
+		if (m_slices.get(slice_id) == null && (m_cache == null || !m_cache.isCold(slice_id)))
+		{
+			return false;
+		}
+		Object[] last = removeSlice(slice_id, SliceEviction.Cause.EXPLICIT);
+		if (last != null)
 		{
-			// Find processor corresponding to that slice
-			Processor slice_p = m_slices.get(s_id);
-			QueueSink sink_p = m_sinks.get(s_id);
-			// Push the input into the processor
-			for (int i = 0; i < inputs.length; i++)
+			for (int i = 0; i < m_outputQueues.length; i++)
 			{
+				if (m_outputPushables[i] != null)
+				{
+					m_outputPushables[i].push(last[i]);
+				}
+				else
+				{
+					m_outputQueues[i].add(last[i]);
+				}
+			}
+		}
+		return true;
+	}
 
-				Object o_i = inputs[i];
-				Pushable p = slice_p.getPushableInput(i);
-				p.push(o_i);
+	/**
+	 * Removes a slice and notifies the listener
+	 * @param slice_id The slice ID
+	 * @param cause Why the slice is closed
+	 * @return The front returned by the listener, or <code>null</code>
+	 */
+	protected Object[] removeSlice(Object slice_id, SliceEviction.Cause cause)
+	{
+		SliceTable.Slice slice = m_slices.remove(slice_id);
+		Object[] last = slice == null ? null : slice.m_last;
+		if (m_cache != null)
+		{
+			Object[] saved = (Object[]) m_cache.forget(slice_id);
+			if (saved != null)
+			{
+				last = (Object[]) saved[1];
 			}
-			// Collect the output from that processor
-			Object[] out = sink_p.remove();
-			out_queue.add(out);
 		}
-		return out_queue;
+		return m_eviction.closed(slice_id, last, cause);
+	}
+
+	/**
+	 * Sets the time after which a slice that receives no event is closed
+	 * @param millis The time, in milliseconds, or a negative value for
+	 *   no limit
+	 * @return This slicer
+	 */
+	public Slicer setIdleTimeout(long millis)
+	{
+		m_eviction.setIdleTimeout(millis);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of slices. When a new slice exceeds it,
+	 * the least recently used slice is closed.
+	 * @param max The number of slices, or a negative value for no limit
+	 * @return This slicer
+	 */
+	public Slicer setMaxSlices(int max)
+	{
+		m_eviction.setMaxSlices(max);
+		return this;
+	}
+
+	/**
+	 * Sets the listener notified of the slices that are closed
+	 * @param listener The listener, or <code>null</code> for none
+	 * @return This slicer
+	 */
+	public Slicer setEvictionListener(SliceEviction.Listener listener)
+	{
+		m_eviction.setListener(listener);
+		return this;
+	}
+
+	/**
+	 * Keeps the slices that have not received an event for a while in a
+	 * store instead of the memory. This should be done before the
+	 * slicer receives its first event. A copy of the slicer keeps all
+	 * its slices in memory.
+	 * <p>
+	 * With a store, the slicing function must not send events to all
+	 * slices, as each such event would read and write back every slice
+	 * in the store; the slicer throws an
+	 * {@link UnsupportedOperationException} when it does. If slices can
+	 * also be closed (see {@link SliceEviction}), the time each slice
+	 * was last used is kept in memory, whether the slice is in memory or
+	 * in the store.
+	 * @param store The store, or <code>null</code> to keep all the
+	 *   slices in memory
+	 * @param hot_slices The maximum number of slices kept in memory
+	 * @return This slicer
+	 * @throws IllegalArgumentException If the slice processor is not
+	 *   {@link Stateful}
+	 */
+	public Slicer setSliceStore(SliceStore store, int hot_slices)
+	{
+		if (store == null)
+		{
+			m_cache = null;
+			return this;
+		}
+		if (!(m_processor instanceof Stateful))
+		{
+			throw new IllegalArgumentException("The slice processor is not stateful");
+		}
+		m_cache = new SliceCache(store, hot_slices);
+		return this;
+	}
+
+	/**
+	 * Gets the object deciding which slices are kept in memory
+	 * @return The cache, or <code>null</code> if all the slices are
+	 *   kept in memory
+	 */
+	public SliceCache getSliceCache()
+	{
+		return m_cache;
+	}
+
+	/**
+	 * Gets the number of slices closed since the last reset
+	 * @return The number of slices
+	 */
+	public long getClosedSliceCount()
+	{
+		return m_eviction.getClosedCount();
+	}
+
+	/**
+	 * Gets the current time, used to find idle slices
+	 * @return The time, in milliseconds
+	 */
+	protected long currentTime()
+	{
+		return System.currentTimeMillis();
 	}
 	
 	public void addContextFromSlice(Processor p, Object slice)
@@ -145,7 +391,26 @@ public class Slicer extends SingleProcessor
 	{
 		super.reset();
 		m_slices.clear();
+		m_eviction.reset();
 		m_slicingFunction.reset();
+		if (m_cache != null)
+		{
+			m_cache.reset();
+		}
+	}
+
+	/**
+	 * Gets the number of slices the slicer currently handles, whether
+	 * they are in memory or not
+	 * @return The number of slices
+	 */
+	public int getSliceCount()
+	{
+		if (m_cache != null)
+		{
+			return m_slices.size() + m_cache.getStore().size();
+		}
+		return m_slices.size();
 	}
 
 	public static void build(Stack<Object> stack) throws ConnectorException
@@ -168,7 +433,9 @@ public class Slicer extends SingleProcessor
 	@Override
 	public Slicer clone()
 	{
-		return new Slicer(m_slicingFunction.clone(m_context), m_processor.clone());
+		Slicer out = new Slicer(m_slicingFunction.clone(m_context), m_processor.clone());
+		m_eviction.copyTo(out.m_eviction);
+		return out;
 	}
 
 	/**
@@ -0,0 +1,171 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import java.util.ArrayDeque;
+
+import ca.uqac.lif.cep.functions.BinaryFunction;
+
+/**
+ * Aggregates the values of a sliding window with an associative
+ * function, such as a maximum or a conjunction. Values are added at
+ * one end of the window and removed at the other; at any moment, the
+ * aggregator gives the function applied to all the values in the
+ * window, from the oldest to the newest. Each operation takes an
+ * amortized constant time, whatever the width of the window, and the
+ * function needs no inverse.
+ * <p>
+ * The aggregator uses two stacks. New values go on the <em>back</em>
+ * stack, which also keeps the aggregate of all its values. The
+ * <em>front</em> stack holds the oldest values, the top being the
+ * oldest; each of its entries keeps the aggregate of itself and of all
+ * the newer values below it in the stack. Removing a value pops the
+ * front stack; when the front stack is empty, the back stack is moved
+ * into it first. The aggregate of the window is the aggregate of the
+ * front stack's top combined with that of the back stack.
+ *
+ * @author Sylvain Hallé
+ */
+public class SlidingAggregator
+{
+	/**
+	 * The function to aggregate the values with
+	 */
+	protected final BinaryFunction<Object,Object,Object> m_function;
+
+	/**
+	 * The values of the back stack, oldest first
+	 */
+	protected final ArrayDeque<Object> m_back = new ArrayDeque<Object>();
+
+	/**
+	 * The aggregate of the values of the back stack, or
+	 * <code>null</code> if it is empty
+	 */
+	protected Object m_backAggregate = null;
+
+	/**
+	 * The aggregates of the front stack; the last element corresponds
+	 * to the oldest value of the window
+	 */
+	protected Object[] m_front = new Object[16];
+
+	/**
+	 * The number of entries in the front stack
+	 */
+	protected int m_frontSize = 0;
+
+	/**
+	 * Creates a new empty aggregator
+	 * @param function The function to aggregate the values with. It
+	 *   must be associative.
+	 */
+	@SuppressWarnings("unchecked")
+	public SlidingAggregator(BinaryFunction<?,?,?> function)
+	{
+		super();
+		m_function = (BinaryFunction<Object,Object,Object>) function;
+	}
+
+	/**
+	 * Adds a value at the newest end of the window
+	 * @param o The value
+	 */
+	public void add(Object o)
+	{
+		m_back.add(o);
+		m_backAggregate = m_backAggregate == null ? o : m_function.getValue(m_backAggregate, o);
+	}
+
+	/**
+	 * Removes the oldest value of the window. Does nothing if the window
+	 * is empty.
+	 */
+	public void remove()
+	{
+		if (m_frontSize == 0)
+		{
+			flip();
+		}
+		if (m_frontSize > 0)
+		{
+			m_front[--m_frontSize] = null;
+		}
+	}
+
+	/**
+	 * Gets the aggregate of all the values in the window
+	 * @return The aggregate, or <code>null</code> if the window is empty
+	 */
+	public Object getAggregate()
+	{
+		if (m_frontSize == 0)
+		{
+			return m_backAggregate;
+		}
+		Object front = m_front[m_frontSize - 1];
+		if (m_backAggregate == null)
+		{
+			return front;
+		}
+		return m_function.getValue(front, m_backAggregate);
+	}
+
+	/**
+	 * Gets the number of values in the window
+	 * @return The number of values
+	 */
+	public int size()
+	{
+		return m_frontSize + m_back.size();
+	}
+
+	/**
+	 * Removes all the values of the window
+	 */
+	public void clear()
+	{
+		m_back.clear();
+		m_backAggregate = null;
+		for (int i = 0; i < m_frontSize; i++)
+		{
+			m_front[i] = null;
+		}
+		m_frontSize = 0;
+	}
+
+	/**
+	 * Moves the values of the back stack to the front stack
+	 */
+	protected void flip()
+	{
+		int n = m_back.size();
+		if (n > m_front.length)
+		{
+			m_front = new Object[Math.max(n, m_front.length * 2)];
+		}
+		Object aggregate = null;
+		while (!m_back.isEmpty())
+		{
+			Object o = m_back.removeLast();
+			aggregate = aggregate == null ? o : m_function.getValue(o, aggregate);
+			m_front[m_frontSize++] = aggregate;
+		}
+		m_backAggregate = null;
+	}
+}
@@ -17,13 +17,12 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 
 import ca.uqac.lif.cep.Processor;
 import ca.uqac.lif.cep.Pullable;
 import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.util.MulticastRingBuffer;
 
 /**
  * Duplicates an input event into two or more output traces. Contrarily to
@@ -32,6 +31,14 @@ import ca.uqac.lif.cep.Pushable;
  * queues. (Events are kept into a single queue, rather than be copied into
  * <i>n</i> output queues.) For input arity 1, this object is preferred over
  * {@link Fork}, as it otherwise behaves in exactly the same way.
+ * <p>
+ * In pull mode, the events pulled from the input are kept in a
+ * {@link MulticastRingBuffer}, where each output has its own cursor;
+ * an event is dropped once all outputs have pulled it. The buffer grows
+ * when the slowest output is too far behind. Each output may be pulled
+ * from its own thread: pulling from the input is done by one thread at
+ * a time, but outputs read the events already pulled without waiting
+ * for each other.
  * 
  * @author Sylvain Hallé
  *
@@ -39,27 +46,14 @@ import ca.uqac.lif.cep.Pushable;
 public final class SmartFork extends Processor
 {
 	/**
-	 * The buffer of input events
+	 * The number of events the buffer initially holds
 	 */
-	private List<Object> m_inputEvents;
-	
-	/**
-	 * A set of cursors, i.e. pointers to the input buffer. For a fork of
-	 * output arity <i>n</i>, there are <i>n</i> cursors.
-	 */
-	protected int[] m_cursors;
-	
-	/**
-	 * After how many calls to <code>pull()</code> or <code>push()</code>
-	 * do we call the cleanup of the input queue
-	 */
-	protected static final int s_cleanInterval = 10;
-	
+	protected static final int s_initialCapacity = 16;
+
 	/**
-	 * How many calls to <code>pull()</code> or <code>push()</code>
-	 * since last cleanup of the input queue
+	 * The buffer of input events, with one consumer per output
 	 */
-	protected int m_timeSinceLastClean;
+	private final MulticastRingBuffer<Object> m_inputEvents;
 	
 	/**
 	 * Instantiates a fork.
@@ -68,9 +62,7 @@ public final class SmartFork extends Processor
 	public SmartFork(int out_arity)
 	{
 		super(1, out_arity);
-		m_inputEvents = new ArrayList<Object>();
-		m_cursors = new int[out_arity];
-		m_timeSinceLastClean = 0;
+		m_inputEvents = new MulticastRingBuffer<Object>(s_initialCapacity, out_arity);
 	}
 	
 	/**
@@ -101,11 +93,6 @@ public final class SmartFork extends Processor
 	public void reset()
 	{
 		m_inputEvents.clear();
-		for (int i = 0; i < m_cursors.length; i++)
-		{
-			m_cursors[i] = 0;
-		}
-		m_timeSinceLastClean = 0;
 	}
 	
 	/**
@@ -116,7 +103,34 @@ public final class SmartFork extends Processor
 	 */
 	public void putInQueue(Object o)
 	{
-		m_inputEvents.add(o);
+		synchronized (m_inputEvents)
+		{
+			publish(o);
+		}
+	}
+
+	/**
+	 * Adds an event to the buffer, making it larger if it is full. Must
+	 * be called while holding the buffer's lock.
+	 * @param o The event
+	 */
+	private void publish(Object o)
+	{
+		if (!m_inputEvents.offer(o))
+		{
+			m_inputEvents.grow();
+			m_inputEvents.offer(o);
+		}
+	}
+
+	/**
+	 * Gets the number of events pulled from the input that some output
+	 * has not pulled yet
+	 * @return The number of events
+	 */
+	public int getBufferedCount()
+	{
+		return m_inputEvents.size();
 	}
 
 	@Override
@@ -147,7 +161,16 @@ public final class SmartFork extends Processor
 			{
 				m_outputPushables[i].push(o);
 			}
-			incrementClean();
+			return this;
+		}
+
+		@Override
+		public Pushable pushAll(Object[] events)
+		{
+			for (int i = 0; i < m_outputPushables.length; i++)
+			{
+				m_outputPushables[i].pushAll(events);
+			}
 			return this;
 		}
 
@@ -164,19 +187,6 @@ public final class SmartFork extends Processor
 		}
 	}
 	
-	/**
-	 * Increments the clean counter, which is used to decide when to
-	 * perform a clean-up of the input buffer 
-	 */
-	protected void incrementClean()
-	{
-		m_timeSinceLastClean = (m_timeSinceLastClean + 1) % s_cleanInterval;
-		if (m_timeSinceLastClean == 0)
-		{
-			cleanQueue();
-		}
-	}
-	
 	protected class QueuePullable implements Pullable
 	{
 		private final int m_queueIndex;
@@ -197,39 +207,49 @@ public final class SmartFork extends Processor
 		@Override
 		public Object pullSoft()
 		{
-			Object out = null;
-			if (m_cursors[m_queueIndex] >= m_inputEvents.size())
+			Object out = m_inputEvents.poll(m_queueIndex);
+			if (out != null)
 			{
-				Object o = m_inputPullables[0].pullSoft();
-				if (o != null)
-				{
-					m_inputEvents.add(o);
-				}
+				return out;
 			}
-			if (m_cursors[m_queueIndex] < m_inputEvents.size())
+			synchronized (m_inputEvents)
 			{
-				out = m_inputEvents.get(m_cursors[m_queueIndex]);
-				m_cursors[m_queueIndex]++;
+				// Another output may have pulled an event meanwhile
+				out = m_inputEvents.poll(m_queueIndex);
+				if (out == null)
+				{
+					Object o = m_inputPullables[0].pullSoft();
+					if (o != null)
+					{
+						publish(o);
+						out = m_inputEvents.poll(m_queueIndex);
+					}
+				}
 			}
-			incrementClean();
 			return out;
 		}
 
 		@Override
 		public Object pull()
 		{
-			Object out = null;
-			if (m_cursors[m_queueIndex] >= m_inputEvents.size())
+			Object out = m_inputEvents.poll(m_queueIndex);
+			if (out != null)
 			{
-				Object o = m_inputPullables[0].pull();
-				m_inputEvents.add(o);
+				return out;
 			}
-			if (m_cursors[m_queueIndex] < m_inputEvents.size())
+			synchronized (m_inputEvents)
 			{
-				out = m_inputEvents.get(m_cursors[m_queueIndex]);
-				m_cursors[m_queueIndex]++;
+				out = m_inputEvents.poll(m_queueIndex);
+				if (out == null)
+				{
+					Object o = m_inputPullables[0].pull();
+					if (o != null)
+					{
+						publish(o);
+						out = m_inputEvents.poll(m_queueIndex);
+					}
+				}
 			}
-			incrementClean();
 			return out;
 		}
 		
@@ -242,21 +262,36 @@ public final class SmartFork extends Processor
 		@Override
 		public NextStatus hasNextSoft()
 		{
-			if (m_cursors[m_queueIndex] < m_inputEvents.size())
+			if (m_inputEvents.available(m_queueIndex) > 0)
 			{
 				return NextStatus.YES;
 			}
-			return m_inputPullables[0].hasNextSoft();
+			synchronized (m_inputEvents)
+			{
+				// Another output may have published an event meanwhile
+				if (m_inputEvents.available(m_queueIndex) > 0)
+				{
+					return NextStatus.YES;
+				}
+				return m_inputPullables[0].hasNextSoft();
+			}
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			if (m_cursors[m_queueIndex] < m_inputEvents.size())
+			if (m_inputEvents.available(m_queueIndex) > 0)
 			{
 				return true;
 			}
-			return m_inputPullables[0].hasNext();
+			synchronized (m_inputEvents)
+			{
+				if (m_inputEvents.available(m_queueIndex) > 0)
+				{
+					return true;
+				}
+				return m_inputPullables[0].hasNext();
+			}
 		}	
 		
 		@Override
@@ -279,58 +314,17 @@ public final class SmartFork extends Processor
 	}
 	
 	/**
-	 * Cleans the input list, and removes all events at the beginning that
-	 * have been consumed by all outputs
-	 */
-	protected void cleanQueue()
-	{
-		int i = 0;
-		int to_shift = 0;
-		Iterator<Object> it = m_inputEvents.iterator();
-		while (it.hasNext())
-		{
-			it.next(); // Must call next, otherwise can't call remove() later on
-			boolean all_consumed = true;
-			for (int j = 0; j < m_cursors.length; j++)
-			{
-				if (m_cursors[j] <= i)
-				{
-					// This event was not consumed yet by output j: stop cleaning
-					all_consumed = false;
-					break;
-				}
-			}
-			if (all_consumed)
-			{
-				// All queues consumed this event: remove it...
-				it.remove();
-				// ...and remember to shift the queue indices by one more position
-				to_shift++;				
-			}
-			else
-			{
-				// Stop cleaning
-				break;
-			}
-			i++;
-		}
-		// Shift queue indices by the amount of events we removed
-		for (int j = 0; j < m_cursors.length; j++)
-		{
-			m_cursors[j] -= to_shift;
-		}
-	}
-	
-	/**
-	 * Creates a copy of the current fork with a greater arity
+	 * Changes the arity of the current fork. When the arity decreases,
+	 * the last outputs are disconnected. New outputs start with the
+	 * oldest event still in the buffer.
 	 * @param out_arity The desired arity for the output fork
 	 */
 	public void extendOutputArity(int out_arity)
 	{
 		m_outputArity = out_arity;
-		m_cursors = new int[out_arity];
+		m_inputEvents.setConsumerCount(out_arity);
 		Pushable[] out_pushables = new Pushable[out_arity];
-		for (int i = 0; i < m_outputPushables.length; i++)
+		for (int i = 0; i < Math.min(out_arity, m_outputPushables.length); i++)
 		{
 			out_pushables[i] = m_outputPushables[i];
 		}
@@ -17,8 +17,6 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.Queue;
-
 import ca.uqac.lif.cep.Pushable;
 import ca.uqac.lif.cep.SingleProcessor;
 
@@ -42,21 +40,30 @@ public abstract class Source extends SingleProcessor
 		super(0, out_arity);
 	}
 	
+	/**
+	 * Tells the processors waiting on this source that it has new data.
+	 * Sources that receive their data from another thread should call
+	 * this method, so that a pull on an idle source can sleep instead
+	 * of polling.
+	 * @see ca.uqac.lif.cep.WaitStrategy
+	 */
+	public final void signal()
+	{
+		m_waitStrategy.signal();
+	}
+
 	/**
 	 * Tells the source to push events into the pipeline
 	 */
 	public final void push()
 	{
-		Queue<Object[]> output = compute(null);
-		if (output == null || output.isEmpty())
-		{
-			return;
-		}
-		for (Object[] evt : output)
+		computeMeasured(null, m_outputCollector);
+		Object[] evt;
+		while ((evt = m_outputCollector.poll()) != null)
 		{
-			if (evt != null && !allNull(evt))
+			if (!allNull(evt))
 			{
-				for (int i = 0; i < output.size(); i++)
+				for (int i = 0; i < m_outputPushables.length; i++)
 				{
 					Pushable p = m_outputPushables[i];
 					p.push(evt[i]);
@@ -18,22 +18,21 @@
 package ca.uqac.lif.cep.tmf;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Set;
 import java.util.Stack;
 
 import ca.uqac.lif.cep.Connector;
 import ca.uqac.lif.cep.Connector.ConnectorException;
 import ca.uqac.lif.cep.functions.Function;
 import ca.uqac.lif.cep.Processor;
-import ca.uqac.lif.cep.Pushable;
 import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.Stateful;
 
 /**
  * Separates an input trace into different "slices". The slicer
@@ -54,6 +53,29 @@ import ca.uqac.lif.cep.SingleProcessor;
  * object {@link ToAllSlices}. This indicates that no new slice must
  * be created, but that the incoming event must be dispatched to
  * <em>all</em> slices one by one.
+ * <p>
+ * A slice is closed, and the memory it uses released, when the
+ * cleaning function returns <code>true</code> on its output, when it
+ * is idle for too long, when there are too many slices, or explicitly
+ * with {@link #closeSlice(Object)}; see {@link SliceEviction}. Its
+ * value is then removed from the collection. (A slice closed by the
+ * cleaning function is removed when the next event arrives, so that its
+ * last value is output once.) An event for a closed slice starts a new
+ * one.
+ * <p>
+ * In {@linkplain #setDeltaMode(boolean) delta mode}, the slicer does not
+ * output the whole collection on every event, but only a {@link Delta}
+ * for each slice whose value changed, and one for each slice that is
+ * closed. The cost of an event for the processors downstream then no
+ * longer depends on the number of slices. Otherwise,
+ * {@link #getChangedIndices()} tells which values of the collection
+ * changed since it was last output.
+ * <p>
+ * With {@link #setSliceStore(SliceStore, int)}, the processors of
+ * slices that have not received an event for a while are moved out of
+ * memory, and brought back when they receive one; see
+ * {@link SliceCache}. Their values stay in the collection. Events for
+ * all slices are then not supported.
  *  
  * @author Sylvain Hallé
  */
@@ -74,9 +96,10 @@ public class StateSlicer extends SingleProcessor
 	 */
 	protected Function m_cleaningFunction = null;
 
-	protected Map<Object,Processor> m_slices;
-
-	protected Map<Object,QueueSink> m_sinks; 
+	/**
+	 * The slices whose processor is in memory, indexed by their ID
+	 */
+	protected SliceTable m_slices;
 
 	/**
 	 * The last value output by the processor for each slice
@@ -84,7 +107,8 @@ public class StateSlicer extends SingleProcessor
 	protected List<Object> m_lastValues;
 
 	/**
-	 * A map between slices and their index in the various arrays 
+	 * A map between slices and their index in the various arrays. This
+	 * includes the slices whose processor is in the store.
 	 */
 	protected Map<Object,Integer> m_sliceIndices;
 
@@ -93,6 +117,50 @@ public class StateSlicer extends SingleProcessor
 	 */
 	protected List<Object> m_fixedValues;
 
+	/**
+	 * The ID of the slice of each value in {@link #m_lastValues}
+	 */
+	protected List<Object> m_sliceIds;
+
+	/**
+	 * The slices the cleaning function closed on the last event
+	 */
+	protected List<Object> m_toClean;
+
+	/**
+	 * Decides when slices are closed
+	 */
+	protected final SliceEviction m_eviction = new SliceEviction();
+
+	/**
+	 * Whether the slicer outputs {@link Delta}s instead of the collection
+	 * of values
+	 */
+	protected boolean m_deltaMode = false;
+
+	/**
+	 * The indices of {@link #m_lastValues} that changed since it was
+	 * last output. An index may appear more than once.
+	 */
+	protected int[] m_changed = new int[16];
+
+	/**
+	 * The number of indices in {@link #m_changed}
+	 */
+	protected int m_changedCount = 0;
+
+	/**
+	 * Whether {@link #m_changed} was output with the collection, and
+	 * must be emptied on the next event
+	 */
+	private boolean m_changedOutput = false;
+
+	/**
+	 * Decides which slice processors are kept in memory, or
+	 * <code>null</code> to keep all of them
+	 */
+	protected SliceCache m_cache = null;
+
 	StateSlicer()
 	{
 		super(1, 1);
@@ -104,11 +172,12 @@ public class StateSlicer extends SingleProcessor
 		m_processor = proc;
 		m_slicingFunction = func;
 		m_cleaningFunction = clean_func;
-		m_slices = new HashMap<Object,Processor>();
-		m_sinks = new HashMap<Object,QueueSink>();
+		m_slices = new SliceTable();
 		m_sliceIndices = new HashMap<Object,Integer>();
 		m_lastValues = new ArrayList<Object>();
 		m_fixedValues = new LinkedList<Object>();
+		m_sliceIds = new ArrayList<Object>();
+		m_toClean = new ArrayList<Object>();
 	}
 
 	public StateSlicer(/*@NonNull*/ Function func, /*@NonNull*/ Processor proc)
@@ -119,73 +188,402 @@ public class StateSlicer extends SingleProcessor
 	@Override
 	protected Queue<Object[]> compute(Object[] inputs) 
 	{
-		int output_arity = getOutputArity();
+		Queue<Object[]> out_queue = newQueue();
+		clearChanged();
+		for (Object s_id : m_toClean)
+		{
+			removeSlice(s_id, SliceEviction.Cause.CLEANED, out_queue);
+		}
+		m_toClean.clear();
 		Object[] f_value = m_slicingFunction.evaluate(inputs);
 		Object slice_id = f_value[0];
-		Set<Object> slices_to_process = new HashSet<Object>();
+		long now = currentTime();
 		if (slice_id instanceof ToAllSlices || slice_id == null)
 		{
-			slices_to_process.addAll(m_slices.keySet());
+			if (m_cache != null)
+			{
+				// Every slice in the store would have to be read and
+				// written back
+				throw new UnsupportedOperationException("A slicer with a slice store cannot send an event to all slices");
+			}
+			for (int i = 0; i < m_slices.size(); i++)
+			{
+				process(m_slices.get(i), inputs, false, out_queue, now);
+			}
 		}
 		else
 		{
-			if (!m_slices.containsKey(slice_id))
+			SliceTable.Slice slice = m_slices.get(slice_id);
+			boolean is_new = false;
+			if (slice == null)
 			{
-				// First time we see this value: create new slice
-				Processor p = m_processor.clone();
-				m_slices.put(slice_id, p);
-				addContextFromSlice(p, slice_id);
-				QueueSink sink = new QueueSink(output_arity);
-				try 
+				slice = createSlice(slice_id);
+				if (m_sliceIndices.containsKey(slice_id))
 				{
-					Connector.connect(p, sink);
-				} 
-				catch (ConnectorException e) 
+					// The processor was moved out of memory
+					((Stateful) slice.getProcessor()).setState(m_cache.warm(slice_id));
+				}
+				else
 				{
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					// First time we see this value: put dummy value temporarily
+					m_lastValues.add(null);
+					m_sliceIds.add(slice_id);
+					m_sliceIndices.put(slice_id, m_lastValues.size() - 1);
+					is_new = true;
 				}
-				m_sinks.put(slice_id, sink);
-				// Put dummy value temporarily
-				m_lastValues.add(null);
-				m_sliceIndices.put(slice_id, m_lastValues.size() - 1);
+				m_slices.put(slice);
 			}
-			slices_to_process.add(slice_id);
+			process(slice, inputs, is_new, out_queue, now);
+			spillSlices();
 		}
-		for (Object s_id : slices_to_process)
+		if (m_eviction.isEnabled())
 		{
-			// Find processor corresponding to that slice
-			Processor slice_p = m_slices.get(s_id);
-			// If this slice hasn't been cleaned up...
-			if (slice_p != null)
+			Object evicted;
+			while ((evicted = m_eviction.poll(now)) != null)
 			{
-				QueueSink sink_p = m_sinks.get(s_id);
-				// Push the input into the processor
-				for (int i = 0; i < inputs.length; i++)
-				{
-					Object o_i = inputs[i];
-					Pushable p = slice_p.getPushableInput(i);
-					p.push(o_i);
-				}
-				// Collect the output from that processor
-				Object[] out = sink_p.remove();
-				// Can we clean that slice?
-				Object[] can_clean = null;
-				if (m_cleaningFunction != null)
+				removeSlice(evicted, m_eviction.getCause(), out_queue);
+			}
+		}
+		if (!m_deltaMode)
+		{
+			out_queue.add(new Object[]{m_lastValues});
+			m_changedOutput = true;
+		}
+		return out_queue;
+	}
+
+	/**
+	 * Gives an input front to a slice, and updates its value in the
+	 * collection
+	 * @param slice The slice
+	 * @param inputs The front
+	 * @param is_new Whether the slice was just created
+	 * @param out_queue The queue where to add the {@link Delta} of the
+	 *   slice, in delta mode
+	 * @param now The current time
+	 */
+	protected void process(SliceTable.Slice slice, Object[] inputs, boolean is_new, Queue<Object[]> out_queue, long now)
+	{
+		Object s_id = slice.getId();
+		Object[] out = slice.push(inputs);
+		// Can we clean that slice?
+		Object[] can_clean = null;
+		if (m_cleaningFunction != null)
+		{
+			can_clean = m_cleaningFunction.evaluate(out);
+		}
+		if (can_clean != null && can_clean.length > 0 && can_clean[0] instanceof Boolean && (Boolean) (can_clean[0]) == true)
+		{
+			// Yes: remove the slice on the next event
+			m_toClean.add(s_id);
+		}
+		int index = m_sliceIndices.get(s_id);
+		Object previous = m_lastValues.set(index, out[0]);
+		if (is_new || (previous == null ? out[0] != null : !previous.equals(out[0])))
+		{
+			addChanged(index);
+			if (m_deltaMode)
+			{
+				out_queue.add(new Object[]{new Delta(s_id, out[0], false)});
+			}
+		}
+		if (m_eviction.isEnabled())
+		{
+			m_eviction.touch(s_id, now);
+		}
+		if (m_cache != null)
+		{
+			m_cache.touch(s_id);
+		}
+	}
+
+	/**
+	 * Creates the processor of a slice
+	 * @param slice_id The slice ID
+	 * @return The slice
+	 */
+	protected SliceTable.Slice createSlice(Object slice_id)
+	{
+		Processor p = m_processor.clone();
+		m_processor.copyQueueSettings(p);
+		addContextFromSlice(p, slice_id);
+		QueueSink sink = new QueueSink(getOutputArity());
+		try 
+		{
+			Connector.connect(p, sink);
+		} 
+		catch (ConnectorException e) 
+		{
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		return new SliceTable.Slice(slice_id, p, sink);
+	}
+
+	/**
+	 * Moves out of memory the slice processors the {@link SliceCache}
+	 * says are no longer hot
+	 */
+	protected void spillSlices()
+	{
+		if (m_cache == null)
+		{
+			return;
+		}
+		Object cold_id;
+		while ((cold_id = m_cache.poll()) != null)
+		{
+			SliceTable.Slice slice = m_slices.remove(cold_id);
+			if (slice != null)
+			{
+				m_cache.getStore().put(cold_id, ((Stateful) slice.getProcessor()).getState());
+			}
+		}
+	}
+
+	/**
+	 * Forgets the indices of the values that changed, if the collection
+	 * was output since they were recorded
+	 */
+	private void clearChanged()
+	{
+		if (m_changedOutput)
+		{
+			m_changedCount = 0;
+			m_changedOutput = false;
+		}
+	}
+
+	/**
+	 * Records that a value of the collection changed
+	 * @param index The index of the value
+	 */
+	protected void addChanged(int index)
+	{
+		if (m_deltaMode)
+		{
+			// The collection is never output, so the indices would never
+			// be cleared
+			return;
+		}
+		if (m_changedCount == m_changed.length)
+		{
+			m_changed = Arrays.copyOf(m_changed, m_changedCount * 2);
+		}
+		m_changed[m_changedCount++] = index;
+	}
+
+	/**
+	 * Closes a slice, and removes its value from the collection. The
+	 * front returned by the {@link SliceEviction.Listener}, if any, and
+	 * in delta mode the {@link Delta} of the closed slice, are output
+	 * right away.
+	 * @param slice_id The slice ID
+	 * @return <code>true</code> if the slice existed
+	 */
+	public boolean closeSlice(Object slice_id)
+	{
+		if (!m_sliceIndices.containsKey(slice_id))
+		{
+			return false;
+		}
+		m_toClean.remove(slice_id);
+		clearChanged();
+		Queue<Object[]> fronts = newQueue();
+		removeSlice(slice_id, SliceEviction.Cause.EXPLICIT, fronts);
+		for (Object[] last : fronts)
+		{
+			for (int i = 0; i < m_outputQueues.length; i++)
+			{
+				if (m_outputPushables[i] != null)
 				{
-					can_clean = m_cleaningFunction.evaluate(out);
+					m_outputPushables[i].push(last[i]);
 				}
-				if (can_clean != null && can_clean.length > 0 && can_clean[0] instanceof Boolean && (Boolean) (can_clean[0]) == true)
+				else
 				{
-					// Yes: set the processor for that slice to null so it
-					// can be garbage collected
-					m_slices.put(s_id, null);
-					m_sinks.put(s_id, null);
+					m_outputQueues[i].add(last[i]);
 				}
-				m_lastValues.set(m_sliceIndices.get(s_id), out[0]);
 			}
 		}
-		return wrapObject(m_lastValues);
+		return true;
+	}
+
+	/**
+	 * Removes a slice and its value, and notifies the listener. The
+	 * value of the last slice takes the place of the removed one in
+	 * the collection.
+	 * @param slice_id The slice ID
+	 * @param cause Why the slice is closed
+	 * @param out_queue The queue where to add the {@link Delta} of the
+	 *   closed slice, in delta mode, and the front returned by the
+	 *   listener, if any
+	 */
+	protected void removeSlice(Object slice_id, SliceEviction.Cause cause, Queue<Object[]> out_queue)
+	{
+		m_slices.remove(slice_id);
+		if (m_cache != null)
+		{
+			m_cache.forget(slice_id);
+		}
+		int index = m_sliceIndices.remove(slice_id);
+		int last_index = m_lastValues.size() - 1;
+		Object value = m_lastValues.get(index);
+		Object moved_value = m_lastValues.remove(last_index);
+		Object moved_id = m_sliceIds.remove(last_index);
+		if (index != last_index)
+		{
+			m_lastValues.set(index, moved_value);
+			m_sliceIds.set(index, moved_id);
+			m_sliceIndices.put(moved_id, index);
+			addChanged(index);
+		}
+		if (m_deltaMode)
+		{
+			out_queue.add(new Object[]{new Delta(slice_id, value, true)});
+		}
+		Object[] front = m_eviction.closed(slice_id, new Object[]{value}, cause);
+		if (front != null)
+		{
+			out_queue.add(front);
+		}
+	}
+
+	/**
+	 * Keeps the processors of the slices that have not received an event
+	 * for a while in a store instead of the memory. This should be done
+	 * before the slicer receives its first event. A copy of the slicer
+	 * keeps all its slices in memory.
+	 * <p>
+	 * With a store, the slicing function must not send events to all
+	 * slices, as each such event would read and write back every slice
+	 * in the store; the slicer throws an
+	 * {@link UnsupportedOperationException} when it does. If slices can
+	 * also be closed (see {@link SliceEviction}), the time each slice
+	 * was last used is kept in memory, whether the slice is in memory or
+	 * in the store.
+	 * @param store The store, or <code>null</code> to keep all the
+	 *   slices in memory
+	 * @param hot_slices The maximum number of slice processors kept in
+	 *   memory
+	 * @return This slicer
+	 * @throws IllegalArgumentException If the slice processor is not
+	 *   {@link Stateful}
+	 */
+	public StateSlicer setSliceStore(SliceStore store, int hot_slices)
+	{
+		if (store == null)
+		{
+			m_cache = null;
+			return this;
+		}
+		if (!(m_processor instanceof Stateful))
+		{
+			throw new IllegalArgumentException("The slice processor is not stateful");
+		}
+		m_cache = new SliceCache(store, hot_slices);
+		return this;
+	}
+
+	/**
+	 * Gets the object deciding which slice processors are kept in memory
+	 * @return The cache, or <code>null</code> if all the slices are
+	 *   kept in memory
+	 */
+	public SliceCache getSliceCache()
+	{
+		return m_cache;
+	}
+
+	/**
+	 * Sets whether the slicer outputs a {@link Delta} for each slice that
+	 * changes or is closed, instead of the collection of values
+	 * @param b Set to <code>true</code> to output deltas
+	 * @return This slicer
+	 */
+	public StateSlicer setDeltaMode(boolean b)
+	{
+		m_deltaMode = b;
+		m_changedCount = 0;
+		m_changedOutput = false;
+		return this;
+	}
+
+	/**
+	 * Determines if the slicer outputs deltas
+	 * @return <code>true</code> if it does
+	 */
+	public boolean isDeltaMode()
+	{
+		return m_deltaMode;
+	}
+
+	/**
+	 * Gets the indices of the values of the collection that changed
+	 * since it was last output, including those where the value of
+	 * another slice took the place of a closed one. Values are compared
+	 * with <code>equals()</code>; a value changed in place by the slice's
+	 * processor is not seen as a change. The collection may also have
+	 * become shorter.
+	 * @return The indices, in increasing order; none in delta mode
+	 */
+	public int[] getChangedIndices()
+	{
+		int[] indices = Arrays.copyOf(m_changed, m_changedCount);
+		Arrays.sort(indices);
+		int size = m_lastValues.size();
+		int n = 0;
+		for (int i = 0; i < indices.length; i++)
+		{
+			if (indices[i] < size && (n == 0 || indices[n - 1] != indices[i]))
+			{
+				indices[n++] = indices[i];
+			}
+		}
+		return Arrays.copyOf(indices, n);
+	}
+
+	/**
+	 * Sets the time after which a slice that receives no event is closed
+	 * @param millis The time, in milliseconds, or a negative value for
+	 *   no limit
+	 * @return This slicer
+	 */
+	public StateSlicer setIdleTimeout(long millis)
+	{
+		m_eviction.setIdleTimeout(millis);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of slices. When a new slice exceeds it,
+	 * the least recently used slice is closed.
+	 * @param max The number of slices, or a negative value for no limit
+	 * @return This slicer
+	 */
+	public StateSlicer setMaxSlices(int max)
+	{
+		m_eviction.setMaxSlices(max);
+		return this;
+	}
+
+	/**
+	 * Sets the listener notified of the slices that are closed
+	 * @param listener The listener, or <code>null</code> for none
+	 * @return This slicer
+	 */
+	public StateSlicer setEvictionListener(SliceEviction.Listener listener)
+	{
+		m_eviction.setListener(listener);
+		return this;
+	}
+
+	/**
+	 * Gets the current time, used to find idle slices
+	 * @return The time, in milliseconds
+	 */
+	protected long currentTime()
+	{
+		return System.currentTimeMillis();
 	}
 
 	/**
@@ -218,8 +616,22 @@ public class StateSlicer extends SingleProcessor
 	{
 		super.reset();
 		m_slices.clear();
+		m_sliceIndices.clear();
+		m_lastValues.clear();
+		m_sliceIds.clear();
+		m_toClean.clear();
+		m_changedCount = 0;
+		m_changedOutput = false;
+		m_eviction.reset();
 		m_slicingFunction.reset();
-		m_cleaningFunction.reset();
+		if (m_cleaningFunction != null)
+		{
+			m_cleaningFunction.reset();
+		}
+		if (m_cache != null)
+		{
+			m_cache.reset();
+		}
 	}
 
 	/**
@@ -228,7 +640,7 @@ public class StateSlicer extends SingleProcessor
 	 */
 	public int getActiveSliceCount()
 	{
-		return m_slices.size();
+		return m_sliceIndices.size();
 	}
 
 	/**
@@ -237,7 +649,7 @@ public class StateSlicer extends SingleProcessor
 	 */
 	public int getClosedSliceCount()
 	{
-		return m_fixedValues.size();
+		return (int) m_eviction.getClosedCount();
 	}
 
 	public static void build(Stack<Object> stack) throws ConnectorException
@@ -260,7 +672,104 @@ public class StateSlicer extends SingleProcessor
 	@Override
 	public StateSlicer clone()
 	{
-		return new StateSlicer(m_slicingFunction.clone(m_context), m_processor.clone(), m_cleaningFunction.clone());
+		Function clean = m_cleaningFunction == null ? null : m_cleaningFunction.clone();
+		StateSlicer out = new StateSlicer(m_slicingFunction.clone(m_context), m_processor.clone(), clean);
+		m_eviction.copyTo(out.m_eviction);
+		out.m_deltaMode = m_deltaMode;
+		return out;
+	}
+
+	/**
+	 * The change of a slice's value, output in delta mode
+	 */
+	public static class Delta
+	{
+		/**
+		 * The slice ID
+		 */
+		protected final Object m_sliceId;
+
+		/**
+		 * The slice's new value, or its last value if it is closed
+		 */
+		protected final Object m_value;
+
+		/**
+		 * Whether the slice is closed
+		 */
+		protected final boolean m_closed;
+
+		/**
+		 * Creates a new delta
+		 * @param slice_id The slice ID
+		 * @param value The slice's new value, or its last value if it is
+		 *   closed
+		 * @param closed Whether the slice is closed
+		 */
+		public Delta(Object slice_id, Object value, boolean closed)
+		{
+			super();
+			m_sliceId = slice_id;
+			m_value = value;
+			m_closed = closed;
+		}
+
+		/**
+		 * Gets the slice ID
+		 * @return The ID
+		 */
+		public Object getSliceId()
+		{
+			return m_sliceId;
+		}
+
+		/**
+		 * Gets the slice's new value, or its last value if it is closed
+		 * @return The value
+		 */
+		public Object getValue()
+		{
+			return m_value;
+		}
+
+		/**
+		 * Determines if the slice is closed
+		 * @return <code>true</code> if it is
+		 */
+		public boolean isClosed()
+		{
+			return m_closed;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Delta))
+			{
+				return false;
+			}
+			Delta d = (Delta) o;
+			return m_closed == d.m_closed && equal(m_sliceId, d.m_sliceId) && equal(m_value, d.m_value);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = m_sliceId == null ? 0 : m_sliceId.hashCode();
+			h = 31 * h + (m_value == null ? 0 : m_value.hashCode());
+			return m_closed ? ~h : h;
+		}
+
+		@Override
+		public String toString()
+		{
+			return (m_closed ? "closed " : "") + m_sliceId + "=" + m_value;
+		}
+
+		private static boolean equal(Object x, Object y)
+		{
+			return x == null ? y == null : x.equals(y);
+		}
 	}
 
 	/**
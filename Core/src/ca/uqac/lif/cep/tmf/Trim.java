@@ -17,7 +17,6 @@
  */
 package ca.uqac.lif.cep.tmf;
 
-import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.Stack;
 
@@ -63,14 +62,18 @@ public class Trim extends SingleProcessor
 	}
 
 	@Override
-	protected Queue<Object[]> compute(Object[] inputs)
+	protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
 	{
 		m_eventsReceived++;
 		if (m_eventsReceived > m_delay)
 		{
-			return wrapVector(inputs);
+			if (allNull(inputs))
+			{
+				return false;
+			}
+			outputs.add(inputs);
 		}
-		return new ArrayDeque<Object[]>();
+		return true;
 	}
 	
 	public static void build(Stack<Object> stack) throws ConnectorException
@@ -0,0 +1,47 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import ca.uqac.lif.cep.Processor;
+
+/**
+ * Applies a processor on consecutive windows of <i>w</i> events that do
+ * not overlap: events 0 to <i>w</i>-1, then <i>w</i> to
+ * 2<i>w</i>-1, and so on. This is a {@link HoppingWindow} whose step
+ * is equal to its width.
+ *
+ * @author Sylvain Hallé
+ */
+public class TumblingWindow extends HoppingWindow
+{
+	/**
+	 * Creates a new tumbling window
+	 * @param in_processor The processor to apply on each window
+	 * @param width The width of a window
+	 */
+	public TumblingWindow(Processor in_processor, int width)
+	{
+		super(in_processor, width, width);
+	}
+
+	@Override
+	public TumblingWindow clone()
+	{
+		return new TumblingWindow(m_processor.clone(), m_width);
+	}
+}
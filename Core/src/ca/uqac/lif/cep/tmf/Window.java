@@ -18,7 +18,6 @@
 package ca.uqac.lif.cep.tmf;
 
 import java.util.ArrayDeque;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Stack;
@@ -28,9 +27,16 @@ import ca.uqac.lif.cep.Connector.ConnectorException;
 import ca.uqac.lif.cep.Processor;
 import ca.uqac.lif.cep.Pushable;
 import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.functions.BinaryFunction;
+import ca.uqac.lif.cep.functions.CumulativeFunction;
+import ca.uqac.lif.cep.functions.Function;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.numbers.DoubleCumulativeProcessor;
+import ca.uqac.lif.cep.numbers.LongCumulativeProcessor;
 import ca.uqac.lif.cep.objectfactory.IntegerSetting;
 import ca.uqac.lif.cep.objectfactory.Setting;
 import ca.uqac.lif.cep.objectfactory.SettingsSet;
+import ca.uqac.lif.cep.util.CircularBuffer;
 
 /**
  * Simulates the application of a "sliding window" to a trace.
@@ -43,6 +49,25 @@ import ca.uqac.lif.cep.objectfactory.SettingsSet;
  *   events 1 to <i>n</i>-1...</li>
  * <li>...and so on</li> 
  * </ul>
+ * Computing &phi; again on every window takes a time proportional to
+ * the window's width. When &phi; accumulates its input with a function
+ * whose inverse is exact (see {@link BinaryFunction#isInverseExact()}),
+ * such as an addition on long integers, the window instead updates the
+ * result in constant time: it applies the function to the new event,
+ * and the inverse to the event leaving the window. When the function
+ * is associative (see {@link BinaryFunction#isAssociative()}), such as
+ * a maximum, a conjunction, or an addition on floating-point numbers,
+ * the window keeps partial results in a {@link SlidingAggregator},
+ * which also takes an amortized constant time per event. This is
+ * detected when the window is created, and can be turned off with
+ * {@link #setIncremental(boolean)}. On floating-point numbers, both
+ * ways of computing may round results differently.
+ * <p>
+ * A function with an inverse that is not exact, and that is not
+ * associative, is still updated with its inverse; the result is then
+ * computed again from the events in the window when it is no longer a
+ * finite number, and once every <i>n</i> events, so that rounding
+ * errors do not pile up.
  * @author sylvain
  *
  */
@@ -71,7 +96,37 @@ public class Window extends SingleProcessor
 	/**
 	 * The event windows
 	 */
-	protected List<Object>[] m_window;
+	protected CircularBuffer<Object>[] m_window;
+
+	/**
+	 * The function the internal processor accumulates its input with,
+	 * if it has an inverse or is associative
+	 */
+	protected BinaryFunction<Object,Object,Object> m_function;
+
+	/**
+	 * Whether the result is updated from {@link #m_function} instead of
+	 * being computed again on every window
+	 */
+	protected boolean m_incremental;
+
+	/**
+	 * The result accumulated over the current window, when it is
+	 * updated with the inverse of {@link #m_function}
+	 */
+	protected Object m_value;
+
+	/**
+	 * The partial results over the current window, when
+	 * {@link #m_function} has no exact inverse
+	 */
+	protected SlidingAggregator m_aggregator;
+
+	/**
+	 * The number of events removed with an inverse that is not exact
+	 * since the result was last computed from the whole window
+	 */
+	protected int m_inexactRemovals;
 
 	public Window(Processor in_processor, int width)
 	{
@@ -79,7 +134,44 @@ public class Window extends SingleProcessor
 		m_width = width;
 		m_processor = in_processor;
 		m_sink = new SinkLast(in_processor.getOutputArity());
+		m_function = getAggregateFunction(in_processor);
+		m_incremental = m_function != null;
+		if (m_function != null && !m_function.isInverseExact() && m_function.isAssociative())
+		{
+			m_aggregator = new SlidingAggregator(m_function);
+		}
+		reset();
+	}
+
+	/**
+	 * Sets whether the window updates its result incrementally from the
+	 * function its processor accumulates with
+	 * @param b Set to <code>true</code> to update the result
+	 *   incrementally, <code>false</code> to compute it again on every
+	 *   window
+	 * @return This window
+	 * @throws IllegalStateException If <code>b</code> is
+	 *   <code>true</code> and the processor does not accumulate its input
+	 *   with an invertible or associative function
+	 */
+	public Window setIncremental(boolean b)
+	{
+		if (b && m_function == null)
+		{
+			throw new IllegalStateException("The processor of this window has no invertible or associative function");
+		}
+		m_incremental = b;
 		reset();
+		return this;
+	}
+
+	/**
+	 * Determines if the window updates its result incrementally
+	 * @return <code>true</code> if it does
+	 */
+	public boolean isIncremental()
+	{
+		return m_incremental;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -88,15 +180,24 @@ public class Window extends SingleProcessor
 	{
 		super.reset();
 		int arity = getInputArity();
-		m_window = new List[arity];
+		m_window = new CircularBuffer[arity];
 		m_innerInputs = new Pushable[arity];
 		m_processor.reset();
 		for (int i = 0; i < arity; i++)
 		{
-			m_window[i] = new LinkedList<Object>();
+			m_window[i] = new CircularBuffer<Object>(m_width);
 			m_innerInputs[i] = m_processor.getPushableInput(i);
 		}		
 		m_sink.reset();
+		if (m_function != null)
+		{
+			m_value = m_function.getStartValue();
+		}
+		m_inexactRemovals = 0;
+		if (m_aggregator != null)
+		{
+			m_aggregator.clear();
+		}
 		try 
 		{
 			Connector.connect(m_processor, m_sink);
@@ -111,16 +212,18 @@ public class Window extends SingleProcessor
 	@Override
 	protected Queue<Object[]> compute(Object[] inputs)
 	{
+		if (m_incremental)
+		{
+			return computeIncremental(inputs[0]);
+		}
 		// Add the inputs to each window
 		boolean windows_ok = true;
 		int arity = inputs.length;
 		for (int i = 0; i < arity; i++)
 		{
-			List<Object> q = m_window[i];
+			CircularBuffer<Object> q = m_window[i];
 			q.add(inputs[i]);
-			int size_diff = q.size() - m_width;
-			leftTrim(size_diff, q);
-			if (size_diff < 0)
+			if (!q.isFull())
 			{
 				// Window is still to small to compute
 				windows_ok = false;
@@ -136,8 +239,7 @@ public class Window extends SingleProcessor
 				for (int j = 0; j < getInputArity(); j++)
 				{
 					// Feed 
-					List<Object> q = m_window[j];
-					Object o = q.get(i);
+					Object o = m_window[j].get(i);
 					Pushable p = m_innerInputs[j];
 					p.push(o);
 				}
@@ -154,27 +256,115 @@ public class Window extends SingleProcessor
 	}
 
 	/**
-	 * Trims <i>n</i> events from the beginning of <tt>q</tt>
-	 * @param n The number of events to trim. If <i>n</i>&nbsp;&lt;1,
-	 *   trims nothing. If <i>n</i> is larger than the list's size,
-	 *   empties the list
-	 * @param q The queue to trim
+	 * Updates the result with a new event, in constant time
+	 * @param o The event
+	 * @return The output of the window
 	 */
-	protected static void leftTrim(int n, List<Object> q)
+	protected Queue<Object[]> computeIncremental(Object o)
 	{
-		if (n <= 0)
+		CircularBuffer<Object> q = m_window[0];
+		boolean evicts = q.isFull();
+		Object removed = q.add(o);
+		if (m_aggregator != null)
 		{
-			return;
+			m_aggregator.add(o);
+			if (evicts)
+			{
+				m_aggregator.remove();
+			}
+			if (!q.isFull())
+			{
+				return new ArrayDeque<Object[]>();
+			}
+			Object value = m_aggregator.getAggregate();
+			Object start = m_function.getStartValue();
+			if (start != null)
+			{
+				value = m_function.getValue(start, value);
+			}
+			return wrapObject(value);
 		}
-		if (n >= q.size())
+		m_value = m_value == null ? o : m_function.getValue(m_value, o);
+		if (evicts)
 		{
-			q.clear();
-			return;
+			m_value = m_function.getInverse().getValue(m_value, removed);
+			if (!m_function.isInverseExact())
+			{
+				m_inexactRemovals++;
+			}
+			if (m_value == null || !isFinite(m_value) || m_inexactRemovals >= m_width)
+			{
+				// The inverse cannot undo this event, or its errors may
+				// have piled up: compute the result from the events in
+				// the window
+				m_value = m_function.getStartValue();
+				for (Object e : q.view())
+				{
+					m_value = m_value == null ? e : m_function.getValue(m_value, e);
+				}
+				m_inexactRemovals = 0;
+			}
 		}
-		for (int i = 0; i < n; i++)
+		if (!q.isFull())
 		{
-			q.remove(0);
+			return new ArrayDeque<Object[]>();
 		}
+		return wrapObject(m_value);
+	}
+
+	/**
+	 * Determines if a value is a finite number. Values other than
+	 * numbers are considered finite.
+	 * @param o The value
+	 * @return <code>false</code> if the value is an infinite number or
+	 *   not a number, <code>true</code> otherwise
+	 */
+	protected static boolean isFinite(Object o)
+	{
+		if (!(o instanceof Number))
+		{
+			return true;
+		}
+		double d = ((Number) o).doubleValue();
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+
+	/**
+	 * Gets the function a processor accumulates its input with, if
+	 * this function has an inverse or is associative
+	 * @param p The processor
+	 * @return The function, or <code>null</code> if the processor does
+	 *   not accumulate its input with such a function
+	 */
+	@SuppressWarnings("unchecked")
+	protected static BinaryFunction<Object,Object,Object> getAggregateFunction(Processor p)
+	{
+		if (p.getInputArity() != 1 || p.getOutputArity() != 1)
+		{
+			return null;
+		}
+		BinaryFunction<?,?,?> f = null;
+		if (p instanceof FunctionProcessor)
+		{
+			Function inner = ((FunctionProcessor) p).getFunction();
+			if (inner instanceof CumulativeFunction)
+			{
+				f = ((CumulativeFunction<?>) inner).getFunction();
+			}
+		}
+		else if (p instanceof DoubleCumulativeProcessor)
+		{
+			f = ((DoubleCumulativeProcessor) p).getFunction();
+		}
+		else if (p instanceof LongCumulativeProcessor)
+		{
+			f = ((LongCumulativeProcessor) p).getFunction();
+		}
+		if (f == null || (f.getInverse() == null && !f.isAssociative()))
+		{
+			return null;
+		}
+		return (BinaryFunction<Object,Object,Object>) f;
 	}
 
 	public static void build(Stack<Object> stack) throws ConnectorException
@@ -200,9 +390,60 @@ public class Window extends SingleProcessor
 	@Override
 	public Window clone()
 	{
-		return new Window(m_processor.clone(), m_width);
+		Window out = new Window(m_processor.clone(), m_width);
+		out.m_incremental = m_incremental;
+		return out;
 	}
 	
+	/**
+	 * Gets the width of the window
+	 * @return The width
+	 */
+	public int getWidth()
+	{
+		return m_width;
+	}
+
+	/**
+	 * Gets the function the window updates its result from
+	 * @return The function, or <code>null</code> if the window computes
+	 *   its result again on every window
+	 * @see #isIncremental()
+	 */
+	public BinaryFunction<Object,Object,Object> getFunction()
+	{
+		if (!m_incremental)
+		{
+			return null;
+		}
+		return m_function;
+	}
+
+	/**
+	 * Gets the number of events currently in the window
+	 * @return The number of events, between 0 and the window's width
+	 */
+	public int getFillLevel()
+	{
+		if (m_window.length == 0)
+		{
+			return 0;
+		}
+		return m_window[0].size();
+	}
+
+	/**
+	 * Gets the events currently in the window on one of the inputs.
+	 * The list is not a copy: it is read-only, and changes as the window
+	 * slides.
+	 * @param index The input number
+	 * @return The events, from the oldest to the newest
+	 */
+	public List<Object> getContents(int index)
+	{
+		return m_window[index].view();
+	}
+
 	/**
 	 * Gets the set of initial settings for this processor
 	 * @return The set of settings
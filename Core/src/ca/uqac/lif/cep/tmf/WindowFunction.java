@@ -18,17 +18,24 @@
 package ca.uqac.lif.cep.tmf;
 
 import java.util.ArrayDeque;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Queue;
 
 import ca.uqac.lif.cep.SingleProcessor;
+import ca.uqac.lif.cep.functions.BinaryFunction;
 import ca.uqac.lif.cep.functions.Function;
+import ca.uqac.lif.cep.util.CircularBuffer;
 
 /**
  * Takes a sliding window of <i>n</i> successive input events,
  * passes them to an <i>n</i>-ary function and outputs the result.
  * This currently only works for functions with an output arity of 1.
+ * <p>
+ * The window can also aggregate its events with a binary function,
+ * applied from the oldest event to the newest. If this function is
+ * associative (see {@link BinaryFunction#isAssociative()}), the
+ * aggregate is updated in amortized constant time by a
+ * {@link SlidingAggregator}, instead of being computed again over the
+ * whole window.
  * @author Sylvain Hallé
  */
 public class WindowFunction extends SingleProcessor
@@ -46,7 +53,25 @@ public class WindowFunction extends SingleProcessor
 	/**
 	 * The event window
 	 */
-	protected List<Object> m_window;
+	protected CircularBuffer<Object> m_window;
+
+	/**
+	 * The array of arguments given to the function, reused on every
+	 * call
+	 */
+	protected Object[] m_arguments;
+
+	/**
+	 * The binary function aggregating the window, if the window is
+	 * created from such a function
+	 */
+	protected BinaryFunction<Object,Object,Object> m_aggregate;
+
+	/**
+	 * The partial aggregates of the window, if {@link #m_aggregate} is
+	 * associative
+	 */
+	protected SlidingAggregator m_aggregator;
 
 	WindowFunction()
 	{
@@ -56,7 +81,8 @@ public class WindowFunction extends SingleProcessor
 	WindowFunction(int width)
 	{
 		super(1, 1);
-		m_window = new LinkedList<Object>();
+		m_window = new CircularBuffer<Object>(width);
+		m_arguments = new Object[width];
 		m_width = width;
 	}
 	
@@ -70,28 +96,90 @@ public class WindowFunction extends SingleProcessor
 		m_function = f;
 	}
 
+	/**
+	 * Creates a new Window aggregating its events with a binary function
+	 * @param f The function
+	 * @param width The width of the window
+	 */
+	@SuppressWarnings("unchecked")
+	public WindowFunction(/*@NonNull*/ BinaryFunction<?,?,?> f, int width)
+	{
+		this(width);
+		m_aggregate = (BinaryFunction<Object,Object,Object>) f;
+		if (f.isAssociative())
+		{
+			m_aggregator = new SlidingAggregator(f);
+		}
+	}
+
 	@Override
 	protected Queue<Object[]> compute(Object[] inputs) 
 	{
-		m_window.add(inputs[0]);
-		int size = m_window.size();
-		if (size == m_width + 1)
+		if (m_aggregate != null)
 		{
-			m_window.remove(0);
-			Object value = m_function.evaluate(m_window.toArray())[0];
-			return wrapObject(value);
+			return computeAggregate(inputs[0]);
 		}
-		if (size == m_width)
+		m_window.add(inputs[0]);
+		if (m_window.isFull())
 		{
-			Object value = m_function.evaluate(m_window.toArray())[0];
+			Object value = m_function.evaluate(m_window.copyTo(m_arguments))[0];
 			return wrapObject(value);
 		}
 		return new ArrayDeque<Object[]>();
 	}
 
+	/**
+	 * Adds an event to the window, and aggregates the window with
+	 * {@link #m_aggregate}
+	 * @param o The event
+	 * @return The output of the window
+	 */
+	protected Queue<Object[]> computeAggregate(Object o)
+	{
+		boolean evicts = m_window.isFull();
+		m_window.add(o);
+		if (m_aggregator != null)
+		{
+			m_aggregator.add(o);
+			if (evicts)
+			{
+				m_aggregator.remove();
+			}
+		}
+		if (!m_window.isFull())
+		{
+			return new ArrayDeque<Object[]>();
+		}
+		if (m_aggregator != null)
+		{
+			return wrapObject(m_aggregator.getAggregate());
+		}
+		Object value = null;
+		for (Object e : m_window.view())
+		{
+			value = value == null ? e : m_aggregate.getValue(value, e);
+		}
+		return wrapObject(value);
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		m_window.clear();
+		if (m_aggregator != null)
+		{
+			m_aggregator.clear();
+		}
+	}
+
 	@Override
 	public WindowFunction clone()
 	{
+		if (m_aggregate != null)
+		{
+			return new WindowFunction(m_aggregate, m_width);
+		}
 		return new WindowFunction(m_function);
 	}
 }
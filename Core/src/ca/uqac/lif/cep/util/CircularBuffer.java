@@ -0,0 +1,239 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.util;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Buffer holding the last <i>n</i> elements added to it. Adding an
+ * element to a full buffer evicts the oldest one. Both take constant
+ * time and allocate nothing, as elements are stored in an array of
+ * fixed length.
+ * <p>
+ * The contents of the buffer can be read without copying them through
+ * {@link #view()}, a read-only list that always reflects the current
+ * contents of the buffer, from the oldest element to the newest.
+ * Elements can also be copied into an array provided by the caller
+ * with {@link #copyTo(Object[])}.
+ *
+ * @author Sylvain Hallé
+ */
+public class CircularBuffer<T>
+{
+	/**
+	 * The elements of the buffer
+	 */
+	private final Object[] m_elements;
+
+	/**
+	 * The position of the oldest element
+	 */
+	private int m_head = 0;
+
+	/**
+	 * The number of elements in the buffer
+	 */
+	private int m_size = 0;
+
+	/**
+	 * The read-only view of the buffer
+	 */
+	private final List<T> m_view = new View();
+
+	/**
+	 * Creates a new empty buffer
+	 * @param capacity The maximum number of elements in the buffer
+	 */
+	public CircularBuffer(int capacity)
+	{
+		super();
+		m_elements = new Object[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Adds an element to the buffer. If the buffer is full, its oldest
+	 * element is removed.
+	 * @param o The element
+	 * @return The element removed, or <code>null</code> if the buffer
+	 *   was not full
+	 */
+	@SuppressWarnings("unchecked")
+	public T add(T o)
+	{
+		if (m_size < m_elements.length)
+		{
+			m_elements[index(m_size)] = o;
+			m_size++;
+			return null;
+		}
+		T removed = (T) m_elements[m_head];
+		m_elements[m_head] = o;
+		m_head = index(1);
+		return removed;
+	}
+
+	/**
+	 * Removes the oldest element of the buffer
+	 * @return The element, or <code>null</code> if the buffer is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove()
+	{
+		if (m_size == 0)
+		{
+			return null;
+		}
+		T removed = (T) m_elements[m_head];
+		m_elements[m_head] = null;
+		m_head = index(1);
+		m_size--;
+		return removed;
+	}
+
+	/**
+	 * Gets an element of the buffer
+	 * @param i The position of the element, 0 being the oldest
+	 * @return The element
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int i)
+	{
+		if (i < 0 || i >= m_size)
+		{
+			throw new IndexOutOfBoundsException(Integer.toString(i));
+		}
+		return (T) m_elements[index(i)];
+	}
+
+	/**
+	 * Gets the number of elements in the buffer
+	 * @return The number of elements
+	 */
+	public int size()
+	{
+		return m_size;
+	}
+
+	/**
+	 * Gets the maximum number of elements in the buffer
+	 * @return The capacity
+	 */
+	public int capacity()
+	{
+		return m_elements.length;
+	}
+
+	/**
+	 * Determines if the buffer holds as many elements as it can
+	 * @return <code>true</code> if the buffer is full
+	 */
+	public boolean isFull()
+	{
+		return m_size == m_elements.length;
+	}
+
+	/**
+	 * Determines if the buffer is empty
+	 * @return <code>true</code> if the buffer is empty
+	 */
+	public boolean isEmpty()
+	{
+		return m_size == 0;
+	}
+
+	/**
+	 * Removes all the elements of the buffer
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < m_size; i++)
+		{
+			m_elements[index(i)] = null;
+		}
+		m_head = 0;
+		m_size = 0;
+	}
+
+	/**
+	 * Gets a read-only list of the elements of the buffer, from the
+	 * oldest to the newest. The list is not a copy: it changes as
+	 * elements are added to the buffer. The same list is returned on
+	 * every call.
+	 * @return The list
+	 */
+	public List<T> view()
+	{
+		return m_view;
+	}
+
+	/**
+	 * Copies the elements of the buffer into an array, from the oldest
+	 * to the newest
+	 * @param dest The array. It must have room for at least
+	 *   {@link #size()} elements.
+	 * @return The array
+	 */
+	public Object[] copyTo(Object[] dest)
+	{
+		int first = Math.min(m_size, m_elements.length - m_head);
+		System.arraycopy(m_elements, m_head, dest, 0, first);
+		System.arraycopy(m_elements, 0, dest, first, m_size - first);
+		return dest;
+	}
+
+	@Override
+	public String toString()
+	{
+		return m_view.toString();
+	}
+
+	/**
+	 * Gets the position in the array of an element of the buffer
+	 * @param i The position of the element in the buffer
+	 * @return The position in the array
+	 */
+	private int index(int i)
+	{
+		int pos = m_head + i;
+		if (pos >= m_elements.length)
+		{
+			pos -= m_elements.length;
+		}
+		return pos;
+	}
+
+	/**
+	 * Read-only list of the elements of the buffer
+	 */
+	protected class View extends AbstractList<T> implements RandomAccess
+	{
+		@Override
+		public T get(int index)
+		{
+			return CircularBuffer.this.get(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return m_size;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * First-in, first-out queue of doubles. Contrarily to a
+ * <code>Queue&lt;Double&gt;</code>, values are stored in an array of
+ * primitives and never boxed. The array grows as needed.
+ *
+ * @author Sylvain Hallé
+ */
+public class DoubleQueue
+{
+	/**
+	 * The values, in a circular array whose length is a power of two
+	 */
+	private double[] m_values;
+
+	/**
+	 * The position of the first value
+	 */
+	private int m_head = 0;
+
+	/**
+	 * The number of values in the queue
+	 */
+	private int m_size = 0;
+
+	/**
+	 * Creates a new empty queue
+	 */
+	public DoubleQueue()
+	{
+		this(16);
+	}
+
+	/**
+	 * Creates a new empty queue
+	 * @param capacity The number of values the queue can hold before
+	 *   it needs to grow
+	 */
+	public DoubleQueue(int capacity)
+	{
+		super();
+		int n = 1;
+		while (n < capacity)
+		{
+			n <<= 1;
+		}
+		m_values = new double[n];
+	}
+
+	/**
+	 * Adds a value at the end of the queue
+	 * @param x The value
+	 */
+	public void add(double x)
+	{
+		if (m_size == m_values.length)
+		{
+			grow();
+		}
+		m_values[(m_head + m_size) & (m_values.length - 1)] = x;
+		m_size++;
+	}
+
+	/**
+	 * Removes the value at the head of the queue
+	 * @return The value
+	 * @throws NoSuchElementException If the queue is empty
+	 */
+	public double remove()
+	{
+		if (m_size == 0)
+		{
+			throw new NoSuchElementException();
+		}
+		double x = m_values[m_head];
+		m_head = (m_head + 1) & (m_values.length - 1);
+		m_size--;
+		return x;
+	}
+
+	/**
+	 * Gets the value at the head of the queue, without removing it
+	 * @return The value
+	 * @throws NoSuchElementException If the queue is empty
+	 */
+	public double element()
+	{
+		if (m_size == 0)
+		{
+			throw new NoSuchElementException();
+		}
+		return m_values[m_head];
+	}
+
+	/**
+	 * Gets the value at some position in the queue
+	 * @param index The position, 0 being the head of the queue
+	 * @return The value
+	 */
+	public double get(int index)
+	{
+		if (index < 0 || index >= m_size)
+		{
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+		return m_values[(m_head + index) & (m_values.length - 1)];
+	}
+
+	/**
+	 * Gets the number of values in the queue
+	 * @return The number of values
+	 */
+	public int size()
+	{
+		return m_size;
+	}
+
+	/**
+	 * Determines if the queue is empty
+	 * @return <code>true</code> if the queue is empty
+	 */
+	public boolean isEmpty()
+	{
+		return m_size == 0;
+	}
+
+	/**
+	 * Removes all the values of the queue
+	 */
+	public void clear()
+	{
+		m_head = 0;
+		m_size = 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder out = new StringBuilder();
+		out.append("[");
+		for (int i = 0; i < m_size; i++)
+		{
+			if (i > 0)
+			{
+				out.append(", ");
+			}
+			out.append(get(i));
+		}
+		out.append("]");
+		return out.toString();
+	}
+
+	/**
+	 * Doubles the length of the array of values
+	 */
+	private void grow()
+	{
+		double[] values = new double[m_values.length * 2];
+		for (int i = 0; i < m_size; i++)
+		{
+			values[i] = m_values[(m_head + i) & (m_values.length - 1)];
+		}
+		m_values = values;
+		m_head = 0;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer whose elements are read by several consumers, each of
+ * them reading every element. Elements are numbered by a sequence that
+ * only increases; the producer keeps the sequence of the next element
+ * to add, and each consumer the sequence of the next element it reads.
+ * An element is therefore stored once, whatever the number of
+ * consumers, and adding or reading one takes constant time. A slot is
+ * reused once all the consumers have read its element.
+ * <p>
+ * There must be a single producer thread at a time. Each consumer
+ * may run in its own thread, as long as it is the only one reading
+ * with its number. The sequences of the consumers are spaced apart so
+ * that two of them never share a cache line.
+ * <p>
+ * The buffer has a fixed capacity, which the producer can double with
+ * {@link #grow()} when it is full. This buffer does not accept
+ * <code>null</code>. Slots are not cleared when an element is read; an
+ * element stays referenced until its slot is reused.
+ *
+ * @author Sylvain Hallé
+ */
+public class MulticastRingBuffer<T>
+{
+	/**
+	 * The number of longs between the sequences of two consumers
+	 */
+	private static final int s_padding = 8;
+
+	/**
+	 * The slots of the buffer. Their number is a power of two.
+	 */
+	private volatile Object[] m_slots;
+
+	/**
+	 * The sequence of the next element to add
+	 */
+	private final AtomicLong m_tail = new AtomicLong(0);
+
+	/**
+	 * The sequence of the next element each consumer reads
+	 */
+	private volatile AtomicLongArray m_cursors;
+
+	/**
+	 * The number of consumers
+	 */
+	private int m_consumers;
+
+	/**
+	 * The smallest sequence of a consumer, as last computed by the
+	 * producer. It is only updated when the buffer looks full.
+	 */
+	private long m_gate = 0;
+
+	/**
+	 * Creates a new ring buffer
+	 * @param capacity The minimum number of elements the buffer can hold.
+	 *   The actual capacity is rounded up to the next power of two.
+	 * @param consumers The number of consumers
+	 */
+	public MulticastRingBuffer(int capacity, int consumers)
+	{
+		super();
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+		{
+			size <<= 1;
+		}
+		m_slots = new Object[size];
+		m_consumers = consumers;
+		m_cursors = new AtomicLongArray(consumers * s_padding);
+	}
+
+	/**
+	 * Gets the number of elements the buffer can hold
+	 * @return The capacity
+	 */
+	public final int capacity()
+	{
+		return m_slots.length;
+	}
+
+	/**
+	 * Gets the number of consumers
+	 * @return The number of consumers
+	 */
+	public final int getConsumerCount()
+	{
+		return m_consumers;
+	}
+
+	/**
+	 * Adds an element at the end of the buffer. Must only be called
+	 * by the producer thread.
+	 * @param o The element
+	 * @return <code>true</code> if the element was added,
+	 *   <code>false</code> if the buffer is full
+	 */
+	public final boolean offer(T o)
+	{
+		long tail = m_tail.get();
+		Object[] slots = m_slots;
+		if (tail - m_gate >= slots.length)
+		{
+			m_gate = minCursor(tail);
+			if (tail - m_gate >= slots.length)
+			{
+				return false;
+			}
+		}
+		slots[(int) tail & (slots.length - 1)] = o;
+		// Publishes the element to the consumers
+		m_tail.lazySet(tail + 1);
+		return true;
+	}
+
+	/**
+	 * Doubles the capacity of the buffer. Must only be called by the
+	 * producer thread; consumers may keep reading meanwhile.
+	 */
+	public final void grow()
+	{
+		long tail = m_tail.get();
+		Object[] old_slots = m_slots;
+		Object[] slots = new Object[old_slots.length * 2];
+		for (long s = minCursor(tail); s < tail; s++)
+		{
+			slots[(int) s & (slots.length - 1)] = old_slots[(int) s & (old_slots.length - 1)];
+		}
+		m_slots = slots;
+	}
+
+	/**
+	 * Reads the next element for a consumer. Must only be called by the
+	 * thread of this consumer.
+	 * @param consumer The consumer number
+	 * @return The element, or <code>null</code> if the consumer has read
+	 *   all of them
+	 */
+	@SuppressWarnings("unchecked")
+	public final T poll(int consumer)
+	{
+		AtomicLongArray cursors = m_cursors;
+		int index = consumer * s_padding;
+		long cursor = cursors.get(index);
+		if (cursor >= m_tail.get())
+		{
+			return null;
+		}
+		// Read after the tail, so that the slots hold the element
+		Object[] slots = m_slots;
+		Object o = slots[(int) cursor & (slots.length - 1)];
+		cursors.lazySet(index, cursor + 1);
+		return (T) o;
+	}
+
+	/**
+	 * Gets the number of elements a consumer has not read yet
+	 * @param consumer The consumer number
+	 * @return The number of elements
+	 */
+	public final int available(int consumer)
+	{
+		return (int) (m_tail.get() - m_cursors.get(consumer * s_padding));
+	}
+
+	/**
+	 * Gets the number of elements that some consumer has not read yet.
+	 * This value is only a snapshot when other threads are active.
+	 * @return The number of elements
+	 */
+	public final int size()
+	{
+		long tail = m_tail.get();
+		return (int) (tail - minCursor(tail));
+	}
+
+	/**
+	 * Changes the number of consumers. A new consumer starts with the
+	 * oldest element some other consumer has not read yet. Must not be
+	 * called while consumers are reading.
+	 * @param consumers The number of consumers
+	 */
+	public final void setConsumerCount(int consumers)
+	{
+		long tail = m_tail.get();
+		long start = minCursor(tail);
+		AtomicLongArray old_cursors = m_cursors;
+		AtomicLongArray cursors = new AtomicLongArray(consumers * s_padding);
+		for (int i = 0; i < consumers; i++)
+		{
+			cursors.set(i * s_padding, i < m_consumers ? old_cursors.get(i * s_padding) : start);
+		}
+		m_consumers = consumers;
+		m_cursors = cursors;
+		m_gate = minCursor(tail);
+	}
+
+	/**
+	 * Removes all the elements. Must not be called while consumers are
+	 * reading.
+	 */
+	public final void clear()
+	{
+		m_tail.set(0);
+		m_gate = 0;
+		for (int i = 0; i < m_consumers; i++)
+		{
+			m_cursors.set(i * s_padding, 0);
+		}
+		Arrays.fill(m_slots, null);
+	}
+
+	/**
+	 * Gets the smallest sequence of a consumer
+	 * @param tail The sequence of the next element to add
+	 * @return The sequence, or <code>tail</code> if there is no consumer
+	 */
+	private long minCursor(long tail)
+	{
+		AtomicLongArray cursors = m_cursors;
+		long min = tail;
+		for (int i = 0; i < m_consumers; i++)
+		{
+			min = Math.min(min, cursors.get(i * s_padding));
+		}
+		return min;
+	}
+}
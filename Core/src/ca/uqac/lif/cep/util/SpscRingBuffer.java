@@ -0,0 +1,173 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free queue for exactly one producer thread and one
+ * consumer thread. Elements are stored in an array whose size is a
+ * power of two; the producer only moves the tail and the consumer only
+ * moves the head, so neither side ever waits for the other.
+ * <p>
+ * As an exception, the producer may also remove the oldest element
+ * with {@link #pollOldest()} to make room for a new one. The head
+ * is advanced with a compare-and-set, so that this removal and the
+ * consumer's {@link #poll()} never hand out the same element twice.
+ * <p>
+ * This queue does not accept <code>null</code>. Slots are not
+ * cleared when an element is removed; a removed element stays
+ * referenced until its slot is reused.
+ *
+ * @author Sylvain Hallé
+ */
+public class SpscRingBuffer<T>
+{
+	/**
+	 * The slots of the buffer
+	 */
+	private final Object[] m_slots;
+
+	/**
+	 * Mask used to turn a position into a slot index
+	 */
+	private final int m_mask;
+
+	/**
+	 * The position of the next element to remove
+	 */
+	private final AtomicLong m_head = new AtomicLong(0);
+
+	/**
+	 * The position of the next element to add
+	 */
+	private final AtomicLong m_tail = new AtomicLong(0);
+
+	/**
+	 * Creates a new ring buffer
+	 * @param capacity The minimum number of elements the buffer can hold.
+	 *   The actual capacity is rounded up to the next power of two.
+	 */
+	public SpscRingBuffer(int capacity)
+	{
+		super();
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+		{
+			size <<= 1;
+		}
+		m_slots = new Object[size];
+		m_mask = size - 1;
+	}
+
+	/**
+	 * Gets the number of elements the buffer can hold
+	 * @return The capacity
+	 */
+	public final int capacity()
+	{
+		return m_slots.length;
+	}
+
+	/**
+	 * Adds an element at the end of the buffer. Must only be called
+	 * by the producer thread.
+	 * @param o The element
+	 * @return <code>true</code> if the element was added,
+	 *   <code>false</code> if the buffer is full
+	 */
+	public final boolean offer(T o)
+	{
+		long tail = m_tail.get();
+		if (tail - m_head.get() >= m_slots.length)
+		{
+			return false;
+		}
+		m_slots[(int) tail & m_mask] = o;
+		// Publishes the element to the consumer. This is a full volatile
+		// write rather than a lazy one: a consumer that is about to sleep
+		// must either see the element, or be seen sleeping by a producer
+		// that checks it right after this call.
+		m_tail.set(tail + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the element at the front of the buffer. Must only be
+	 * called by the consumer thread.
+	 * @return The element, or <code>null</code> if the buffer is empty
+	 */
+	public final T poll()
+	{
+		return removeHead();
+	}
+
+	/**
+	 * Removes the element at the front of the buffer to make room for a
+	 * new one. Must only be called by the producer thread.
+	 * @return The element, or <code>null</code> if the buffer is empty
+	 */
+	public final T pollOldest()
+	{
+		return removeHead();
+	}
+
+	@SuppressWarnings("unchecked")
+	private T removeHead()
+	{
+		while (true)
+		{
+			long head = m_head.get();
+			if (head >= m_tail.get())
+			{
+				return null;
+			}
+			Object o = m_slots[(int) head & m_mask];
+			if (m_head.compareAndSet(head, head + 1))
+			{
+				return (T) o;
+			}
+			// The other thread removed this element first; try the next
+		}
+	}
+
+	/**
+	 * Gets the number of elements in the buffer. This value is only a
+	 * snapshot when the other thread is active.
+	 * @return The number of elements
+	 */
+	public final int size()
+	{
+		long head = m_head.get();
+		long tail = m_tail.get();
+		return (int) (tail - head);
+	}
+
+	/**
+	 * Determines if the buffer is empty
+	 * @return <code>true</code> if the buffer is empty
+	 */
+	public final boolean isEmpty()
+	{
+		return m_head.get() >= m_tail.get();
+	}
+}
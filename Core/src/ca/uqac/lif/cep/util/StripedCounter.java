@@ -0,0 +1,127 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that many threads can increment at the same time without
+ * contending for a single memory location. The count is split into
+ * several cells; each thread adds to the cell picked by its ID, and
+ * reading the counter sums all the cells.
+ * <p>
+ * Cells are spaced apart so that two of them never share a cache line.
+ * Adding is therefore cheap, while reading is a bit more costly; this
+ * suits counters that are updated on every event and read once in a
+ * while.
+ *
+ * @author Sylvain Hallé
+ */
+public class StripedCounter
+{
+	/**
+	 * The number of longs between two cells, so that each cell sits on
+	 * its own 64-byte cache line
+	 */
+	private static final int s_padding = 8;
+
+	/**
+	 * The number of cells of every counter
+	 */
+	private static final int s_stripes = getStripeCount();
+
+	/**
+	 * The cells of the counter
+	 */
+	private final AtomicLongArray m_cells;
+
+	/**
+	 * Creates a new counter set to 0
+	 */
+	public StripedCounter()
+	{
+		super();
+		m_cells = new AtomicLongArray(s_stripes * s_padding);
+	}
+
+	/**
+	 * Adds a value to the counter
+	 * @param x The value
+	 */
+	public final void add(long x)
+	{
+		int cell = ((int) Thread.currentThread().getId() & (s_stripes - 1)) * s_padding;
+		m_cells.addAndGet(cell, x);
+	}
+
+	/**
+	 * Adds 1 to the counter
+	 */
+	public final void increment()
+	{
+		add(1);
+	}
+
+	/**
+	 * Gets the value of the counter. Additions made by other threads
+	 * while the cells are read may or may not be included.
+	 * @return The value
+	 */
+	public final long sum()
+	{
+		long total = 0;
+		for (int i = 0; i < s_stripes; i++)
+		{
+			total += m_cells.get(i * s_padding);
+		}
+		return total;
+	}
+
+	/**
+	 * Sets the counter back to 0
+	 */
+	public final void reset()
+	{
+		for (int i = 0; i < s_stripes; i++)
+		{
+			m_cells.set(i * s_padding, 0);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return Long.toString(sum());
+	}
+
+	/**
+	 * Computes the number of cells of a counter: the smallest power of
+	 * two no less than the number of processors, up to 16
+	 * @return The number of cells
+	 */
+	private static int getStripeCount()
+	{
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int stripes = 1;
+		while (stripes < cpus && stripes < 16)
+		{
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.numbers.Addition;
+import ca.uqac.lif.cep.tmf.QueueSink;
+
+/**
+ * Unit tests for the {@link BoundedQueue} class, and for processors
+ * with bounded queues
+ * @author Sylvain Hallé
+ */
+public class BoundedQueueTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testDropOldest() throws ConnectorException
+	{
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		add.setInputCapacity(0, 2, Backpressure.DROP_OLDEST);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(add, sink);
+		Pushable left = add.getPushableInput(0);
+		left.push(1);
+		left.push(2);
+		left.push(3);
+		assertEquals(2, add.getInputHighWaterMark(0));
+		assertEquals(-1, add.getInputHighWaterMark(1));
+		add.getPushableInput(1).push(10);
+		assertEquals(12, ((Number) sink.getQueue().remove()).intValue());
+	}
+
+	@Test
+	public void testDropNewest() throws ConnectorException
+	{
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		add.setInputCapacity(0, 2, Backpressure.DROP_NEWEST);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(add, sink);
+		Pushable left = add.getPushableInput(0);
+		left.push(1);
+		left.push(2);
+		left.push(3);
+		Pushable right = add.getPushableInput(1);
+		right.push(10);
+		right.push(10);
+		right.push(10);
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(11, ((Number) queue.remove()).intValue());
+		assertEquals(12, ((Number) queue.remove()).intValue());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testFail() throws ConnectorException
+	{
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		add.setInputCapacity(0, 2, Backpressure.FAIL);
+		Pushable left = add.getPushableInput(0);
+		left.push(1);
+		left.push(2);
+		try
+		{
+			left.push(3);
+			fail("Expected an overflow");
+		}
+		catch (BoundedQueue.OverflowException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void testBlock() throws InterruptedException
+	{
+		final BoundedQueue<Object> queue = new BoundedQueue<Object>(1, Backpressure.BLOCK);
+		queue.add(0);
+		Thread producer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				queue.add(1);
+			}
+		};
+		producer.start();
+		producer.join(100);
+		assertTrue(producer.isAlive());
+		assertEquals(1, queue.size());
+		assertEquals(0, queue.poll());
+		producer.join(1000);
+		assertFalse(producer.isAlive());
+		assertEquals(1, queue.poll());
+		assertEquals(1, queue.getHighWaterMark());
+	}
+
+	@Test
+	public void testQueueSink() throws ConnectorException
+	{
+		QueueSink sink = new QueueSink(1);
+		Pushable in = sink.getPushableInput(0);
+		in.push(0);
+		sink.setCapacity(2, Backpressure.DROP_OLDEST);
+		for (int i = 1; i < 5; i++)
+		{
+			in.push(i);
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(2, queue.size());
+		assertEquals(3, queue.remove());
+		assertEquals(4, queue.remove());
+		assertEquals(2, sink.getHighWaterMark(0));
+		assertEquals(3, ((BoundedQueue<Object>) queue).getDroppedCount());
+		sink.reset();
+		assertTrue(sink.getQueue() instanceof BoundedQueue);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInputBlock()
+	{
+		// The thread filling an input queue is the one emptying it
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		add.setInputCapacity(0, 2, Backpressure.BLOCK);
+	}
+
+	@Test
+	public void testBoundFullQueue() throws ConnectorException
+	{
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(add, sink);
+		Pushable left = add.getPushableInput(0);
+		left.push(1);
+		left.push(2);
+		left.push(3);
+		// Only the two newest events fit in the new queue
+		add.setInputCapacity(0, 2, Backpressure.DROP_OLDEST);
+		assertEquals(2, add.getInputHighWaterMark(0));
+		add.getPushableInput(1).push(10);
+		assertEquals(12, ((Number) sink.getQueue().remove()).intValue());
+		left.push(4);
+		try
+		{
+			add.setInputCapacity(0, 1, Backpressure.FAIL);
+			fail("Expected an overflow");
+		}
+		catch (BoundedQueue.OverflowException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void testCloneSettings()
+	{
+		GroupProcessor group = new GroupProcessor(2, 1);
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		add.setInputCapacity(0, 2, Backpressure.DROP_OLDEST);
+		add.setOutputSpill(0, 10);
+		group.addProcessor(add);
+		group.associateInput(0, add, 0);
+		group.associateInput(1, add, 1);
+		group.associateOutput(0, add, 0);
+		GroupProcessor copy = group.clone();
+		Processor add_copy = copy.getProcessors().iterator().next();
+		assertEquals(0, add_copy.getInputHighWaterMark(0));
+		assertEquals(-1, add_copy.getInputHighWaterMark(1));
+		Pushable left = add_copy.getPushableInput(0);
+		left.push(1);
+		left.push(2);
+		left.push(3);
+		assertEquals(2, add_copy.getInputHighWaterMark(0));
+	}
+}
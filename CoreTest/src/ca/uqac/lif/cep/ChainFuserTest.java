@@ -0,0 +1,153 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.ConnectorTest.Incrementer;
+import ca.uqac.lif.cep.ConnectorTest.Plus;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.functions.UnaryFunction;
+import ca.uqac.lif.cep.tmf.Last;
+import ca.uqac.lif.cep.tmf.Passthrough;
+import ca.uqac.lif.cep.tmf.QueueSink;
+import ca.uqac.lif.cep.tmf.QueueSource;
+
+/**
+ * Unit tests for the {@link ChainFuser} class
+ * @author Sylvain Hallé
+ */
+public class ChainFuserTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testFusePush() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Passthrough pt1 = new Passthrough(1);
+		FunctionProcessor inc1 = new FunctionProcessor(new Plus(10));
+		FunctionProcessor inc2 = new FunctionProcessor(new Plus(10));
+		Passthrough pt2 = new Passthrough(1);
+		FunctionProcessor inc3 = new FunctionProcessor(new Plus(10));
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, pt1, inc1, inc2, pt2, inc3, sink);
+		// Both passthroughs in the middle go, and the three incrementers
+		// become one processor
+		assertEquals(5, ChainFuser.fuse(in));
+		Pushable fused = in.getPushableOutput(0);
+		assertEquals(sink, fused.getProcessor().getPushableOutput(0).getProcessor());
+		Pushable p = in.getPushableInput(0);
+		Queue<Object> queue = sink.getQueue(0);
+		for (int i = 0; i < 5; i++)
+		{
+			p.push(i);
+			Utilities.queueContains(i + 30, queue);
+		}
+	}
+
+	@Test
+	public void testFusePull() throws ConnectorException
+	{
+		Passthrough unfused = pullPipe();
+		Passthrough fused = pullPipe();
+		// The last passthrough is where we pull from: it stays
+		assertEquals(3, ChainFuser.fuse(fused));
+		// Odd values stop at the second function, as they would
+		// between two processors; the third one never sees them
+		Pullable p1 = unfused.getPullableOutput(0);
+		Pullable p2 = fused.getPullableOutput(0);
+		int non_null = 0;
+		for (int i = 0; i < 6; i++)
+		{
+			Object o = p1.pull();
+			assertEquals(o, p2.pull());
+			if (o != null)
+			{
+				non_null++;
+			}
+		}
+		assertEquals(2, non_null);
+	}
+
+	@Test
+	public void testKeepPassthroughDescendant() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Last last = new Last();
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, last, sink);
+		// Last extends Passthrough, but does not forward every event
+		assertEquals(0, ChainFuser.fuse(in));
+		assertEquals(last, in.getPushableOutput(0).getProcessor());
+		assertEquals(sink, last.getPushableOutput(0).getProcessor());
+	}
+
+	@Test
+	public void testKeepFunctionProcessorDescendant() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Incrementer inc1 = new Incrementer(10);
+		Incrementer inc2 = new Incrementer(10);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, inc1, inc2, sink);
+		// Subclasses of FunctionProcessor are not replaced by a fused
+		// processor, as they may do more than evaluate their function
+		assertEquals(0, ChainFuser.fuse(in));
+		assertEquals(inc1, in.getPushableOutput(0).getProcessor());
+		assertEquals(inc2, inc1.getPushableOutput(0).getProcessor());
+	}
+
+	/**
+	 * Creates a pipe made of a source and three function processors
+	 * @return The processor at the end of the pipe
+	 */
+	protected static Passthrough pullPipe() throws ConnectorException
+	{
+		QueueSource source = new QueueSource(1);
+		source.setEvents(new Object[]{1, 2, 3, 4});
+		source.loop(false);
+		Passthrough out = new Passthrough(1);
+		Connector.connect(source, new FunctionProcessor(new Plus(10)), new FunctionProcessor(new OddToNull()), new FunctionProcessor(new Plus(10)), out);
+		return out;
+	}
+
+	/**
+	 * Turns odd numbers into <code>null</code>
+	 */
+	public static class OddToNull extends UnaryFunction<Integer,Integer>
+	{
+		public OddToNull()
+		{
+			super(Integer.class, Integer.class);
+		}
+
+		@Override
+		public Integer getValue(Integer x)
+		{
+			if (x % 2 != 0)
+			{
+				return null;
+			}
+			return x;
+		}
+	}
+}
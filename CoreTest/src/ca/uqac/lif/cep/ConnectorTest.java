@@ -17,10 +17,13 @@
  */
 package ca.uqac.lif.cep;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -122,6 +125,147 @@ public class ConnectorTest extends BeepBeepUnitTest
 		}
 	}
 	
+	@Test
+	public void testAsync1() throws ConnectorException
+	{
+		Passthrough p1 = new Passthrough(1);
+		Incrementer p2 = new Incrementer(10);
+		QueueSink qs1 = new QueueSink(1);
+		AsyncPushable async = Connector.connectAsync(p1, 0, p2, 0, 4);
+		Connector.connect(p2, qs1);
+		Pushable push1 = p1.getPushableInput(0);
+		for (int i = 0; i < 100; i++)
+		{
+			push1.push(i);
+		}
+		async.flush();
+		Queue<Object> queue = qs1.getQueue(0);
+		assertEquals(100, queue.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i + 10, queue.remove());
+		}
+		assertEquals(0, async.getDroppedCount());
+		async.close();
+	}
+
+	@Test
+	public void testAsyncDropNewest() throws ConnectorException
+	{
+		Queue<Object> queue = pushThroughGate(Backpressure.DROP_NEWEST);
+		assertEquals(3, queue.size());
+		assertEquals(0, queue.remove());
+		assertEquals(1, queue.remove());
+		assertEquals(2, queue.remove());
+	}
+
+	@Test
+	public void testAsyncDropOldest() throws ConnectorException
+	{
+		Queue<Object> queue = pushThroughGate(Backpressure.DROP_OLDEST);
+		assertEquals(3, queue.size());
+		assertEquals(0, queue.remove());
+		assertEquals(3, queue.remove());
+		assertEquals(4, queue.remove());
+	}
+
+	@Test
+	public void testAsyncFailure() throws ConnectorException
+	{
+		Passthrough p1 = new Passthrough(1);
+		Incrementer p2 = new Incrementer(10);
+		QueueSink qs1 = new QueueSink(1);
+		AsyncPushable async = Connector.connectAsync(p1, 0, p2, 0, 4);
+		Connector.connect(p2, qs1);
+		Pushable push1 = p1.getPushableInput(0);
+		push1.push(1);
+		push1.push("foo");
+		try
+		{
+			async.flush();
+			fail("The downstream exception was not reported");
+		}
+		catch (RuntimeException e)
+		{
+			// Expected
+		}
+		// The exception is reported once, and the thread keeps going
+		push1.push(2);
+		push1.push(3);
+		async.close();
+		Queue<Object> queue = qs1.getQueue(0);
+		assertEquals(3, queue.size());
+		assertEquals(11, queue.remove());
+		assertEquals(12, queue.remove());
+		assertEquals(13, queue.remove());
+	}
+
+	@Test
+	public void testAsyncError() throws ConnectorException
+	{
+		Passthrough p1 = new Passthrough(1);
+		Crasher p2 = new Crasher();
+		QueueSink qs1 = new QueueSink(1);
+		AsyncPushable async = Connector.connectAsync(p1, 0, p2, 0, 4);
+		Connector.connect(p2, qs1);
+		Pushable push1 = p1.getPushableInput(0);
+		push1.push("crash");
+		try
+		{
+			async.flush();
+			fail("The downstream error was not reported");
+		}
+		catch (Error e)
+		{
+			// Expected
+		}
+		// The thread survives the error
+		push1.push("A");
+		async.close();
+		Queue<Object> queue = qs1.getQueue(0);
+		assertEquals(1, queue.size());
+		assertEquals("A", queue.remove());
+		try
+		{
+			async.push("B");
+			fail("An event was accepted after the pushable was closed");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+	}
+
+	/**
+	 * Pushes five events through an asynchronous connection with room
+	 * for two, while the downstream processor is stuck on the first one
+	 * @param backpressure The policy of the connection
+	 * @return The events that made it through
+	 */
+	protected static Queue<Object> pushThroughGate(Backpressure backpressure) throws ConnectorException
+	{
+		Passthrough p1 = new Passthrough(1);
+		Gate gate = new Gate();
+		QueueSink qs1 = new QueueSink(1);
+		AsyncPushable async = Connector.connectAsync(p1, 0, gate, 0, 2, backpressure);
+		Connector.connect(gate, qs1);
+		Pushable push1 = p1.getPushableInput(0);
+		push1.push(0);
+		while (async.getQueueSize() > 0)
+		{
+			// Wait for the gate to hold the first event
+			Thread.yield();
+		}
+		for (int i = 1; i < 5; i++)
+		{
+			push1.push(i);
+		}
+		assertEquals(2, async.getDroppedCount());
+		gate.m_latch.countDown();
+		async.close();
+		return qs1.getQueue(0);
+	}
+
 	@Test
 	public void testIncompatibleTypes() throws ConnectorException
 	{
@@ -156,6 +300,66 @@ public class ConnectorTest extends BeepBeepUnitTest
 		
 	}
 	
+	/**
+	 * Passes events through once its latch is released
+	 */
+	public static class Gate extends SingleProcessor
+	{
+		protected final CountDownLatch m_latch = new CountDownLatch(1);
+
+		public Gate()
+		{
+			super(1, 1);
+		}
+
+		@Override
+		protected Queue<Object[]> compute(Object[] inputs)
+		{
+			try
+			{
+				m_latch.await();
+			}
+			catch (InterruptedException e)
+			{
+				// Do nothing
+			}
+			return wrapVector(inputs);
+		}
+
+		@Override
+		public Gate clone()
+		{
+			return new Gate();
+		}
+	}
+
+	/**
+	 * Passes events through, and throws an error on the event "crash"
+	 */
+	public static class Crasher extends SingleProcessor
+	{
+		public Crasher()
+		{
+			super(1, 1);
+		}
+
+		@Override
+		protected Queue<Object[]> compute(Object[] inputs)
+		{
+			if ("crash".equals(inputs[0]))
+			{
+				throw new AssertionError("crash");
+			}
+			return wrapVector(inputs);
+		}
+
+		@Override
+		public Crasher clone()
+		{
+			return new Crasher();
+		}
+	}
+
 	public static class Apples extends SingleProcessor
 	{
 		public Apples()
@@ -19,6 +19,7 @@ package ca.uqac.lif.cep;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.List;
 import java.util.Queue;
 import java.util.Vector;
 
@@ -27,6 +28,7 @@ import org.junit.Test;
 import ca.uqac.lif.cep.Connector.ConnectorException;
 import ca.uqac.lif.cep.tmf.Demultiplexer;
 import ca.uqac.lif.cep.tmf.QueueSink;
+import ca.uqac.lif.cep.util.CircularBuffer;
 
 /**
  * Unit tests for the {@link Demultiplexer} class.
@@ -64,4 +66,45 @@ public class DemultiplexerTest extends BeepBeepUnitTest
 			qsink.reset();
 		}
 	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testDemultiplexerView() throws ConnectorException
+	{
+		Demultiplexer demux = new Demultiplexer(2).setCopy(false);
+		QueueSink qsink = new QueueSink(1);
+		Connector.connect(demux, qsink);
+		Pushable push1 = demux.getPushableInput(0);
+		Queue<Object> queue = qsink.getQueue(0);
+		push1.push(0);
+		push1.push(1);
+		List<Object> out = (List<Object>) queue.remove();
+		assertEquals(0, out.get(0));
+		assertEquals(1, out.get(1));
+		push1.push(2);
+		// The view follows the window
+		assertEquals(1, out.get(0));
+		assertEquals(2, out.get(1));
+		assertEquals(out, queue.remove());
+	}
+
+	@Test
+	public void testCircularBuffer()
+	{
+		CircularBuffer<Integer> buffer = new CircularBuffer<Integer>(3);
+		assertEquals(null, buffer.add(0));
+		assertEquals(null, buffer.add(1));
+		assertEquals(null, buffer.add(2));
+		assertEquals(0, buffer.add(3).intValue());
+		assertEquals(1, buffer.add(4).intValue());
+		assertEquals("[2, 3, 4]", buffer.view().toString());
+		Object[] array = buffer.copyTo(new Object[3]);
+		assertEquals(2, array[0]);
+		assertEquals(4, array[2]);
+		assertEquals(2, buffer.remove().intValue());
+		assertEquals(2, buffer.size());
+		assertEquals(3, buffer.get(0).intValue());
+		buffer.clear();
+		assertEquals(0, buffer.view().size());
+	}
 }
@@ -0,0 +1,156 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.ConnectorTest.Incrementer;
+import ca.uqac.lif.cep.tmf.CountDecimate;
+import ca.uqac.lif.cep.tmf.Passthrough;
+import ca.uqac.lif.cep.tmf.QueueSink;
+import ca.uqac.lif.cep.tmf.QueueSource;
+import ca.uqac.lif.cep.util.StripedCounter;
+
+/**
+ * Unit tests for the {@link ProcessorMetrics} and {@link MetricsRegistry}
+ * classes
+ * @author Sylvain Hallé
+ */
+public class MetricsTest extends BeepBeepUnitTest
+{
+	@After
+	public void tearDown()
+	{
+		MetricsRegistry.clear();
+		Connector.s_collectMetrics = false;
+	}
+
+	@Test
+	public void testPush() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Incrementer inc = new Incrementer(10);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, inc, sink);
+		MetricsRegistry.registerAll(in);
+		ProcessorMetrics metrics = MetricsRegistry.get(inc.getId());
+		assertNotNull(metrics);
+		metrics.setSampleInterval(1);
+		Pushable p = in.getPushableInput(0);
+		for (int i = 0; i < 10; i++)
+		{
+			p.push(i);
+		}
+		p.pushAll(new Object[]{10, 11, 12});
+		assertEquals(13, metrics.getEventsIn(0));
+		assertEquals(13, metrics.getEventsOut(0));
+		assertEquals(13, metrics.getComputeCount());
+		assertTrue(metrics.getComputeNanos() >= 0);
+		assertEquals(13, sink.getMetrics().getEventsIn(0));
+		assertEquals(13, sink.getMetrics().getInputQueueDepth(0) + sink.getQueue(0).size());
+	}
+
+	@Test
+	public void testPullRetries() throws ConnectorException
+	{
+		QueueSource source = new QueueSource(1);
+		source.setEvents(new Object[]{1, 2, 3, 4});
+		CountDecimate decimate = new CountDecimate(2);
+		Connector.connect(source, decimate);
+		ProcessorMetrics metrics = MetricsRegistry.register(decimate);
+		Pullable p = decimate.getPullableOutput(0);
+		for (int i = 0; i < 3; i++)
+		{
+			p.pull();
+		}
+		assertEquals(5, metrics.getEventsIn(0));
+		assertEquals(3, metrics.getEventsOut(0));
+		assertEquals(2, metrics.getPullRetries());
+	}
+
+	@Test
+	public void testConnectorFlag() throws ConnectorException
+	{
+		Passthrough p1 = new Passthrough(1);
+		Passthrough p2 = new Passthrough(1);
+		Connector.connect(p1, p2);
+		assertNull(p1.getMetrics());
+		Connector.s_collectMetrics = true;
+		Passthrough p3 = new Passthrough(1);
+		Connector.connect(p2, p3);
+		assertNull(p1.getMetrics());
+		assertNotNull(MetricsRegistry.get(p2.getId()));
+		assertNotNull(p3.getMetrics());
+		MetricsRegistry.unregister(p3);
+		assertNull(p3.getMetrics());
+		assertNull(MetricsRegistry.get(p3.getId()));
+	}
+
+	@Test
+	public void testUnreachableProcessor() throws InterruptedException
+	{
+		int id = MetricsRegistry.register(new Passthrough(1)).getProcessor().getId();
+		// The registry alone does not keep the processor alive, and its
+		// entry goes away on a later registration
+		for (int i = 0; i < 50 && MetricsRegistry.s_metrics.containsKey(id); i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+			MetricsRegistry.register(new Passthrough(1));
+		}
+		assertNull(MetricsRegistry.get(id));
+		assertFalse(MetricsRegistry.s_metrics.containsKey(id));
+	}
+
+	@Test
+	public void testStripedCounter() throws InterruptedException
+	{
+		final StripedCounter counter = new StripedCounter();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 1000; j++)
+					{
+						counter.increment();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+		assertEquals(4000, counter.sum());
+		counter.reset();
+		assertEquals(0, counter.sum());
+	}
+}
@@ -0,0 +1,180 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.ConnectorTest.Incrementer;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.numbers.Addition;
+import ca.uqac.lif.cep.tmf.Fork;
+import ca.uqac.lif.cep.tmf.Passthrough;
+import ca.uqac.lif.cep.tmf.QueueSink;
+
+/**
+ * Unit tests for the {@link PipelineExecutor} class
+ * @author Sylvain Hallé
+ */
+public class PipelineExecutorTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testExplicitCosts() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Incrementer inc1 = new Incrementer(10);
+		Incrementer inc2 = new Incrementer(10);
+		Incrementer inc3 = new Incrementer(10);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, inc1, inc2, inc3, sink);
+		PipelineExecutor exec = new PipelineExecutor(in, 2);
+		exec.setCost(inc1, 10).setCost(inc2, 10).setCost(inc3, 20);
+		assertEquals(2, exec.partition());
+		List<List<Processor>> stages = exec.getStages();
+		assertTrue(stages.get(0).contains(inc2));
+		assertTrue(stages.get(1).contains(inc3));
+		Pushable p = in.getPushableInput(0);
+		for (int i = 0; i < 100; i++)
+		{
+			p.push(i);
+		}
+		exec.flush();
+		Queue<Object> queue = sink.getQueue(0);
+		assertEquals(100, queue.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i + 30, queue.remove());
+		}
+		exec.shutdown();
+	}
+
+	@Test
+	public void testProfiling() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Incrementer inc1 = new Incrementer(10);
+		Incrementer inc2 = new Incrementer(10);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, inc1, inc2, sink);
+		PipelineExecutor exec = new PipelineExecutor(in, 3);
+		exec.startProfiling();
+		Pushable p = in.getPushableInput(0);
+		for (int i = 0; i < 50; i++)
+		{
+			p.push(i);
+		}
+		int stages = exec.partition();
+		assertTrue(stages >= 1 && stages <= 3);
+		for (int i = 50; i < 100; i++)
+		{
+			p.push(i);
+		}
+		exec.shutdown();
+		Queue<Object> queue = sink.getQueue(0);
+		assertEquals(100, queue.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i + 20, queue.remove());
+		}
+	}
+
+	@Test
+	public void testForkJoin() throws ConnectorException
+	{
+		Passthrough in = new Passthrough(1);
+		Fork fork = new Fork(2);
+		Incrementer inc1 = new Incrementer(10);
+		Incrementer inc2 = new Incrementer(10);
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		Passthrough out = new Passthrough(1);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, fork);
+		Connector.connect(fork, inc1, 0, 0);
+		Connector.connect(fork, inc2, 1, 0);
+		Connector.connect(inc1, add, 0, 0);
+		Connector.connect(inc2, add, 0, 1);
+		Connector.connect(add, out, sink);
+		PipelineExecutor exec = new PipelineExecutor(sink, 8);
+		int stages = exec.partition();
+		// The branches between the fork and the addition stay together
+		for (List<Processor> stage : exec.getStages())
+		{
+			if (stage.contains(fork))
+			{
+				assertTrue(stage.contains(inc1));
+				assertTrue(stage.contains(inc2));
+				assertTrue(stage.contains(add));
+			}
+		}
+		assertTrue(stages > 1);
+		Pushable p = in.getPushableInput(0);
+		for (int i = 0; i < 20; i++)
+		{
+			p.push(i);
+		}
+		exec.shutdown();
+		Queue<Object> queue = sink.getQueue(0);
+		assertEquals(20, queue.size());
+		for (int i = 0; i < 20; i++)
+		{
+			assertEquals(2 * i + 20, ((Number) queue.remove()).intValue());
+		}
+	}
+
+	@Test
+	public void testTwoSources() throws ConnectorException
+	{
+		Passthrough in1 = new Passthrough(1);
+		Passthrough in2 = new Passthrough(1);
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		Passthrough out = new Passthrough(1);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in1, add, 0, 0);
+		Connector.connect(in2, add, 0, 1);
+		Connector.connect(add, out, sink);
+		PipelineExecutor exec = new PipelineExecutor(sink, 4);
+		exec.setCost(in1, 100).setCost(in2, 100).setCost(add, 1).setCost(out, 1);
+		exec.partition();
+		// Both inputs are pushed from this thread: the pipe is not cut
+		// before the last of them, nor before the processor they feed
+		List<Processor> first = exec.getStages().get(0);
+		assertTrue(first.contains(in1));
+		assertTrue(first.contains(in2));
+		assertTrue(first.contains(add));
+		Pushable p1 = in1.getPushableInput(0);
+		Pushable p2 = in2.getPushableInput(0);
+		for (int i = 0; i < 20; i++)
+		{
+			p1.push(i);
+			p2.push(i);
+		}
+		exec.shutdown();
+		Queue<Object> queue = sink.getQueue(0);
+		assertEquals(20, queue.size());
+		for (int i = 0; i < 20; i++)
+		{
+			assertEquals(2 * i, ((Number) queue.remove()).intValue());
+		}
+	}
+}
@@ -18,12 +18,14 @@
 package ca.uqac.lif.cep;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.Queue;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -41,6 +43,7 @@ import ca.uqac.lif.cep.tmf.Multiplexer;
 import ca.uqac.lif.cep.tmf.Passthrough;
 import ca.uqac.lif.cep.tmf.QueueSink;
 import ca.uqac.lif.cep.tmf.QueueSource;
+import ca.uqac.lif.cep.tmf.Source;
 
 public class ProcessorTest extends BeepBeepUnitTest
 {
@@ -464,7 +467,281 @@ public class ProcessorTest extends BeepBeepUnitTest
 		i = (Integer) q.remove();
 		assertEquals(1, i.intValue());
 	}
-	
+
+	@Test
+	public void testPushAll1() throws ConnectorException
+	{
+		Sum sum = new Sum();
+		QueueSink qs = new QueueSink(1);
+		Connector.connect(sum, qs);
+		Queue<Object> q = qs.getQueue(0);
+		sum.getPushableInput(0).pushAll(new Object[]{1, 2, 3});
+		assertEquals(3, q.size());
+		Utilities.assertEquals(1, q.remove());
+		Utilities.assertEquals(3, q.remove());
+		Utilities.assertEquals(6, q.remove());
+	}
+
+	@Test
+	public void testPushAll2() throws ConnectorException
+	{
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		QueueSink qs = new QueueSink(1);
+		Connector.connect(add, qs);
+		Queue<Object> q = qs.getQueue(0);
+		Pushable left = add.getPushableInput(0);
+		Pushable right = add.getPushableInput(1);
+		left.pushAll(new Object[]{1, 2, 3});
+		assertTrue(q.isEmpty());
+		right.pushAll(new Object[]{10, 20});
+		assertEquals(2, q.size());
+		Utilities.assertEquals(11, q.remove());
+		Utilities.assertEquals(22, q.remove());
+		right.pushAll(new Object[]{30, 40});
+		Utilities.queueContains(33, q);
+		left.push(4);
+		Utilities.queueContains(44, q);
+	}
+
+	@Test
+	public void testPushAll3() throws ConnectorException
+	{
+		// The batch goes through a fork and is realigned on a binary processor
+		Fork fork = new Fork(2);
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		Connector.connect(fork, add, 0, 0);
+		Connector.connect(fork, add, 1, 1);
+		QueueSink qs = new QueueSink(1);
+		Connector.connect(add, qs);
+		Queue<Object> q = qs.getQueue(0);
+		fork.getPushableInput(0).pushAll(new Object[]{1, 2, 3, 4});
+		assertEquals(4, q.size());
+		Utilities.assertEquals(2, q.remove());
+		Utilities.assertEquals(4, q.remove());
+		Utilities.assertEquals(6, q.remove());
+		Utilities.assertEquals(8, q.remove());
+	}
+
+	@Test
+	public void testPushAll4() throws ConnectorException
+	{
+		// With two outputs, the events must reach the muxer interleaved,
+		// as if each one had been pushed on its own
+		Fork fork = new Fork(2);
+		Multiplexer mux = new Multiplexer(2);
+		Connector.connect(fork, mux, 0, 0);
+		Connector.connect(fork, mux, 1, 1);
+		QueueSink qs = new QueueSink(1);
+		Connector.connect(mux, qs);
+		Queue<Object> q = qs.getQueue(0);
+		fork.getPushableInput(0).pushAll(new Object[]{1, 2, 3});
+		assertEquals(6, q.size());
+		Utilities.assertEquals(1, q.remove());
+		Utilities.assertEquals(1, q.remove());
+		Utilities.assertEquals(2, q.remove());
+		Utilities.assertEquals(2, q.remove());
+		Utilities.assertEquals(3, q.remove());
+		Utilities.assertEquals(3, q.remove());
+	}
+
+	@Test
+	public void testCollectorPush1() throws ConnectorException
+	{
+		Doubler d = new Doubler();
+		QueueSink qs = new QueueSink(1);
+		Connector.connect(d, qs);
+		Queue<Object> q = qs.getQueue(0);
+		Pushable p = d.getPushableInput(0);
+		p.push("A");
+		assertEquals(2, q.size());
+		assertEquals("A", q.remove());
+		assertEquals("A", q.remove());
+		p.pushAll(new Object[]{"B", "C"});
+		assertEquals(4, q.size());
+		assertEquals("B", q.remove());
+		assertEquals("B", q.remove());
+		assertEquals("C", q.remove());
+	}
+
+	@Test
+	public void testCollectorPull1() throws ConnectorException
+	{
+		QueueSource src = new QueueSource(1);
+		src.setEvents(new Object[]{"A", "B"});
+		src.loop(false);
+		Doubler d = new Doubler();
+		Connector.connect(src, d);
+		Pullable p = d.getPullableOutput(0);
+		assertEquals("A", p.pull());
+		assertEquals("A", p.pull());
+		assertEquals("B", p.pullSoft());
+		assertEquals("B", p.pullSoft());
+		assertNull(p.pull());
+	}
+
+	@Test
+	public void testWaitPark1() throws ConnectorException
+	{
+		// An idle source gives up once the timeout has elapsed
+		LiveSource src = new LiveSource();
+		src.setWaitStrategy(new WaitStrategy(WaitStrategy.Mode.PARK, 50));
+		Pullable p = src.getPullableOutput(0);
+		long start = System.currentTimeMillis();
+		assertFalse(p.hasNext());
+		assertTrue(System.currentTimeMillis() - start >= 40);
+		src.feed("A");
+		assertEquals("A", p.pull());
+	}
+
+	@Test
+	public void testWaitPark2() throws ConnectorException
+	{
+		// A parked pull wakes up when the source is fed by another thread
+		final LiveSource src = new LiveSource();
+		src.setWaitStrategy(new WaitStrategy(WaitStrategy.Mode.PARK, 10000));
+		Passthrough pt = new Passthrough(1);
+		Connector.connect(src, pt);
+		Thread t = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(50);
+				}
+				catch (InterruptedException e)
+				{
+					// Do nothing
+				}
+				src.feed("B");
+			}
+		});
+		t.start();
+		assertEquals("B", pt.getPullableOutput(0).pull());
+	}
+
+	@Test
+	public void testWaitMultiplexer1() throws ConnectorException
+	{
+		// The muxer does not block on an idle input
+		WaitStrategy ws = new WaitStrategy(WaitStrategy.Mode.PARK, 10000);
+		LiveSource src1 = new LiveSource();
+		LiveSource src2 = new LiveSource();
+		src1.setWaitStrategy(ws);
+		src2.setWaitStrategy(ws);
+		Multiplexer mux = new Multiplexer(2);
+		mux.setWaitStrategy(ws);
+		Connector.connect(src1, mux, 0, 0);
+		Connector.connect(src2, mux, 0, 1);
+		Pullable p = mux.getPullableOutput(0);
+		src2.feed("C");
+		assertEquals("C", p.pull());
+		src1.feed("D");
+		assertEquals("D", p.pull());
+	}
+
+	@Test
+	public void testWaitMultiplexer2() throws ConnectorException
+	{
+		// The muxer does not sleep on events already queued behind
+		// a processor that discards them
+		LiveSource src1 = new LiveSource();
+		for (int i = 0; i < 100; i++)
+		{
+			src1.feed(i);
+		}
+		CountDecimate dec = new CountDecimate(50);
+		Connector.connect(src1, dec);
+		LiveSource src2 = new LiveSource();
+		Multiplexer mux = new Multiplexer(2);
+		mux.setWaitStrategy(new WaitStrategy(WaitStrategy.Mode.PARK, 10000));
+		Connector.connect(dec, mux, 0, 0);
+		Connector.connect(src2, mux, 0, 1);
+		Pullable p = mux.getPullableOutput(0);
+		long start = System.currentTimeMillis();
+		Utilities.assertEquals(0, p.pull());
+		Utilities.assertEquals(50, p.pull());
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testComputeNotOverridden() throws ConnectorException
+	{
+		SingleProcessor p = new SingleProcessor(1, 1)
+		{
+			@Override
+			public Processor clone()
+			{
+				return this;
+			}
+		};
+		p.getPushableInput(0).push("A");
+	}
+
+	/**
+	 * Processor that outputs each input event twice, using the
+	 * collector-based version of <code>compute</code>
+	 */
+	public static class Doubler extends SingleProcessor
+	{
+		public Doubler()
+		{
+			super(1, 1);
+		}
+
+		@Override
+		protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+		{
+			outputs.add(inputs);
+			outputs.add(inputs);
+			return true;
+		}
+
+		@Override
+		public Doubler clone()
+		{
+			return new Doubler();
+		}
+	}
+
+	/**
+	 * Source that outputs the events it is fed, possibly from another
+	 * thread, and has nothing to give in the meantime
+	 */
+	public static class LiveSource extends Source
+	{
+		protected final Queue<Object> m_fed = new ConcurrentLinkedQueue<Object>();
+
+		public LiveSource()
+		{
+			super(1);
+		}
+
+		public void feed(Object o)
+		{
+			m_fed.add(o);
+			signal();
+		}
+
+		@Override
+		protected Queue<Object[]> compute(Object[] inputs)
+		{
+			Object o = m_fed.poll();
+			if (o == null)
+			{
+				return newQueue();
+			}
+			return wrapObject(o);
+		}
+
+		@Override
+		public LiveSource clone()
+		{
+			return new LiveSource();
+		}
+	}
+
 	public static class IsEven extends UnaryFunction<Number,Boolean>
 	{
 		public IsEven()
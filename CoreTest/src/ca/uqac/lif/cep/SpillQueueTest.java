@@ -0,0 +1,146 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.numbers.Addition;
+import ca.uqac.lif.cep.tmf.QueueSink;
+
+/**
+ * Unit tests for the {@link SpillQueue} class, and for processors
+ * whose queues spill to disk
+ * @author Sylvain Hallé
+ */
+public class SpillQueueTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testOrder()
+	{
+		SpillQueue<Integer> queue = new SpillQueue<Integer>(10);
+		for (int i = 0; i < 100; i++)
+		{
+			queue.add(i);
+		}
+		assertEquals(100, queue.size());
+		assertTrue(queue.getSegmentCount() > 0);
+		Iterator<Integer> it = queue.iterator();
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i, it.next().intValue());
+		}
+		for (int i = 0; i < 50; i++)
+		{
+			assertEquals(i, queue.poll().intValue());
+		}
+		// Elements added while others are on disk go after them
+		for (int i = 100; i < 120; i++)
+		{
+			queue.add(i);
+		}
+		for (int i = 50; i < 120; i++)
+		{
+			assertEquals(i, queue.poll().intValue());
+		}
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getSegmentCount());
+		assertEquals(null, queue.poll());
+	}
+
+	@Test
+	public void testClear()
+	{
+		SpillQueue<Integer> queue = new SpillQueue<Integer>(4);
+		for (int i = 0; i < 20; i++)
+		{
+			queue.add(i);
+		}
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.getSegmentCount());
+		queue.add(1);
+		assertEquals(1, queue.poll().intValue());
+	}
+
+	@Test
+	public void testNotSerializable()
+	{
+		SpillQueue<Object> queue = new SpillQueue<Object>(2);
+		queue.add(0);
+		queue.add(1);
+		try
+		{
+			queue.add(new Object());
+			fail("Expected a spill exception");
+		}
+		catch (SpillQueue.SpillException e)
+		{
+			// Expected
+		}
+		assertEquals(3, queue.size());
+	}
+
+	@Test
+	public void testProcessor() throws ConnectorException
+	{
+		FunctionProcessor add = new FunctionProcessor(Addition.instance);
+		add.setInputSpill(0, 4);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(add, sink);
+		Pushable left = add.getPushableInput(0);
+		for (int i = 0; i < 50; i++)
+		{
+			left.push(i);
+		}
+		assertTrue(((SpillQueue<Object>) add.m_inputQueues[0]).getSegmentCount() > 0);
+		Pushable right = add.getPushableInput(1);
+		Queue<Object> queue = sink.getQueue();
+		for (int i = 0; i < 50; i++)
+		{
+			right.push(100);
+			assertEquals(100 + i, ((Number) queue.remove()).intValue());
+		}
+	}
+
+	@Test
+	public void testQueueSink() throws ConnectorException
+	{
+		QueueSink sink = new QueueSink(1);
+		sink.setSpill(4);
+		Pushable in = sink.getPushableInput(0);
+		for (int i = 0; i < 30; i++)
+		{
+			in.push(i);
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(30, queue.size());
+		for (int i = 0; i < 30; i++)
+		{
+			assertEquals(i, queue.remove());
+		}
+	}
+}
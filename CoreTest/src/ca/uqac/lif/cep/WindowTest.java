@@ -19,6 +19,7 @@
 package ca.uqac.lif.cep;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -29,9 +30,17 @@ import org.junit.Test;
 
 import ca.uqac.lif.cep.Connector.ConnectorException;
 import ca.uqac.lif.cep.ProcessorTest.Sum;
+import ca.uqac.lif.cep.functions.CumulativeFunction;
+import ca.uqac.lif.cep.functions.CumulativeProcessor;
 import ca.uqac.lif.cep.interpreter.Interpreter;
 import ca.uqac.lif.cep.interpreter.Interpreter.ParseException;
+import ca.uqac.lif.cep.numbers.DoubleBinaryFunction;
+import ca.uqac.lif.cep.numbers.DoubleCumulativeProcessor;
 import ca.uqac.lif.cep.numbers.EmlNumber;
+import ca.uqac.lif.cep.numbers.LongBinaryFunction;
+import ca.uqac.lif.cep.numbers.LongCumulativeProcessor;
+import ca.uqac.lif.cep.numbers.Multiplication;
+import ca.uqac.lif.cep.numbers.Subtraction;
 import ca.uqac.lif.cep.numbers.NumberGrammar;
 import ca.uqac.lif.cep.tmf.QueueSink;
 import ca.uqac.lif.cep.tmf.QueueSource;
@@ -141,4 +150,99 @@ public class WindowTest extends BeepBeepUnitTest
 		EmlNumber en = (EmlNumber) queue.remove();
 		assertEquals(1, en.intValue());
 	}
+
+	@Test
+	public void testIncrementalSum() throws ConnectorException
+	{
+		Window wp = new Window(new Sum(), 3);
+		assertTrue(wp.isIncremental());
+		Window slow = new Window(new Sum(), 3).setIncremental(false);
+		compareWindows(wp, slow, new int[]{1, 4, 2, 8, 5, 7, 0, 3, 3, 9});
+	}
+
+	@Test
+	public void testIncrementalProduct() throws ConnectorException
+	{
+		Window wp = new Window(new CumulativeProcessor(new CumulativeFunction<Number>(Multiplication.instance)), 2);
+		assertTrue(wp.isIncremental());
+		Window slow = wp.clone().setIncremental(false);
+		// Products by 0 cannot be undone and force a full computation
+		compareWindows(wp, slow, new int[]{2, 3, 0, 5, 4, 0, 0, 6, 1});
+	}
+
+	@Test
+	public void testNotIncremental() throws ConnectorException
+	{
+		Window wp = new Window(new CumulativeProcessor(new CumulativeFunction<Number>(Subtraction.instance)), 2);
+		assertFalse(wp.isIncremental());
+		try
+		{
+			wp.setIncremental(true);
+			fail("Subtraction has no inverse");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void testIncrementalFloatSum() throws ConnectorException
+	{
+		// Subtracting the large value would lose the small ones
+		Window wp = new Window(new DoubleCumulativeProcessor(DoubleBinaryFunction.ADDITION), 3);
+		assertTrue(wp.isIncremental());
+		Window slow = wp.clone().setIncremental(false);
+		compareWindows(wp, slow, new Number[]{1e8, 1, 1, 1, 1, 1});
+	}
+
+	@Test
+	public void testIncrementalFloatOverflow() throws ConnectorException
+	{
+		// An infinite product cannot be divided back to a finite one
+		Window wp = new Window(new DoubleCumulativeProcessor(DoubleBinaryFunction.MULTIPLICATION), 2);
+		assertTrue(wp.isIncremental());
+		Window slow = wp.clone().setIncremental(false);
+		compareWindows(wp, slow, new Number[]{1e300, 1e300, 2, 2, 2});
+	}
+
+	@Test
+	public void testIncrementalLongSum() throws ConnectorException
+	{
+		Window wp = new Window(new LongCumulativeProcessor(LongBinaryFunction.ADDITION), 3);
+		assertTrue(wp.isIncremental());
+		Window slow = wp.clone().setIncremental(false);
+		compareWindows(wp, slow, new Number[]{Long.MAX_VALUE, 1, 1, 5, -3, 2});
+	}
+
+	protected static void compareWindows(Window w1, Window w2, int[] values) throws ConnectorException
+	{
+		Number[] numbers = new Number[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			numbers[i] = values[i];
+		}
+		compareWindows(w1, w2, numbers);
+	}
+
+	protected static void compareWindows(Window w1, Window w2, Number[] values) throws ConnectorException
+	{
+		QueueSink qs1 = new QueueSink(1);
+		Connector.connect(w1, qs1);
+		QueueSink qs2 = new QueueSink(1);
+		Connector.connect(w2, qs2);
+		for (Number v : values)
+		{
+			w1.getPushableInput(0).push(v);
+			w2.getPushableInput(0).push(v);
+		}
+		Queue<Object> q1 = qs1.getQueue();
+		Queue<Object> q2 = qs2.getQueue();
+		assertEquals(values.length - w1.getWidth() + 1, q1.size());
+		assertEquals(q2.size(), q1.size());
+		while (!q1.isEmpty())
+		{
+			assertEquals(((Number) q2.remove()).doubleValue(), ((Number) q1.remove()).doubleValue(), 0);
+		}
+	}
 }
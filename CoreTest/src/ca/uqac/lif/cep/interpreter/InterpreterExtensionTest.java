@@ -21,12 +21,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Queue;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import ca.uqac.lif.cep.Connector.ConnectorException;
 import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.ProcessorTest.Sum;
 import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
 import ca.uqac.lif.cep.functions.CumulativeProcessor;
 import ca.uqac.lif.cep.interpreter.Interpreter.ParseException;
 import ca.uqac.lif.cep.io.HttpReader;
@@ -35,6 +41,9 @@ import ca.uqac.lif.cep.numbers.EmlNumber;
 import ca.uqac.lif.cep.numbers.NumberGrammar;
 import ca.uqac.lif.cep.tmf.CountDecimate;
 import ca.uqac.lif.cep.tmf.Freeze;
+import ca.uqac.lif.cep.tmf.Passthrough;
+import ca.uqac.lif.cep.tmf.QueueSink;
+import ca.uqac.lif.cep.tmf.SmartFork;
 import ca.uqac.lif.cep.tmf.Window;
 
 /**
@@ -126,4 +135,59 @@ public class InterpreterExtensionTest extends BeepBeepUnitTest
 		assertNotNull(result);
 		assertTrue(result instanceof Placeholder);
 	}
+	
+	@Test
+	public void testSharedWindow() throws ConnectorException
+	{
+		SmartFork fork = new SmartFork(0);
+		m_interpreter.m_processorForks.put("@P", fork);
+		int[] widths = {2, 3};
+		QueueSink[] sinks = new QueueSink[widths.length];
+		for (int i = 0; i < widths.length; i++)
+		{
+			// What the interpreter builds for APPLY (...) ON (@P) ON A WINDOW OF n
+			fork.extendOutputArity(fork.getOutputArity() + 1);
+			Passthrough pt = new Passthrough(1);
+			Connector.connect(fork, pt, fork.getOutputArity() - 1, 0);
+			Window w = new Window(new Sum(), widths[i]);
+			Connector.connect(pt, w);
+			Processor p = m_interpreter.shareWindow(w);
+			assertTrue(p instanceof Passthrough);
+			sinks[i] = new QueueSink(1);
+			Connector.connect(p, sinks[i]);
+		}
+		// Both windows are served by a single output of the fork
+		assertEquals(1, fork.getOutputArity());
+		Pushable in = fork.getPushableInput(0);
+		for (int i = 1; i <= 4; i++)
+		{
+			in.push(i);
+		}
+		Queue<Object> q0 = sinks[0].getQueue();
+		Queue<Object> q1 = sinks[1].getQueue();
+		assertEquals(3, q0.size());
+		assertEquals(3, ((Number) q0.remove()).intValue());
+		assertEquals(5, ((Number) q0.remove()).intValue());
+		assertEquals(7, ((Number) q0.remove()).intValue());
+		assertEquals(2, q1.size());
+		assertEquals(6, ((Number) q1.remove()).intValue());
+		assertEquals(9, ((Number) q1.remove()).intValue());
+	}
+
+	@Test
+	public void testSharedWindowCopy() throws ConnectorException
+	{
+		SmartFork fork = new SmartFork(1);
+		m_interpreter.m_processorForks.put("@P", fork);
+		Passthrough pt = new Passthrough(1);
+		Connector.connect(fork, pt);
+		Window w = new Window(new Sum(), 2);
+		Connector.connect(pt, w);
+		m_interpreter.shareWindow(w);
+		assertEquals(1, m_interpreter.m_sharedWindows.get(fork).size());
+		// Changing the windows of a copy leaves the original alone
+		Interpreter copy = new Interpreter(m_interpreter);
+		copy.m_sharedWindows.get(fork).clear();
+		assertEquals(1, m_interpreter.m_sharedWindows.get(fork).size());
+	}
 }
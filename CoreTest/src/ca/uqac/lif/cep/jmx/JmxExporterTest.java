@@ -0,0 +1,110 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.ConnectorTest.Incrementer;
+import ca.uqac.lif.cep.GroupProcessor;
+import ca.uqac.lif.cep.MetricsRegistry;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.tmf.Passthrough;
+import ca.uqac.lif.cep.tmf.QueueSink;
+import ca.uqac.lif.cep.tmf.Slicer;
+import ca.uqac.lif.cep.tmf.SlicerTest;
+import ca.uqac.lif.cep.tmf.Window;
+
+/**
+ * Unit tests for the {@link JmxExporter} class
+ * @author Sylvain Hallé
+ */
+public class JmxExporterTest extends BeepBeepUnitTest
+{
+	@After
+	public void tearDown()
+	{
+		MetricsRegistry.clear();
+	}
+
+	@Test
+	public void testRegister() throws ConnectorException, JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		Passthrough in = new Passthrough(1);
+		Window win = new Window(new SlicerTest.Sum(), 3);
+		Slicer sli = new Slicer(new SlicerTest.IsEven(), new SlicerTest.Sum());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(in, win, sli, sink);
+		assertEquals(4, JmxExporter.register(in));
+		// Registering again has no effect
+		assertEquals(0, JmxExporter.register(sink));
+		Pushable p = in.getPushableInput(0);
+		p.push(1);
+		p.push(2);
+		ObjectName win_name = JmxExporter.getObjectName(win, null);
+		assertTrue(server.isRegistered(win_name));
+		assertEquals(3, server.getAttribute(win_name, "Width"));
+		assertEquals(2, server.getAttribute(win_name, "FillLevel"));
+		p.push(3);
+		p.push(5);
+		ObjectName sli_name = JmxExporter.getObjectName(sli, null);
+		// The window sums are 6 and 10: both even, one slice
+		assertEquals(1, server.getAttribute(sli_name, "SliceCount"));
+		long[] events_in = (long[]) server.getAttribute(sli_name, "EventsIn");
+		assertEquals(2, events_in[0]);
+		JmxExporter.unregister(in);
+		assertFalse(server.isRegistered(win_name));
+		assertFalse(server.isRegistered(sli_name));
+	}
+
+	@Test
+	public void testGroup() throws ConnectorException, JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		GroupProcessor group = new GroupProcessor(1, 1);
+		Incrementer inc = new Incrementer(10);
+		group.addProcessor(inc);
+		group.associateInput(0, inc, 0);
+		group.associateOutput(0, inc, 0);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(group, sink);
+		assertEquals(3, JmxExporter.register(group));
+		ObjectName group_name = JmxExporter.getObjectName(group, null);
+		ObjectName inc_name = JmxExporter.getObjectName(inc, group);
+		assertEquals(1, server.getAttribute(group_name, "ProcessorCount"));
+		group.getPushableInput(0).push(1);
+		long[] events_out = (long[]) server.getAttribute(inc_name, "EventsOut");
+		assertEquals(1, events_out[0]);
+		JmxExporter.unregister(group);
+		assertFalse(server.isRegistered(inc_name));
+	}
+}
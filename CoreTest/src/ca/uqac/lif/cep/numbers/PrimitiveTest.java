@@ -0,0 +1,135 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.numbers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.tmf.QueueSink;
+import ca.uqac.lif.cep.tmf.QueueSource;
+import ca.uqac.lif.cep.util.DoubleQueue;
+
+/**
+ * Unit tests for the processors on primitive values
+ * @author Sylvain Hallé
+ */
+public class PrimitiveTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testDoublePush() throws ConnectorException
+	{
+		DoubleFunctionProcessor add = new DoubleFunctionProcessor(DoubleBinaryFunction.ADDITION);
+		DoubleCumulativeProcessor sum = new DoubleCumulativeProcessor(DoubleBinaryFunction.ADDITION);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(add, sum, sink);
+		DoublePushable left = (DoublePushable) add.getPushableInput(0);
+		DoublePushable right = (DoublePushable) add.getPushableInput(1);
+		left.pushDouble(0.1);
+		left.pushDouble(1);
+		right.pushDouble(0.2);
+		Queue<Object> queue = sink.getQueue();
+		// Computed in double precision
+		assertEquals(0.1 + 0.2, queue.remove());
+		right.push(2);
+		assertEquals(0.1 + 0.2 + 3, queue.remove());
+		assertEquals(0.1 + 0.2 + 3, sum.getValue(), 0);
+		sum.reset();
+		assertEquals(0, sum.getValue(), 0);
+	}
+
+	@Test
+	public void testLongToDouble() throws ConnectorException
+	{
+		LongCumulativeProcessor count = new LongCumulativeProcessor(LongBinaryFunction.ADDITION);
+		DoubleCumulativeProcessor max = new DoubleCumulativeProcessor(DoubleBinaryFunction.MAXIMUM);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(count, max, sink);
+		LongPushable in = (LongPushable) count.getPushableInput(0);
+		in.pushLong(3);
+		in.pushLong(-5);
+		in.pushLong(4);
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(3d, queue.remove());
+		assertEquals(3d, queue.remove());
+		assertEquals(3d, queue.remove());
+		in.pushLong(Integer.MAX_VALUE);
+		assertEquals(2d + Integer.MAX_VALUE, queue.remove());
+	}
+
+	@Test
+	public void testStartValue() throws ConnectorException
+	{
+		DoubleCumulativeProcessor diff = new DoubleCumulativeProcessor(DoubleBinaryFunction.SUBTRACTION);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(diff, sink);
+		Pushable in = diff.getPushableInput(0);
+		in.push(10);
+		in.push(3);
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(10d, queue.remove());
+		assertEquals(7d, queue.remove());
+	}
+
+	@Test
+	public void testPull() throws ConnectorException
+	{
+		QueueSource source = new QueueSource(1);
+		source.addEvent(2);
+		source.addEvent(5);
+		LongCumulativeProcessor product = new LongCumulativeProcessor(LongBinaryFunction.MULTIPLICATION);
+		Connector.connect(source, product);
+		Pullable p = product.getPullableOutput(0);
+		assertEquals(2L, p.pull());
+		assertEquals(10L, p.pull());
+		assertEquals(20L, p.pull());
+	}
+
+	@Test
+	public void testQueue()
+	{
+		DoubleQueue q = new DoubleQueue(2);
+		for (int i = 0; i < 10; i++)
+		{
+			q.add(i);
+		}
+		assertEquals(0, q.remove(), 0);
+		assertEquals(1, q.remove(), 0);
+		for (int i = 10; i < 20; i++)
+		{
+			q.add(i);
+		}
+		assertEquals(18, q.size());
+		for (int i = 2; i < 20; i++)
+		{
+			assertEquals(i, q.get(i - 2), 0);
+		}
+		for (int i = 2; i < 20; i++)
+		{
+			assertEquals(i, q.remove(), 0);
+		}
+		assertEquals(true, q.isEmpty());
+	}
+}
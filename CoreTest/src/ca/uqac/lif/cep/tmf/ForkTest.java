@@ -272,7 +272,7 @@ public class ForkTest extends BeepBeepUnitTest
 		Pullable p1 = f.getPullableOutput(0);
 		Pullable p2 = f.getPullableOutput(1);
 		int recv;
-		for (int i = 0; i < SmartFork.s_cleanInterval + 3; i++)
+		for (int i = 0; i < SmartFork.s_initialCapacity + 3; i++)
 		{
 			assertTrue(p1.hasNext());
 			recv = ((Number) p1.pull()).intValue();
@@ -281,7 +281,7 @@ public class ForkTest extends BeepBeepUnitTest
 		}
 		f.reset();
 		cp.reset();
-		for (int i = 0; i < SmartFork.s_cleanInterval + 3; i++)
+		for (int i = 0; i < SmartFork.s_initialCapacity + 3; i++)
 		{
 			assertTrue(p1.hasNext());
 			recv = ((Number) p1.pull()).intValue();
@@ -307,7 +307,7 @@ public class ForkTest extends BeepBeepUnitTest
 		Connector.connect(cp,  f);
 		Pullable p1 = f.getPullableOutput(0);
 		int recv;
-		for (int i = 0; i < SmartFork.s_cleanInterval + 3; i++)
+		for (int i = 0; i < SmartFork.s_initialCapacity + 3; i++)
 		{
 			assertTrue(p1.hasNext());
 			recv = ((Number) p1.pull()).intValue();
@@ -316,7 +316,7 @@ public class ForkTest extends BeepBeepUnitTest
 		}
 		f.reset();
 		cp.reset();
-		for (int i = 0; i < SmartFork.s_cleanInterval + 3; i++)
+		for (int i = 0; i < SmartFork.s_initialCapacity + 3; i++)
 		{
 			assertTrue(p1.hasNext());
 			recv = ((Number) p1.pull()).intValue();
@@ -350,4 +350,188 @@ public class ForkTest extends BeepBeepUnitTest
 		assertEquals(0, q2.size());
 	}
 
+	@Test
+	public void testSmartForkLagging() throws ConnectorException
+	{
+		Vector<Object> events = new Vector<Object>();
+		for (int i = 0; i < 5; i++)
+		{
+			events.add(i);
+		}
+		QueueSource cp = new QueueSource(1);
+		cp.setEvents(events);
+		SmartFork f = new SmartFork(2);
+		Connector.connect(cp,  f);
+		Pullable p1 = f.getPullableOutput(0);
+		Pullable p2 = f.getPullableOutput(1);
+		int n = 4 * SmartFork.s_initialCapacity;
+		for (int i = 0; i < n; i++)
+		{
+			assertEquals(i % 5, ((Number) p1.pull()).intValue());
+		}
+		// The buffer grew to keep the events the second output did not pull
+		assertEquals(n, f.getBufferedCount());
+		for (int i = 0; i < n; i++)
+		{
+			assertEquals(i % 5, ((Number) p2.pull()).intValue());
+		}
+		assertEquals(0, f.getBufferedCount());
+		assertEquals(n % 5, ((Number) p2.pull()).intValue());
+		assertEquals(n % 5, ((Number) p1.pull()).intValue());
+	}
+
+	@Test
+	public void testSmartForkThreads() throws ConnectorException, InterruptedException
+	{
+		Vector<Object> events = new Vector<Object>();
+		for (int i = 0; i < 7; i++)
+		{
+			events.add(i);
+		}
+		QueueSource cp = new QueueSource(1);
+		cp.setEvents(events);
+		SmartFork f = new SmartFork(3);
+		Connector.connect(cp,  f);
+		final int n = 10000;
+		final boolean[] ok = new boolean[3];
+		Thread[] threads = new Thread[3];
+		for (int t = 0; t < 3; t++)
+		{
+			final int index = t;
+			final Pullable p = f.getPullableOutput(t);
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < n; i++)
+					{
+						if (((Number) p.pull()).intValue() != i % 7)
+						{
+							return;
+						}
+					}
+					ok[index] = true;
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < 3; t++)
+		{
+			threads[t].join();
+			assertTrue(ok[t]);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testParallelFork() throws ConnectorException
+	{
+		Fork fork = new Fork(2).setParallel(true);
+		ThreadRecorder branch1 = new ThreadRecorder();
+		ThreadRecorder branch2 = new ThreadRecorder();
+		JoinBarrier barrier = new JoinBarrier(2);
+		QueueSink sink = new QueueSink(2);
+		Connector.connect(fork, branch1, 0, 0);
+		Connector.connect(fork, branch2, 1, 0);
+		Connector.connect(branch1, barrier, 0, 0);
+		Connector.connect(branch2, barrier, 0, 1);
+		Connector.connect(barrier, sink);
+		Pushable push = fork.getPushableInput(0);
+		int n = 1000;
+		for (int i = 0; i < n; i++)
+		{
+			push.push(i);
+		}
+		fork.flush();
+		Queue<Object> q1 = sink.getQueue(0);
+		Queue<Object> q2 = sink.getQueue(1);
+		assertEquals(n, q1.size());
+		assertEquals(n, q2.size());
+		for (int i = 0; i < n; i++)
+		{
+			assertEquals(i, q1.remove());
+			assertEquals(i, q2.remove());
+		}
+		// Each branch ran in its own thread
+		assertTrue(branch1.m_thread != null && branch1.m_thread != Thread.currentThread());
+		assertTrue(branch2.m_thread != null && branch2.m_thread != branch1.m_thread);
+		fork.shutdown();
+		push.push(n);
+		fork.flush();
+		assertEquals(n, q1.remove());
+		assertEquals(n, q2.remove());
+		fork.setParallel(false);
+		push.push(n + 1);
+		assertEquals(n + 1, q2.remove());
+		assertTrue(branch2.m_thread == Thread.currentThread());
+	}
+
+	@Test
+	public void testParallelFailure() throws ConnectorException
+	{
+		Fork fork = new Fork(2).setParallel(true);
+		QueueSink sink1 = new QueueSink(1);
+		Passthrough failing = new Passthrough(1)
+		{
+			@Override
+			protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+			{
+				throw new IllegalStateException("Branch failed");
+			}
+		};
+		Connector.connect(fork, sink1, 0, 0);
+		Connector.connect(fork, failing, 1, 0);
+		Connector.connect(failing, new QueueSink(1));
+		fork.getPushableInput(0).push(1);
+		try
+		{
+			fork.flush();
+			fail("The exception of the branch was not reported");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected
+		}
+		assertEquals(1, sink1.getQueue().remove());
+		fork.shutdown();
+	}
+
+	@Test
+	public void testParallelLifetime() throws ConnectorException
+	{
+		Fork fork = new Fork(2).setParallel(true);
+		// A copy does not start threads of its own
+		assertFalse(fork.clone().isParallel());
+		Connector.connect(fork, new QueueSink(1), 0, 0);
+		Connector.connect(fork, new QueueSink(1), 1, 0);
+		fork.getPushableInput(0).push(1);
+		assertNotNull(fork.m_branches);
+		// Resetting the fork stops its threads
+		fork.reset();
+		assertNull(fork.m_branches);
+		assertTrue(fork.isParallel());
+	}
+
+	/**
+	 * Passes its input events through, and remembers the thread that
+	 * gave it the last one
+	 */
+	public static class ThreadRecorder extends Passthrough
+	{
+		protected volatile Thread m_thread = null;
+
+		public ThreadRecorder()
+		{
+			super(1);
+		}
+
+		@Override
+		protected boolean compute(Object[] inputs, Queue<Object[]> outputs)
+		{
+			m_thread = Thread.currentThread();
+			outputs.add(inputs);
+			return true;
+		}
+	}
 }
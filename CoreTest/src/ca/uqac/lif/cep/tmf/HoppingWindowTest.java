@@ -0,0 +1,142 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.ProcessorTest.Sum;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.CumulativeFunction;
+import ca.uqac.lif.cep.functions.CumulativeProcessor;
+import ca.uqac.lif.cep.numbers.Subtraction;
+import ca.uqac.lif.cep.tmf.SlidingAggregatorTest.Concatenation;
+
+/**
+ * Unit tests for {@link HoppingWindow} and {@link TumblingWindow}
+ * @author Sylvain Hallé
+ */
+public class HoppingWindowTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testHoppingSum() throws ConnectorException
+	{
+		int[][] sizes = {{4, 2}, {6, 4}, {3, 5}, {5, 1}, {1, 3}};
+		for (int[] size : sizes)
+		{
+			HoppingWindow hw = new HoppingWindow(new Sum(), size[0], size[1]);
+			assertTrue(hw.usesPanes());
+			compareWindows(hw, new Sum(), size[0], size[1]);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testHoppingOrder() throws ConnectorException
+	{
+		// Concatenation is not commutative: panes must be combined in order
+		HoppingWindow hw = new HoppingWindow(new CumulativeProcessor(new CumulativeFunction<String>(Concatenation.instance)), 6, 4);
+		assertTrue(hw.usesPanes());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(hw, sink);
+		Pushable in = hw.getPushableInput(0);
+		for (int i = 0; i < 10; i++)
+		{
+			in.push(Integer.toString(i));
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(2, queue.size());
+		assertEquals("012345", queue.remove());
+		assertEquals("456789", queue.remove());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testHoppingNoPanes() throws ConnectorException
+	{
+		HoppingWindow hw = new HoppingWindow(new CumulativeProcessor(new CumulativeFunction<Number>(Subtraction.instance)), 4, 3);
+		assertFalse(hw.usesPanes());
+		compareWindows(hw, new CumulativeProcessor(new CumulativeFunction<Number>(Subtraction.instance)), 4, 3);
+	}
+
+	@Test
+	public void testTumbling() throws ConnectorException
+	{
+		TumblingWindow tw = new TumblingWindow(new Sum(), 3);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(tw, sink);
+		Pushable in = tw.getPushableInput(0);
+		for (int i = 1; i <= 8; i++)
+		{
+			in.push(i);
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(2, queue.size());
+		assertEquals(6, ((Number) queue.remove()).intValue());
+		assertEquals(15, ((Number) queue.remove()).intValue());
+		tw.reset();
+		sink.reset();
+		in.push(1);
+		in.push(1);
+		in.push(1);
+		queue = sink.getQueue();
+		assertEquals(1, queue.size());
+		assertEquals(3, ((Number) queue.remove()).intValue());
+	}
+
+	/**
+	 * Checks that a hopping window produces the same output as a window
+	 * followed by a decimation
+	 */
+	protected static void compareWindows(HoppingWindow hw, Processor p, int width, int step) throws ConnectorException
+	{
+		Window w = new Window(p, width);
+		CountDecimate dec = new CountDecimate(step);
+		Connector.connect(w, dec);
+		QueueSink sink1 = new QueueSink(1);
+		QueueSink sink2 = new QueueSink(1);
+		Connector.connect(hw, sink1);
+		Connector.connect(dec, sink2);
+		Pushable in1 = hw.getPushableInput(0);
+		Pushable in2 = w.getPushableInput(0);
+		Random random = new Random(0);
+		for (int i = 0; i < 100; i++)
+		{
+			int v = random.nextInt(50);
+			in1.push(v);
+			in2.push(v);
+		}
+		Queue<Object> q1 = sink1.getQueue();
+		Queue<Object> q2 = sink2.getQueue();
+		assertEquals(q2.size(), q1.size());
+		while (!q2.isEmpty())
+		{
+			assertEquals(((Number) q2.remove()).floatValue(), ((Number) q1.remove()).floatValue(), 0);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.ProcessorTest.LiveSource;
+import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.WaitStrategy;
+import ca.uqac.lif.cep.tmf.SessionWindowTest.Identity;
+
+/**
+ * Unit tests for the {@link OrderedMultiplexer}
+ * @author Sylvain Hallé
+ */
+public class OrderedMultiplexerTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testPull() throws ConnectorException
+	{
+		QueueSource src1 = new QueueSource(1).loop(false);
+		src1.setEvents(new Object[]{1, 4, 7});
+		QueueSource src2 = new QueueSource(1).loop(false);
+		src2.setEvents(new Object[]{2, 3, 9, 10});
+		QueueSource src3 = new QueueSource(1).loop(false);
+		src3.setEvents(new Object[]{4L, 8.5});
+		OrderedMultiplexer mux = new OrderedMultiplexer(new Identity(), 3);
+		Connector.connect(src1, mux, 0, 0);
+		Connector.connect(src2, mux, 0, 1);
+		Connector.connect(src3, mux, 0, 2);
+		Pullable p = mux.getPullableOutput(0);
+		double[] expected = {1, 2, 3, 4, 4, 7, 8.5, 9, 10};
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertTrue(p.hasNext());
+			Number n = (Number) p.pull();
+			assertEquals(expected[i], n.doubleValue(), 0);
+			if (i == 3)
+			{
+				// Equal timestamps are output in the order of the inputs
+				assertTrue(n instanceof Integer);
+			}
+		}
+		assertFalse(p.hasNext());
+	}
+
+	@Test
+	public void testPush() throws ConnectorException
+	{
+		OrderedMultiplexer mux = new OrderedMultiplexer(new Identity(), 2);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(mux, sink);
+		Queue<Object> queue = sink.getQueue();
+		Pushable in1 = mux.getPushableInput(0);
+		Pushable in2 = mux.getPushableInput(1);
+		in1.push(1);
+		in1.push(5);
+		// Nothing is output until the second input has an event
+		assertTrue(queue.isEmpty());
+		in2.push(2);
+		assertEquals(1, queue.remove());
+		assertEquals(2, queue.remove());
+		in2.push(3);
+		in2.push(6);
+		assertEquals(3, queue.remove());
+		assertEquals(5, queue.remove());
+		assertTrue(queue.isEmpty());
+		mux.flush();
+		assertEquals(6, queue.remove());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testIdleInput() throws ConnectorException
+	{
+		WaitStrategy ws = new WaitStrategy(WaitStrategy.Mode.PARK, 50);
+		LiveSource src1 = new LiveSource();
+		LiveSource src2 = new LiveSource();
+		src1.setWaitStrategy(ws);
+		src2.setWaitStrategy(ws);
+		OrderedMultiplexer mux = new OrderedMultiplexer(new Identity(), 2);
+		mux.setWaitStrategy(ws);
+		Connector.connect(src1, mux, 0, 0);
+		Connector.connect(src2, mux, 0, 1);
+		Pullable p = mux.getPullableOutput(0);
+		src2.feed(5);
+		assertEquals(Pullable.NextStatus.MAYBE, p.hasNextSoft());
+		assertEquals(null, p.pullSoft());
+		// The first input stays idle: the merger stops waiting for it
+		assertEquals(5, p.pull());
+		src2.feed(8);
+		src1.feed(3);
+		assertEquals(3, p.pull());
+		src1.feed(9);
+		assertEquals(8, p.pull());
+	}
+}
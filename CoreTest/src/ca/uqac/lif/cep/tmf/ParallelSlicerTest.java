@@ -0,0 +1,215 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.functions.UnaryFunction;
+import ca.uqac.lif.cep.tmf.ParallelSlicer.Ordering;
+import ca.uqac.lif.cep.tmf.SlicerTest.Sum;
+
+/**
+ * Unit tests for the {@link ParallelSlicer}
+ * @author Sylvain Hallé
+ */
+public class ParallelSlicerTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testArrivalOrder() throws ConnectorException
+	{
+		// In arrival order, the output is exactly that of a slicer
+		List<Object> expected = runSlicer(new Slicer(new Modulo(), new Sum()));
+		ParallelSlicer ps = new ParallelSlicer(new Modulo(), new Sum(), 4, Ordering.ARRIVAL);
+		List<Object> actual = runSlicer(ps);
+		ps.shutdown();
+		assertEquals(expected, actual);
+		assertEquals(13, ps.getSliceCount());
+	}
+
+	@Test
+	public void testUnordered() throws ConnectorException
+	{
+		List<Object> expected = runSlicer(new Slicer(new Modulo(), new Sum()));
+		ParallelSlicer ps = new ParallelSlicer(new Modulo(), new Sum(), 3, Ordering.UNORDERED);
+		List<Object> actual = runSlicer(ps);
+		ps.shutdown();
+		assertEquals(expected.size(), actual.size());
+		assertEquals(sorted(expected), sorted(actual));
+	}
+
+	@Test
+	public void testPull() throws ConnectorException
+	{
+		QueueSource source = new QueueSource(1);
+		source.setEvents(new Integer[]{1, 14, 27, 2});
+		ParallelSlicer ps = new ParallelSlicer(new Modulo(), new Sum(), 2, Ordering.ARRIVAL);
+		Connector.connect(source, ps);
+		Pullable out = ps.getPullableOutput(0);
+		// 1, 14 and 27 are in the same slice
+		assertEquals(1, ((Number) out.pull()).intValue());
+		assertEquals(15, ((Number) out.pull()).intValue());
+		assertEquals(42, ((Number) out.pull()).intValue());
+		assertEquals(2, ((Number) out.pull()).intValue());
+		ps.shutdown();
+	}
+
+	@Test
+	public void testSliceFailure() throws ConnectorException
+	{
+		ParallelSlicer ps = new ParallelSlicer(new Modulo(), new FunctionProcessor(new NotThirteen()), 2, Ordering.ARRIVAL);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(ps, sink);
+		Pushable in = ps.getPushableInput(0);
+		in.push(1);
+		in.push(13);
+		in.push(2);
+		try
+		{
+			ps.flush();
+			fail("The exception of the slice was not reported");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+		// The failed front does not hold back the next ones
+		in.push(3);
+		ps.shutdown();
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(3, queue.size());
+		assertEquals(1, ((Number) queue.remove()).intValue());
+		assertEquals(2, ((Number) queue.remove()).intValue());
+		assertEquals(3, ((Number) queue.remove()).intValue());
+	}
+
+	@Test
+	public void testUniqueIds() throws InterruptedException
+	{
+		final Processor p = new Sum();
+		final List<Integer> ids = Collections.synchronizedList(new ArrayList<Integer>());
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++)
+		{
+			threads[i] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < 10000; j++)
+					{
+						ids.add(p.clone().getId());
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+		Set<Integer> distinct = new HashSet<Integer>(ids);
+		assertEquals(ids.size(), distinct.size());
+	}
+
+	/**
+	 * Pushes random numbers to a slicer
+	 * @param p The slicer
+	 * @return The events it outputs
+	 */
+	protected static List<Object> runSlicer(Processor p) throws ConnectorException
+	{
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(p, sink);
+		Pushable in = p.getPushableInput(0);
+		Random random = new Random(0);
+		for (int i = 0; i < 2000; i++)
+		{
+			in.push(random.nextInt(100));
+		}
+		if (p instanceof ParallelSlicer)
+		{
+			((ParallelSlicer) p).flush();
+		}
+		Queue<Object> queue = sink.getQueue();
+		return new ArrayList<Object>(queue);
+	}
+
+	protected static List<Integer> sorted(List<Object> list)
+	{
+		List<Integer> out = new ArrayList<Integer>();
+		for (Object o : list)
+		{
+			out.add(((Number) o).intValue());
+		}
+		Collections.sort(out);
+		return out;
+	}
+
+	/**
+	 * Returns its argument, but fails on 13
+	 */
+	public static class NotThirteen extends UnaryFunction<Number,Number>
+	{
+		public NotThirteen()
+		{
+			super(Number.class, Number.class);
+		}
+
+		@Override
+		public Number getValue(Number x)
+		{
+			if (x.intValue() == 13)
+			{
+				throw new IllegalArgumentException("13");
+			}
+			return x;
+		}
+	}
+
+	public static class Modulo extends UnaryFunction<Number,Integer>
+	{
+		public Modulo()
+		{
+			super(Number.class, Integer.class);
+		}
+
+		@Override
+		public Integer getValue(Number x)
+		{
+			return x.intValue() % 13;
+		}
+	}
+}
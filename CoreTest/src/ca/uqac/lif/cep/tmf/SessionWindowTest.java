@@ -0,0 +1,110 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.ProcessorTest.Sum;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.UnaryFunction;
+
+/**
+ * Unit tests for the {@link SessionWindow}
+ * @author Sylvain Hallé
+ */
+public class SessionWindowTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testTimeGap() throws ConnectorException
+	{
+		// Each event is its own timestamp
+		SessionWindow sw = new SessionWindow(new Sum(), new Identity(), 2);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sw, sink);
+		Pushable in = sw.getPushableInput(0);
+		int[] times = {1, 2, 4, 10, 11, 20, 22};
+		for (int t : times)
+		{
+			in.push(t);
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(2, queue.size());
+		assertEquals(7, ((Number) queue.remove()).intValue());
+		assertEquals(21, ((Number) queue.remove()).intValue());
+		assertTrue(sw.isOpen());
+		sw.reset();
+		assertFalse(sw.isOpen());
+	}
+
+	@Test
+	public void testCountGap() throws ConnectorException
+	{
+		// Positive events are an activity; two others close a session
+		SessionWindow sw = new SessionWindow(new Sum(), 2, new IsPositive());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sw, sink);
+		Pushable in = sw.getPushableInput(0);
+		int[] values = {0, 3, 4, 0, 5, 0, 0, 0, 0, 1, 2, 0, 0};
+		for (int v : values)
+		{
+			in.push(v);
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(2, queue.size());
+		assertEquals(12, ((Number) queue.remove()).intValue());
+		assertEquals(3, ((Number) queue.remove()).intValue());
+		assertFalse(sw.isOpen());
+	}
+
+	public static class Identity extends UnaryFunction<Number,Number>
+	{
+		public Identity()
+		{
+			super(Number.class, Number.class);
+		}
+
+		@Override
+		public Number getValue(Number x)
+		{
+			return x;
+		}
+	}
+
+	public static class IsPositive extends UnaryFunction<Number,Boolean>
+	{
+		public IsPositive()
+		{
+			super(Number.class, Boolean.class);
+		}
+
+		@Override
+		public Boolean getValue(Number x)
+		{
+			return x.intValue() > 0;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Processor;
+import ca.uqac.lif.cep.ProcessorTest.Sum;
+import ca.uqac.lif.cep.Pullable;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.BinaryFunction;
+import ca.uqac.lif.cep.numbers.Addition;
+import ca.uqac.lif.cep.numbers.DoubleBinaryFunction;
+import ca.uqac.lif.cep.numbers.DoubleCumulativeProcessor;
+import ca.uqac.lif.cep.numbers.LongBinaryFunction;
+import ca.uqac.lif.cep.numbers.LongCumulativeProcessor;
+import ca.uqac.lif.cep.tmf.SlidingAggregatorTest.Concatenation;
+
+/**
+ * Unit tests for the {@link SharedWindow}
+ * @author Sylvain Hallé
+ */
+public class SharedWindowTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testSharedSum() throws ConnectorException
+	{
+		compareWindows(Addition.instance, new Sum(), 3, 1, 8, 5);
+	}
+
+	@Test
+	public void testSharedLongSum() throws ConnectorException
+	{
+		// The inverse of a long addition is exact: results are updated
+		// with it
+		compareWindows(LongBinaryFunction.ADDITION, new LongCumulativeProcessor(LongBinaryFunction.ADDITION), 3, 1, 8, 5);
+	}
+
+	@Test
+	public void testSharedMaximum() throws ConnectorException
+	{
+		// The maximum has no inverse: results come from the tree
+		compareWindows(DoubleBinaryFunction.MAXIMUM, new DoubleCumulativeProcessor(DoubleBinaryFunction.MAXIMUM), 4, 7, 2, 13);
+	}
+
+	@Test
+	public void testSharedOrder() throws ConnectorException
+	{
+		SharedWindow sw = new SharedWindow(Concatenation.instance);
+		QueueSink sink0 = new QueueSink(1);
+		QueueSink sink1 = new QueueSink(1);
+		assertEquals(0, sw.addWidth(3));
+		assertEquals(1, sw.addWidth(5));
+		Connector.connect(sw, 0, sink0, 0);
+		Connector.connect(sw, 1, sink1, 0);
+		Pushable in = sw.getPushableInput(0);
+		for (int i = 0; i < 7; i++)
+		{
+			in.push(Integer.toString(i));
+		}
+		Queue<Object> q0 = sink0.getQueue();
+		Queue<Object> q1 = sink1.getQueue();
+		assertEquals(5, q0.size());
+		assertEquals("012", q0.remove());
+		assertEquals("123", q0.remove());
+		assertEquals("234", q0.remove());
+		assertEquals("345", q0.remove());
+		assertEquals("456", q0.remove());
+		assertEquals(3, q1.size());
+		assertEquals("01234", q1.remove());
+		assertEquals("12345", q1.remove());
+		assertEquals("23456", q1.remove());
+	}
+
+	@Test
+	public void testSharedPull() throws ConnectorException
+	{
+		QueueSource source = new QueueSource(1);
+		source.setEvents(new Integer[]{1, 2, 3, 4});
+		SharedWindow sw = new SharedWindow(Addition.instance);
+		sw.addWidth(2);
+		sw.addWidth(3);
+		Connector.connect(source, sw);
+		Pullable p0 = sw.getPullableOutput(0);
+		Pullable p1 = sw.getPullableOutput(1);
+		assertEquals(3, ((Number) p0.pull()).intValue());
+		assertEquals(6, ((Number) p1.pull()).intValue());
+		assertEquals(5, ((Number) p0.pull()).intValue());
+		assertEquals(9, ((Number) p1.pull()).intValue());
+	}
+
+	@Test
+	public void testAddWidthLater() throws ConnectorException
+	{
+		// A width added later only sees the events received after it
+		SharedWindow sw = new SharedWindow(DoubleBinaryFunction.MAXIMUM);
+		QueueSink sink1 = new QueueSink(1);
+		Connector.connect(sw, sw.addWidth(2), sink1, 0);
+		Pushable in = sw.getPushableInput(0);
+		in.push(9);
+		in.push(1);
+		QueueSink sink2 = new QueueSink(1);
+		Connector.connect(sw, sw.addWidth(4), sink2, 0);
+		in.push(2);
+		in.push(3);
+		in.push(1);
+		assertTrue(sink2.getQueue().isEmpty());
+		in.push(0);
+		assertEquals(3, ((Number) sink2.getQueue().remove()).intValue());
+		assertEquals(5, sink1.getQueue().size());
+	}
+
+	/**
+	 * Checks that each output of a shared window produces the same
+	 * events as a window of the same width
+	 */
+	protected static void compareWindows(BinaryFunction<?,?,?> function, Processor p, int ... widths) throws ConnectorException
+	{
+		SharedWindow sw = new SharedWindow(function);
+		QueueSink[] sinks = new QueueSink[widths.length];
+		Window[] windows = new Window[widths.length];
+		QueueSink[] expected = new QueueSink[widths.length];
+		for (int i = 0; i < widths.length; i++)
+		{
+			sinks[i] = new QueueSink(1);
+			Connector.connect(sw, sw.addWidth(widths[i]), sinks[i], 0);
+			windows[i] = new Window(p.clone(), widths[i]);
+			expected[i] = new QueueSink(1);
+			Connector.connect(windows[i], expected[i]);
+		}
+		Pushable in = sw.getPushableInput(0);
+		Random random = new Random(0);
+		for (int k = 0; k < 100; k++)
+		{
+			int v = random.nextInt(50);
+			in.push(v);
+			for (Window w : windows)
+			{
+				w.getPushableInput(0).push(v);
+			}
+		}
+		for (int i = 0; i < widths.length; i++)
+		{
+			Queue<Object> q1 = sinks[i].getQueue();
+			Queue<Object> q2 = expected[i].getQueue();
+			assertEquals(q2.size(), q1.size());
+			while (!q2.isEmpty())
+			{
+				assertEquals(((Number) q2.remove()).floatValue(), ((Number) q1.remove()).floatValue(), 0);
+			}
+		}
+	}
+}
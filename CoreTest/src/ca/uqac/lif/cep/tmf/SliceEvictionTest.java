@@ -0,0 +1,255 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.UnaryFunction;
+import ca.uqac.lif.cep.tmf.ParallelSlicerTest.Modulo;
+import ca.uqac.lif.cep.tmf.SessionWindowTest.Identity;
+import ca.uqac.lif.cep.tmf.SliceEviction.Cause;
+import ca.uqac.lif.cep.tmf.SlicerTest.Sum;
+
+/**
+ * Unit tests for the closing of slices in the {@link Slicer} and the
+ * {@link StateSlicer}
+ * @author Sylvain Hallé
+ */
+public class SliceEvictionTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testDisabled() throws ConnectorException
+	{
+		// Without a limit, the slices are not tracked at all
+		Slicer sli = new Slicer(new Identity(), new Sum());
+		StateSlicer ssli = new StateSlicer(new Identity(), new Sum());
+		Connector.connect(sli, new QueueSink(1));
+		Connector.connect(ssli, new QueueSink(1));
+		for (int i = 0; i < 10; i++)
+		{
+			sli.getPushableInput(0).push(i);
+			ssli.getPushableInput(0).push(i);
+		}
+		assertEquals(10, sli.getSliceCount());
+		assertTrue(sli.m_eviction.m_lastUse.isEmpty());
+		assertTrue(ssli.m_eviction.m_lastUse.isEmpty());
+	}
+
+	@Test
+	public void testMaxSlices() throws ConnectorException
+	{
+		Recorder rec = new Recorder();
+		Slicer sli = new Slicer(new Identity(), new Sum()).setMaxSlices(2).setEvictionListener(rec);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Pushable in = sli.getPushableInput(0);
+		in.push(1);
+		in.push(2);
+		in.push(1);
+		// Slice 2 is the least recently used
+		in.push(3);
+		assertEquals(2, sli.getSliceCount());
+		assertEquals(1, rec.m_ids.size());
+		assertEquals(2, ((Number) rec.m_ids.get(0)).intValue());
+		assertEquals(Cause.CAPACITY, rec.m_causes.get(0));
+		Queue<Object> queue = sink.getQueue();
+		// Outputs 1, 2, 2, then 3 and the front returned by the listener
+		assertEquals(5, queue.size());
+		for (int i = 0; i < 4; i++)
+		{
+			queue.remove();
+		}
+		assertEquals(-2, ((Number) queue.remove()).intValue());
+		// Slice 2 starts over
+		in.push(2);
+		assertEquals(2, ((Number) queue.remove()).intValue());
+		assertEquals(2, sli.getClosedSliceCount());
+	}
+
+	@Test
+	public void testIdleTimeout() throws ConnectorException
+	{
+		final long[] clock = new long[1];
+		Recorder rec = new Recorder();
+		Slicer sli = new Slicer(new Identity(), new Sum())
+		{
+			@Override
+			protected long currentTime()
+			{
+				return clock[0];
+			}
+		};
+		sli.setIdleTimeout(100).setEvictionListener(rec);
+		Pushable in = sli.getPushableInput(0);
+		Connector.connect(sli, new QueueSink(1));
+		in.push(1);
+		clock[0] = 60;
+		in.push(2);
+		clock[0] = 120;
+		in.push(2);
+		assertEquals(1, sli.getSliceCount());
+		assertEquals(Cause.IDLE, rec.m_causes.get(0));
+		clock[0] = 300;
+		in.push(3);
+		assertEquals(1, sli.getSliceCount());
+		assertEquals(2, rec.m_ids.size());
+	}
+
+	@Test
+	public void testCloseSlice() throws ConnectorException
+	{
+		Recorder rec = new Recorder();
+		Slicer sli = new Slicer(new Modulo(), new Sum()).setEvictionListener(rec);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Pushable in = sli.getPushableInput(0);
+		in.push(1);
+		in.push(14);
+		assertTrue(sli.closeSlice(1));
+		assertFalse(sli.closeSlice(1));
+		assertEquals(0, sli.getSliceCount());
+		assertEquals(Cause.EXPLICIT, rec.m_causes.get(0));
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(3, queue.size());
+		queue.remove();
+		queue.remove();
+		assertEquals(-15, ((Number) queue.remove()).intValue());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testStateSlicerCleaning() throws ConnectorException
+	{
+		Recorder rec = new Recorder();
+		// A slice is cleaned once its sum exceeds 10
+		StateSlicer sli = new StateSlicer(new Identity(), new Sum(), new Above(10));
+		sli.setEvictionListener(rec);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Pushable in = sli.getPushableInput(0);
+		in.push(3);
+		in.push(4);
+		in.push(3);
+		in.push(3);
+		in.push(3);
+		Queue<Object> queue = sink.getQueue();
+		// Slice 3 reaches 12: its value is output once more...
+		assertEquals(2, sli.getActiveSliceCount());
+		Object last = null;
+		while (!queue.isEmpty())
+		{
+			last = queue.remove();
+		}
+		boolean found = false;
+		for (Object o : (Collection<Object>) last)
+		{
+			found |= ((Number) o).intValue() == 12;
+		}
+		assertTrue(found);
+		// ...and the slice is gone on the next event
+		in.push(4);
+		assertEquals(1, sli.getActiveSliceCount());
+		assertEquals(1, sli.getClosedSliceCount());
+		assertEquals(Cause.CLEANED, rec.m_causes.get(0));
+		Object[] front = null;
+		int fronts = 0;
+		while (!queue.isEmpty())
+		{
+			front = new Object[]{queue.remove()};
+			fronts++;
+		}
+		// The listener's front, then the collection
+		assertEquals(2, fronts);
+		Collection<Object> values = (Collection<Object>) front[0];
+		assertEquals(1, values.size());
+		assertEquals(8, ((Number) values.iterator().next()).intValue());
+	}
+
+	@Test
+	public void testStateSlicerRemove() throws ConnectorException
+	{
+		StateSlicer sli = new StateSlicer(new Identity(), new Sum());
+		Pushable in = sli.getPushableInput(0);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		in.push(1);
+		in.push(2);
+		in.push(3);
+		assertTrue(sli.closeSlice(1));
+		in.push(3);
+		assertEquals(2, sli.getActiveSliceCount());
+		List<Object> values = sli.m_lastValues;
+		assertEquals(2, values.size());
+		// The value of slice 3 took the place of slice 1
+		assertEquals(6, ((Number) values.get(0)).intValue());
+		assertEquals(2, ((Number) values.get(1)).intValue());
+	}
+
+	/**
+	 * Records the slices that are closed, and outputs the opposite of
+	 * their last value
+	 */
+	protected static class Recorder implements SliceEviction.Listener
+	{
+		List<Object> m_ids = new ArrayList<Object>();
+
+		List<Cause> m_causes = new ArrayList<Cause>();
+
+		@Override
+		public Object[] sliceClosed(Object slice_id, Object[] last, Cause cause)
+		{
+			m_ids.add(slice_id);
+			m_causes.add(cause);
+			if (last == null)
+			{
+				return null;
+			}
+			return new Object[]{-((Number) last[0]).intValue()};
+		}
+	}
+
+	public static class Above extends UnaryFunction<Number,Boolean>
+	{
+		private final int m_threshold;
+
+		public Above(int threshold)
+		{
+			super(Number.class, Boolean.class);
+			m_threshold = threshold;
+		}
+
+		@Override
+		public Boolean getValue(Number x)
+		{
+			return x.intValue() > m_threshold;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.ArgumentPlaceholder;
+import ca.uqac.lif.cep.functions.CumulativeFunction;
+import ca.uqac.lif.cep.functions.FunctionChain;
+import ca.uqac.lif.cep.functions.FunctionProcessor;
+import ca.uqac.lif.cep.functions.FunctionTree;
+import ca.uqac.lif.cep.numbers.Addition;
+import ca.uqac.lif.cep.numbers.LongCumulativeProcessor;
+import ca.uqac.lif.cep.numbers.LongBinaryFunction;
+import ca.uqac.lif.cep.tmf.SessionWindowTest.Identity;
+import ca.uqac.lif.cep.tmf.SliceTableTest.BroadcastZero;
+import ca.uqac.lif.cep.tmf.SlicerTest.Sum;
+
+/**
+ * Unit tests for the {@link FileSliceStore}, and for slicers moving
+ * their slices to a {@link SliceStore}
+ * @author Sylvain Hallé
+ */
+public class SliceStoreTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testFileStore()
+	{
+		FileSliceStore store = new FileSliceStore();
+		store.put(1, "foo");
+		store.put("a", 3);
+		store.put(1, "bar");
+		assertEquals(2, store.size());
+		assertTrue(store.containsKey(1));
+		assertEquals("bar", store.remove(1));
+		assertNull(store.remove(1));
+		assertFalse(store.containsKey(1));
+		assertEquals(1, store.keySet().size());
+		assertEquals(3, store.remove("a"));
+		store.clear();
+		assertEquals(0, store.getFileLength());
+		store.close();
+	}
+
+	@Test
+	public void testFileStoreCompaction()
+	{
+		FileSliceStore store = new FileSliceStore();
+		byte[] state = new byte[400000];
+		state[0] = 42;
+		store.put(0, "other");
+		for (int i = 0; i < 5; i++)
+		{
+			store.put(1, state);
+		}
+		// Only the last record of slice 1 and the record of slice 0 remain
+		assertTrue(store.getFileLength() < 2 * state.length);
+		assertEquals("other", store.remove(0));
+		assertEquals(42, ((byte[]) store.remove(1))[0]);
+		store.close();
+	}
+
+	@Test
+	public void testSlicer() throws ConnectorException
+	{
+		FileSliceStore store = new FileSliceStore();
+		Slicer sli = new Slicer(new Identity(), new Sum()).setSliceStore(store, 2);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Queue<Object> queue = sink.getQueue();
+		Pushable in = sli.getPushableInput(0);
+		in.push(1);
+		in.push(2);
+		in.push(3);
+		// Slice 1 is moved out of memory
+		assertEquals(3, sli.getSliceCount());
+		assertEquals(1, store.size());
+		assertTrue(store.containsKey(1));
+		in.push(1);
+		// Slice 1 is brought back, and slice 2 moved out
+		assertTrue(store.containsKey(2));
+		assertEquals(2, sli.getSliceCache().getSpillCount());
+		for (int i = 0; i < 3; i++)
+		{
+			queue.remove();
+		}
+		assertEquals(2, ((Number) queue.remove()).intValue());
+		in.push(2);
+		assertEquals(4, ((Number) queue.remove()).intValue());
+		assertTrue(sli.closeSlice(3));
+		assertEquals(2, sli.getSliceCount());
+		sli.reset();
+		assertEquals(0, store.size());
+		store.close();
+	}
+
+	@Test
+	public void testStateSlicer() throws ConnectorException
+	{
+		FileSliceStore store = new FileSliceStore();
+		StateSlicer sli = new StateSlicer(new Identity(), new LongCumulativeProcessor(LongBinaryFunction.ADDITION));
+		sli.setSliceStore(store, 1);
+		Pushable in = sli.getPushableInput(0);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		in.push(1L);
+		in.push(2L);
+		in.push(1L);
+		in.push(2L);
+		assertEquals(2, sli.getActiveSliceCount());
+		assertEquals(1, store.size());
+		List<Object> values = sli.m_lastValues;
+		assertEquals(2L, values.get(0));
+		assertEquals(4L, values.get(1));
+		// A cold slice can be closed
+		assertTrue(sli.closeSlice(1L));
+		assertEquals(0, store.size());
+		store.close();
+	}
+
+	@Test
+	public void testBroadcast() throws ConnectorException
+	{
+		FileSliceStore store = new FileSliceStore();
+		Slicer sli = new Slicer(new BroadcastZero(), new Sum()).setSliceStore(store, 1);
+		Connector.connect(sli, new QueueSink(1));
+		Pushable in = sli.getPushableInput(0);
+		in.push(1);
+		in.push(2);
+		try
+		{
+			// The slices in the store are not brought back for this event
+			in.push(0);
+			fail("An event for all slices was accepted");
+		}
+		catch (UnsupportedOperationException e)
+		{
+			// Expected
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+
+	@Test
+	public void testFunctionChain() throws ConnectorException
+	{
+		FunctionProcessor fp = new FunctionProcessor(new FunctionChain(
+				new CumulativeFunction<Number>(Addition.instance), new Identity()));
+		checkCumulativeSlices(fp, new int[]{1, 2, 2, 4, 3, 6});
+	}
+
+	@Test
+	public void testFunctionTree() throws ConnectorException
+	{
+		// Adds each event to the sum of the previous ones
+		FunctionProcessor fp = new FunctionProcessor(new FunctionTree(Addition.instance,
+				new CumulativeFunction<Number>(Addition.instance), new ArgumentPlaceholder(0)));
+		checkCumulativeSlices(fp, new int[]{2, 4, 3, 6, 4, 8});
+	}
+
+	/**
+	 * Pushes 1, 2, 1, 2, 1, 2 to a slicer keeping a single slice in
+	 * memory, so that each slice goes to the store and back between
+	 * each of its events
+	 * @param slice_proc The processor of each slice
+	 * @param expected The values expected at the output of the slicer
+	 */
+	protected static void checkCumulativeSlices(FunctionProcessor slice_proc, int[] expected) throws ConnectorException
+	{
+		FileSliceStore store = new FileSliceStore();
+		Slicer sli = new Slicer(new Identity(), slice_proc).setSliceStore(store, 1);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Queue<Object> queue = sink.getQueue();
+		Pushable in = sli.getPushableInput(0);
+		for (int i = 0; i < expected.length; i++)
+		{
+			in.push(i % 2 + 1);
+			assertEquals(expected[i], ((Number) queue.remove()).intValue());
+		}
+		assertEquals(1, store.size());
+		store.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotStateful()
+	{
+		new Slicer(new Identity(), new QueueSink(1)).setSliceStore(new FileSliceStore(), 1);
+	}
+}
@@ -0,0 +1,130 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.functions.UnaryFunction;
+import ca.uqac.lif.cep.tmf.SliceTable.Slice;
+import ca.uqac.lif.cep.tmf.SlicerTest.Sum;
+
+/**
+ * Unit tests for the {@link SliceTable}
+ * @author Sylvain Hallé
+ */
+public class SliceTableTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testRandom()
+	{
+		SliceTable table = new SliceTable();
+		Map<Object,Slice> expected = new HashMap<Object,Slice>();
+		Random random = new Random(0);
+		Passthrough p = new Passthrough(1);
+		QueueSink sink = new QueueSink(1);
+		for (int i = 0; i < 20000; i++)
+		{
+			Object id;
+			switch (random.nextInt(3))
+			{
+			case 0:
+				id = random.nextInt(300);
+				break;
+			case 1:
+				// Same primitive values as the integers, but other IDs
+				id = (long) random.nextInt(300);
+				break;
+			default:
+				id = "s" + random.nextInt(50);
+				break;
+			}
+			if (random.nextBoolean())
+			{
+				if (table.get(id) == null)
+				{
+					Slice s = new Slice(id, p, sink);
+					table.put(s);
+					expected.put(id, s);
+				}
+			}
+			else
+			{
+				assertSame(expected.remove(id), table.remove(id));
+			}
+			assertEquals(expected.size(), table.size());
+		}
+		for (Object id : expected.keySet())
+		{
+			assertSame(expected.get(id), table.get(id));
+		}
+		Set<Object> ids = new HashSet<Object>();
+		for (int i = 0; i < table.size(); i++)
+		{
+			ids.add(table.get(i).getId());
+		}
+		assertEquals(expected.keySet(), ids);
+		table.clear();
+		assertEquals(0, table.size());
+		assertNull(table.get(Integer.valueOf(1)));
+	}
+
+	@Test
+	public void testSlicerBroadcast() throws ConnectorException
+	{
+		Slicer sli = new Slicer(new BroadcastZero(), new Sum());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		sli.getPushableInput(0).push(1);
+		sli.getPushableInput(0).push(2);
+		// 0 goes to all slices
+		sli.getPushableInput(0).push(0);
+		assertEquals(2, sli.getSliceCount());
+		assertEquals(4, sink.getQueue().size());
+	}
+
+	public static class BroadcastZero extends UnaryFunction<Number,Object>
+	{
+		public BroadcastZero()
+		{
+			super(Number.class, Object.class);
+		}
+
+		@Override
+		public Object getValue(Number x)
+		{
+			if (x.intValue() == 0)
+			{
+				return Slicer.AllSlices.instance;
+			}
+			return x.intValue();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.And;
+import ca.uqac.lif.cep.functions.BinaryFunction;
+import ca.uqac.lif.cep.numbers.DoubleBinaryFunction;
+import ca.uqac.lif.cep.numbers.DoubleCumulativeProcessor;
+
+/**
+ * Unit tests for the {@link SlidingAggregator}, and for windows using it
+ * @author Sylvain Hallé
+ */
+public class SlidingAggregatorTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testOrder()
+	{
+		// Concatenation is associative but not commutative
+		SlidingAggregator agg = new SlidingAggregator(Concatenation.instance);
+		assertNull(agg.getAggregate());
+		LinkedList<String> window = new LinkedList<String>();
+		Random random = new Random(0);
+		for (int i = 0; i < 200; i++)
+		{
+			String s = Integer.toString(i);
+			agg.add(s);
+			window.add(s);
+			if (window.size() > 7 || random.nextInt(4) == 0)
+			{
+				agg.remove();
+				window.removeFirst();
+			}
+			StringBuilder expected = new StringBuilder();
+			for (String e : window)
+			{
+				expected.append(e);
+			}
+			assertEquals(window.size(), agg.size());
+			if (window.isEmpty())
+			{
+				assertNull(agg.getAggregate());
+			}
+			else
+			{
+				assertEquals(expected.toString(), agg.getAggregate());
+			}
+		}
+	}
+
+	@Test
+	public void testWindowMaximum() throws ConnectorException
+	{
+		Window wp = new Window(new DoubleCumulativeProcessor(DoubleBinaryFunction.MAXIMUM), 3);
+		assertTrue(wp.isIncremental());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(wp, sink);
+		Pushable in = wp.getPushableInput(0);
+		int[] values = {5, 1, 2, 0, 7, 3, 3, 1};
+		double[] expected = {5, 2, 7, 7, 7, 3};
+		for (int v : values)
+		{
+			in.push(v);
+		}
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(expected.length, queue.size());
+		for (double d : expected)
+		{
+			assertEquals(d, ((Number) queue.remove()).doubleValue(), 0);
+		}
+	}
+
+	@Test
+	public void testWindowFunction() throws ConnectorException
+	{
+		WindowFunction wf = new WindowFunction(And.instance, 2);
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(wf, sink);
+		Pushable in = wf.getPushableInput(0);
+		in.push(true);
+		in.push(true);
+		in.push(false);
+		in.push(true);
+		in.push(true);
+		Queue<Object> queue = sink.getQueue();
+		assertEquals(true, queue.remove());
+		assertEquals(false, queue.remove());
+		assertEquals(false, queue.remove());
+		assertEquals(true, queue.remove());
+		assertTrue(queue.isEmpty());
+	}
+
+	public static class Concatenation extends BinaryFunction<String,String,String>
+	{
+		public static final transient Concatenation instance = new Concatenation();
+
+		private Concatenation()
+		{
+			super(String.class, String.class, String.class);
+		}
+
+		@Override
+		public String getValue(String x, String y)
+		{
+			return x + y;
+		}
+
+		@Override
+		public boolean isAssociative()
+		{
+			return true;
+		}
+	}
+}
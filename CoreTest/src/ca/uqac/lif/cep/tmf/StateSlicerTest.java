@@ -0,0 +1,181 @@
+/*
+    BeepBeep, an event stream processor
+    Copyright (C) 2008-2016 Sylvain Hallé
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU Lesser General Public License as published
+    by the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU Lesser General Public License for more details.
+
+    You should have received a copy of the GNU Lesser General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.uqac.lif.cep.tmf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import ca.uqac.lif.cep.BeepBeepUnitTest;
+import ca.uqac.lif.cep.Connector;
+import ca.uqac.lif.cep.Connector.ConnectorException;
+import ca.uqac.lif.cep.Pushable;
+import ca.uqac.lif.cep.functions.UnaryFunction;
+import ca.uqac.lif.cep.tmf.ParallelSlicerTest.Modulo;
+import ca.uqac.lif.cep.tmf.SliceEvictionTest.Above;
+import ca.uqac.lif.cep.tmf.SlicerTest.Sum;
+import ca.uqac.lif.cep.tmf.StateSlicer.Delta;
+
+/**
+ * Unit tests for the {@link StateSlicer}'s delta mode and changed
+ * indices
+ * @author Sylvain Hallé
+ */
+public class StateSlicerTest extends BeepBeepUnitTest
+{
+	@Test
+	public void testDeltaMode() throws ConnectorException
+	{
+		StateSlicer sli = new StateSlicer(new Modulo(), new Sum(), new Above(20)).setDeltaMode(true);
+		assertTrue(sli.isDeltaMode());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Queue<Object> queue = sink.getQueue();
+		Pushable in = sli.getPushableInput(0);
+		in.push(1);
+		in.push(2);
+		assertEquals(2, queue.size());
+		assertDelta(queue.remove(), 1, 1, false);
+		assertDelta(queue.remove(), 2, 2, false);
+		// Slice 0 is created with a value of 0
+		in.push(0);
+		assertDelta(queue.remove(), 0, 0, false);
+		// The value of slice 0 does not change: nothing is output
+		in.push(0);
+		assertTrue(queue.isEmpty());
+		// Slice 1 goes above 20, and is closed on the next event
+		in.push(27);
+		assertDelta(queue.remove(), 1, 28, false);
+		assertTrue(queue.isEmpty());
+		in.push(15);
+		assertDelta(queue.remove(), 1, 28, true);
+		assertDelta(queue.remove(), 2, 17, false);
+		assertTrue(queue.isEmpty());
+		assertTrue(sli.closeSlice(0));
+		assertDelta(queue.remove(), 0, 0, true);
+		assertFalse(sli.closeSlice(0));
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testDeltaModeChanged() throws ConnectorException
+	{
+		// In delta mode, the changed indices are not kept
+		StateSlicer sli = new StateSlicer(new Modulo(), new Sum()).setDeltaMode(true);
+		Connector.connect(sli, new QueueSink(1));
+		Pushable in = sli.getPushableInput(0);
+		for (int i = 0; i < 10000; i++)
+		{
+			in.push(i);
+		}
+		assertEquals(0, sli.m_changedCount);
+		assertEquals(16, sli.m_changed.length);
+	}
+
+	@Test
+	public void testChangedIndices() throws ConnectorException
+	{
+		StateSlicer sli = new StateSlicer(new Modulo(), new Sum());
+		assertFalse(sli.isDeltaMode());
+		QueueSink sink = new QueueSink(1);
+		Connector.connect(sli, sink);
+		Pushable in = sli.getPushableInput(0);
+		in.push(0);
+		assertArrayEquals(new int[]{0}, sli.getChangedIndices());
+		in.push(1);
+		in.push(2);
+		assertArrayEquals(new int[]{2}, sli.getChangedIndices());
+		in.push(0);
+		assertArrayEquals(new int[0], sli.getChangedIndices());
+		in.push(14);
+		assertArrayEquals(new int[]{1}, sli.getChangedIndices());
+		// The value of slice 2 takes the place of slice 0
+		sli.closeSlice(0);
+		in.push(27);
+		assertArrayEquals(new int[]{0, 1}, sli.getChangedIndices());
+		// Closing the last slice only shortens the collection
+		sli.closeSlice(1);
+		in.push(13);
+		assertArrayEquals(new int[]{1}, sli.getChangedIndices());
+		List<Object> values = sli.m_lastValues;
+		assertEquals(2, values.size());
+		assertEquals(2, ((Number) values.get(0)).intValue());
+		assertEquals(13, ((Number) values.get(1)).intValue());
+	}
+
+	@Test
+	public void testAllSlices() throws ConnectorException
+	{
+		StateSlicer sli = new StateSlicer(new Broadcast(), new Sum());
+		Connector.connect(sli, new QueueSink(1));
+		Pushable in = sli.getPushableInput(0);
+		in.push(0);
+		in.push(1);
+		in.push(2);
+		// A negative number goes to every slice
+		in.push(-10);
+		List<Object> values = sli.m_lastValues;
+		assertEquals(3, values.size());
+		assertEquals(-10, ((Number) values.get(0)).intValue());
+		assertEquals(-9, ((Number) values.get(1)).intValue());
+		assertEquals(-8, ((Number) values.get(2)).intValue());
+		assertArrayEquals(new int[]{0, 1, 2}, sli.getChangedIndices());
+		// A closed slice no longer receives these events
+		sli.closeSlice(1);
+		in.push(-1);
+		assertEquals(2, values.size());
+		assertEquals(-11, ((Number) values.get(0)).intValue());
+		assertEquals(-9, ((Number) values.get(1)).intValue());
+	}
+
+	protected static void assertDelta(Object o, int slice_id, int value, boolean closed)
+	{
+		Delta d = (Delta) o;
+		assertEquals(slice_id, ((Number) d.getSliceId()).intValue());
+		assertEquals(value, ((Number) d.getValue()).intValue());
+		assertEquals(closed, d.isClosed());
+	}
+
+	/**
+	 * Sends negative numbers to all slices, and the others to the slice
+	 * of their value modulo 3
+	 */
+	public static class Broadcast extends UnaryFunction<Number,Object>
+	{
+		public Broadcast()
+		{
+			super(Number.class, Object.class);
+		}
+
+		@Override
+		public Object getValue(Number x)
+		{
+			if (x.intValue() < 0)
+			{
+				return StateSlicer.ToAllSlices.instance;
+			}
+			return x.intValue() % 3;
+		}
+	}
+}
@@ -57,6 +57,18 @@ public class Maximum extends BinaryFunction<Number,Number,Number>
 		}
 		return y;
 	}
+
+	/*
+	 * Optionally, a function can declare that it is associative. A
+	 * Window or a WindowFunction that aggregates events with such a
+	 * function updates its result in constant time, instead of
+	 * computing it again over the whole window on every new event.
+	 */
+	@Override
+	public boolean isAssociative()
+	{
+		return true;
+	}
 	
 	/*
 	 * A small main method to illustrate the function